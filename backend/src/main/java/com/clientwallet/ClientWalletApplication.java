@@ -3,6 +3,7 @@ package com.clientwallet;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 
@@ -18,8 +19,12 @@ import org.springframework.context.annotation.Configuration;
  * <p>
  * The {@link SpringApplication} class is used to launch the application.
  * </p>
+ * <p>
+ * The R2DBC connection factory is only used by the reactive variant of the wallet endpoints, see
+ * {@link com.clientwallet.reactive.ReactiveWalletApplication}, so it is not configured here.
+ * </p>
  */
-@SpringBootApplication
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 public class ClientWalletApplication {
 
 	/**
@@ -0,0 +1,653 @@
+package com.clientwallet.archive;
+
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.TransactionStatus;
+import com.clientwallet.model.TransactionType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ArchiveSegment is an immutable file of archived transactions, stored column by column in compressed blocks
+ * and read through a memory mapping.
+ * <p>
+ * Every transaction is stored as one entry of its sender wallet and one entry of its receiver wallet. The entries are
+ * sorted by the wallet, the creation time and the ID of the transaction, in the order of the history queries,
+ * and split into blocks of {@link #BLOCK_SIZE} entries. A block stores each column of its entries one after another
+ * and is compressed by Deflate, so the repeated values of a column compress well.
+ * </p>
+ * <p>
+ * The file ends with a sparse index holding the key of the first entry and the position of every block, followed by
+ * a fixed-size trailer. A read of one wallet binary searches the index and inflates only the blocks of that wallet,
+ * directly from the mapped file. Nothing but the index is kept on the heap.
+ * </p>
+ */
+public final class ArchiveSegment {
+
+  /**
+   * The number of entries of a block.
+   */
+  static final int BLOCK_SIZE = 1024;
+
+  private static final int MAGIC = 0x43575347;
+
+  private static final int VERSION = 1;
+
+  // First wallet ID, first creation time, first transaction ID, offset, compressed length, length and entry count
+  private static final int INDEX_ENTRY_SIZE = 6 * Long.BYTES + 3 * Integer.BYTES;
+
+  // Index offset, block count, entry count, oldest and newest creation time, version and magic number
+  private static final int TRAILER_SIZE = 3 * Long.BYTES + 4 * Integer.BYTES;
+
+  private static final byte NULL_SCALE = Byte.MIN_VALUE;
+
+  private static final UUID MIN_ID = new UUID(0L, 0L);
+
+  private static final UUID MAX_ID = new UUID(-1L, -1L);
+
+  /**
+   * The order of the entries: by wallet, creation time and transaction ID, comparing IDs like the database does.
+   */
+  private static final Comparator<Entry> ENTRY_ORDER = (first, second) -> {
+    int result = compare(first.walletId(), second.walletId());
+    if (result == 0) {
+      result = first.transaction().getCreatedAt().compareTo(second.transaction().getCreatedAt());
+    }
+    return result != 0 ? result : compare(first.transaction().getId(), second.transaction().getId());
+  };
+
+  private final Path path;
+
+  private final MappedByteBuffer buffer;
+
+  private final int blockCount;
+
+  private final int entryCount;
+
+  private final LocalDateTime oldestCreatedAt;
+
+  private final LocalDateTime newestCreatedAt;
+
+  private final UUID[] firstWalletIds;
+
+  private final long[] firstCreatedAt;
+
+  private final UUID[] firstTransactionIds;
+
+  private final long[] offsets;
+
+  private final int[] compressedLengths;
+
+  private final int[] lengths;
+
+  private ArchiveSegment(Path path, MappedByteBuffer buffer) throws IOException {
+    this.path = path;
+    this.buffer = buffer;
+    int size = buffer.capacity();
+    if (size < TRAILER_SIZE || buffer.getInt(size - Integer.BYTES) != MAGIC) {
+      throw new IOException("The file " + path + " is not an archive segment.");
+    }
+    int trailer = size - TRAILER_SIZE;
+    long indexOffset = buffer.getLong(trailer);
+    blockCount = buffer.getInt(trailer + Long.BYTES);
+    entryCount = buffer.getInt(trailer + Long.BYTES + Integer.BYTES);
+    oldestCreatedAt = fromMicros(buffer.getLong(trailer + Long.BYTES + 2 * Integer.BYTES));
+    newestCreatedAt = fromMicros(buffer.getLong(trailer + 2 * Long.BYTES + 2 * Integer.BYTES));
+    int version = buffer.getInt(trailer + 3 * Long.BYTES + 2 * Integer.BYTES);
+    if (version != VERSION || indexOffset + (long) blockCount * INDEX_ENTRY_SIZE != trailer) {
+      throw new IOException("The archive segment " + path + " has an unsupported version or is truncated.");
+    }
+
+    firstWalletIds = new UUID[blockCount];
+    firstCreatedAt = new long[blockCount];
+    firstTransactionIds = new UUID[blockCount];
+    offsets = new long[blockCount];
+    compressedLengths = new int[blockCount];
+    lengths = new int[blockCount];
+    ByteBuffer index = buffer.slice((int) indexOffset, blockCount * INDEX_ENTRY_SIZE);
+    for (int block = 0; block < blockCount; block++) {
+      firstWalletIds[block] = new UUID(index.getLong(), index.getLong());
+      firstCreatedAt[block] = index.getLong();
+      firstTransactionIds[block] = new UUID(index.getLong(), index.getLong());
+      offsets[block] = index.getLong();
+      compressedLengths[block] = index.getInt();
+      lengths[block] = index.getInt();
+      index.getInt();
+    }
+  }
+
+  /**
+   * Writes the transactions to a new segment file.
+   *
+   * @param file         The path of the file, which must not exist.
+   * @param transactions The transactions, in any order.
+   * @throws IOException If writing the file fails.
+   */
+  public static void write(Path file, List<ArchivedTransaction> transactions) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    long oldest = Long.MAX_VALUE;
+    long newest = Long.MIN_VALUE;
+    for (ArchivedTransaction transaction : transactions) {
+      if (transaction.getSenderWalletId() != null) {
+        entries.add(new Entry(transaction.getSenderWalletId(), transaction));
+      }
+      if (transaction.getReceiverWalletId() != null) {
+        entries.add(new Entry(transaction.getReceiverWalletId(), transaction));
+      }
+      oldest = Math.min(oldest, micros(transaction.getCreatedAt()));
+      newest = Math.max(newest, micros(transaction.getCreatedAt()));
+    }
+    entries.sort(ENTRY_ORDER);
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      int blockCount = (entries.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      ByteBuffer index = ByteBuffer.allocate(blockCount * INDEX_ENTRY_SIZE);
+      Deflater deflater = new Deflater();
+      long offset = 0;
+      try {
+        for (int start = 0; start < entries.size(); start += BLOCK_SIZE) {
+          List<Entry> block = entries.subList(start, Math.min(start + BLOCK_SIZE, entries.size()));
+          byte[] raw = encode(block);
+          byte[] compressed = deflate(deflater, raw);
+          Entry first = block.get(0);
+          index.putLong(first.walletId().getMostSignificantBits()).putLong(first.walletId().getLeastSignificantBits())
+              .putLong(micros(first.transaction().getCreatedAt()))
+              .putLong(first.transaction().getId().getMostSignificantBits())
+              .putLong(first.transaction().getId().getLeastSignificantBits())
+              .putLong(offset).putInt(compressed.length).putInt(raw.length).putInt(block.size());
+          writeFully(channel, ByteBuffer.wrap(compressed));
+          offset += compressed.length;
+        }
+      } finally {
+        deflater.end();
+      }
+      writeFully(channel, index.flip());
+
+      ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+      trailer.putLong(offset).putInt(blockCount).putInt(entries.size())
+          .putLong(entries.isEmpty() ? 0 : oldest).putLong(entries.isEmpty() ? 0 : newest)
+          .putInt(VERSION).putInt(MAGIC);
+      writeFully(channel, trailer.flip());
+      channel.force(true);
+    }
+  }
+
+  /**
+   * Opens a segment file by mapping it into memory.
+   *
+   * @param file The path of the file.
+   * @return The segment.
+   * @throws IOException If the file cannot be read or is not a valid segment.
+   */
+  public static ArchiveSegment open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return new ArchiveSegment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Compares two IDs by their unsigned bytes, the order of UUID columns in the database.
+   *
+   * @param first  The first ID.
+   * @param second The second ID.
+   * @return A negative number, zero or a positive number if the first ID is lower, equal or greater.
+   */
+  public static int compare(UUID first, UUID second) {
+    int result = Long.compareUnsigned(first.getMostSignificantBits(), second.getMostSignificantBits());
+    return result != 0 ? result : Long.compareUnsigned(first.getLeastSignificantBits(), second.getLeastSignificantBits());
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public int getEntryCount() {
+    return entryCount;
+  }
+
+  public LocalDateTime getOldestCreatedAt() {
+    return oldestCreatedAt;
+  }
+
+  public LocalDateTime getNewestCreatedAt() {
+    return newestCreatedAt;
+  }
+
+  /**
+   * Finds the transactions of a wallet older than the given position.
+   *
+   * @param walletId  The ID of the wallet.
+   * @param createdAt The creation time of the position, or {@code null} to start with the newest transaction.
+   * @param id        The ID of the transaction at the position, ignored without a creation time.
+   * @param limit     The maximum number of transactions.
+   * @return The transactions ordered from the newest to the oldest.
+   */
+  public List<ArchivedTransaction> findOlderThan(UUID walletId, LocalDateTime createdAt, UUID id, int limit) {
+    List<ArchivedTransaction> transactions = new ArrayList<>();
+    scanOlder(walletId, createdAt != null ? micros(createdAt) : Long.MAX_VALUE, createdAt != null ? id : MAX_ID,
+        transaction -> transactions.add(transaction) && transactions.size() < limit);
+    return transactions;
+  }
+
+  /**
+   * Finds the transactions of a wallet newer than the given position.
+   *
+   * @param walletId  The ID of the wallet.
+   * @param createdAt The creation time of the position, or {@code null} to start with the oldest transaction.
+   * @param id        The ID of the transaction at the position, ignored without a creation time.
+   * @param limit     The maximum number of transactions.
+   * @return The transactions ordered from the oldest to the newest.
+   */
+  public List<ArchivedTransaction> findNewerThan(UUID walletId, LocalDateTime createdAt, UUID id, int limit) {
+    List<ArchivedTransaction> transactions = new ArrayList<>();
+    scanNewer(walletId, createdAt != null ? micros(createdAt) : Long.MIN_VALUE, createdAt != null ? id : MIN_ID,
+        transaction -> transactions.add(transaction) && transactions.size() < limit);
+    return transactions;
+  }
+
+  /**
+   * Finds the last applied transaction of a wallet created at or before the given time.
+   *
+   * @param walletId The ID of the wallet.
+   * @param at       The point in time.
+   * @return The transaction with the balance of the wallet after it, or {@code null} if there is none.
+   */
+  public ArchivedTransaction findLastAppliedAt(UUID walletId, LocalDateTime at) {
+    ArchivedTransaction[] found = new ArchivedTransaction[1];
+    scanOlder(walletId, micros(at), MAX_ID, transaction -> {
+      if (transaction.getBalanceAfter(walletId) == null) {
+        return true;
+      }
+      found[0] = transaction;
+      return false;
+    });
+    return found[0];
+  }
+
+  /**
+   * Reads all transactions of the segment.
+   *
+   * @return The transactions, each of them once.
+   */
+  public List<ArchivedTransaction> transactions() {
+    Map<UUID, ArchivedTransaction> transactions = new LinkedHashMap<>();
+    for (int block = 0; block < blockCount; block++) {
+      for (Entry entry : decode(block)) {
+        transactions.putIfAbsent(entry.transaction().getId(), entry.transaction());
+      }
+    }
+    return new ArrayList<>(transactions.values());
+  }
+
+  /**
+   * Passes the entries of a wallet before the position to the visitor, from the newest to the oldest.
+   *
+   * @param walletId  The ID of the wallet.
+   * @param createdAt The creation time of the position in microseconds.
+   * @param id        The transaction ID of the position.
+   * @param visitor   Returns {@code false} to stop the scan.
+   */
+  private void scanOlder(UUID walletId, long createdAt, UUID id, Predicate<ArchivedTransaction> visitor) {
+    for (int block = lastBlockBefore(walletId, createdAt, id, false); block >= 0; block--) {
+      List<Entry> entries = decode(block);
+      for (int i = entries.size() - 1; i >= 0; i--) {
+        Entry entry = entries.get(i);
+        if (compare(entry, walletId, createdAt, id) >= 0) {
+          continue;
+        }
+        if (!entry.walletId().equals(walletId) || !visitor.test(entry.transaction())) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Passes the entries of a wallet after the position to the visitor, from the oldest to the newest.
+   *
+   * @param walletId  The ID of the wallet.
+   * @param createdAt The creation time of the position in microseconds.
+   * @param id        The transaction ID of the position.
+   * @param visitor   Returns {@code false} to stop the scan.
+   */
+  private void scanNewer(UUID walletId, long createdAt, UUID id, Predicate<ArchivedTransaction> visitor) {
+    for (int block = Math.max(0, lastBlockBefore(walletId, createdAt, id, true)); block < blockCount; block++) {
+      for (Entry entry : decode(block)) {
+        if (compare(entry, walletId, createdAt, id) <= 0) {
+          continue;
+        }
+        if (!entry.walletId().equals(walletId) || !visitor.test(entry.transaction())) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Binary searches the sparse index for the last block starting before the position.
+   *
+   * @param walletId  The ID of the wallet.
+   * @param createdAt The creation time of the position in microseconds.
+   * @param id        The transaction ID of the position.
+   * @param inclusive Whether a block starting exactly at the position is included.
+   * @return The index of the block, or {@code -1} if every block starts after the position.
+   */
+  private int lastBlockBefore(UUID walletId, long createdAt, UUID id, boolean inclusive) {
+    int low = 0;
+    int high = blockCount - 1;
+    int result = -1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int comparison = compare(firstWalletIds[middle], walletId);
+      if (comparison == 0) {
+        comparison = Long.compare(firstCreatedAt[middle], createdAt);
+      }
+      if (comparison == 0) {
+        comparison = compare(firstTransactionIds[middle], id);
+      }
+      if (comparison < 0 || (inclusive && comparison == 0)) {
+        result = middle;
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Inflates and decodes a block directly from the mapped file.
+   *
+   * @param block The index of the block.
+   * @return The entries of the block in their sorted order.
+   */
+  private List<Entry> decode(int block) {
+    byte[] raw = new byte[lengths[block]];
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(buffer.slice((int) offsets[block], compressedLengths[block]));
+      int length = 0;
+      while (length < raw.length) {
+        int inflated = inflater.inflate(raw, length, raw.length - length);
+        if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+          throw new IllegalStateException("The block " + block + " of the archive segment " + path + " is truncated.");
+        }
+        length += inflated;
+      }
+    } catch (DataFormatException e) {
+      throw new IllegalStateException("The block " + block + " of the archive segment " + path + " is corrupt.", e);
+    } finally {
+      inflater.end();
+    }
+
+    try {
+      return decode(new DataInputStream(new ByteArrayInputStream(raw)));
+    } catch (IOException e) {
+      throw new UncheckedIOException("The block " + block + " of the archive segment " + path + " cannot be read.", e);
+    }
+  }
+
+  /**
+   * Encodes the entries of a block column by column.
+   *
+   * @param entries The entries of the block.
+   * @return The encoded block.
+   * @throws IOException Never, the block is written to memory.
+   */
+  private static byte[] encode(List<Entry> entries) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(entries.size());
+    for (Entry entry : entries) {
+      writeId(out, entry.walletId());
+    }
+    for (Entry entry : entries) {
+      writeId(out, entry.transaction().getId());
+    }
+    for (Entry entry : entries) {
+      out.writeLong(micros(entry.transaction().getCreatedAt()));
+    }
+    for (Entry entry : entries) {
+      LocalDateTime updatedAt = entry.transaction().getUpdatedAt();
+      out.writeLong(updatedAt != null ? micros(updatedAt) : Long.MIN_VALUE);
+    }
+    for (Entry entry : entries) {
+      writeNullableId(out, entry.transaction().getSenderWalletId());
+    }
+    for (Entry entry : entries) {
+      writeNullableId(out, entry.transaction().getReceiverWalletId());
+    }
+    for (Entry entry : entries) {
+      writeDecimal(out, entry.transaction().getAmount());
+    }
+    for (Entry entry : entries) {
+      writeDecimal(out, entry.transaction().getSenderBalanceAfter());
+    }
+    for (Entry entry : entries) {
+      writeDecimal(out, entry.transaction().getReceiverBalanceAfter());
+    }
+    for (Entry entry : entries) {
+      out.writeUTF(entry.transaction().getCurrency().name());
+    }
+    for (Entry entry : entries) {
+      out.writeUTF(entry.transaction().getTransactionType().name());
+    }
+    for (Entry entry : entries) {
+      out.writeUTF(entry.transaction().getTransactionStatus().name());
+    }
+    for (Entry entry : entries) {
+      writeString(out, entry.transaction().getSenderWalletName());
+    }
+    for (Entry entry : entries) {
+      writeString(out, entry.transaction().getReceiverWalletName());
+    }
+    for (Entry entry : entries) {
+      writeString(out, entry.transaction().getAccountNumber());
+    }
+    for (Entry entry : entries) {
+      writeString(out, entry.transaction().getBankCode());
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decodes the columns of a block written by {@link #encode(List)}.
+   *
+   * @param in The inflated block.
+   * @return The entries of the block.
+   * @throws IOException If the block is truncated.
+   */
+  private static List<Entry> decode(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    UUID[] walletIds = new UUID[count];
+    UUID[] ids = new UUID[count];
+    long[] createdAt = new long[count];
+    long[] updatedAt = new long[count];
+    UUID[] senderWalletIds = new UUID[count];
+    UUID[] receiverWalletIds = new UUID[count];
+    BigDecimal[] amounts = new BigDecimal[count];
+    BigDecimal[] senderBalances = new BigDecimal[count];
+    BigDecimal[] receiverBalances = new BigDecimal[count];
+    String[] currencies = new String[count];
+    String[] types = new String[count];
+    String[] statuses = new String[count];
+    String[] senderNames = new String[count];
+    String[] receiverNames = new String[count];
+    String[] accountNumbers = new String[count];
+    String[] bankCodes = new String[count];
+    for (int i = 0; i < count; i++) {
+      walletIds[i] = readId(in);
+    }
+    for (int i = 0; i < count; i++) {
+      ids[i] = readId(in);
+    }
+    for (int i = 0; i < count; i++) {
+      createdAt[i] = in.readLong();
+    }
+    for (int i = 0; i < count; i++) {
+      updatedAt[i] = in.readLong();
+    }
+    for (int i = 0; i < count; i++) {
+      senderWalletIds[i] = readNullableId(in);
+    }
+    for (int i = 0; i < count; i++) {
+      receiverWalletIds[i] = readNullableId(in);
+    }
+    for (int i = 0; i < count; i++) {
+      amounts[i] = readDecimal(in);
+    }
+    for (int i = 0; i < count; i++) {
+      senderBalances[i] = readDecimal(in);
+    }
+    for (int i = 0; i < count; i++) {
+      receiverBalances[i] = readDecimal(in);
+    }
+    for (int i = 0; i < count; i++) {
+      currencies[i] = in.readUTF();
+    }
+    for (int i = 0; i < count; i++) {
+      types[i] = in.readUTF();
+    }
+    for (int i = 0; i < count; i++) {
+      statuses[i] = in.readUTF();
+    }
+    for (int i = 0; i < count; i++) {
+      senderNames[i] = readString(in);
+    }
+    for (int i = 0; i < count; i++) {
+      receiverNames[i] = readString(in);
+    }
+    for (int i = 0; i < count; i++) {
+      accountNumbers[i] = readString(in);
+    }
+    for (int i = 0; i < count; i++) {
+      bankCodes[i] = readString(in);
+    }
+
+    List<Entry> entries = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      entries.add(new Entry(walletIds[i], new ArchivedTransaction(ids[i], senderWalletIds[i], senderNames[i],
+          receiverWalletIds[i], receiverNames[i], Currency.valueOf(currencies[i]), accountNumbers[i], bankCodes[i],
+          amounts[i], TransactionType.valueOf(types[i]), TransactionStatus.valueOf(statuses[i]),
+          fromMicros(createdAt[i]), updatedAt[i] != Long.MIN_VALUE ? fromMicros(updatedAt[i]) : null,
+          senderBalances[i], receiverBalances[i])));
+    }
+    return entries;
+  }
+
+  private static int compare(Entry entry, UUID walletId, long createdAt, UUID id) {
+    int result = compare(entry.walletId(), walletId);
+    if (result == 0) {
+      result = Long.compare(micros(entry.transaction().getCreatedAt()), createdAt);
+    }
+    return result != 0 ? result : compare(entry.transaction().getId(), id);
+  }
+
+  private static byte[] deflate(Deflater deflater, byte[] raw) {
+    deflater.reset();
+    deflater.setInput(raw);
+    deflater.finish();
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+    byte[] chunk = new byte[8192];
+    while (!deflater.finished()) {
+      compressed.write(chunk, 0, deflater.deflate(chunk));
+    }
+    return compressed.toByteArray();
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+  }
+
+  private static void writeId(DataOutputStream out, UUID id) throws IOException {
+    out.writeLong(id.getMostSignificantBits());
+    out.writeLong(id.getLeastSignificantBits());
+  }
+
+  private static UUID readId(DataInputStream in) throws IOException {
+    return new UUID(in.readLong(), in.readLong());
+  }
+
+  private static void writeNullableId(DataOutputStream out, UUID id) throws IOException {
+    out.writeBoolean(id != null);
+    if (id != null) {
+      writeId(out, id);
+    }
+  }
+
+  private static UUID readNullableId(DataInputStream in) throws IOException {
+    return in.readBoolean() ? readId(in) : null;
+  }
+
+  /**
+   * Writes a decimal as its scale and unscaled value, the amounts of the database always fit into a long.
+   */
+  private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL_SCALE);
+      return;
+    }
+    out.writeByte(value.scale());
+    out.writeLong(value.unscaledValue().longValueExact());
+  }
+
+  private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+    byte scale = in.readByte();
+    return scale != NULL_SCALE ? new BigDecimal(BigInteger.valueOf(in.readLong()), scale) : null;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static long micros(LocalDateTime time) {
+    return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+  }
+
+  private static LocalDateTime fromMicros(long micros) {
+    return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+        (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+  }
+
+  /**
+   * A transaction stored for one of its wallets.
+   *
+   * @param walletId    The ID of the sender or the receiver wallet.
+   * @param transaction The transaction.
+   */
+  private record Entry(UUID walletId, ArchivedTransaction transaction) {
+  }
+}
@@ -0,0 +1,62 @@
+package com.clientwallet.archive;
+
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.TransactionStatus;
+import com.clientwallet.model.TransactionType;
+import com.clientwallet.repository.TransactionSummary;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * ArchivedTransaction is a transaction read from an {@link ArchiveSegment}.
+ * <p>
+ * It carries the same columns as a {@link TransactionSummary} read from the database, with the names the wallets had
+ * when the transaction was archived, and the balances of both wallets after the transaction.
+ * </p>
+ */
+@Value
+public class ArchivedTransaction implements TransactionSummary {
+
+  UUID id;
+
+  UUID senderWalletId;
+
+  String senderWalletName;
+
+  UUID receiverWalletId;
+
+  String receiverWalletName;
+
+  Currency currency;
+
+  String accountNumber;
+
+  String bankCode;
+
+  BigDecimal amount;
+
+  TransactionType transactionType;
+
+  TransactionStatus transactionStatus;
+
+  LocalDateTime createdAt;
+
+  LocalDateTime updatedAt;
+
+  BigDecimal senderBalanceAfter;
+
+  BigDecimal receiverBalanceAfter;
+
+  /**
+   * Returns the balance of one of the wallets of the transaction right after it.
+   *
+   * @param walletId The ID of the sender or the receiver wallet.
+   * @return The balance after the transaction, or {@code null} if it was not applied.
+   */
+  public BigDecimal getBalanceAfter(UUID walletId) {
+    return walletId.equals(senderWalletId) ? senderBalanceAfter : receiverBalanceAfter;
+  }
+}
@@ -0,0 +1,274 @@
+package com.clientwallet.archive;
+
+import com.clientwallet.repository.TransactionSummary;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * TransactionArchive holds the transactions moved out of the database into {@link ArchiveSegment segment files}
+ * in the directory {@code wallet.archive.directory}.
+ * <p>
+ * A segment is written under a temporary name and renamed to {@code *.seg.pending} once it is complete. It is read
+ * from then on, while its transactions are deleted from the database, and renamed to {@code *.seg} after the
+ * deletion is committed. A pending segment found on startup is completed by the archiver, so a transaction is never
+ * lost between both stores. It may be found in both for a moment, so the reads remove duplicates by ID.
+ * </p>
+ * <p>
+ * The reads return the transactions of a wallet in the order of the history queries, by creation time and ID,
+ * so they can be merged with the transactions still in the database. Segments are selected by the range of their
+ * creation times, segments of other times are never touched.
+ * </p>
+ */
+@Slf4j
+@Component
+public class TransactionArchive {
+
+  /**
+   * The order of the history, by creation time and ID.
+   */
+  public static final Comparator<TransactionSummary> HISTORY_ORDER = Comparator
+      .comparing(TransactionSummary::getCreatedAt)
+      .thenComparing(TransactionSummary::getId, ArchiveSegment::compare);
+
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  private static final String PENDING_SUFFIX = ".seg.pending";
+
+  private static final String TEMPORARY_SUFFIX = ".seg.tmp";
+
+  private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+
+  @Value("${wallet.archive.directory:archive}")
+  private String directory;
+
+  private volatile List<ArchiveSegment> segments = List.of();
+
+  /**
+   * Opens the segments of the archive directory, if it exists, and removes segments left incomplete.
+   *
+   * @throws IOException If the directory or a segment cannot be read.
+   */
+  @PostConstruct
+  public void init() throws IOException {
+    Path path = Paths.get(directory);
+    if (!Files.isDirectory(path)) {
+      return;
+    }
+    List<ArchiveSegment> opened = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(path)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(TEMPORARY_SUFFIX)) {
+          Files.delete(file);
+        } else if (name.endsWith(SEGMENT_SUFFIX) || name.endsWith(PENDING_SUFFIX)) {
+          opened.add(ArchiveSegment.open(file));
+        }
+      }
+    }
+    segments = List.copyOf(opened);
+    log.info("Opened {} archive segments in {}.", opened.size(), path.toAbsolutePath());
+  }
+
+  /**
+   * Returns the creation time of the newest archived transaction.
+   *
+   * @return The creation time, or {@code null} if the archive is empty.
+   */
+  public LocalDateTime getNewestCreatedAt() {
+    LocalDateTime newest = null;
+    for (ArchiveSegment segment : segments) {
+      if (newest == null || segment.getNewestCreatedAt().isAfter(newest)) {
+        newest = segment.getNewestCreatedAt();
+      }
+    }
+    return newest;
+  }
+
+  /**
+   * Returns the segments whose transactions may still be in the database.
+   *
+   * @return The pending segments.
+   */
+  public List<ArchiveSegment> getPendingSegments() {
+    return segments.stream().filter(segment -> isPending(segment.getPath())).toList();
+  }
+
+  /**
+   * Writes the transactions to a new pending segment, which is read from then on.
+   *
+   * @param transactions The transactions, which must not be empty.
+   * @return The pending segment.
+   * @throws IOException If writing the segment fails.
+   */
+  public synchronized ArchiveSegment write(List<ArchivedTransaction> transactions) throws IOException {
+    Path path = Files.createDirectories(Paths.get(directory));
+    String name = "segment-" + NAME_FORMAT.format(LocalDateTime.now()) + "-" + UUID.randomUUID().toString().substring(0, 8);
+    Path temporary = path.resolve(name + TEMPORARY_SUFFIX);
+    ArchiveSegment.write(temporary, transactions);
+    Path pending = Files.move(temporary, path.resolve(name + PENDING_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+    ArchiveSegment segment = ArchiveSegment.open(pending);
+    List<ArchiveSegment> updated = new ArrayList<>(segments);
+    updated.add(segment);
+    segments = List.copyOf(updated);
+    return segment;
+  }
+
+  /**
+   * Marks a pending segment as complete, once its transactions are deleted from the database.
+   *
+   * @param segment The pending segment.
+   * @throws IOException If renaming the segment fails.
+   */
+  public synchronized void complete(ArchiveSegment segment) throws IOException {
+    String name = segment.getPath().getFileName().toString();
+    Path completed = segment.getPath().resolveSibling(
+        name.substring(0, name.length() - PENDING_SUFFIX.length()) + SEGMENT_SUFFIX);
+    Files.move(segment.getPath(), completed, StandardCopyOption.ATOMIC_MOVE);
+    List<ArchiveSegment> updated = new ArrayList<>(segments);
+    updated.set(updated.indexOf(segment), ArchiveSegment.open(completed));
+    segments = List.copyOf(updated);
+  }
+
+  /**
+   * Finds the archived transactions of a wallet older than the given position.
+   *
+   * @param walletId  The ID of the wallet.
+   * @param createdAt The creation time of the position, or {@code null} to start with the newest transaction.
+   * @param id        The ID of the transaction at the position.
+   * @param limit     The maximum number of transactions.
+   * @return The transactions ordered from the newest to the oldest.
+   */
+  public List<ArchivedTransaction> findOlderThan(UUID walletId, LocalDateTime createdAt, UUID id, int limit) {
+    List<ArchivedTransaction> transactions = new ArrayList<>();
+    for (ArchiveSegment segment : segments) {
+      if (createdAt == null || !segment.getOldestCreatedAt().isAfter(createdAt)) {
+        transactions.addAll(segment.findOlderThan(walletId, createdAt, id, limit));
+      }
+    }
+    return merge(transactions, List.of(), HISTORY_ORDER.reversed(), limit);
+  }
+
+  /**
+   * Finds the archived transactions of a wallet newer than the given position.
+   *
+   * @param walletId  The ID of the wallet.
+   * @param createdAt The creation time of the position, or {@code null} to start with the oldest transaction.
+   * @param id        The ID of the transaction at the position.
+   * @param limit     The maximum number of transactions.
+   * @return The transactions ordered from the oldest to the newest.
+   */
+  public List<ArchivedTransaction> findNewerThan(UUID walletId, LocalDateTime createdAt, UUID id, int limit) {
+    List<ArchivedTransaction> transactions = new ArrayList<>();
+    for (ArchiveSegment segment : segments) {
+      if (createdAt == null || !segment.getNewestCreatedAt().isBefore(createdAt)) {
+        transactions.addAll(segment.findNewerThan(walletId, createdAt, id, limit));
+      }
+    }
+    return merge(transactions, List.of(), HISTORY_ORDER, limit);
+  }
+
+  /**
+   * Finds the last applied archived transaction of a wallet created at or before the given time.
+   *
+   * @param walletId The ID of the wallet.
+   * @param at       The point in time.
+   * @return The transaction with the balance of the wallet after it, or {@code null} if there is none.
+   */
+  public ArchivedTransaction findLastAppliedAt(UUID walletId, LocalDateTime at) {
+    ArchivedTransaction last = null;
+    for (ArchiveSegment segment : segments) {
+      if (segment.getOldestCreatedAt().isAfter(at)) {
+        continue;
+      }
+      ArchivedTransaction found = segment.findLastAppliedAt(walletId, at);
+      if (found != null && (last == null || HISTORY_ORDER.compare(found, last) > 0)) {
+        last = found;
+      }
+    }
+    return last;
+  }
+
+  /**
+   * Iterates over all archived transactions of a wallet from the oldest to the newest, reading them page by page.
+   *
+   * @param walletId The ID of the wallet.
+   * @param pageSize The number of transactions read at once.
+   * @return The iterator.
+   */
+  public Iterator<ArchivedTransaction> iterate(UUID walletId, int pageSize) {
+    return new Iterator<>() {
+
+      private List<ArchivedTransaction> page = findNewerThan(walletId, null, null, pageSize);
+
+      private int position;
+
+      @Override
+      public boolean hasNext() {
+        if (position == page.size() && page.size() == pageSize) {
+          ArchivedTransaction last = page.get(page.size() - 1);
+          page = findNewerThan(walletId, last.getCreatedAt(), last.getId(), pageSize);
+          position = 0;
+        }
+        return position < page.size();
+      }
+
+      @Override
+      public ArchivedTransaction next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return page.get(position++);
+      }
+    };
+  }
+
+  /**
+   * Merges two lists of transactions, each sorted by the given order, and removes the duplicates of a transaction
+   * found in both the database and the archive.
+   *
+   * @param first  The first list.
+   * @param second The second list.
+   * @param order  The order of the result.
+   * @param limit  The maximum number of transactions.
+   * @param <T>    The type of the transactions.
+   * @return The merged transactions.
+   */
+  public static <T extends TransactionSummary> List<T> merge(List<? extends T> first, List<? extends T> second,
+                                                             Comparator<? super T> order, int limit) {
+    List<T> all = new ArrayList<>(first.size() + second.size());
+    all.addAll(first);
+    all.addAll(second);
+    all.sort(order);
+    List<T> merged = new ArrayList<>(Math.min(all.size(), limit));
+    for (T transaction : all) {
+      if (merged.size() == limit) {
+        break;
+      }
+      if (merged.isEmpty() || !merged.get(merged.size() - 1).getId().equals(transaction.getId())) {
+        merged.add(transaction);
+      }
+    }
+    return merged;
+  }
+
+  private static boolean isPending(Path path) {
+    return path.getFileName().toString().endsWith(PENDING_SUFFIX);
+  }
+}
@@ -0,0 +1,124 @@
+package com.clientwallet.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ConcurrencyLimitedDataSource limits the number of connections held by virtual threads at the same time.
+ * <p>
+ * Requests and their asynchronous parts, e.g. streaming exports, run on virtual threads, which are not limited by
+ * a thread pool, so thousands of them could wait for a connection of the much smaller pool and fail on its timeout.
+ * A virtual thread takes a permit of a fair semaphore before it gets a connection and returns it when the connection
+ * is closed, so the permit covers exactly the time the connection is held. A virtual thread which gets no permit
+ * within the acquire timeout fails with a {@link SQLTransientConnectionException}.
+ * </p>
+ * <p>
+ * Connections of platform threads are not limited. The background consumers (asynchronous workers, sharded writers,
+ * aggregators, reconciliation, replays and index rebuilds) run on their own platform threads, whose number is bounded
+ * by their configuration, so the permits are sized as the pool minus the connections reserved for them.
+ * </p>
+ */
+public class ConcurrencyLimitedDataSource extends DelegatingDataSource {
+
+  private final Semaphore permits;
+
+  private final long acquireTimeoutMs;
+
+  /**
+   * Creates the data source.
+   *
+   * @param targetDataSource The data source to be limited.
+   * @param maxConcurrency   The maximum number of connections held by virtual threads at the same time.
+   * @param acquireTimeoutMs The maximum time a virtual thread waits for a permit.
+   */
+  public ConcurrencyLimitedDataSource(DataSource targetDataSource, int maxConcurrency, long acquireTimeoutMs) {
+    super(targetDataSource);
+    this.permits = new Semaphore(maxConcurrency, true);
+    this.acquireTimeoutMs = acquireTimeoutMs;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    if (!Thread.currentThread().isVirtual()) {
+      return super.getConnection();
+    }
+    acquire();
+    try {
+      return limited(super.getConnection());
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    if (!Thread.currentThread().isVirtual()) {
+      return super.getConnection(username, password);
+    }
+    acquire();
+    try {
+      return limited(super.getConnection(username, password));
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the number of permits currently available.
+   *
+   * @return The number of connections virtual threads may still get without waiting.
+   */
+  public int availablePermits() {
+    return permits.availablePermits();
+  }
+
+  /**
+   * Takes a permit, waiting at most the acquire timeout.
+   *
+   * @throws SQLTransientConnectionException If no permit was available in time or the thread was interrupted.
+   */
+  private void acquire() throws SQLTransientConnectionException {
+    try {
+      if (permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    throw new SQLTransientConnectionException("Too many concurrent database operations, no connection was available within "
+        + acquireTimeoutMs + " ms.");
+  }
+
+  /**
+   * Wraps a connection so that closing it returns its permit, once.
+   *
+   * @param connection The connection taken with a permit.
+   * @return The wrapped connection.
+   */
+  private Connection limited(Connection connection) {
+    AtomicBoolean released = new AtomicBoolean();
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+        (proxy, method, args) -> {
+          try {
+            return method.invoke(connection, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          } finally {
+            if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+              permits.release();
+            }
+          }
+        });
+  }
+}
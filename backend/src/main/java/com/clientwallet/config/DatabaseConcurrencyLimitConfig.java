@@ -0,0 +1,54 @@
+package com.clientwallet.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * DatabaseConcurrencyLimitConfig limits the connections held by requests when they run on virtual threads.
+ * <p>
+ * The data source used by JPA and JDBC, the connection pool or the routing data source of
+ * {@link ReplicaDataSourceConfig}, is wrapped in a {@link ConcurrencyLimitedDataSource}. It admits
+ * {@code wallet.db.max-concurrency} connections of virtual threads at once, by default the pool size minus
+ * {@code wallet.db.background-connections}, and waits at most {@code wallet.db.acquire-timeout-ms} for a permit.
+ * </p>
+ * <p>
+ * The configuration is only active if virtual threads are enabled by the {@code spring.threads.virtual.enabled}
+ * property.
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class DatabaseConcurrencyLimitConfig {
+
+  /**
+   * Wraps the {@code dataSource} bean once it is created.
+   * <p>
+   * The settings are read from the environment, because a post processor is created before the beans
+   * whose values it could be injected with.
+   * </p>
+   *
+   * @param environment The environment with the settings of the limit.
+   * @return The post processor.
+   */
+  @Bean
+  public static BeanPostProcessor databaseConcurrencyLimitPostProcessor(Environment environment) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!beanName.equals("dataSource") || !(bean instanceof DataSource dataSource)) {
+          return bean;
+        }
+        int poolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        int background = environment.getProperty("wallet.db.background-connections", Integer.class, 0);
+        int maxConcurrency = environment.getProperty("wallet.db.max-concurrency", Integer.class, Math.max(1, poolSize - background));
+        long acquireTimeoutMs = environment.getProperty("wallet.db.acquire-timeout-ms", Long.class, 5000L);
+        return new ConcurrencyLimitedDataSource(dataSource, maxConcurrency, acquireTimeoutMs);
+      }
+    };
+  }
+}
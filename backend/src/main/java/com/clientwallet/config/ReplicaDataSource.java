@@ -0,0 +1,169 @@
+package com.clientwallet.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ReplicaDataSource hands out connections of the read replicas, falling back to the primary database.
+ * <p>
+ * The replicas are used in turns. A background check runs the lag query on every replica each
+ * {@code wallet.replica.check-interval-ms} and skips a replica while its replication lag exceeds
+ * {@code wallet.replica.max-lag-ms} or while it cannot be reached. A replica whose connection fails is skipped
+ * until the next check succeeds. If no replica is usable, the connection is taken from the primary database,
+ * so reads never fail because of a replica.
+ * </p>
+ */
+@Slf4j
+public class ReplicaDataSource extends AbstractDataSource implements AutoCloseable {
+
+  /**
+   * The replication lag of a PostgreSQL standby in seconds, zero if it replayed everything it received.
+   */
+  public static final String POSTGRES_LAG_QUERY = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() " +
+      "THEN 0 ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END";
+
+  private final DataSource primary;
+
+  private final List<Replica> replicas = new ArrayList<>();
+
+  private final String lagQuery;
+
+  private final long maxLagMs;
+
+  private final long checkIntervalMs;
+
+  private final AtomicInteger next = new AtomicInteger();
+
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Creates the data source, all replicas are skipped until they are checked.
+   *
+   * @param primary         The primary database, used if no replica is usable.
+   * @param replicas        The replicas by their names used in the log.
+   * @param lagQuery        The query returning the replication lag of a replica in seconds, or blank to only check
+   *                        that the replica can be reached.
+   * @param maxLagMs        The maximum tolerated replication lag.
+   * @param checkIntervalMs The interval of the background check.
+   */
+  public ReplicaDataSource(DataSource primary, Map<String, DataSource> replicas, String lagQuery, long maxLagMs,
+                           long checkIntervalMs) {
+    this.primary = primary;
+    replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+    this.lagQuery = lagQuery;
+    this.maxLagMs = maxLagMs;
+    this.checkIntervalMs = checkIntervalMs;
+  }
+
+  /**
+   * Checks the replicas once and schedules the background check.
+   */
+  public void start() {
+    checkReplicas();
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "replica-check");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::checkReplicas, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the background check and closes the connection pools of the replicas.
+   */
+  @Override
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    for (Replica replica : replicas) {
+      if (replica.dataSource instanceof AutoCloseable closeable) {
+        try {
+          closeable.close();
+        } catch (Exception e) {
+          log.warn("Failed to close replica {}.", replica.name, e);
+        }
+      }
+    }
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    int start = Math.floorMod(next.getAndIncrement(), Math.max(replicas.size(), 1));
+    for (int i = 0; i < replicas.size(); i++) {
+      Replica replica = replicas.get((start + i) % replicas.size());
+      if (replica.available) {
+        try {
+          return replica.dataSource.getConnection();
+        } catch (SQLException e) {
+          replica.available = false;
+          log.warn("Replica {} is unavailable, it is skipped until its next check.", replica.name, e);
+        }
+      }
+    }
+    return primary.getConnection();
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Connections of the replicas always use the configured credentials.");
+  }
+
+  /**
+   * Checks the replication lag of every replica and updates which replicas are used.
+   */
+  void checkReplicas() {
+    for (Replica replica : replicas) {
+      boolean available;
+      try (Connection connection = replica.dataSource.getConnection(); Statement statement = connection.createStatement()) {
+        available = lagQuery == null || lagQuery.isBlank() || lagMs(statement) <= maxLagMs;
+      } catch (SQLException e) {
+        log.debug("Check of replica {} failed.", replica.name, e);
+        available = false;
+      }
+      if (available != replica.available) {
+        log.info("Replica {} is {}.", replica.name, available ? "used" : "skipped because of its lag or a failure");
+      }
+      replica.available = available;
+    }
+  }
+
+  private long lagMs(Statement statement) throws SQLException {
+    statement.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(checkIntervalMs)));
+    try (ResultSet resultSet = statement.executeQuery(lagQuery)) {
+      // A database which is not replaying anything returns no lag
+      return resultSet.next() ? (long) (resultSet.getDouble(1) * 1000) : 0;
+    }
+  }
+
+  /**
+   * A replica and whether it is currently used.
+   */
+  private static final class Replica {
+
+    private final String name;
+
+    private final DataSource dataSource;
+
+    private volatile boolean available;
+
+    private Replica(String name, DataSource dataSource) {
+      this.name = name;
+      this.dataSource = dataSource;
+    }
+  }
+}
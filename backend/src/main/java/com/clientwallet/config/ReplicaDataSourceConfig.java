@@ -0,0 +1,94 @@
+package com.clientwallet.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ReplicaDataSourceConfig routes read-only transactions to read replicas of the database.
+ * <p>
+ * The configuration is only active if {@code wallet.replica.urls} lists at least one replica. The data source used
+ * by JPA and JDBC then defers fetching a connection until the first statement, when the transaction manager already
+ * marked the connection read-only. Connections of {@code @Transactional(readOnly = true)} methods are taken from the
+ * {@link ReplicaDataSource}, all others from the primary database.
+ * </p>
+ * <p>
+ * The replicas use the driver and the credentials of {@code spring.datasource} and the pool size of the primary
+ * database. A short connection timeout lets reads fall back to the primary quickly when a replica is down.
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "wallet.replica.urls")
+public class ReplicaDataSourceConfig {
+
+  /**
+   * The connection pool of the primary database, configured by {@code spring.datasource}.
+   *
+   * @param properties The properties of {@code spring.datasource}.
+   * @return The connection pool.
+   */
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  /**
+   * The connection pools of the replicas, used in turns.
+   *
+   * @param properties          The properties of {@code spring.datasource}.
+   * @param primaryDataSource   The connection pool of the primary database.
+   * @param urls                The JDBC URLs of the replicas.
+   * @param lagQuery            The query returning the replication lag in seconds.
+   * @param maxLagMs            The maximum tolerated replication lag.
+   * @param checkIntervalMs     The interval of the lag check.
+   * @param connectionTimeoutMs The maximum time to wait for a connection of a replica.
+   * @return The data source of the replicas.
+   */
+  @Bean(initMethod = "start", destroyMethod = "close")
+  public ReplicaDataSource replicaDataSource(DataSourceProperties properties, HikariDataSource primaryDataSource,
+                                             @Value("${wallet.replica.urls}") List<String> urls,
+                                             @Value("${wallet.replica.lag-query:" + ReplicaDataSource.POSTGRES_LAG_QUERY + "}") String lagQuery,
+                                             @Value("${wallet.replica.max-lag-ms:1000}") long maxLagMs,
+                                             @Value("${wallet.replica.check-interval-ms:1000}") long checkIntervalMs,
+                                             @Value("${wallet.replica.connection-timeout-ms:1000}") long connectionTimeoutMs) {
+    Map<String, DataSource> replicas = new LinkedHashMap<>();
+    for (int i = 0; i < urls.size(); i++) {
+      HikariDataSource replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(urls.get(i)).build();
+      replica.setPoolName("replica-" + i);
+      replica.setReadOnly(true);
+      replica.setMaximumPoolSize(primaryDataSource.getMaximumPoolSize());
+      replica.setConnectionTimeout(connectionTimeoutMs);
+      // A replica which is down at startup is skipped instead of failing the application
+      replica.setInitializationFailTimeout(-1);
+      replicas.put(replica.getPoolName(), replica);
+    }
+    return new ReplicaDataSource(primaryDataSource, replicas, lagQuery, maxLagMs, checkIntervalMs);
+  }
+
+  /**
+   * The data source used by JPA and JDBC, routing read-only transactions to the replicas.
+   *
+   * @param primaryDataSource The connection pool of the primary database.
+   * @param replicaDataSource The data source of the replicas.
+   * @return The routing data source.
+   */
+  @Bean
+  @Primary
+  public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaDataSource replicaDataSource) {
+    LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+    dataSource.setReadOnlyDataSource(replicaDataSource);
+    return dataSource;
+  }
+}
@@ -0,0 +1,40 @@
+package com.clientwallet.controller;
+
+import com.clientwallet.dto.transaction.TransactionView;
+import com.clientwallet.exception.transaction.TransactionNotFoundException;
+import com.clientwallet.service.TransactionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+/**
+ * TransactionController is a REST controller that provides API endpoints for transaction-related operations.
+ * It is used to check the status of deposits and withdrawals submitted asynchronously.
+ */
+@CrossOrigin(origins = "${cors.allowedOrigins}")
+@RestController
+@RequestMapping("/transaction")
+public class TransactionController {
+
+  @Autowired
+  private TransactionService transactionService;
+
+  /**
+   * Retrieves a transaction by its unique ID.
+   * <p>
+   * The status of the returned transaction is {@code PENDING} until an asynchronously submitted operation is applied,
+   * then it is either {@code COMPLETED} or {@code FAILED}. The wallets of the transaction are referred to
+   * only by their IDs and names.
+   * </p>
+   *
+   * @param id The unique identifier of the transaction.
+   * @return ResponseEntity containing the transaction.
+   * @throws TransactionNotFoundException if the transaction with the specified ID does not exist.
+   */
+  @GetMapping("/{id}")
+  public ResponseEntity<TransactionView> get(@PathVariable UUID id) {
+    return ResponseEntity.ok(transactionService.get(id));
+  }
+}
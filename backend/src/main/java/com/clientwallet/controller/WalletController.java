@@ -1,37 +1,90 @@
 package com.clientwallet.controller;
 
+import com.clientwallet.dto.transaction.TransactionView;
+import com.clientwallet.dto.wallet.WalletBalance;
 import com.clientwallet.dto.wallet.WalletCreateRequest;
 import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.dto.wallet.WalletHistoryPage;
+import com.clientwallet.dto.wallet.WalletListPage;
+import com.clientwallet.dto.wallet.WalletListRequest;
+import com.clientwallet.dto.wallet.WalletReconciliationReport;
+import com.clientwallet.dto.wallet.WalletStats;
+import com.clientwallet.dto.wallet.WalletStripeRequest;
+import com.clientwallet.dto.wallet.WalletSummary;
+import com.clientwallet.dto.wallet.WalletTransferBatchResult;
 import com.clientwallet.dto.wallet.WalletTransferRequest;
 import com.clientwallet.dto.wallet.WalletWithdrawRequest;
 import com.clientwallet.exception.wallet.*;
 import com.clientwallet.model.Transaction;
 import com.clientwallet.model.Wallet;
+import com.clientwallet.service.BalanceReconciler;
+import com.clientwallet.service.IdempotencyCache;
+import com.clientwallet.service.TransactionExportService;
+import com.clientwallet.service.WalletEventBroadcaster;
+import com.clientwallet.service.WalletOperationExecutor;
 import com.clientwallet.service.WalletService;
+import com.clientwallet.service.WalletTurnoverService;
 import com.clientwallet.validation.ValidWalletId;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * WalletController is a REST controller that provides API endpoints for wallet-related operations.
  * These operations include creating a wallet, retrieving wallet details, depositing funds, withdrawing funds,
  * transferring funds between wallets, and fetching transaction history.
  */
-@CrossOrigin(origins = "${cors.allowedOrigins}")
+@CrossOrigin(origins = "${cors.allowedOrigins}", exposedHeaders = {WalletController.NEXT_CURSOR_HEADER, WalletController.PREVIOUS_CURSOR_HEADER})
 @RestController
 @RequestMapping("/wallet")
 @Validated
 public class WalletController {
 
+  public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+  public static final String PREVIOUS_CURSOR_HEADER = "X-Previous-Cursor";
+
   @Autowired
   private WalletService walletService;
 
+  @Autowired
+  private WalletOperationExecutor walletOperationExecutor;
+
+  @Autowired
+  private IdempotencyCache idempotencyCache;
+
+  @Autowired
+  private TransactionExportService transactionExportService;
+
+  @Autowired
+  private WalletTurnoverService walletTurnoverService;
+
+  @Autowired
+  private WalletEventBroadcaster walletEventBroadcaster;
+
+  @Autowired
+  private BalanceReconciler balanceReconciler;
+
   /**
    * Creates a new wallet based on the provided details.
    * <p>
@@ -56,23 +109,69 @@ public class WalletController {
    * an exception is thrown.
    * </p>
    *
+   * <p>
+   * The response carries an {@code ETag} made of the version of the cached wallet, which changes with every change
+   * of the wallet, including its stripes, so no further query is needed. If it matches the {@code If-None-Match} header, only the status 304 (Not Modified) is returned.
+   * </p>
+   *
    * @param walletId The unique identifier of the wallet to be fetched.
-   * @return ResponseEntity containing the wallet details.
+   * @param request  The current request, used to evaluate its {@code If-None-Match} header.
+   * @return ResponseEntity containing the wallet details, or {@code null} if the wallet was not modified.
    * @throws WalletNotFoundException if the wallet with the specified ID does not exist.
    */
   @GetMapping("/get")
-  public ResponseEntity<Wallet> get(@ValidWalletId @RequestParam UUID walletId) {
-    return ResponseEntity.ok(walletService.get(walletId));
+  public ResponseEntity<Wallet> get(@ValidWalletId @RequestParam UUID walletId, WebRequest request) {
+    Wallet wallet = walletService.get(walletId);
+    String etag = String.valueOf(wallet.getVersion());
+    if (request.checkNotModified(etag)) {
+      return null;
+    }
+    return ResponseEntity.ok().eTag(etag).body(wallet);
+  }
+
+  /**
+   * Retrieves the balance a wallet had at a given point in time.
+   * <p>
+   * The balance is read from the last transaction of the wallet created at or before the given time,
+   * a wallet without any transaction until then had a balance of zero.
+   * </p>
+   *
+   * @param walletId The unique identifier of the wallet.
+   * @param at       The point in time, in the ISO-8601 format without a time zone.
+   * @return ResponseEntity containing the balance of the wallet at the given time.
+   * @throws WalletNotFoundException if the wallet with the specified ID does not exist.
+   */
+  @GetMapping("/balanceAt")
+  public ResponseEntity<WalletBalance> getBalanceAt(@ValidWalletId @RequestParam UUID walletId,
+                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+    return ResponseEntity.ok(walletService.getBalanceAt(walletId, at));
   }
 
   /**
-   * Retrieves a list of all wallets.
+   * Retrieves one page of wallets.
+   * <p>
+   * The wallets can be filtered by currency and balance range and sorted by name or balance in either direction.
+   * The cursor of the next page is returned in the {@code X-Next-Cursor} header if such a page exists.
+   * In the compact format, only the identifier, name, currency and balance of each wallet are returned.
+   * </p>
    *
-   * @return ResponseEntity containing a list of all wallets.
+   * @param request The filters, the sort, the cursor and the format of the page.
+   * @return ResponseEntity containing a list of wallets.
+   * @throws WalletListInvalidCursorException if the cursor is invalid or was returned for another sort.
    */
   @GetMapping("/list")
-  public ResponseEntity<List<Wallet>> listWallets() {
-    return ResponseEntity.ok(walletService.list());
+  public ResponseEntity<List<?>> listWallets(@Valid WalletListRequest request) {
+    WalletListPage page = walletService.list(request);
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+    if (page.getNextCursor() != null) {
+      response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+    }
+    if (request.isCompact()) {
+      return response.body(page.getWallets().stream()
+          .map(wallet -> new WalletSummary(wallet.getId(), wallet.getName(), wallet.getCurrency(), wallet.getBalance()))
+          .toList());
+    }
+    return response.body(page.getWallets());
   }
 
   /**
@@ -80,17 +179,26 @@ public class WalletController {
    * <p>
    * This method accepts a request containing deposit details, including the wallet ID, amount, currency, etc.,
    * performs the deposit, and returns a transaction object representing the deposit.
+   * The deposit is retried if it conflicts with a concurrent modification of the wallet.
    * </p>
    *
    * @param request The request containing deposit details including wallet ID, amount, currency, etc.
+   * @param idempotencyKey The optional key of the request, a repeated request with the same key returns the original
+   *                       transaction instead of performing the deposit again. The key cannot be reused for a different
+   *                       request.
+   * @param httpRequest The HTTP request, whose method and path are part of the fingerprint stored with the key.
    * @return ResponseEntity containing the created transaction for the deposit.
    * @throws WalletNotFoundException if the wallet with the specified ID does not exist.
    * @throws WalletDepositFailedException if the deposit fails due to any reason.
    * @throws WalletDepositCurrencyMissMatchException if there is a currency mismatch between the wallet and the deposit.
    */
   @PostMapping("/deposit")
-  public ResponseEntity<Transaction> deposit(@Valid @RequestBody WalletDepositRequest request) {
-    return ResponseEntity.ok(walletService.deposit(request));
+  public ResponseEntity<Transaction> deposit(@Valid @RequestBody WalletDepositRequest request,
+                                             @Size(max = 64) @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                             HttpServletRequest httpRequest) {
+    String fingerprint = fingerprint(idempotencyKey, httpRequest, request);
+    return ResponseEntity.ok(idempotencyCache.execute(idempotencyKey, fingerprint, () -> walletOperationExecutor.execute(List.of(request.getWalletId()),
+        () -> walletService.deposit(request, idempotencyKey, fingerprint))));
   }
 
   /**
@@ -98,9 +206,14 @@ public class WalletController {
    * <p>
    * This method accepts a request containing withdrawal details, including the wallet ID, amount, currency, etc.,
    * performs the withdrawal, and returns a transaction object representing the withdrawal.
+   * The withdrawal is retried if it conflicts with a concurrent modification of the wallet.
    * </p>
    *
    * @param request The request containing withdrawal details including wallet ID, amount, currency, etc.
+   * @param idempotencyKey The optional key of the request, a repeated request with the same key returns the original
+   *                       transaction instead of performing the withdrawal again. The key cannot be reused for a different
+   *                       request.
+   * @param httpRequest The HTTP request, whose method and path are part of the fingerprint stored with the key.
    * @return ResponseEntity containing the created transaction for the withdrawal.
    * @throws WalletNotFoundException if the wallet with the specified ID does not exist.
    * @throws WalletWithdrawFailedException if the withdrawal fails due to any reason.
@@ -108,8 +221,50 @@ public class WalletController {
    * @throws WalletWithdrawNotEnoughFundsException if the wallet does not have sufficient balance for the withdrawal.
    */
   @PostMapping("/withdraw")
-  public ResponseEntity<Transaction> withdraw(@Valid @RequestBody WalletWithdrawRequest request) {
-    return ResponseEntity.ok(walletService.withdraw(request));
+  public ResponseEntity<Transaction> withdraw(@Valid @RequestBody WalletWithdrawRequest request,
+                                              @Size(max = 64) @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                              HttpServletRequest httpRequest) {
+    String fingerprint = fingerprint(idempotencyKey, httpRequest, request);
+    return ResponseEntity.ok(idempotencyCache.execute(idempotencyKey, fingerprint, () -> walletOperationExecutor.execute(List.of(request.getWalletId()),
+        () -> walletService.withdraw(request, idempotencyKey, fingerprint))));
+  }
+
+  /**
+   * Submits a deposit to be applied asynchronously.
+   * <p>
+   * This method validates the wallet and the currency, records the deposit as a pending transaction and returns
+   * immediately with HTTP status 202 (Accepted). The deposit is applied in the background and its status can be
+   * polled at the URI in the {@code Location} header.
+   * </p>
+   *
+   * @param request The request containing deposit details including wallet ID, amount, currency, etc.
+   * @return ResponseEntity containing the pending transaction for the deposit.
+   * @throws WalletNotFoundException if the wallet with the specified ID does not exist.
+   * @throws WalletDepositCurrencyMissMatchException if there is a currency mismatch between the wallet and the deposit.
+   */
+  @PostMapping("/deposit/async")
+  public ResponseEntity<Transaction> depositAsync(@Valid @RequestBody WalletDepositRequest request) {
+    Transaction transaction = walletService.submitDeposit(request);
+    return ResponseEntity.accepted().location(URI.create("/transaction/" + transaction.getId())).body(transaction);
+  }
+
+  /**
+   * Submits a withdrawal to be applied asynchronously.
+   * <p>
+   * This method validates the wallet and the currency, records the withdrawal as a pending transaction and returns
+   * immediately with HTTP status 202 (Accepted). The funds are checked when the withdrawal is applied in the background,
+   * its status can be polled at the URI in the {@code Location} header.
+   * </p>
+   *
+   * @param request The request containing withdrawal details including wallet ID, amount, currency, etc.
+   * @return ResponseEntity containing the pending transaction for the withdrawal.
+   * @throws WalletNotFoundException if the wallet with the specified ID does not exist.
+   * @throws WalletWithdrawCurrencyMissMatchException if there is a currency mismatch between the wallet and the withdrawal.
+   */
+  @PostMapping("/withdraw/async")
+  public ResponseEntity<Transaction> withdrawAsync(@Valid @RequestBody WalletWithdrawRequest request) {
+    Transaction transaction = walletService.submitWithdraw(request);
+    return ResponseEntity.accepted().location(URI.create("/transaction/" + transaction.getId())).body(transaction);
   }
 
   /**
@@ -117,9 +272,14 @@ public class WalletController {
    * <p>
    * This method accepts a request containing transfer details, including the sender and receiver wallet IDs,
    * amount, currency, etc. It performs the transfer and returns a transaction object representing the transfer.
+   * The transfer is retried if it conflicts with a concurrent modification of one of the wallets.
    * </p>
    *
    * @param request The request containing transfer details including sender and receiver wallet IDs, amount, currency, etc.
+   * @param idempotencyKey The optional key of the request, a repeated request with the same key returns the original
+   *                       transaction instead of performing the transfer again. The key cannot be reused for a different
+   *                       request.
+   * @param httpRequest The HTTP request, whose method and path are part of the fingerprint stored with the key.
    * @return ResponseEntity containing the created transaction for the transfer.
    * @throws WalletNotFoundException if either of the wallets with the specified IDs do not exist.
    * @throws WalletTransferFailedException if the transfer fails due to any reason.
@@ -127,21 +287,186 @@ public class WalletController {
    * @throws WalletTransferNotEnoughFundsException if the sender wallet does not have enough balance to complete the transfer.
    */
   @PostMapping("/transfer")
-  public ResponseEntity<Transaction> transfer(@Valid @RequestBody WalletTransferRequest request) {
-    return ResponseEntity.ok(walletService.transfer(request));
+  public ResponseEntity<Transaction> transfer(@Valid @RequestBody WalletTransferRequest request,
+                                              @Size(max = 64) @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                              HttpServletRequest httpRequest) {
+    String fingerprint = fingerprint(idempotencyKey, httpRequest, request);
+    return ResponseEntity.ok(idempotencyCache.execute(idempotencyKey, fingerprint, () -> walletOperationExecutor.execute(List.of(request.getSenderWalletId(), request.getReceiverWalletId()),
+        () -> walletService.transfer(request, idempotencyKey, fingerprint))));
+  }
+
+  /**
+   * Transfers funds for a whole batch of transfers.
+   * <p>
+   * All transfers are applied in a single database transaction with batched writes, which is much cheaper than
+   * one request per transfer. In the all-or-nothing mode no transfer is applied if any of them fails, otherwise
+   * every transfer succeeds or fails on its own. The batch is retried if it conflicts with a concurrent
+   * modification of one of the wallets.
+   * </p>
+   *
+   * @param requests     The transfers to be applied, each with the same details as a single transfer.
+   * @param allOrNothing Whether the batch is applied as a whole, the {@code wallet.transfer.batch.all-or-nothing}
+   *                     property is used if it is not set.
+   * @return ResponseEntity containing the result of every transfer in the order of the request.
+   * @throws WalletTransferBatchTooLargeException if the batch contains more transfers than allowed.
+   */
+  @PostMapping("/transfer/batch")
+  public ResponseEntity<List<WalletTransferBatchResult>> transferBatch(@RequestBody @NotEmpty List<@Valid WalletTransferRequest> requests,
+                                                                       @RequestParam(required = false) Boolean allOrNothing) {
+    List<UUID> walletIds = requests.stream()
+        .flatMap(request -> Stream.of(request.getSenderWalletId(), request.getReceiverWalletId()))
+        .distinct()
+        .toList();
+    return ResponseEntity.ok(walletOperationExecutor.execute(walletIds,
+        () -> walletService.transferBatch(requests, allOrNothing)));
+  }
+
+  /**
+   * Retrieves the turnover statistics of a wallet.
+   * <p>
+   * The credits, debits and their counts are summed up per day or per month from the daily rollups of the wallet,
+   * without scanning its transactions. Periods without any completed transaction are left out.
+   * </p>
+   *
+   * @param walletId    The unique identifier of the wallet.
+   * @param from        The first day, inclusive.
+   * @param to          The last day, inclusive.
+   * @param granularity The length of the periods, {@code day} or {@code month}, {@code day} if it is not set.
+   * @return ResponseEntity containing the turnover of the wallet per period and currency, ordered by the period.
+   */
+  @GetMapping("/stats")
+  public ResponseEntity<List<WalletStats>> getStats(@ValidWalletId @RequestParam UUID walletId,
+                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                    @Pattern(regexp = "day|month", message = "Granularity must be day or month.")
+                                                    @RequestParam(defaultValue = "day") String granularity) {
+    return ResponseEntity.ok(walletTurnoverService.getStats(walletId, from, to,
+        WalletTurnoverService.Granularity.valueOf(granularity.toUpperCase())));
+  }
+
+  /**
+   * Exports the full transaction history of a wallet.
+   * <p>
+   * The transactions are streamed from the oldest to the newest directly from a database cursor to the response,
+   * so histories of any size can be exported with constant memory use. Supported formats are {@code csv}
+   * and {@code ndjson} (newline-delimited JSON).
+   * </p>
+   *
+   * @param walletId The unique identifier of the wallet whose transaction history is to be exported.
+   * @param format   The format of the export, {@code ndjson} if it is not set.
+   * @return ResponseEntity streaming the transactions of the wallet.
+   */
+  @GetMapping("/history/export")
+  public ResponseEntity<StreamingResponseBody> exportHistory(@ValidWalletId @RequestParam UUID walletId,
+                                                             @Pattern(regexp = "csv|ndjson", message = "Format must be csv or ndjson.")
+                                                             @RequestParam(defaultValue = "ndjson") String format) {
+    TransactionExportService.Format exportFormat = TransactionExportService.Format.valueOf(format.toUpperCase());
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"history-" + walletId + "." + format + "\"")
+        .body(output -> transactionExportService.export(walletId, exportFormat, output));
+  }
+
+  /**
+   * Streams the changes of a wallet as Server-Sent Events.
+   * <p>
+   * The first {@code wallet} event carries the current balance, every following one the balance after a committed
+   * transaction of the wallet together with the transaction. A client which does not keep up with the events is
+   * disconnected and is expected to reconnect.
+   * </p>
+   *
+   * @param walletId The unique identifier of the wallet.
+   * @return The emitter of the event stream.
+   * @throws WalletNotFoundException if the wallet with the specified ID does not exist.
+   */
+  @GetMapping(value = "/{walletId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamEvents(@ValidWalletId @PathVariable UUID walletId) {
+    return walletEventBroadcaster.subscribe(walletId, () -> walletService.get(walletId).getBalance());
+  }
+
+  /**
+   * Splits the balance of a wallet into stripes.
+   * <p>
+   * Deposits to a striped wallet are spread over its stripes, which reduces the contention on frequently used wallets.
+   * The balance reported for the wallet is always the total of all its stripes.
+   * </p>
+   *
+   * @param request The request containing the wallet ID and the number of stripes.
+   * @return ResponseEntity containing the updated wallet.
+   * @throws WalletNotFoundException if the wallet with the specified ID does not exist.
+   */
+  @PostMapping("/stripe")
+  public ResponseEntity<Wallet> stripe(@Valid @RequestBody WalletStripeRequest request) {
+    return ResponseEntity.ok(walletOperationExecutor.execute(List.of(request.getWalletId()),
+        () -> walletService.stripe(request)));
   }
 
   /**
-   * Retrieves the transaction history of a wallet.
+   * Retrieves one page of the transaction history of a wallet.
    * <p>
-   * This method accepts a wallet ID as a request parameter and returns a list of all transactions associated with that wallet.
+   * This method accepts a wallet ID as a request parameter and returns the transactions associated with that wallet,
+   * from the newest to the oldest. The cursors of the adjacent pages are returned in the {@code X-Next-Cursor}
+   * (older transactions) and {@code X-Previous-Cursor} (newer transactions) headers, if such pages exist.
+   * The {@code ETag} of the response changes with every change of the history. If it matches the
+   * {@code If-None-Match} header, only the status 304 (Not Modified) is returned without reading the page.
    * </p>
    *
    * @param walletId The unique identifier of the wallet whose transaction history is to be fetched.
-   * @return ResponseEntity containing a list of transactions associated with the wallet.
+   * @param after    The {@code X-Next-Cursor} of the previous page, to fetch older transactions.
+   * @param before   The {@code X-Previous-Cursor} of the following page, to fetch newer transactions.
+   * @param limit    The maximum number of transactions, the configured page size is used if it is not set.
+   * @param request  The current request, used to evaluate its {@code If-None-Match} header.
+   * @return ResponseEntity containing a list of transactions associated with the wallet, referring to wallets by ID and name,
+   *         or {@code null} if the history was not modified.
+   * @throws WalletHistoryInvalidCursorException if a cursor is invalid or both cursors are passed.
    */
   @GetMapping("/getHistory")
-  public ResponseEntity<List<Transaction>> getWalletHistory(@ValidWalletId @RequestParam UUID walletId) {
-    return ResponseEntity.ok(walletService.getTransactionHistory(walletId));
+  public ResponseEntity<List<TransactionView>> getWalletHistory(@ValidWalletId @RequestParam UUID walletId,
+                                                                @RequestParam(required = false) String after,
+                                                                @RequestParam(required = false) String before,
+                                                                @Min(1) @RequestParam(required = false) Integer limit,
+                                                                WebRequest request) {
+    // Read before the page, so the tag never describes a newer state than the returned transactions
+    String etag = walletService.getHistoryETag(walletId);
+    if (etag != null && request.checkNotModified(etag)) {
+      return null;
+    }
+    WalletHistoryPage page = walletService.getTransactionHistory(walletId, after, before, limit);
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag);
+    if (page.getNextCursor() != null) {
+      response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+    }
+    if (page.getPreviousCursor() != null) {
+      response.header(PREVIOUS_CURSOR_HEADER, page.getPreviousCursor());
+    }
+    return response.body(page.getTransactions());
+  }
+
+  /**
+   * Retrieves the latest reconciliation of the stored wallet balances against their transactions.
+   * <p>
+   * The reconciliation runs every night in the background and checks the wallets changed since the previous run,
+   * or all wallets in a periodic full scan. A run still in progress reports the ranges of wallets it has completed.
+   * </p>
+   *
+   * @param limit The maximum number of reported mismatches, the configured maximum is used if it is not set.
+   * @return ResponseEntity containing the report of the latest run, or the status 204 (No Content) if there was none.
+   */
+  @GetMapping("/reconciliation")
+  public ResponseEntity<WalletReconciliationReport> getReconciliation(@Min(1) @RequestParam(required = false) Integer limit) {
+    WalletReconciliationReport report = balanceReconciler.getReport(limit);
+    return report != null ? ResponseEntity.ok(report) : ResponseEntity.noContent().build();
+  }
+
+  /**
+   * Computes the fingerprint of a request with an idempotency key.
+   *
+   * @param idempotencyKey The idempotency key of the request, or {@code null}.
+   * @param httpRequest    The HTTP request.
+   * @param body           The parsed body of the request.
+   * @return The fingerprint of the request, or {@code null} if it has no idempotency key.
+   */
+  private String fingerprint(String idempotencyKey, HttpServletRequest httpRequest, Object body) {
+    return idempotencyKey != null ? idempotencyCache.fingerprint(httpRequest.getMethod(), httpRequest.getRequestURI(), body) : null;
   }
 }
@@ -0,0 +1,76 @@
+package com.clientwallet.dto.transaction;
+
+import com.clientwallet.dto.wallet.WalletReference;
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.TransactionStatus;
+import com.clientwallet.model.TransactionType;
+import com.clientwallet.repository.TransactionSummary;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * TransactionView is a DTO (Data Transfer Object) used to represent a transaction in read-only responses.
+ * <p>
+ * Unlike the {@link com.clientwallet.model.Transaction} entity, it refers to the sender and the receiver wallet
+ * only by their identifiers and names, so responses with many transactions do not repeat whole wallets.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+public class TransactionView {
+
+    private UUID id;
+
+    /**
+     * The wallet from which the transaction was initiated, null for deposits.
+     */
+    private WalletReference senderWallet;
+
+    /**
+     * The wallet to which the transaction was directed, null for withdrawals.
+     */
+    private WalletReference receiverWallet;
+
+    private Currency currency;
+
+    private String accountNumber;
+
+    private String bankCode;
+
+    private BigDecimal amount;
+
+    private TransactionType transactionType;
+
+    private TransactionStatus transactionStatus;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    /**
+     * Creates the view of a transaction read by a projection query.
+     *
+     * @param summary The projected transaction row.
+     */
+    public TransactionView(TransactionSummary summary) {
+        this.id = summary.getId();
+        this.senderWallet = reference(summary.getSenderWalletId(), summary.getSenderWalletName());
+        this.receiverWallet = reference(summary.getReceiverWalletId(), summary.getReceiverWalletName());
+        this.currency = summary.getCurrency();
+        this.accountNumber = summary.getAccountNumber();
+        this.bankCode = summary.getBankCode();
+        this.amount = summary.getAmount();
+        this.transactionType = summary.getTransactionType();
+        this.transactionStatus = summary.getTransactionStatus();
+        this.createdAt = summary.getCreatedAt();
+        this.updatedAt = summary.getUpdatedAt();
+    }
+
+    private static WalletReference reference(UUID id, String name) {
+        return id != null ? new WalletReference(id, name) : null;
+    }
+}
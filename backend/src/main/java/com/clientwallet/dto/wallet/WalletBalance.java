@@ -0,0 +1,30 @@
+package com.clientwallet.dto.wallet;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * WalletBalance is a DTO (Data Transfer Object) used to represent the balance a wallet had at a point in time.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletBalance {
+
+    private UUID walletId;
+
+    /**
+     * The point in time the balance was requested for.
+     */
+    private LocalDateTime at;
+
+    /**
+     * The balance after the last transaction of the wallet created at or before the point in time.
+     */
+    private BigDecimal balance;
+}
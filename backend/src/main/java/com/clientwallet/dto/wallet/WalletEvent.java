@@ -0,0 +1,49 @@
+package com.clientwallet.dto.wallet;
+
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.TransactionStatus;
+import com.clientwallet.model.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * WalletEvent is a DTO (Data Transfer Object) used to represent a committed change of a wallet pushed to the
+ * subscribers of its event stream (GET /wallet/{walletId}/events).
+ * <p>
+ * The first event of a stream only carries the current balance, all transaction fields are {@code null}.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletEvent {
+
+    private UUID walletId;
+
+    /**
+     * The balance of the wallet after the transaction.
+     */
+    private BigDecimal balance;
+
+    private UUID transactionId;
+
+    private TransactionType transactionType;
+
+    private TransactionStatus transactionStatus;
+
+    private BigDecimal amount;
+
+    private Currency currency;
+
+    /**
+     * The other wallet of a transfer, {@code null} for deposits and withdrawals.
+     */
+    private UUID counterpartyWalletId;
+
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,36 @@
+package com.clientwallet.dto.wallet;
+
+import com.clientwallet.dto.transaction.TransactionView;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * WalletHistoryPage is a DTO (Data Transfer Object) used to represent one page of the transaction history of a wallet.
+ * <p>
+ * The transactions are ordered from the newest to the oldest. The cursors are opaque values which can be passed
+ * back to fetch the adjacent pages, they are null if there is no such page.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletHistoryPage {
+
+    /**
+     * The transactions of the page, from the newest to the oldest.
+     */
+    private List<TransactionView> transactions;
+
+    /**
+     * The cursor of the page with older transactions, passed as the {@code after} parameter.
+     */
+    private String nextCursor;
+
+    /**
+     * The cursor of the page with newer transactions, passed as the {@code before} parameter.
+     */
+    private String previousCursor;
+}
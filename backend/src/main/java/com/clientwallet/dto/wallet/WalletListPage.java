@@ -0,0 +1,30 @@
+package com.clientwallet.dto.wallet;
+
+import com.clientwallet.model.Wallet;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * WalletListPage is a DTO (Data Transfer Object) used to represent one page of the list of wallets.
+ * <p>
+ * The cursor is an opaque value which can be passed back to fetch the next page, it is null on the last page.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletListPage {
+
+    /**
+     * The wallets of the page in the requested order.
+     */
+    private List<Wallet> wallets;
+
+    /**
+     * The cursor of the next page, passed as the {@code after} parameter.
+     */
+    private String nextCursor;
+}
@@ -0,0 +1,69 @@
+package com.clientwallet.dto.wallet;
+
+import com.clientwallet.model.Currency;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * WalletListRequest is a DTO (Data Transfer Object) used to represent the query parameters
+ * for listing wallets page by page.
+ * <p>
+ * All filters are optional. The wallets are sorted by the requested property and their ID,
+ * which is also the position encoded in the cursor of the next page.
+ * </p>
+ */
+@Data
+public class WalletListRequest {
+
+    /**
+     * The currency of the listed wallets, all currencies if it is not set.
+     */
+    private Currency currency;
+
+    /**
+     * The minimum balance of the listed wallets, inclusive.
+     */
+    @DecimalMin(value = "0", message = "Minimum balance cannot be negative.")
+    private BigDecimal minBalance;
+
+    /**
+     * The maximum balance of the listed wallets, inclusive.
+     */
+    @DecimalMin(value = "0", message = "Maximum balance cannot be negative.")
+    private BigDecimal maxBalance;
+
+    /**
+     * The property the wallets are sorted by, either {@code name} or {@code balance}.
+     */
+    @Pattern(regexp = "name|balance", message = "Sort must be name or balance.")
+    private String sort = "name";
+
+    /**
+     * The direction of the sort, either {@code asc} or {@code desc}.
+     */
+    @Pattern(regexp = "asc|desc", message = "Direction must be asc or desc.")
+    private String direction = "asc";
+
+    /**
+     * The cursor of the next page returned with the previous page, the first page if it is not set.
+     * <p>
+     * The cursor is only valid with the same sort as the page which returned it.
+     * </p>
+     */
+    private String after;
+
+    /**
+     * The maximum number of wallets, the configured page size if it is not set.
+     */
+    @Min(value = 1, message = "Limit must be at least 1.")
+    private Integer limit;
+
+    /**
+     * Whether only the identifier, name, currency and balance of each wallet are returned.
+     */
+    private boolean compact;
+}
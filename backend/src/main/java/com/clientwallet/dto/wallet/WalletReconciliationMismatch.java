@@ -0,0 +1,33 @@
+package com.clientwallet.dto.wallet;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * WalletReconciliationMismatch is a DTO (Data Transfer Object) used to represent a wallet whose stored balance
+ * differed from its transactions.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletReconciliationMismatch {
+
+    private UUID walletId;
+
+    /**
+     * The balance of the wallet row plus the balances of its stripes.
+     */
+    private BigDecimal storedBalance;
+
+    /**
+     * The carried balance of the wallet plus its completed credits minus its completed debits.
+     */
+    private BigDecimal expectedBalance;
+
+    private LocalDateTime detectedAt;
+}
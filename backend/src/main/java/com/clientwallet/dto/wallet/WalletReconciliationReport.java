@@ -0,0 +1,54 @@
+package com.clientwallet.dto.wallet;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * WalletReconciliationReport is a DTO (Data Transfer Object) used to represent the latest run of the reconciliation
+ * of the stored wallet balances against their transactions.
+ * <p>
+ * The counts of a run in progress cover the ranges of wallets it has completed so far.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletReconciliationReport {
+
+    private long runId;
+
+    /**
+     * Whether all wallets were checked, not only the ones changed since the previous run.
+     */
+    private boolean fullScan;
+
+    /**
+     * The number of ranges of wallet IDs the run is split into.
+     */
+    private int rangeCount;
+
+    /**
+     * The number of ranges completed so far.
+     */
+    private int completedRanges;
+
+    private long checkedCount;
+
+    private long mismatchCount;
+
+    private LocalDateTime startedAt;
+
+    /**
+     * The time the run was finished, or null if it is still in progress.
+     */
+    private LocalDateTime finishedAt;
+
+    /**
+     * The wallets whose stored balance differed from their transactions, at most as many as requested.
+     */
+    private List<WalletReconciliationMismatch> mismatches;
+}
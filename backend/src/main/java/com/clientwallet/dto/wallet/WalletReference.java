@@ -0,0 +1,29 @@
+package com.clientwallet.dto.wallet;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * WalletReference is a DTO (Data Transfer Object) used to refer to a wallet from another object.
+ * <p>
+ * It contains only the identifier and the name of the wallet, so it can be read without loading the whole wallet.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletReference {
+
+    /**
+     * The unique identifier of the wallet.
+     */
+    private UUID id;
+
+    /**
+     * The name of the wallet.
+     */
+    private String name;
+}
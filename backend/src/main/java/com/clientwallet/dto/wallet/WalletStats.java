@@ -0,0 +1,42 @@
+package com.clientwallet.dto.wallet;
+
+import com.clientwallet.model.Currency;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * WalletStats is a DTO (Data Transfer Object) used to represent the turnover of a wallet in one day or month.
+ * <p>
+ * Periods without any completed transaction of the wallet are not returned.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletStats {
+
+    /**
+     * The first day of the period.
+     */
+    private LocalDate period;
+
+    private Currency currency;
+
+    /**
+     * The sum of all amounts deposited into the wallet or transferred to it in the period.
+     */
+    private BigDecimal creditAmount;
+
+    /**
+     * The sum of all amounts withdrawn from the wallet or transferred from it in the period.
+     */
+    private BigDecimal debitAmount;
+
+    private long creditCount;
+
+    private long debitCount;
+}
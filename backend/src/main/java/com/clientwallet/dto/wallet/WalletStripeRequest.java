@@ -0,0 +1,40 @@
+package com.clientwallet.dto.wallet;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * WalletStripeRequest is a DTO (Data Transfer Object) used to represent the request body
+ * for splitting the balance of a wallet into stripes.
+ * <p>
+ * Striping spreads concurrent deposits to a frequently used wallet over several rows,
+ * so they do not wait for each other's row lock.
+ * </p>
+ */
+@Data
+public class WalletStripeRequest {
+
+    /**
+     * The unique identifier of the wallet to be striped.
+     * <p>
+     * This field is required and cannot be null.
+     * </p>
+     */
+    @NotNull(message = "Wallet ID cannot be null.")
+    private UUID walletId;
+
+    /**
+     * The number of stripes of the wallet.
+     * <p>
+     * This field is required and must be between 0 and 64. Zero turns the wallet back into a regular wallet.
+     * </p>
+     */
+    @NotNull(message = "Stripe count cannot be null.")
+    @Min(value = 0, message = "Stripe count cannot be negative.")
+    @Max(value = 64, message = "Stripe count cannot be greater than 64.")
+    private Integer stripeCount;
+}
@@ -0,0 +1,29 @@
+package com.clientwallet.dto.wallet;
+
+import com.clientwallet.model.Currency;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * WalletSummary is a DTO (Data Transfer Object) used to represent a wallet in the compact format of the wallet list.
+ * <p>
+ * It leaves out the timestamps and the internal fields of a wallet, which most clients of the list do not need.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletSummary {
+
+    private UUID id;
+
+    private String name;
+
+    private Currency currency;
+
+    private BigDecimal balance;
+}
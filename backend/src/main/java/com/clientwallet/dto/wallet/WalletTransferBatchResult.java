@@ -0,0 +1,47 @@
+package com.clientwallet.dto.wallet;
+
+import com.clientwallet.model.TransactionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * WalletTransferBatchResult is a DTO (Data Transfer Object) used to represent the result
+ * of a single transfer of a batch of transfers.
+ * <p>
+ * The results of a batch are returned in the order of the transfers in the request.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletTransferBatchResult {
+
+    /**
+     * The position of the transfer in the batch, starting at zero.
+     */
+    private int index;
+
+    /**
+     * The unique identifier of the transaction created by the transfer.
+     * <p>
+     * This field is null if the transfer was not applied.
+     * </p>
+     */
+    private UUID transactionId;
+
+    /**
+     * The status of the transfer, either {@code COMPLETED} or {@code FAILED}.
+     */
+    private TransactionStatus status;
+
+    /**
+     * The reason why the transfer was not applied.
+     * <p>
+     * This field is null if the transfer was completed.
+     * </p>
+     */
+    private String error;
+}
@@ -1,8 +1,14 @@
 package com.clientwallet.exception;
 
+import com.clientwallet.exception.transaction.TransactionIdempotencyKeyArchivedException;
+import com.clientwallet.exception.transaction.TransactionIdempotencyKeyReusedException;
+import com.clientwallet.exception.transaction.TransactionNotFoundException;
 import com.clientwallet.exception.wallet.*;
+import jakarta.validation.ConstraintViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -31,6 +37,33 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Handles validation exceptions for constraints on method parameters, such as the elements of a request body list.
+     *
+     * @param ex the ConstraintViolationException thrown when validation fails
+     * @return ResponseEntity containing a map of validation errors with property paths as keys and error messages as values
+     */
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ResponseEntity<Map<String, String>> handleConstraintViolationException(ConstraintViolationException ex) {
+        Map<String, String> errors = new HashMap<>();
+        ex.getConstraintViolations().forEach(violation ->
+                errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+        return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Handles request parameters referring to a wallet which does not exist, rejected by the reactive endpoints.
+     *
+     * @param ex the WalletInvalidIdException thrown
+     * @return ResponseEntity containing the same validation error as a violation of the wallet ID constraint
+     */
+    @ExceptionHandler(WalletInvalidIdException.class)
+    public ResponseEntity<Map<String, String>> handleWalletInvalidIdException(WalletInvalidIdException ex) {
+        Map<String, String> errors = new HashMap<>();
+        errors.put(ex.getParameter(), ex.getMessage());
+        return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
+    }
+
     /**
      * Handles exceptions when a requested wallet is not found.
      *
@@ -42,6 +75,39 @@ public class GlobalExceptionHandler {
         return createErrorResponse(ex.getMessage(), HttpStatus.NOT_FOUND);
     }
 
+    /**
+     * Handles exceptions when a requested transaction is not found.
+     *
+     * @param ex the TransactionNotFoundException thrown
+     * @return ResponseEntity with an error message and HTTP status NOT_FOUND
+     */
+    @ExceptionHandler(TransactionNotFoundException.class)
+    public ResponseEntity<Map<String, String>> handleTransactionNotFoundException(TransactionNotFoundException ex) {
+        return createErrorResponse(ex.getMessage(), HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Handles exceptions when an idempotency key is reused for a different request.
+     *
+     * @param ex the TransactionIdempotencyKeyReusedException thrown
+     * @return ResponseEntity with an error message and HTTP status UNPROCESSABLE_ENTITY
+     */
+    @ExceptionHandler(TransactionIdempotencyKeyReusedException.class)
+    public ResponseEntity<Map<String, String>> handleIdempotencyKeyReused(TransactionIdempotencyKeyReusedException ex) {
+        return createErrorResponse(ex.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    /**
+     * Handles exceptions when a request is repeated with an idempotency key of an archived or deleted transaction.
+     *
+     * @param ex the TransactionIdempotencyKeyArchivedException thrown
+     * @return ResponseEntity with an error message and HTTP status CONFLICT
+     */
+    @ExceptionHandler(TransactionIdempotencyKeyArchivedException.class)
+    public ResponseEntity<Map<String, String>> handleIdempotencyKeyArchived(TransactionIdempotencyKeyArchivedException ex) {
+        return createErrorResponse(ex.getMessage(), HttpStatus.CONFLICT);
+    }
+
     /**
      * Handles exceptions when attempting to create a wallet with a name that already exists.
      *
@@ -75,6 +141,28 @@ public class GlobalExceptionHandler {
         return createErrorResponse(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    /**
+     * Handles exceptions when the transaction history is requested with an invalid cursor.
+     *
+     * @param ex the WalletHistoryInvalidCursorException thrown
+     * @return ResponseEntity with an error message and HTTP status BAD_REQUEST
+     */
+    @ExceptionHandler(WalletHistoryInvalidCursorException.class)
+    public ResponseEntity<Map<String, String>> handleHistoryInvalidCursor(WalletHistoryInvalidCursorException ex) {
+        return createErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Handles exceptions when the list of wallets is requested with an invalid cursor.
+     *
+     * @param ex the WalletListInvalidCursorException thrown
+     * @return ResponseEntity with an error message and HTTP status BAD_REQUEST
+     */
+    @ExceptionHandler(WalletListInvalidCursorException.class)
+    public ResponseEntity<Map<String, String>> handleListInvalidCursor(WalletListInvalidCursorException ex) {
+        return createErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
     /**
      * Handles exceptions when transferring funds with a currency mismatch.
      *
@@ -119,6 +207,17 @@ public class GlobalExceptionHandler {
         return createErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Handles exceptions when a batch of transfers exceeds the maximum size.
+     *
+     * @param ex the WalletTransferBatchTooLargeException thrown
+     * @return ResponseEntity with an error message and HTTP status BAD_REQUEST
+     */
+    @ExceptionHandler(WalletTransferBatchTooLargeException.class)
+    public ResponseEntity<Map<String, String>> handleTransferBatchTooLarge(WalletTransferBatchTooLargeException ex) {
+        return createErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
     /**
      * Handles exceptions when withdrawing funds with a currency mismatch.
      *
@@ -152,6 +251,18 @@ public class GlobalExceptionHandler {
         return createErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Handles exceptions when no database connection is available in time, e.g. because the limit of concurrent
+     * database operations is reached.
+     *
+     * @param ex the exception thrown when a connection or a transaction could not be obtained
+     * @return ResponseEntity with an error message and HTTP status SERVICE_UNAVAILABLE
+     */
+    @ExceptionHandler({CannotGetJdbcConnectionException.class, CannotCreateTransactionException.class})
+    public ResponseEntity<Map<String, String>> handleDatabaseUnavailable(Exception ex) {
+        return createErrorResponse("Too many concurrent requests, try again later.", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     /**
      * Creates a structured error response with a given message and HTTP status.
      *
@@ -0,0 +1,25 @@
+package com.clientwallet.exception.transaction;
+
+import java.util.UUID;
+
+/**
+ * Exception thrown when a request is repeated with an idempotency key whose transaction is no longer available.
+ * <p>
+ * The key stays reserved when its transaction is archived or deleted, so the request is not executed again,
+ * but its original result cannot be returned either. It extends {@link RuntimeException} and provides a custom
+ * error message indicating the key and the ID of its transaction.
+ * </p>
+ */
+public class TransactionIdempotencyKeyArchivedException extends RuntimeException {
+
+  /**
+   * Constructs a new exception with a message indicating that the transaction of the key is no longer available.
+   *
+   * @param idempotencyKey The idempotency key of the request.
+   * @param transactionId  The ID of the transaction created with the key.
+   */
+  public TransactionIdempotencyKeyArchivedException(String idempotencyKey, UUID transactionId) {
+    super("Idempotency key: " + idempotencyKey + " was already used by transaction with id: " + transactionId
+        + ", which is archived or deleted.");
+  }
+}
@@ -0,0 +1,21 @@
+package com.clientwallet.exception.transaction;
+
+/**
+ * Exception thrown when an idempotency key is sent with a request different from the one which first used it.
+ * <p>
+ * A repeated request has to be identical to the original one, otherwise the client would receive the transaction
+ * of the original request as the result of a different operation. It extends {@link RuntimeException} and provides
+ * a custom error message indicating the reused key.
+ * </p>
+ */
+public class TransactionIdempotencyKeyReusedException extends RuntimeException {
+
+  /**
+   * Constructs a new exception with a message indicating that the key was already used by a different request.
+   *
+   * @param idempotencyKey The idempotency key of the request.
+   */
+  public TransactionIdempotencyKeyReusedException(String idempotencyKey) {
+    super("Idempotency key: " + idempotencyKey + " was already used for a different request.");
+  }
+}
@@ -0,0 +1,23 @@
+package com.clientwallet.exception.transaction;
+
+import java.util.UUID;
+
+/**
+ * Exception thrown when a transaction with a specified ID is not found.
+ * <p>
+ * This exception is thrown when the status of a transaction is requested for an ID which does not exist
+ * in the system. It extends {@link RuntimeException} and provides a custom error message indicating
+ * that the transaction with the specified ID was not found.
+ * </p>
+ */
+public class TransactionNotFoundException extends RuntimeException {
+
+  /**
+   * Constructs a new exception with a message indicating that the transaction with the specified ID was not found.
+   *
+   * @param id The unique identifier of the transaction that was not found.
+   */
+  public TransactionNotFoundException(UUID id) {
+    super("Transaction with id: " + id + " not found.");
+  }
+}
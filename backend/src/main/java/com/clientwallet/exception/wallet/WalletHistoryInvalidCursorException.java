@@ -0,0 +1,20 @@
+package com.clientwallet.exception.wallet;
+
+/**
+ * Exception thrown when the transaction history of a wallet is requested with an invalid cursor.
+ * <p>
+ * This exception is thrown when a cursor cannot be decoded, because it was not returned by a previous page
+ * of the history, or when the cursors for both directions are passed at once.
+ * </p>
+ */
+public class WalletHistoryInvalidCursorException extends RuntimeException {
+
+  /**
+   * Constructs a new exception with a message indicating that the cursor is invalid.
+   *
+   * @param cursor The invalid cursor.
+   */
+  public WalletHistoryInvalidCursorException(String cursor) {
+    super("Invalid history cursor: " + cursor + ".");
+  }
+}
@@ -0,0 +1,33 @@
+package com.clientwallet.exception.wallet;
+
+/**
+ * Exception thrown when a request parameter refers to a wallet which does not exist.
+ * <p>
+ * The servlet endpoints reject such parameters by the {@link com.clientwallet.validation.ValidWalletId} constraint.
+ * The reactive endpoints cannot run its blocking validator, they throw this exception instead, which is mapped to
+ * the same response as the constraint violation.
+ * </p>
+ */
+public class WalletInvalidIdException extends RuntimeException {
+
+  private final String parameter;
+
+  /**
+   * Constructs a new exception with the message of the {@link com.clientwallet.validation.ValidWalletId} constraint.
+   *
+   * @param parameter The path of the parameter holding the wallet ID.
+   */
+  public WalletInvalidIdException(String parameter) {
+    super("Invalid wallet ID");
+    this.parameter = parameter;
+  }
+
+  /**
+   * Returns the path of the parameter as reported by a constraint violation, e.g. {@code get.walletId}.
+   *
+   * @return The path of the parameter.
+   */
+  public String getParameter() {
+    return parameter;
+  }
+}
@@ -0,0 +1,20 @@
+package com.clientwallet.exception.wallet;
+
+/**
+ * Exception thrown when the list of wallets is requested with an invalid cursor.
+ * <p>
+ * This exception is thrown when a cursor cannot be decoded, because it was not returned by a previous page
+ * of the list, or when it was returned by a list with another sort.
+ * </p>
+ */
+public class WalletListInvalidCursorException extends RuntimeException {
+
+  /**
+   * Constructs a new exception with a message indicating that the cursor is invalid.
+   *
+   * @param cursor The invalid cursor.
+   */
+  public WalletListInvalidCursorException(String cursor) {
+    super("Invalid wallet list cursor: " + cursor + ".");
+  }
+}
@@ -0,0 +1,21 @@
+package com.clientwallet.exception.wallet;
+
+/**
+ * Exception thrown when a batch of transfers contains more transfers than allowed.
+ * <p>
+ * The whole batch is applied in a single database transaction, so its size is limited by the
+ * {@code wallet.transfer.batch.max-size} property. The exception provides the size of the batch and the limit.
+ * </p>
+ */
+public class WalletTransferBatchTooLargeException extends RuntimeException {
+
+  /**
+   * Constructs a new exception with a message indicating that the batch exceeds the maximum size.
+   *
+   * @param size    The number of transfers in the batch.
+   * @param maxSize The maximum number of transfers in a batch.
+   */
+  public WalletTransferBatchTooLargeException(int size, int maxSize) {
+    super("Batch of " + size + " transfers exceeds the maximum of " + maxSize + " transfers.");
+  }
+}
@@ -0,0 +1,39 @@
+package com.clientwallet.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * BalanceSnapshot represents the balance of a wallet after all {@link JournalEntry journal entries} up to a position.
+ * <p>
+ * Snapshots of all wallets are written together, each one from the previous snapshot and the entries after it.
+ * Replaying the journal starts from the latest snapshot, so it only reads the entries appended since then.
+ * Wallets without any entry up to the position have no snapshot and a balance of zero.
+ * </p>
+ * <p>
+ * This class is mapped to the "balance_snapshot" table in the database.
+ * </p>
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "balance_snapshot")
+public class BalanceSnapshot {
+
+  /**
+   * The composite identifier of the snapshot, made of the journal position and the wallet ID.
+   */
+  @EmbeddedId
+  private BalanceSnapshotId id;
+
+  /**
+   * The balance of the wallet after the journal entries up to the position.
+   */
+  @Column(nullable = false)
+  private BigDecimal balance;
+}
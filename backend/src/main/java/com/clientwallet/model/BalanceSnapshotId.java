@@ -0,0 +1,35 @@
+package com.clientwallet.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * BalanceSnapshotId is the composite primary key of a {@link BalanceSnapshot}.
+ * <p>
+ * A snapshot is identified by the position of the last journal entry it includes and the wallet.
+ * </p>
+ */
+@Data
+@Embeddable
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceSnapshotId implements Serializable {
+
+  /**
+   * The position of the last journal entry included in the snapshot.
+   */
+  @Column(name = "journal_position")
+  private long journalPosition;
+
+  /**
+   * The unique identifier of the wallet.
+   */
+  @Column(name = "wallet_id")
+  private UUID walletId;
+}
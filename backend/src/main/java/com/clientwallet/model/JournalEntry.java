@@ -0,0 +1,76 @@
+package com.clientwallet.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * JournalEntry represents one leg of an applied transaction in the append-only double-entry journal.
+ * <p>
+ * Every applied transaction has one {@link JournalSide#DEBIT debit} leg of its sender and one
+ * {@link JournalSide#CREDIT credit} leg of its receiver with the same amount, so the legs of all accounts always add up
+ * to zero. Deposits and withdrawals have no wallet on one side, that leg belongs to the external account of the currency.
+ * The balance of a wallet is the sum of its credits minus the sum of its debits. The balances stored in the wallets
+ * are a projection of the journal, changed in the same database transaction as the legs are appended.
+ * </p>
+ * <p>
+ * Entries are written by the {@link com.clientwallet.service.LedgerJournal} and never updated or deleted.
+ * This class is mapped to the "journal_entry" table in the database.
+ * </p>
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@Table(name = "journal_entry")
+public class JournalEntry {
+
+  /**
+   * The position of the entry in the journal, increasing with every appended entry.
+   */
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  /**
+   * The unique identifier of the transaction of the entry.
+   * <p>
+   * It is null for the opening balances of wallets which existed before the journal.
+   * </p>
+   */
+  private UUID transactionId;
+
+  /**
+   * The unique identifier of the wallet of the entry, or null for the external account.
+   */
+  private UUID walletId;
+
+  /**
+   * Whether the amount is debited from or credited to the account.
+   */
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false)
+  private JournalSide side;
+
+  /**
+   * The amount of the entry, always positive.
+   */
+  @Column(nullable = false)
+  private BigDecimal amount;
+
+  /**
+   * The currency of the amount.
+   */
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false)
+  private Currency currency;
+
+  /**
+   * The creation time of the transaction of the entry.
+   */
+  @Column(nullable = false)
+  private LocalDateTime createdAt;
+}
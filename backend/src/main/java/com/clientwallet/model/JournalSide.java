@@ -0,0 +1,25 @@
+package com.clientwallet.model;
+
+/**
+ * JournalSide represents the side of a {@link JournalEntry} in the double-entry journal.
+ * <p>
+ * The sides are:
+ * <ul>
+ *   <li>{@link #DEBIT}: The amount is taken from the account of the entry.</li>
+ *   <li>{@link #CREDIT}: The amount is added to the account of the entry.</li>
+ * </ul>
+ */
+public enum JournalSide {
+
+  /**
+   * The amount is subtracted from the balance of the account. The sender wallet of a withdrawal or a transfer
+   * and the external account of a deposit are debited.
+   */
+  DEBIT,
+
+  /**
+   * The amount is added to the balance of the account. The receiver wallet of a deposit or a transfer
+   * and the external account of a withdrawal are credited.
+   */
+  CREDIT
+}
@@ -0,0 +1,47 @@
+package com.clientwallet.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * ReconciliationCheckpoint represents a range of wallet IDs completed by a {@link ReconciliationRun}.
+ * <p>
+ * It is written in the same database transaction as the {@link ReconciliationMismatch mismatches} of the range,
+ * a resumed run skips the ranges it already completed.
+ * </p>
+ * <p>
+ * This class is mapped to the "reconciliation_checkpoint" table in the database.
+ * </p>
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "reconciliation_checkpoint")
+public class ReconciliationCheckpoint {
+
+  /**
+   * The composite identifier of the checkpoint, made of the run ID and the index of the range.
+   */
+  @EmbeddedId
+  private ReconciliationCheckpointId id;
+
+  /**
+   * The number of checked wallets of the range.
+   */
+  @Column(nullable = false)
+  private long checkedCount;
+
+  /**
+   * The number of wallets of the range whose stored balance differed.
+   */
+  @Column(nullable = false)
+  private long mismatchCount;
+
+  @Column(nullable = false)
+  private LocalDateTime completedAt;
+}
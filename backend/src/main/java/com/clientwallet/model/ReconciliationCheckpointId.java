@@ -0,0 +1,34 @@
+package com.clientwallet.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * ReconciliationCheckpointId is the composite primary key of a {@link ReconciliationCheckpoint}.
+ * <p>
+ * A checkpoint is identified by its run and the index of the range of wallet IDs in the split of the run.
+ * </p>
+ */
+@Data
+@Embeddable
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationCheckpointId implements Serializable {
+
+  /**
+   * The unique identifier of the run.
+   */
+  @Column(name = "run_id")
+  private long runId;
+
+  /**
+   * The index of the range of wallet IDs.
+   */
+  @Column(name = "range_index")
+  private int rangeIndex;
+}
@@ -0,0 +1,45 @@
+package com.clientwallet.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * ReconciliationMismatch represents a wallet whose stored balance differed from its transactions in a
+ * {@link ReconciliationRun}.
+ * <p>
+ * This class is mapped to the "reconciliation_mismatch" table in the database.
+ * </p>
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "reconciliation_mismatch")
+public class ReconciliationMismatch {
+
+  /**
+   * The composite identifier of the mismatch, made of the run ID and the wallet ID.
+   */
+  @EmbeddedId
+  private ReconciliationMismatchId id;
+
+  /**
+   * The balance of the wallet row plus the balances of its stripes.
+   */
+  @Column(nullable = false)
+  private BigDecimal storedBalance;
+
+  /**
+   * The carried balance of the wallet plus the amounts of its completed transactions received minus the amounts sent.
+   */
+  @Column(nullable = false)
+  private BigDecimal expectedBalance;
+
+  @Column(nullable = false)
+  private LocalDateTime detectedAt;
+}
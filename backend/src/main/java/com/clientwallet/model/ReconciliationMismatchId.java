@@ -0,0 +1,35 @@
+package com.clientwallet.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * ReconciliationMismatchId is the composite primary key of a {@link ReconciliationMismatch}.
+ * <p>
+ * A wallet is reported at most once per run.
+ * </p>
+ */
+@Data
+@Embeddable
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationMismatchId implements Serializable {
+
+  /**
+   * The unique identifier of the run.
+   */
+  @Column(name = "run_id")
+  private long runId;
+
+  /**
+   * The unique identifier of the wallet.
+   */
+  @Column(name = "wallet_id")
+  private UUID walletId;
+}
@@ -0,0 +1,77 @@
+package com.clientwallet.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * ReconciliationRun represents one run of the reconciliation of the stored balances against the transactions.
+ * <p>
+ * A run checks the wallets with journal entries between its positions, or all wallets if it is a full scan.
+ * The wallets are split into ranges of IDs, every completed range is recorded as a {@link ReconciliationCheckpoint},
+ * so an interrupted run is resumed with the remaining ranges. A run without a finish time is still in progress.
+ * </p>
+ * <p>
+ * Runs are written by the {@link com.clientwallet.service.BalanceReconciler}.
+ * This class is mapped to the "reconciliation_run" table in the database.
+ * </p>
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@Table(name = "reconciliation_run")
+public class ReconciliationRun {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  /**
+   * Whether all wallets are checked, not only the ones with journal entries between the positions.
+   */
+  @Column(nullable = false)
+  private boolean fullScan;
+
+  /**
+   * The journal position checked by the previous run, exclusive.
+   */
+  @Column(nullable = false)
+  private long fromPosition;
+
+  /**
+   * The end of the journal when the run was started, inclusive.
+   */
+  @Column(nullable = false)
+  private long toPosition;
+
+  /**
+   * The number of wallet ID ranges the run is split into.
+   */
+  @Column(nullable = false)
+  private int rangeCount;
+
+  /**
+   * The number of checked wallets, set when the run is finished.
+   */
+  @Column(nullable = false)
+  private long checkedCount;
+
+  /**
+   * The number of wallets whose stored balance differed, set when the run is finished.
+   */
+  @Column(nullable = false)
+  private long mismatchCount;
+
+  @Column(nullable = false)
+  private LocalDateTime startedAt;
+
+  /**
+   * The last time the instance running the run completed a range.
+   */
+  @Column(nullable = false)
+  private LocalDateTime heartbeatAt;
+
+  private LocalDateTime finishedAt;
+}
@@ -1,12 +1,15 @@
 package com.clientwallet.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
 /**
@@ -115,13 +118,64 @@ public class Transaction {
   @Enumerated(EnumType.STRING)
   private TransactionStatus transactionStatus;
 
+  /**
+   * The balance of the sender wallet right after the transaction was applied.
+   * <p>
+   * It is written in the same database transaction as the balance change, so the balance of a wallet
+   * at any point in time is the balance after its last transaction created before that point.
+   * It is null for deposits and for transactions which were not applied.
+   * </p>
+   */
+  private BigDecimal senderBalanceAfter;
+
+  /**
+   * The balance of the receiver wallet right after the transaction was applied.
+   * <p>
+   * It is null for withdrawals and for transactions which were not applied.
+   * </p>
+   */
+  private BigDecimal receiverBalanceAfter;
+
+  /**
+   * Whether the transaction is already added to the daily {@link WalletTurnover} rollups of its wallets.
+   * <p>
+   * Completed transactions which are not rolled up yet are picked up by the turnover aggregator. The flag is only
+   * changed by the aggregator and never written when the entity is updated, so it cannot be reset by a stale entity.
+   * </p>
+   */
+  @JsonIgnore
+  @ColumnDefault("false")
+  @Column(nullable = false, updatable = false)
+  private boolean rolledUp;
+
+  /**
+   * The idempotency key sent by the client with the request which created the transaction.
+   * <p>
+   * The key is unique, so a retried request can never create a second transaction. The uniqueness is enforced by
+   * the {@link TransactionIdempotencyKey} reserved with the transaction, because the partitioned table of PostgreSQL
+   * cannot have a unique index without the creation time. It is null for transactions created without a key.
+   * </p>
+   */
+  @Column(length = 64)
+  private String idempotencyKey;
+
+  /**
+   * The SHA-256 hash of the method, path and body of the request which created the transaction with the
+   * idempotency key, so the key cannot be reused for a different request. It is null without an idempotency key.
+   */
+  @JsonIgnore
+  @Column(length = 64, updatable = false)
+  private String requestFingerprint;
+
   /**
    * The timestamp when the transaction was created.
    * <p>
    * This field is automatically set during the pre-persist lifecycle method,
-   * marking the creation time of the transaction.
+   * marking the creation time of the transaction. The table is partitioned by month on this column,
+   * so it is never changed once the transaction is saved.
    * </p>
    */
+  @Column(nullable = false, updatable = false)
   private LocalDateTime createdAt;
 
   /**
@@ -138,11 +192,13 @@ public class Transaction {
    * <p>
    * This method is automatically invoked by JPA before the entity is saved to
    * the database to set the {@link #createdAt} and {@link #updatedAt} fields.
+   * The time is truncated to the microsecond precision of the database column, so the creation time
+   * of a loaded entity always equals the stored value used by the keyset pagination of the history.
    * </p>
    */
   @PrePersist
   public void prePersist() {
-    LocalDateTime now = LocalDateTime.now();
+    LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
     this.createdAt = now;
     this.updatedAt = now;
   }
@@ -0,0 +1,55 @@
+package com.clientwallet.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * TransactionIdempotencyKey represents an idempotency key reserved by the transaction created with it.
+ * <p>
+ * The key is reserved in the same database transaction which inserts the {@link Transaction}, so the primary key
+ * rejects a second transaction with the same key, also one created concurrently by another application instance.
+ * The partitioned transaction table of PostgreSQL cannot have a unique index without the creation time.
+ * The reservation outlives the transaction when it is archived or deleted, so a repeated request is never
+ * executed again.
+ * </p>
+ * <p>
+ * This class is mapped to the "transaction_idempotency_key" table in the database.
+ * </p>
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "transaction_idempotency_key")
+public class TransactionIdempotencyKey {
+
+  /**
+   * The idempotency key sent by the client.
+   */
+  @Id
+  @Column(length = 64)
+  private String idempotencyKey;
+
+  /**
+   * The ID of the transaction created with the key.
+   */
+  @Column(nullable = false)
+  private UUID transactionId;
+
+  /**
+   * The fingerprint of the request which created the transaction, see {@link Transaction#getRequestFingerprint()}.
+   */
+  @Column(length = 64)
+  private String requestFingerprint;
+
+  /**
+   * The creation time of the transaction.
+   */
+  @Column(nullable = false)
+  private LocalDateTime createdAt;
+}
@@ -56,6 +56,25 @@ public class Wallet {
    */
   private BigDecimal balance;
 
+  /**
+   * The number of stripes the balance of the wallet is split into.
+   * <p>
+   * Zero for a regular wallet. A striped wallet receives deposits into its {@link WalletStripe stripes}
+   * and its total balance is the balance of the wallet plus the balances of all its stripes.
+   * </p>
+   */
+  private int stripeCount;
+
+  /**
+   * The version of the wallet used for optimistic locking.
+   * <p>
+   * This field is incremented by every change of the wallet, including the balance update statements of the
+   * wallet repository, so a writer holding a stale copy of the wallet fails instead of overwriting newer data.
+   * </p>
+   */
+  @Version
+  private Long version;
+
   /**
    * The timestamp when the wallet was created.
    * <p>
@@ -0,0 +1,41 @@
+package com.clientwallet.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * WalletCarriedBalance represents the part of the balance of a wallet which is not explained by the transaction table.
+ * <p>
+ * It is the balance the wallet had before its transactions were recorded, plus the net amount of its completed
+ * transactions moved to the archive. The stored balance of every wallet equals its carried balance plus the amounts
+ * of its completed transactions it received minus the amounts it sent, which is checked by the
+ * {@link com.clientwallet.service.BalanceReconciler}. Wallets without a carried balance carry nothing.
+ * </p>
+ * <p>
+ * This class is mapped to the "wallet_carried_balance" table in the database.
+ * </p>
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "wallet_carried_balance")
+public class WalletCarriedBalance {
+
+  /**
+   * The unique identifier of the wallet.
+   */
+  @Id
+  private UUID walletId;
+
+  /**
+   * The carried balance, negative if the wallet sent more than it received outside the transaction table.
+   */
+  @Column(nullable = false)
+  private BigDecimal balance;
+}
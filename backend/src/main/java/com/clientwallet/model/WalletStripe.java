@@ -0,0 +1,52 @@
+package com.clientwallet.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * WalletStripe represents one sub-balance of a striped wallet.
+ * <p>
+ * Wallets receiving a large number of deposits can be split into several stripes. Each deposit is added to
+ * a randomly chosen stripe instead of the balance of the wallet row, so concurrent deposits do not update the same
+ * balance. The wallet row is still locked to increment its version, which the entity tag of the wallet is made of.
+ * The balance of a striped wallet is the balance of the wallet row plus the balances of all its stripes.
+ * </p>
+ * <p>
+ * This class is mapped to the "wallet_stripe" table in the database.
+ * </p>
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@Table(name = "wallet_stripe")
+public class WalletStripe {
+
+  /**
+   * The composite identifier of the stripe, made of the wallet ID and the stripe number.
+   */
+  @EmbeddedId
+  private WalletStripeId id;
+
+  /**
+   * The part of the wallet balance held by this stripe.
+   * <p>
+   * It is stored as a {@link BigDecimal} for precision and never drops below zero.
+   * </p>
+   */
+  private BigDecimal balance;
+
+  /**
+   * Creates an empty stripe of a wallet.
+   *
+   * @param walletId The unique identifier of the wallet the stripe belongs to.
+   * @param stripe   The number of the stripe within its wallet.
+   */
+  public WalletStripe(UUID walletId, int stripe) {
+    this.id = new WalletStripeId(walletId, stripe);
+    this.balance = BigDecimal.ZERO;
+  }
+}
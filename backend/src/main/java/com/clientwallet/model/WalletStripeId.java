@@ -0,0 +1,35 @@
+package com.clientwallet.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * WalletStripeId is the composite primary key of a {@link WalletStripe}.
+ * <p>
+ * A stripe is identified by the wallet it belongs to and by its number, which goes from zero
+ * to the {@link Wallet#getStripeCount() stripe count} of the wallet minus one.
+ * </p>
+ */
+@Data
+@Embeddable
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletStripeId implements Serializable {
+
+  /**
+   * The unique identifier of the wallet the stripe belongs to.
+   */
+  @Column(name = "wallet_id")
+  private UUID walletId;
+
+  /**
+   * The number of the stripe within its wallet.
+   */
+  private int stripe;
+}
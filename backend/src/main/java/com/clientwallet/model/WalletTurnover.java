@@ -0,0 +1,53 @@
+package com.clientwallet.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * WalletTurnover represents the daily turnover of a wallet, rolled up from its completed transactions.
+ * <p>
+ * The credits are the deposits into the wallet and the transfers it received, the debits are the withdrawals
+ * from the wallet and the transfers it sent. Statistics over any range of days are summed up from these rows,
+ * so they never scan the transaction table.
+ * </p>
+ * <p>
+ * This class is mapped to the "wallet_turnover" table in the database.
+ * </p>
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "wallet_turnover")
+public class WalletTurnover {
+
+  /**
+   * The composite identifier of the rollup, made of the wallet ID, the day and the currency.
+   */
+  @EmbeddedId
+  private WalletTurnoverId id;
+
+  /**
+   * The sum of all amounts credited to the wallet on the day.
+   */
+  private BigDecimal creditAmount;
+
+  /**
+   * The sum of all amounts debited from the wallet on the day.
+   */
+  private BigDecimal debitAmount;
+
+  /**
+   * The number of transactions which credited the wallet on the day.
+   */
+  private long creditCount;
+
+  /**
+   * The number of transactions which debited the wallet on the day.
+   */
+  private long debitCount;
+}
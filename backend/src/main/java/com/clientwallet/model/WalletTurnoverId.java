@@ -0,0 +1,44 @@
+package com.clientwallet.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * WalletTurnoverId is the composite primary key of a {@link WalletTurnover}.
+ * <p>
+ * A rollup is identified by the wallet, the day the transactions were created on and their currency.
+ * </p>
+ */
+@Data
+@Embeddable
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletTurnoverId implements Serializable {
+
+  /**
+   * The unique identifier of the wallet the rollup belongs to.
+   */
+  @Column(name = "wallet_id")
+  private UUID walletId;
+
+  /**
+   * The day the rolled up transactions were created on.
+   */
+  @Column(name = "turnover_day")
+  private LocalDate day;
+
+  /**
+   * The currency of the rolled up transactions.
+   */
+  @Enumerated(EnumType.STRING)
+  private Currency currency;
+}
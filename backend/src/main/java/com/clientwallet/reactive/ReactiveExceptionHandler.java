@@ -0,0 +1,34 @@
+package com.clientwallet.reactive;
+
+import com.clientwallet.exception.GlobalExceptionHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ReactiveExceptionHandler maps the exceptions of the R2DBC stack to the responses the {@link GlobalExceptionHandler}
+ * returns for their JDBC counterparts. All other exceptions are handled by the {@link GlobalExceptionHandler}.
+ */
+@RestControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveExceptionHandler {
+
+    /**
+     * Handles exceptions when no connection of the R2DBC pool is available within its maximum acquire time.
+     *
+     * @param ex the exception thrown when a connection could not be obtained
+     * @return ResponseEntity with an error message and HTTP status SERVICE_UNAVAILABLE
+     */
+    @ExceptionHandler(DataAccessResourceFailureException.class)
+    public ResponseEntity<Map<String, String>> handleDatabaseUnavailable(DataAccessResourceFailureException ex) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Too many concurrent requests, try again later.");
+        return new ResponseEntity<>(errorResponse, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
@@ -0,0 +1,41 @@
+package com.clientwallet.reactive;
+
+import com.clientwallet.exception.GlobalExceptionHandler;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Entry point of the reactive variant of the wallet read endpoints, built on WebFlux and R2DBC.
+ * <p>
+ * It serves {@code GET /wallet/get} and {@code GET /wallet/getHistory} with the same responses, entity tags, cursors
+ * and error mapping as the {@link com.clientwallet.ClientWalletApplication servlet application}, reading the same
+ * database schema. Requests run on the few event loop threads of Netty and wait for a connection of the R2DBC pool
+ * without holding a thread, so one process can keep tens of thousands of these requests open. All other endpoints,
+ * including every write, are only served by the servlet application.
+ * </p>
+ * <p>
+ * It is started with the {@code reactive} profile, whose {@code application-reactive.properties} selects the
+ * reactive web server and the R2DBC connection. No JDBC data source or JPA is configured. The reactive beans are
+ * only created in a reactive web application, so the component scan of the servlet application skips them.
+ * </p>
+ */
+@SpringBootApplication(exclude = {DataSourceAutoConfiguration.class, DataSourceTransactionManagerAutoConfiguration.class,
+    HibernateJpaAutoConfiguration.class})
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Import(GlobalExceptionHandler.class)
+public class ReactiveWalletApplication {
+
+  /**
+   * Starts the reactive application with the {@code reactive} profile.
+   *
+   * @param args Command-line arguments.
+   */
+  public static void main(String[] args) {
+    new SpringApplicationBuilder(ReactiveWalletApplication.class).profiles("reactive").run(args);
+  }
+}
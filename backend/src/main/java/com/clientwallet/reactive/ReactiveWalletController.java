@@ -0,0 +1,108 @@
+package com.clientwallet.reactive;
+
+import com.clientwallet.controller.WalletController;
+import com.clientwallet.dto.transaction.TransactionView;
+import com.clientwallet.exception.wallet.WalletHistoryInvalidCursorException;
+import com.clientwallet.exception.wallet.WalletInvalidIdException;
+import com.clientwallet.model.Wallet;
+import jakarta.validation.constraints.Min;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * ReactiveWalletController serves the wallet read endpoints of the {@link WalletController} on WebFlux.
+ * <p>
+ * The paths, parameters, headers and bodies are the same as those of the {@link WalletController}, so clients can be
+ * pointed at either application. Nothing blocks while a request waits for the database.
+ * </p>
+ */
+@CrossOrigin(origins = "${cors.allowedOrigins}", exposedHeaders = {WalletController.NEXT_CURSOR_HEADER, WalletController.PREVIOUS_CURSOR_HEADER})
+@RestController
+@RequestMapping("/wallet")
+@Validated
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWalletController {
+
+  @Autowired
+  private ReactiveWalletService reactiveWalletService;
+
+  /**
+   * Retrieves the details of a wallet by its unique wallet ID, see {@link WalletController#get}.
+   * <p>
+   * The response carries an {@code ETag} made of the version of the wallet. If it matches the {@code If-None-Match}
+   * header, only the status 304 (Not Modified) is returned.
+   * </p>
+   *
+   * @param walletId The unique identifier of the wallet to be fetched.
+   * @param exchange The current exchange, used to evaluate its {@code If-None-Match} header.
+   * @return The wallet details, or an empty {@link Mono} if the wallet was not modified.
+   * @throws WalletInvalidIdException if the wallet with the specified ID does not exist.
+   */
+  @GetMapping("/get")
+  public Mono<ResponseEntity<Wallet>> get(@RequestParam UUID walletId, ServerWebExchange exchange) {
+    return reactiveWalletService.get(walletId)
+        .switchIfEmpty(Mono.error(() -> new WalletInvalidIdException("get.walletId")))
+        .flatMap(wallet -> {
+          String etag = String.valueOf(wallet.getVersion());
+          if (exchange.checkNotModified(etag)) {
+            return Mono.empty();
+          }
+          return Mono.just(ResponseEntity.ok().eTag(etag).body(wallet));
+        });
+  }
+
+  /**
+   * Retrieves one page of the transaction history of a wallet, see {@link WalletController#getWalletHistory}.
+   * <p>
+   * The cursors of the adjacent pages are returned in the {@code X-Next-Cursor} and {@code X-Previous-Cursor}
+   * headers. If the {@code ETag} of the history matches the {@code If-None-Match} header, only the status
+   * 304 (Not Modified) is returned without reading the page.
+   * </p>
+   *
+   * @param walletId The unique identifier of the wallet whose transaction history is to be fetched.
+   * @param after    The {@code X-Next-Cursor} of the previous page, to fetch older transactions.
+   * @param before   The {@code X-Previous-Cursor} of the following page, to fetch newer transactions.
+   * @param limit    The maximum number of transactions, the configured page size is used if it is not set.
+   * @param exchange The current exchange, used to evaluate its {@code If-None-Match} header.
+   * @return The transactions of the page, or an empty {@link Mono} if the history was not modified.
+   * @throws WalletInvalidIdException if the wallet with the specified ID does not exist.
+   * @throws WalletHistoryInvalidCursorException if a cursor is invalid or both cursors are passed.
+   */
+  @GetMapping("/getHistory")
+  public Mono<ResponseEntity<List<TransactionView>>> getWalletHistory(@RequestParam UUID walletId,
+                                                                      @RequestParam(required = false) String after,
+                                                                      @RequestParam(required = false) String before,
+                                                                      @Min(1) @RequestParam(required = false) Integer limit,
+                                                                      ServerWebExchange exchange) {
+    // Read before the page, so the tag never describes a newer state than the returned transactions
+    return reactiveWalletService.getHistoryETag(walletId)
+        .switchIfEmpty(Mono.error(() -> new WalletInvalidIdException("getWalletHistory.walletId")))
+        .flatMap(etag -> {
+          if (exchange.checkNotModified(etag)) {
+            return Mono.empty();
+          }
+          return reactiveWalletService.getTransactionHistory(walletId, after, before, limit).map(page -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag);
+            if (page.getNextCursor() != null) {
+              response.header(WalletController.NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            if (page.getPreviousCursor() != null) {
+              response.header(WalletController.PREVIOUS_CURSOR_HEADER, page.getPreviousCursor());
+            }
+            return response.body(page.getTransactions());
+          });
+        });
+  }
+}
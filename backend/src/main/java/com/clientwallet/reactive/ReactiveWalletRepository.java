@@ -0,0 +1,168 @@
+package com.clientwallet.reactive;
+
+import com.clientwallet.dto.transaction.TransactionView;
+import com.clientwallet.dto.wallet.WalletReference;
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.TransactionStatus;
+import com.clientwallet.model.TransactionType;
+import com.clientwallet.model.Wallet;
+import com.clientwallet.repository.TransactionRepository;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * ReactiveWalletRepository reads wallets and their histories through R2DBC.
+ * <p>
+ * The history statements are the native queries of the {@link TransactionRepository}, so both stacks read the
+ * same index ranges and return the same rows. Rows are mapped directly to the {@link Wallet} model and to
+ * {@link TransactionView} objects, nothing is attached to a persistence context.
+ * </p>
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWalletRepository {
+
+  /**
+   * Selects a wallet with its total balance, the balance of its row plus the balances of its stripes, by a single
+   * statement, so the balance and the version are read from the same state of the wallet.
+   */
+  private static final String WALLET = "SELECT w.id, w.name, CAST(w.currency AS VARCHAR) AS currency, " +
+      "w.balance + COALESCE((SELECT SUM(s.balance) FROM wallet_stripe s WHERE s.wallet_id = w.id), 0) AS balance, " +
+      "w.stripe_count, w.version, w.created_at, w.updated_at FROM wallet w WHERE w.id = :walletId";
+
+  @Autowired
+  private DatabaseClient databaseClient;
+
+  /**
+   * Finds a wallet with its total balance.
+   *
+   * @param walletId The ID of the wallet.
+   * @return The wallet, or an empty {@link Mono} if it does not exist.
+   */
+  public Mono<Wallet> findWithTotalBalance(UUID walletId) {
+    return databaseClient.sql(WALLET)
+        .bind("walletId", walletId)
+        .map(ReactiveWalletRepository::wallet)
+        .one();
+  }
+
+  /**
+   * Finds the version of a wallet without reading the rest of the wallet.
+   *
+   * @param walletId The ID of the wallet.
+   * @return The version, or an empty {@link Mono} if the wallet does not exist.
+   */
+  public Mono<Long> findVersion(UUID walletId) {
+    return databaseClient.sql("SELECT version FROM wallet WHERE id = :walletId")
+        .bind("walletId", walletId)
+        .map(row -> row.get("version", Long.class))
+        .one();
+  }
+
+  /**
+   * Finds the ID of the newest transaction of a wallet, see {@link TransactionRepository#findLatestId}.
+   *
+   * @param walletId The ID of the wallet.
+   * @return The ID, or an empty {@link Mono} if the wallet has no transactions.
+   */
+  public Mono<UUID> findLatestTransactionId(UUID walletId) {
+    return databaseClient.sql(TransactionRepository.LATEST_ID)
+        .bind("walletId", walletId)
+        .map(row -> UUID.fromString(row.get(0, String.class)))
+        .one();
+  }
+
+  /**
+   * Finds the newest transactions of a wallet, see {@link TransactionRepository#findHistory}.
+   *
+   * @param walletId The ID of the wallet.
+   * @param limit    The maximum number of transactions.
+   * @return The transactions ordered from the newest to the oldest.
+   */
+  public Flux<TransactionView> findHistory(UUID walletId, int limit) {
+    return databaseClient.sql(TransactionRepository.HISTORY)
+        .bind("walletId", walletId)
+        .bind("limit", limit)
+        .map(ReactiveWalletRepository::transaction)
+        .all();
+  }
+
+  /**
+   * Finds the transactions of a wallet older than the given position, see {@link TransactionRepository#findHistoryOlderThan}.
+   *
+   * @param walletId  The ID of the wallet.
+   * @param createdAt The creation time of the last transaction of the previous page.
+   * @param id        The ID of the last transaction of the previous page.
+   * @param limit     The maximum number of transactions.
+   * @return The transactions ordered from the newest to the oldest.
+   */
+  public Flux<TransactionView> findHistoryOlderThan(UUID walletId, LocalDateTime createdAt, UUID id, int limit) {
+    return findHistoryFrom(TransactionRepository.HISTORY_OLDER_THAN, walletId, createdAt, id, limit);
+  }
+
+  /**
+   * Finds the transactions of a wallet newer than the given position, see {@link TransactionRepository#findHistoryNewerThan}.
+   *
+   * @param walletId  The ID of the wallet.
+   * @param createdAt The creation time of the first transaction of the following page.
+   * @param id        The ID of the first transaction of the following page.
+   * @param limit     The maximum number of transactions.
+   * @return The transactions ordered from the oldest to the newest.
+   */
+  public Flux<TransactionView> findHistoryNewerThan(UUID walletId, LocalDateTime createdAt, UUID id, int limit) {
+    return findHistoryFrom(TransactionRepository.HISTORY_NEWER_THAN, walletId, createdAt, id, limit);
+  }
+
+  private Flux<TransactionView> findHistoryFrom(String sql, UUID walletId, LocalDateTime createdAt, UUID id, int limit) {
+    return databaseClient.sql(sql)
+        .bind("walletId", walletId)
+        .bind("createdAt", createdAt)
+        .bind("id", id)
+        .bind("limit", limit)
+        .map(ReactiveWalletRepository::transaction)
+        .all();
+  }
+
+  private static Wallet wallet(Readable row) {
+    Wallet wallet = new Wallet();
+    wallet.setId(row.get("id", UUID.class));
+    wallet.setName(row.get("name", String.class));
+    wallet.setCurrency(Currency.valueOf(row.get("currency", String.class)));
+    wallet.setBalance(row.get("balance", BigDecimal.class));
+    wallet.setStripeCount(row.get("stripe_count", Integer.class));
+    wallet.setVersion(row.get("version", Long.class));
+    wallet.setCreatedAt(row.get("created_at", LocalDateTime.class));
+    wallet.setUpdatedAt(row.get("updated_at", LocalDateTime.class));
+    return wallet;
+  }
+
+  // The columns of TransactionRepository.SUMMARY_COLUMNS, whose IDs and enumerations are selected as text
+  private static TransactionView transaction(Readable row) {
+    TransactionView transaction = new TransactionView();
+    transaction.setId(UUID.fromString(row.get("id", String.class)));
+    transaction.setSenderWallet(reference(row.get("senderWalletId", String.class), row.get("senderWalletName", String.class)));
+    transaction.setReceiverWallet(reference(row.get("receiverWalletId", String.class), row.get("receiverWalletName", String.class)));
+    transaction.setCurrency(Currency.valueOf(row.get("currency", String.class)));
+    transaction.setAccountNumber(row.get("accountNumber", String.class));
+    transaction.setBankCode(row.get("bankCode", String.class));
+    transaction.setAmount(row.get("amount", BigDecimal.class));
+    transaction.setTransactionType(TransactionType.valueOf(row.get("transactionType", String.class)));
+    transaction.setTransactionStatus(TransactionStatus.valueOf(row.get("transactionStatus", String.class)));
+    transaction.setCreatedAt(row.get("createdAt", LocalDateTime.class));
+    transaction.setUpdatedAt(row.get("updatedAt", LocalDateTime.class));
+    return transaction;
+  }
+
+  private static WalletReference reference(String id, String name) {
+    return id != null ? new WalletReference(UUID.fromString(id), name) : null;
+  }
+}
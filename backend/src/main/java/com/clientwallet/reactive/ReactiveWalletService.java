@@ -0,0 +1,136 @@
+package com.clientwallet.reactive;
+
+import com.clientwallet.dto.transaction.TransactionView;
+import com.clientwallet.dto.wallet.WalletHistoryPage;
+import com.clientwallet.exception.wallet.WalletHistoryInvalidCursorException;
+import com.clientwallet.model.Wallet;
+import com.clientwallet.service.WalletHistoryCursor;
+import com.clientwallet.service.WalletService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * ReactiveWalletService is the non-blocking counterpart of the read operations of the {@link WalletService}.
+ * <p>
+ * Wallets, entity tags and history pages are built exactly like those of the {@link WalletService}, with the same
+ * page sizes and cursors, but every wallet is read from the database: the wallet cache and the index of known wallets
+ * are held in the memory of the servlet application, which also changes the wallets.
+ * </p>
+ * <p>
+ * The transactions moved to the archive are not part of the history returned here. The archive segments are local
+ * files of the servlet application, written and replaced while it runs, so pages reaching back to archived
+ * transactions end with the oldest transaction still in the database.
+ * </p>
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWalletService {
+
+  @Autowired
+  private ReactiveWalletRepository reactiveWalletRepository;
+
+  @Value("${wallet.history.page-size:50}")
+  private int historyPageSize;
+
+  @Value("${wallet.history.max-page-size:500}")
+  private int historyMaxPageSize;
+
+  /**
+   * Retrieves a wallet with its total balance.
+   *
+   * @param walletId The ID of the wallet.
+   * @return The wallet, or an empty {@link Mono} if it does not exist.
+   */
+  public Mono<Wallet> get(UUID walletId) {
+    return reactiveWalletRepository.findWithTotalBalance(walletId);
+  }
+
+  /**
+   * Computes the entity tag of the transaction history of a wallet without reading the history,
+   * see {@link WalletService#getHistoryETag(UUID)}.
+   *
+   * @param walletId The ID of the wallet.
+   * @return The entity tag, or an empty {@link Mono} if the wallet does not exist.
+   */
+  public Mono<String> getHistoryETag(UUID walletId) {
+    return reactiveWalletRepository.findVersion(walletId)
+        .flatMap(version -> reactiveWalletRepository.findLatestTransactionId(walletId)
+            .map(UUID::toString)
+            .defaultIfEmpty("none")
+            .map(latestTransactionId -> version + "-" + latestTransactionId));
+  }
+
+  /**
+   * Retrieves one page of the transaction history of a wallet, see
+   * {@link WalletService#getTransactionHistory(UUID, String, String, Integer)}.
+   *
+   * @param walletId The ID of the wallet.
+   * @param after    The next cursor of the previous page, or {@code null}.
+   * @param before   The previous cursor of the following page, or {@code null}.
+   * @param limit    The maximum number of transactions, or {@code null} for the default page size.
+   * @return The page of transactions, or a {@link WalletHistoryInvalidCursorException} if a cursor is invalid
+   *         or both cursors are passed.
+   */
+  public Mono<WalletHistoryPage> getTransactionHistory(UUID walletId, String after, String before, Integer limit) {
+    if (after != null && before != null) {
+      return Mono.error(new WalletHistoryInvalidCursorException(before));
+    }
+    int pageSize = Math.min(limit != null ? limit : historyPageSize, historyMaxPageSize);
+
+    if (before != null) {
+      return Mono.fromSupplier(() -> WalletHistoryCursor.decode(before))
+          .flatMap(cursor -> reactiveWalletRepository
+              .findHistoryNewerThan(walletId, cursor.createdAt(), cursor.id(), pageSize + 1)
+              .collectList())
+          .map(transactions -> newerPage(transactions, pageSize));
+    }
+
+    Mono<List<TransactionView>> transactions = after != null
+        ? Mono.fromSupplier(() -> WalletHistoryCursor.decode(after))
+            .flatMap(cursor -> reactiveWalletRepository
+                .findHistoryOlderThan(walletId, cursor.createdAt(), cursor.id(), pageSize + 1)
+                .collectList())
+        : reactiveWalletRepository.findHistory(walletId, pageSize + 1).collectList();
+    return transactions.map(page -> olderPage(page, pageSize, after != null));
+  }
+
+  /**
+   * Builds the page of the transactions newer than a cursor.
+   *
+   * @param transactions The transactions read, from the oldest to the newest, at most one more than the page size.
+   * @param pageSize     The page size.
+   * @return The page, from the newest to the oldest.
+   */
+  private static WalletHistoryPage newerPage(List<TransactionView> transactions, int pageSize) {
+    boolean hasNewer = transactions.size() > pageSize;
+    List<TransactionView> page = new ArrayList<>(hasNewer ? transactions.subList(0, pageSize) : transactions);
+    Collections.reverse(page);
+    return new WalletHistoryPage(page,
+        page.isEmpty() ? null : WalletHistoryCursor.of(page.get(page.size() - 1)),
+        hasNewer ? WalletHistoryCursor.of(page.get(0)) : null);
+  }
+
+  /**
+   * Builds the page of the newest transactions or of the transactions older than a cursor.
+   *
+   * @param transactions The transactions read, from the newest to the oldest, at most one more than the page size.
+   * @param pageSize     The page size.
+   * @param afterCursor  Whether the transactions follow a cursor, so there is a page of newer transactions.
+   * @return The page, from the newest to the oldest.
+   */
+  private static WalletHistoryPage olderPage(List<TransactionView> transactions, int pageSize, boolean afterCursor) {
+    boolean hasOlder = transactions.size() > pageSize;
+    List<TransactionView> page = hasOlder ? transactions.subList(0, pageSize) : transactions;
+    return new WalletHistoryPage(page,
+        hasOlder ? WalletHistoryCursor.of(page.get(page.size() - 1)) : null,
+        afterCursor && !page.isEmpty() ? WalletHistoryCursor.of(page.get(0)) : null);
+  }
+}
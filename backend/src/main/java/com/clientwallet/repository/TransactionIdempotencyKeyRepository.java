@@ -0,0 +1,15 @@
+package com.clientwallet.repository;
+
+import com.clientwallet.model.TransactionIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * TransactionIdempotencyKeyRepository is a Spring Data JPA repository interface for the idempotency keys reserved
+ * by transactions.
+ * <p>
+ * Keys are only reserved by {@code EntityManager#persist}, which fails on an existing key, while {@code save} would
+ * overwrite it.
+ * </p>
+ */
+public interface TransactionIdempotencyKeyRepository extends JpaRepository<TransactionIdempotencyKey, String> {
+}
@@ -1,9 +1,22 @@
 package com.clientwallet.repository;
 
 import com.clientwallet.model.Transaction;
+import com.clientwallet.model.TransactionStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
@@ -16,15 +29,228 @@ import java.util.UUID;
 public interface TransactionRepository extends JpaRepository<Transaction, UUID> {
 
   /**
-   * Finds a list of transactions by the sender or receiver wallet ID.
+   * The columns of a {@link TransactionSummary} selected from a transaction {@code t} joined with its sender wallet
+   * {@code s} and its receiver wallet {@code r}.
    * <p>
-   * This method returns all transactions where either the sender wallet or the receiver wallet matches the specified
-   * wallet ID. It is useful for querying the transaction history of a specific wallet.
+   * The enumerations are cast to text, because the database stores them as enumeration types. The IDs are cast to text
+   * as well, because H2 returns UUID columns of native queries as byte arrays, which cannot be projected to
+   * {@link UUID}. The projection converts the text back.
    * </p>
+   */
+  String SUMMARY_COLUMNS = "SELECT CAST(t.id AS VARCHAR) AS \"id\", " +
+      "CAST(t.sender_wallet_id AS VARCHAR) AS \"senderWalletId\", s.name AS \"senderWalletName\", " +
+      "CAST(t.receiver_wallet_id AS VARCHAR) AS \"receiverWalletId\", r.name AS \"receiverWalletName\", " +
+      "CAST(t.currency AS VARCHAR) AS \"currency\", t.account_number AS \"accountNumber\", " +
+      "t.bank_code AS \"bankCode\", t.amount AS \"amount\", " +
+      "CAST(t.transaction_type AS VARCHAR) AS \"transactionType\", " +
+      "CAST(t.transaction_status AS VARCHAR) AS \"transactionStatus\", " +
+      "t.created_at AS \"createdAt\", t.updated_at AS \"updatedAt\" ";
+
+  /**
+   * The joins of the sender and the receiver wallet of a transaction {@code t}, used by {@link #SUMMARY_COLUMNS}.
+   */
+  String SUMMARY_WALLETS = "LEFT JOIN wallet s ON s.id = t.sender_wallet_id " +
+      "LEFT JOIN wallet r ON r.id = t.receiver_wallet_id ";
+
+  /**
+   * The query of {@link #findHistory}, also run by the reactive history endpoint.
+   */
+  String HISTORY = SUMMARY_COLUMNS + "FROM (" +
+      "(SELECT * FROM transaction WHERE sender_wallet_id = :walletId " +
+      "ORDER BY created_at DESC, id DESC LIMIT :limit) " +
+      "UNION ALL " +
+      "(SELECT * FROM transaction WHERE receiver_wallet_id = :walletId " +
+      "ORDER BY created_at DESC, id DESC LIMIT :limit)" +
+      ") t " + SUMMARY_WALLETS + "ORDER BY t.created_at DESC, t.id DESC LIMIT :limit";
+
+  /**
+   * The query of {@link #findHistoryOlderThan}, also run by the reactive history endpoint.
+   */
+  String HISTORY_OLDER_THAN = SUMMARY_COLUMNS + "FROM (" +
+      "(SELECT * FROM transaction WHERE sender_wallet_id = :walletId AND created_at <= :createdAt AND (created_at, id) < (:createdAt, :id) " +
+      "ORDER BY created_at DESC, id DESC LIMIT :limit) " +
+      "UNION ALL " +
+      "(SELECT * FROM transaction WHERE receiver_wallet_id = :walletId AND created_at <= :createdAt AND (created_at, id) < (:createdAt, :id) " +
+      "ORDER BY created_at DESC, id DESC LIMIT :limit)" +
+      ") t " + SUMMARY_WALLETS + "ORDER BY t.created_at DESC, t.id DESC LIMIT :limit";
+
+  /**
+   * The query of {@link #findHistoryNewerThan}, also run by the reactive history endpoint.
+   */
+  String HISTORY_NEWER_THAN = SUMMARY_COLUMNS + "FROM (" +
+      "(SELECT * FROM transaction WHERE sender_wallet_id = :walletId AND created_at >= :createdAt AND (created_at, id) > (:createdAt, :id) " +
+      "ORDER BY created_at, id LIMIT :limit) " +
+      "UNION ALL " +
+      "(SELECT * FROM transaction WHERE receiver_wallet_id = :walletId AND created_at >= :createdAt AND (created_at, id) > (:createdAt, :id) " +
+      "ORDER BY created_at, id LIMIT :limit)" +
+      ") t " + SUMMARY_WALLETS + "ORDER BY t.created_at, t.id LIMIT :limit";
+
+  /**
+   * The query of {@link #findLatestId}, also run by the reactive history endpoint.
+   */
+  String LATEST_ID = "SELECT CAST(id AS VARCHAR) FROM (" +
+      "(SELECT id, created_at FROM transaction WHERE sender_wallet_id = :walletId ORDER BY created_at DESC, id DESC LIMIT 1) " +
+      "UNION ALL " +
+      "(SELECT id, created_at FROM transaction WHERE receiver_wallet_id = :walletId ORDER BY created_at DESC, id DESC LIMIT 1)" +
+      ") t ORDER BY created_at DESC, id DESC LIMIT 1";
+
+  /**
+   * Finds a transaction by its ID as a projection with the names of its wallets.
+   * <p>
+   * The transaction is read by a single query and is not attached to the persistence context.
+   * </p>
+   *
+   * @param id The ID of the transaction.
+   * @return The projected transaction, or empty if it does not exist.
+   */
+  @Query(value = SUMMARY_COLUMNS + "FROM transaction t " + SUMMARY_WALLETS + "WHERE t.id = :id", nativeQuery = true)
+  Optional<TransactionSummary> findSummaryById(@Param("id") UUID id);
+
+  /**
+   * Finds the newest transactions of a wallet.
+   * <p>
+   * The sent and the received transactions are selected by two separate index range scans on the composite indexes
+   * ({@code sender_wallet_id}, {@code created_at}, {@code id}) and ({@code receiver_wallet_id}, {@code created_at},
+   * {@code id}), each limited to the page size, and merged by {@code UNION ALL}. This avoids the scan of all
+   * transactions of the wallet caused by an {@code OR} of both columns.
+   * </p>
+   * <p>
+   * Only the transactions of the page are joined with their wallets, and only the names of the wallets are selected.
+   * The rows are returned as projections, so no entity is loaded into the persistence context.
+   * </p>
+   *
+   * @param walletId The ID of the wallet.
+   * @param limit    The maximum number of transactions.
+   * @return The transactions ordered from the newest to the oldest.
+   */
+  @Query(value = HISTORY, nativeQuery = true)
+  List<TransactionSummary> findHistory(@Param("walletId") UUID walletId, @Param("limit") int limit);
+
+  /**
+   * Finds the transactions of a wallet older than the given position, the next page of {@link #findHistory}.
+   * <p>
+   * The row comparison is not used for partition pruning, so the creation time is also bounded on its own,
+   * which skips the monthly partitions newer than the position.
+   * </p>
+   *
+   * @param walletId  The ID of the wallet.
+   * @param createdAt The creation time of the last transaction of the previous page.
+   * @param id        The ID of the last transaction of the previous page.
+   * @param limit     The maximum number of transactions.
+   * @return The transactions ordered from the newest to the oldest.
+   */
+  @Query(value = HISTORY_OLDER_THAN, nativeQuery = true)
+  List<TransactionSummary> findHistoryOlderThan(@Param("walletId") UUID walletId, @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("id") UUID id, @Param("limit") int limit);
+
+  /**
+   * Finds the transactions of a wallet newer than the given position, the previous page of {@link #findHistoryOlderThan}.
+   * <p>
+   * Like in {@link #findHistoryOlderThan}, the separate bound of the creation time skips the older partitions.
+   * </p>
+   *
+   * @param walletId  The ID of the wallet.
+   * @param createdAt The creation time of the first transaction of the following page.
+   * @param id        The ID of the first transaction of the following page.
+   * @param limit     The maximum number of transactions.
+   * @return The transactions ordered from the oldest to the newest.
+   */
+  @Query(value = HISTORY_NEWER_THAN, nativeQuery = true)
+  List<TransactionSummary> findHistoryNewerThan(@Param("walletId") UUID walletId, @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("id") UUID id, @Param("limit") int limit);
+
+  /**
+   * Finds the balance of a wallet after its last applied transaction created at or before the given time.
+   * <p>
+   * Like the history queries, each side of the transactions is searched by a backward index seek on the composite
+   * index ({@code sender_wallet_id}, {@code created_at}, {@code id}) or ({@code receiver_wallet_id}, {@code created_at},
+   * {@code id}), which reads a single row instead of the whole history of the wallet.
+   * </p>
+   *
+   * @param walletId The ID of the wallet.
+   * @param at       The point in time.
+   * @return The balance after the last transaction, or {@code null} if the wallet had no transaction until then.
+   */
+  @Query(value = "SELECT balance FROM (" +
+      "(SELECT sender_balance_after AS balance, created_at, id FROM transaction " +
+      "WHERE sender_wallet_id = :walletId AND created_at <= :at AND sender_balance_after IS NOT NULL " +
+      "ORDER BY created_at DESC, id DESC LIMIT 1) " +
+      "UNION ALL " +
+      "(SELECT receiver_balance_after AS balance, created_at, id FROM transaction " +
+      "WHERE receiver_wallet_id = :walletId AND created_at <= :at AND receiver_balance_after IS NOT NULL " +
+      "ORDER BY created_at DESC, id DESC LIMIT 1)" +
+      ") t ORDER BY created_at DESC, id DESC LIMIT 1", nativeQuery = true)
+  BigDecimal findBalanceAt(@Param("walletId") UUID walletId, @Param("at") LocalDateTime at);
+
+  /**
+   * Finds the ID of the newest transaction of a wallet.
+   * <p>
+   * Each side of the transactions is read by a backward seek on its composite index, which also holds the ID,
+   * so the lookup reads no more than one index entry per side. The ID is selected as text and converted back,
+   * like the IDs of {@link #SUMMARY_COLUMNS}.
+   * </p>
+   *
+   * @param walletId The ID of the wallet.
+   * @return The ID of the newest transaction, or {@code null} if the wallet has no transactions.
+   */
+  @Query(value = LATEST_ID, nativeQuery = true)
+  UUID findLatestId(@Param("walletId") UUID walletId);
+
+  /**
+   * Records the balances of the wallets after a transaction applied asynchronously.
+   *
+   * @param id                   The ID of the transaction.
+   * @param senderBalanceAfter   The balance of the sender wallet after the transaction, or {@code null}.
+   * @param receiverBalanceAfter The balance of the receiver wallet after the transaction, or {@code null}.
+   * @return The number of updated transactions.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE Transaction t SET t.senderBalanceAfter = :senderBalanceAfter, t.receiverBalanceAfter = :receiverBalanceAfter " +
+      "WHERE t.id = :id")
+  int recordBalancesAfter(@Param("id") UUID id, @Param("senderBalanceAfter") BigDecimal senderBalanceAfter,
+                          @Param("receiverBalanceAfter") BigDecimal receiverBalanceAfter);
+
+  /**
+   * Loads the oldest transactions with the given status and locks them until the end of the current transaction.
+   * <p>
+   * Transactions already locked by another worker are skipped instead of waited for,
+   * so concurrent workers never process the same transaction.
+   * </p>
+   *
+   * @param status   The status of the transactions, usually {@link TransactionStatus#PENDING}.
+   * @param pageable The maximum number of transactions to be loaded.
+   * @return The locked transactions ordered by their creation time.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+  @Query("SELECT t FROM Transaction t WHERE t.transactionStatus = :status ORDER BY t.createdAt")
+  List<Transaction> findAllForProcessing(@Param("status") TransactionStatus status, Pageable pageable);
+
+  /**
+   * Loads a transaction if it still has the given status and locks it until the end of the current transaction.
+   * <p>
+   * A transaction already locked by another worker is skipped instead of waited for.
+   * </p>
+   *
+   * @param id     The ID of the transaction.
+   * @param status The expected status of the transaction.
+   * @return The locked transaction, or empty if it has another status or is locked by another worker.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+  @Query("SELECT t FROM Transaction t WHERE t.id = :id AND t.transactionStatus = :status")
+  Optional<Transaction> findForProcessing(@Param("id") UUID id, @Param("status") TransactionStatus status);
+
+  /**
+   * Sets the status of the given transactions in a single statement.
    *
-   * @param senderWalletId The ID of the sender's wallet.
-   * @param receiverWalletId The ID of the receiver's wallet.
-   * @return A list of {@link Transaction} objects where either the sender or receiver wallet matches one of the provided IDs.
+   * @param ids       The IDs of the transactions.
+   * @param status    The new status of the transactions.
+   * @param updatedAt The time of the update.
+   * @return The number of updated transactions.
    */
-  List<Transaction> findBySenderWalletIdOrReceiverWalletId(UUID senderWalletId, UUID receiverWalletId);
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE Transaction t SET t.transactionStatus = :status, t.updatedAt = :updatedAt WHERE t.id IN :ids")
+  int updateStatus(@Param("ids") Collection<UUID> ids, @Param("status") TransactionStatus status,
+                   @Param("updatedAt") LocalDateTime updatedAt);
 }
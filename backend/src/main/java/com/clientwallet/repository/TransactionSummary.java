@@ -0,0 +1,45 @@
+package com.clientwallet.repository;
+
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.TransactionStatus;
+import com.clientwallet.model.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * TransactionSummary is a read-only projection of a transaction row joined with the names of its wallets.
+ * <p>
+ * It is returned by the native history queries of the {@link TransactionRepository}, so reading it neither creates
+ * managed {@link com.clientwallet.model.Transaction} entities nor loads the referenced wallets.
+ * </p>
+ */
+public interface TransactionSummary {
+
+  UUID getId();
+
+  UUID getSenderWalletId();
+
+  String getSenderWalletName();
+
+  UUID getReceiverWalletId();
+
+  String getReceiverWalletName();
+
+  Currency getCurrency();
+
+  String getAccountNumber();
+
+  String getBankCode();
+
+  BigDecimal getAmount();
+
+  TransactionType getTransactionType();
+
+  TransactionStatus getTransactionStatus();
+
+  LocalDateTime getCreatedAt();
+
+  LocalDateTime getUpdatedAt();
+}
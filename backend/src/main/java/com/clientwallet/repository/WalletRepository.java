@@ -1,8 +1,15 @@
 package com.clientwallet.repository;
 
+import com.clientwallet.model.Currency;
 import com.clientwallet.model.Wallet;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.UUID;
 
 /**
@@ -11,8 +18,14 @@ import java.util.UUID;
  * This repository provides methods to perform CRUD operations on wallets, as well as custom queries related to wallets in the database.
  * It extends the {@link JpaRepository} interface, inheriting a set of standard JPA repository methods.
  * </p>
+ * <p>
+ * Balance changes are applied through the conditional update statements {@link #credit}, {@link #debit} and
+ * {@link #transfer}, so concurrent operations on the same wallet are serialized by the database row lock
+ * instead of overwriting each other's balance. These statements also increment the {@link Wallet#getVersion() version}
+ * of the wallet, so stale copies of the wallet cannot be saved afterwards.
+ * </p>
  */
-public interface WalletRepository extends JpaRepository<Wallet, UUID> {
+public interface WalletRepository extends JpaRepository<Wallet, UUID>, WalletSearchRepository {
 
   /**
    * Checks if a wallet with the given name already exists in the database.
@@ -25,4 +38,126 @@ public interface WalletRepository extends JpaRepository<Wallet, UUID> {
    * @return {@code true} if a wallet with the specified name already exists, otherwise {@code false}.
    */
   boolean existsByName(String name);
+
+  /**
+   * Adds the given amount to the balance of a wallet in a single statement.
+   * <p>
+   * The wallet is only updated if its currency matches the requested currency. Striped wallets are never
+   * matched, because their credits go to one of their stripes instead of the wallet row.
+   * </p>
+   *
+   * @param walletId  The ID of the wallet to be credited.
+   * @param currency  The currency of the credited amount.
+   * @param amount    The amount to be added to the balance.
+   * @param updatedAt The new last update timestamp of the wallet.
+   * @return The number of updated wallets, {@code 1} if the wallet was credited, otherwise {@code 0}.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE Wallet w SET w.balance = w.balance + :amount, w.updatedAt = :updatedAt, w.version = w.version + 1 " +
+      "WHERE w.id = :walletId AND w.currency = :currency AND w.stripeCount = 0")
+  int credit(@Param("walletId") UUID walletId, @Param("currency") Currency currency,
+             @Param("amount") BigDecimal amount, @Param("updatedAt") LocalDateTime updatedAt);
+
+  /**
+   * Subtracts the given amount from the balance of a wallet in a single statement.
+   * <p>
+   * The wallet is only updated if its currency matches the requested currency and its balance
+   * covers the whole amount, so the balance can never drop below zero.
+   * </p>
+   *
+   * @param walletId  The ID of the wallet to be debited.
+   * @param currency  The currency of the debited amount.
+   * @param amount    The amount to be subtracted from the balance.
+   * @param updatedAt The new last update timestamp of the wallet.
+   * @return The number of updated wallets, {@code 1} if the wallet was debited, otherwise {@code 0}.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE Wallet w SET w.balance = w.balance - :amount, w.updatedAt = :updatedAt, w.version = w.version + 1 " +
+      "WHERE w.id = :walletId AND w.currency = :currency AND w.balance >= :amount")
+  int debit(@Param("walletId") UUID walletId, @Param("currency") Currency currency,
+            @Param("amount") BigDecimal amount, @Param("updatedAt") LocalDateTime updatedAt);
+
+  /**
+   * Moves the given amount from the sender wallet to the receiver wallet in a single statement.
+   * <p>
+   * Both wallets must have the requested currency and the sender wallet must cover the whole amount.
+   * The receiver wallet can be credited even if the sender wallet is not debited, so the caller has to
+   * treat any result other than {@code 2} as a failure and roll back the surrounding transaction.
+   * If any of the wallets is striped, none of them is updated.
+   * </p>
+   *
+   * @param senderWalletId   The ID of the wallet to be debited.
+   * @param receiverWalletId The ID of the wallet to be credited.
+   * @param currency         The currency of the transferred amount.
+   * @param amount           The amount to be transferred.
+   * @param updatedAt        The new last update timestamp of both wallets.
+   * @return The number of updated wallets, {@code 2} if the transfer was applied to both wallets.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE Wallet w SET w.balance = CASE WHEN w.id = :senderWalletId THEN w.balance - :amount " +
+      "ELSE w.balance + :amount END, w.updatedAt = :updatedAt, w.version = w.version + 1 " +
+      "WHERE w.id IN (:senderWalletId, :receiverWalletId) AND w.currency = :currency " +
+      "AND (w.id = :receiverWalletId OR w.balance >= :amount) " +
+      "AND NOT EXISTS (SELECT s FROM Wallet s WHERE s.id IN (:senderWalletId, :receiverWalletId) AND s.stripeCount > 0)")
+  int transfer(@Param("senderWalletId") UUID senderWalletId, @Param("receiverWalletId") UUID receiverWalletId,
+               @Param("currency") Currency currency, @Param("amount") BigDecimal amount,
+               @Param("updatedAt") LocalDateTime updatedAt);
+
+  /**
+   * Adds the given amount to the balance of a wallet row regardless of its currency and stripes.
+   * <p>
+   * It is used to move the balances of the stripes of a striped wallet back to the wallet row.
+   * </p>
+   *
+   * @param walletId  The ID of the wallet to be credited.
+   * @param amount    The amount to be added to the balance.
+   * @param updatedAt The new last update timestamp of the wallet.
+   * @return The number of updated wallets, {@code 1} if the wallet exists, otherwise {@code 0}.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE Wallet w SET w.balance = w.balance + :amount, w.updatedAt = :updatedAt, w.version = w.version + 1 " +
+      "WHERE w.id = :walletId")
+  int consolidate(@Param("walletId") UUID walletId, @Param("amount") BigDecimal amount,
+                  @Param("updatedAt") LocalDateTime updatedAt);
+
+  /**
+   * Finds the version of a wallet without loading the wallet.
+   *
+   * @param walletId The ID of the wallet.
+   * @return The version of the wallet, or {@code null} if it does not exist.
+   */
+  @Query("SELECT w.version FROM Wallet w WHERE w.id = :walletId")
+  Long findVersion(@Param("walletId") UUID walletId);
+
+  /**
+   * Increments the version of the wallets of the given transactions in a single statement.
+   * <p>
+   * It marks the wallets as changed when the status of their pending transactions is set, which does not always
+   * change the wallet row, so the entity tags of their histories change as well.
+   * </p>
+   *
+   * @param transactionIds The IDs of the transactions.
+   * @param updatedAt      The new last update timestamp of the wallets.
+   * @return The number of updated wallets.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE Wallet w SET w.updatedAt = :updatedAt, w.version = w.version + 1 " +
+      "WHERE w.id IN (SELECT t.senderWallet.id FROM Transaction t WHERE t.id IN :transactionIds) " +
+      "OR w.id IN (SELECT t.receiverWallet.id FROM Transaction t WHERE t.id IN :transactionIds)")
+  int touchByTransactions(@Param("transactionIds") Collection<UUID> transactionIds, @Param("updatedAt") LocalDateTime updatedAt);
+
+  /**
+   * Increments the version of a wallet whose balance was changed through one of its stripes.
+   * <p>
+   * The stripes do not change the wallet row, so without it the version, and with it the entity tag of the wallet,
+   * would not change when the total balance of a striped wallet does.
+   * </p>
+   *
+   * @param walletId  The ID of the wallet.
+   * @param updatedAt The new last update timestamp of the wallet.
+   * @return The number of updated wallets, {@code 0} if the wallet does not exist.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE Wallet w SET w.updatedAt = :updatedAt, w.version = w.version + 1 WHERE w.id = :walletId")
+  int touch(@Param("walletId") UUID walletId, @Param("updatedAt") LocalDateTime updatedAt);
 }
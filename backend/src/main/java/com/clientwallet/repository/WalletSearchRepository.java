@@ -0,0 +1,51 @@
+package com.clientwallet.repository;
+
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.Wallet;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * WalletSearchRepository is a fragment of the {@link WalletRepository} which lists wallets page by page.
+ * <p>
+ * The query is built from the filters which are actually set, so the database can use the index matching
+ * the filters and the sort instead of evaluating conditions on parameters which are not used.
+ * </p>
+ */
+public interface WalletSearchRepository {
+
+  /**
+   * The properties the wallets can be sorted by.
+   */
+  enum Sort {
+
+    /**
+     * Sorts by the unique name of a wallet.
+     */
+    NAME,
+
+    /**
+     * Sorts by the balance of the wallet row, which does not include the stripes of a striped wallet.
+     */
+    BALANCE
+  }
+
+  /**
+   * Finds one page of wallets matching the filters, ordered by the sort property and the ID (keyset pagination).
+   *
+   * @param currency   The currency of the wallets, or {@code null} for all currencies.
+   * @param minBalance The minimum balance of the wallet row, or {@code null}.
+   * @param maxBalance The maximum balance of the wallet row, or {@code null}.
+   * @param sort       The property the wallets are sorted by.
+   * @param descending Whether the wallets are sorted in the descending order.
+   * @param afterValue The sort value of the last wallet of the previous page, a {@link String} for {@link Sort#NAME}
+   *                   and a {@link BigDecimal} for {@link Sort#BALANCE}, or {@code null} for the first page.
+   * @param afterId    The ID of the last wallet of the previous page, or {@code null} for the first page.
+   * @param limit      The maximum number of wallets.
+   * @return The wallets of the page in the requested order.
+   */
+  List<Wallet> findPage(Currency currency, BigDecimal minBalance, BigDecimal maxBalance, Sort sort, boolean descending,
+                        Object afterValue, UUID afterId, int limit);
+}
@@ -0,0 +1,65 @@
+package com.clientwallet.repository;
+
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.Wallet;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * WalletSearchRepositoryImpl is the JPQL implementation of the {@link WalletSearchRepository} fragment.
+ * <p>
+ * The next page is selected by comparing the sort value and the ID with the last wallet of the previous page,
+ * so the cost of a page does not depend on its position in the list. The composite indexes on
+ * ({@code currency}, {@code name}), ({@code currency}, {@code balance}, {@code id}) and ({@code balance}, {@code id})
+ * serve the supported combinations of filters and sorts.
+ * </p>
+ */
+public class WalletSearchRepositoryImpl implements WalletSearchRepository {
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public List<Wallet> findPage(Currency currency, BigDecimal minBalance, BigDecimal maxBalance, Sort sort, boolean descending,
+                               Object afterValue, UUID afterId, int limit) {
+    List<String> conditions = new ArrayList<>();
+    Map<String, Object> parameters = new HashMap<>();
+    if (currency != null) {
+      conditions.add("w.currency = :currency");
+      parameters.put("currency", currency);
+    }
+    if (minBalance != null) {
+      conditions.add("w.balance >= :minBalance");
+      parameters.put("minBalance", minBalance);
+    }
+    if (maxBalance != null) {
+      conditions.add("w.balance <= :maxBalance");
+      parameters.put("maxBalance", maxBalance);
+    }
+
+    String property = sort == Sort.BALANCE ? "w.balance" : "w.name";
+    String comparison = descending ? "<" : ">";
+    String direction = descending ? "DESC" : "ASC";
+    if (afterId != null) {
+      conditions.add("(" + property + " " + comparison + " :afterValue OR (" + property + " = :afterValue AND w.id "
+          + comparison + " :afterId))");
+      parameters.put("afterValue", afterValue);
+      parameters.put("afterId", afterId);
+    }
+
+    String jpql = "SELECT w FROM Wallet w"
+        + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+        + " ORDER BY " + property + " " + direction + ", w.id " + direction;
+    TypedQuery<Wallet> query = entityManager.createQuery(jpql, Wallet.class).setMaxResults(limit);
+    parameters.forEach(query::setParameter);
+    return query.getResultList();
+  }
+}
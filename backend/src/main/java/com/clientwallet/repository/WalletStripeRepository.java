@@ -0,0 +1,106 @@
+package com.clientwallet.repository;
+
+import com.clientwallet.model.WalletStripe;
+import com.clientwallet.model.WalletStripeId;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * WalletStripeRepository is a Spring Data JPA repository interface for managing {@link WalletStripe} entities.
+ * <p>
+ * Like the balance of a wallet, the balance of a stripe is only changed by conditional update statements,
+ * so concurrent operations on the same stripe cannot lose updates.
+ * </p>
+ */
+public interface WalletStripeRepository extends JpaRepository<WalletStripe, WalletStripeId> {
+
+  /**
+   * Adds the given amount to the balance of a stripe in a single statement.
+   *
+   * @param walletId The ID of the wallet the stripe belongs to.
+   * @param stripe   The number of the stripe to be credited.
+   * @param amount   The amount to be added to the balance.
+   * @return The number of updated stripes, {@code 0} if the stripe does not exist.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE WalletStripe s SET s.balance = s.balance + :amount WHERE s.id.walletId = :walletId AND s.id.stripe = :stripe")
+  int credit(@Param("walletId") UUID walletId, @Param("stripe") int stripe, @Param("amount") BigDecimal amount);
+
+  /**
+   * Subtracts the given amount from the balance of a stripe in a single statement, if the stripe covers the whole amount.
+   *
+   * @param walletId The ID of the wallet the stripe belongs to.
+   * @param stripe   The number of the stripe to be debited.
+   * @param amount   The amount to be subtracted from the balance.
+   * @return The number of updated stripes, {@code 1} if the stripe was debited, otherwise {@code 0}.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE WalletStripe s SET s.balance = s.balance - :amount " +
+      "WHERE s.id.walletId = :walletId AND s.id.stripe = :stripe AND s.balance >= :amount")
+  int debit(@Param("walletId") UUID walletId, @Param("stripe") int stripe, @Param("amount") BigDecimal amount);
+
+  /**
+   * Sums the balances of all stripes of a wallet.
+   *
+   * @param walletId The ID of the wallet.
+   * @return The sum of the stripe balances, zero if the wallet has no stripes.
+   */
+  @Query("SELECT COALESCE(SUM(s.balance), 0) FROM WalletStripe s WHERE s.id.walletId = :walletId")
+  BigDecimal sumBalance(@Param("walletId") UUID walletId);
+
+  /**
+   * Sums the balances of the stripes of the given wallets.
+   *
+   * @param walletIds The IDs of the striped wallets.
+   * @return Pairs of a wallet ID and the sum of its stripe balances.
+   */
+  @Query("SELECT s.id.walletId, SUM(s.balance) FROM WalletStripe s WHERE s.id.walletId IN :walletIds GROUP BY s.id.walletId")
+  List<Object[]> sumBalances(@Param("walletIds") Collection<UUID> walletIds);
+
+  /**
+   * Loads all stripes of a wallet and locks them until the end of the current transaction.
+   * <p>
+   * The lock blocks concurrent credits and debits of the stripes, so their balances can be moved
+   * to the wallet row without losing any concurrent change.
+   * </p>
+   *
+   * @param walletId The ID of the wallet.
+   * @return The locked stripes ordered by their number.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT s FROM WalletStripe s WHERE s.id.walletId = :walletId ORDER BY s.id.stripe")
+  List<WalletStripe> findAllForUpdate(@Param("walletId") UUID walletId);
+
+  /**
+   * Sets the balance of all stripes of a wallet to zero.
+   * <p>
+   * It has to be called after the stripes were locked by {@link #findAllForUpdate(UUID)}
+   * and their balances were moved to the wallet row.
+   * </p>
+   *
+   * @param walletId The ID of the wallet.
+   * @return The number of updated stripes.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE WalletStripe s SET s.balance = 0 WHERE s.id.walletId = :walletId")
+  int resetBalances(@Param("walletId") UUID walletId);
+
+  /**
+   * Deletes all stripes of a wallet.
+   *
+   * @param walletId The ID of the wallet.
+   * @return The number of deleted stripes.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("DELETE FROM WalletStripe s WHERE s.id.walletId = :walletId")
+  int deleteAllOfWallet(@Param("walletId") UUID walletId);
+}
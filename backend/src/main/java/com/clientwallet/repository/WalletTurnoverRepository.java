@@ -0,0 +1,66 @@
+package com.clientwallet.repository;
+
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.WalletTurnover;
+import com.clientwallet.model.WalletTurnoverId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * WalletTurnoverRepository is a Spring Data JPA repository interface for managing {@link WalletTurnover} entities.
+ * <p>
+ * Like balances, the rollups are only incremented by update statements, so concurrent aggregators cannot lose updates.
+ * </p>
+ */
+public interface WalletTurnoverRepository extends JpaRepository<WalletTurnover, WalletTurnoverId> {
+
+  /**
+   * Adds credits and debits to an existing rollup in a single statement.
+   *
+   * @param walletId     The ID of the wallet.
+   * @param day          The day of the rollup.
+   * @param currency     The currency of the rollup.
+   * @param creditAmount The amount credited to the wallet.
+   * @param debitAmount  The amount debited from the wallet.
+   * @param creditCount  The number of credits.
+   * @param debitCount   The number of debits.
+   * @return The number of updated rollups, {@code 0} if the rollup does not exist yet.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE WalletTurnover t SET t.creditAmount = t.creditAmount + :creditAmount, " +
+      "t.debitAmount = t.debitAmount + :debitAmount, t.creditCount = t.creditCount + :creditCount, " +
+      "t.debitCount = t.debitCount + :debitCount " +
+      "WHERE t.id.walletId = :walletId AND t.id.day = :day AND t.id.currency = :currency")
+  int add(@Param("walletId") UUID walletId, @Param("day") LocalDate day, @Param("currency") Currency currency,
+          @Param("creditAmount") BigDecimal creditAmount, @Param("debitAmount") BigDecimal debitAmount,
+          @Param("creditCount") long creditCount, @Param("debitCount") long debitCount);
+
+  /**
+   * Finds the rollups of a wallet for a range of days.
+   *
+   * @param walletId The ID of the wallet.
+   * @param from     The first day, inclusive.
+   * @param to       The last day, inclusive.
+   * @return The rollups ordered by their day.
+   */
+  @Query("SELECT t FROM WalletTurnover t WHERE t.id.walletId = :walletId AND t.id.day BETWEEN :from AND :to " +
+      "ORDER BY t.id.day, t.id.currency")
+  List<WalletTurnover> findByWallet(@Param("walletId") UUID walletId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+  /**
+   * Deletes the rollups of all wallets for a single day.
+   *
+   * @param day The day.
+   * @return The number of deleted rollups.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("DELETE FROM WalletTurnover t WHERE t.id.day = :day")
+  int deleteDay(@Param("day") LocalDate day);
+}
@@ -0,0 +1,497 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.wallet.WalletReconciliationMismatch;
+import com.clientwallet.dto.wallet.WalletReconciliationReport;
+import com.clientwallet.model.ReconciliationRun;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BalanceReconciler proves that the stored balance of every wallet equals its carried balance plus the amounts of its
+ * completed transactions it received minus the amounts it sent.
+ * <p>
+ * Every day at {@code wallet.reconciliation.start-time}, a run checks the wallets with journal entries appended since
+ * the previous run, found by a single scan of the journal between both positions. All wallets are checked by the first
+ * run and whenever the last full scan is older than {@code wallet.reconciliation.full-scan-interval-days}, which also
+ * finds balances changed outside of the wallet operations.
+ * </p>
+ * <p>
+ * The wallets are split into {@code wallet.reconciliation.ranges} {@link WalletKeyRange ranges of IDs}, processed in
+ * parallel by {@code wallet.reconciliation.threads} threads in chunks of {@code wallet.reconciliation.chunk-size}
+ * wallets. A chunk reads the stored balances and sums up the transactions of its wallets by their indexes in one
+ * repeatable read transaction, which sees both at the same commit because they are always written together, without
+ * locking anything. It runs on the primary database, a replica may not have applied the journal up to the run yet.
+ * The mismatches of a range are written together with its checkpoint. An interrupted run is resumed with its remaining
+ * ranges once its heartbeat is older than {@code wallet.reconciliation.lease-minutes}, by the next run or after a
+ * restart.
+ * </p>
+ * <p>
+ * The latest run is returned by {@link #getReport(Integer)}, the mismatches of the latest finished run and its finish
+ * time are published as the gauges {@code wallet.reconciliation.mismatches} and
+ * {@code wallet.reconciliation.last.finished}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class BalanceReconciler {
+
+  private static final String BALANCE_QUERY = "SELECT w.id, w.balance + " +
+      "COALESCE((SELECT SUM(s.balance) FROM wallet_stripe s WHERE s.wallet_id = w.id), 0) AS stored_balance, " +
+      "COALESCE((SELECT c.balance FROM wallet_carried_balance c WHERE c.wallet_id = w.id), 0) + " +
+      "COALESCE((SELECT SUM(t.amount) FROM transaction t WHERE t.receiver_wallet_id = w.id " +
+      "AND t.transaction_status = 'COMPLETED'), 0) - " +
+      "COALESCE((SELECT SUM(t.amount) FROM transaction t WHERE t.sender_wallet_id = w.id " +
+      "AND t.transaction_status = 'COMPLETED'), 0) AS expected_balance FROM wallet w WHERE ";
+
+  private static final String TOUCHED_QUERY = "SELECT DISTINCT wallet_id FROM journal_entry " +
+      "WHERE id > ? AND id <= ? AND wallet_id IS NOT NULL";
+
+  private static final String INSERT_RUN = "INSERT INTO reconciliation_run (full_scan, from_position, to_position, " +
+      "range_count, checked_count, mismatch_count, started_at, heartbeat_at) VALUES (?, ?, ?, ?, 0, 0, ?, ?)";
+
+  private static final String INSERT_MISMATCH = "INSERT INTO reconciliation_mismatch (run_id, wallet_id, " +
+      "stored_balance, expected_balance, detected_at) VALUES (?, ?, ?, ?, ?)";
+
+  private static final String INSERT_CHECKPOINT = "INSERT INTO reconciliation_checkpoint (run_id, range_index, " +
+      "checked_count, mismatch_count, completed_at) VALUES (?, ?, ?, ?, ?)";
+
+  private static final String FINISH_RUN = "UPDATE reconciliation_run SET finished_at = ?, " +
+      "checked_count = (SELECT COALESCE(SUM(checked_count), 0) FROM reconciliation_checkpoint WHERE run_id = ?), " +
+      "mismatch_count = (SELECT COUNT(*) FROM reconciliation_mismatch WHERE run_id = ?) " +
+      "WHERE id = ? AND finished_at IS NULL";
+
+  private static final RowMapper<ReconciliationRun> RUN_MAPPER = new BeanPropertyRowMapper<>(ReconciliationRun.class);
+
+  private static final RowMapper<Balance> BALANCE_MAPPER = (rs, rowNum) -> new Balance(
+      rs.getObject("id", UUID.class), rs.getBigDecimal("stored_balance"), rs.getBigDecimal("expected_balance"));
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private LedgerJournal ledgerJournal;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${wallet.reconciliation.enabled:true}")
+  private boolean enabled;
+
+  @Value("${wallet.reconciliation.start-time:02:00}")
+  private String startTime;
+
+  @Value("${wallet.reconciliation.full-scan-interval-days:7}")
+  private int fullScanIntervalDays;
+
+  @Value("${wallet.reconciliation.threads:4}")
+  private int threads;
+
+  @Value("${wallet.reconciliation.ranges:256}")
+  private int rangeCount;
+
+  @Value("${wallet.reconciliation.chunk-size:500}")
+  private int chunkSize;
+
+  @Value("${wallet.reconciliation.lease-minutes:10}")
+  private long leaseMinutes;
+
+  @Value("${wallet.reconciliation.retention-days:30}")
+  private int retentionDays;
+
+  @Value("${wallet.reconciliation.max-reported-mismatches:1000}")
+  private int maxReportedMismatches;
+
+  private TransactionTemplate writeTemplate;
+
+  private TransactionTemplate readTemplate;
+
+  private ScheduledExecutorService scheduler;
+
+  private final AtomicLong lastMismatches = new AtomicLong();
+
+  private final AtomicLong lastFinished = new AtomicLong();
+
+  private Counter checked;
+
+  private Timer duration;
+
+  private volatile Boolean postgres;
+
+  /**
+   * Creates the templates of the reconciliation transactions and registers the metrics.
+   */
+  @PostConstruct
+  public void init() {
+    writeTemplate = new TransactionTemplate(transactionManager);
+    readTemplate = new TransactionTemplate(transactionManager);
+    readTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    meterRegistry.gauge("wallet.reconciliation.mismatches", lastMismatches);
+    meterRegistry.gauge("wallet.reconciliation.last.finished", lastFinished);
+    checked = meterRegistry.counter("wallet.reconciliation.wallets.checked");
+    duration = meterRegistry.timer("wallet.reconciliation.duration");
+  }
+
+  /**
+   * Publishes the latest finished run and schedules the daily runs, if they are enabled.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    jdbcTemplate.query("SELECT * FROM reconciliation_run WHERE finished_at IS NOT NULL ORDER BY id DESC LIMIT 1",
+        RUN_MAPPER).forEach(this::publish);
+    if (!enabled) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "balance-reconciliation");
+      thread.setDaemon(true);
+      return thread;
+    });
+    LocalDateTime now = LocalDateTime.now();
+    LocalDateTime next = now.toLocalDate().atTime(LocalTime.parse(startTime));
+    if (!next.isAfter(now)) {
+      next = next.plusDays(1);
+    }
+    scheduler.scheduleAtFixedRate(() -> {
+      try {
+        reconcile(false);
+      } catch (RuntimeException e) {
+        log.warn("Reconciliation of the balances failed.", e);
+      }
+    }, Duration.between(now, next).toSeconds(), TimeUnit.DAYS.toSeconds(1), TimeUnit.SECONDS);
+    // A run interrupted by the restart of this instance is resumed once its lease has expired
+    scheduler.schedule(() -> {
+      try {
+        execute(claim(false, false));
+      } catch (RuntimeException e) {
+        log.warn("Resuming the reconciliation of the balances failed.", e);
+      }
+    }, leaseMinutes, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Stops the daily runs.
+   */
+  @PreDestroy
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Resumes the interrupted run, or starts a new one checking the wallets changed since the previous run.
+   *
+   * @param full Whether the new run checks all wallets, a full scan is also made when it is due.
+   * @return The report of the finished run, or {@code null} if a run is in progress on another instance.
+   */
+  public WalletReconciliationReport reconcile(boolean full) {
+    return execute(claim(full, true));
+  }
+
+  /**
+   * Returns the latest run, which may still be in progress.
+   *
+   * @param limit The maximum number of reported mismatches, capped by {@code wallet.reconciliation.max-reported-mismatches}.
+   * @return The report of the run, or {@code null} if there was no run yet.
+   */
+  public WalletReconciliationReport getReport(Integer limit) {
+    List<ReconciliationRun> runs = jdbcTemplate.query("SELECT * FROM reconciliation_run ORDER BY id DESC LIMIT 1",
+        RUN_MAPPER);
+    int mismatchLimit = limit != null ? Math.min(limit, maxReportedMismatches) : maxReportedMismatches;
+    return runs.isEmpty() ? null : report(runs.get(0), mismatchLimit);
+  }
+
+  /**
+   * Takes over the interrupted run, or starts a new one.
+   *
+   * @param full   Whether a new run checks all wallets.
+   * @param create Whether a new run is started if there is no interrupted one.
+   * @return The run, or {@code null} if a run is in progress on another instance or there was nothing to resume.
+   */
+  private ReconciliationRun claim(boolean full, boolean create) {
+    // Read before the claiming transaction, the share lock on the journal is held until the end of a transaction
+    long end = create ? ledgerJournal.getEndPosition() : 0L;
+    return writeTemplate.execute(status -> {
+      if (isPostgres()) {
+        // Runs are claimed by one instance at a time
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(hashtext('reconciliation_run'))");
+      }
+      LocalDateTime now = LocalDateTime.now();
+      List<ReconciliationRun> running = jdbcTemplate.query(
+          "SELECT * FROM reconciliation_run WHERE finished_at IS NULL ORDER BY id DESC LIMIT 1", RUN_MAPPER);
+      if (!running.isEmpty()) {
+        ReconciliationRun run = running.get(0);
+        if (run.getHeartbeatAt().isAfter(now.minusMinutes(leaseMinutes))) {
+          log.info("Reconciliation run {} is still in progress.", run.getId());
+          return null;
+        }
+        jdbcTemplate.update("UPDATE reconciliation_run SET heartbeat_at = ? WHERE id = ?", now, run.getId());
+        log.info("Resuming reconciliation run {}.", run.getId());
+        return run;
+      }
+      if (!create) {
+        return null;
+      }
+
+      List<ReconciliationRun> previous = jdbcTemplate.query(
+          "SELECT * FROM reconciliation_run WHERE finished_at IS NOT NULL ORDER BY id DESC LIMIT 1", RUN_MAPPER);
+      LocalDateTime lastFullScan = jdbcTemplate.queryForObject(
+          "SELECT MAX(started_at) FROM reconciliation_run WHERE full_scan = TRUE AND finished_at IS NOT NULL",
+          LocalDateTime.class);
+      boolean fullScanDue = fullScanIntervalDays > 0
+          && (lastFullScan == null || lastFullScan.isBefore(now.minusDays(fullScanIntervalDays)));
+      boolean fullScan = full || previous.isEmpty() || fullScanDue;
+      long from = previous.isEmpty() ? 0L : previous.get(0).getToPosition();
+      jdbcTemplate.update(INSERT_RUN, fullScan, from, end, rangeCount, now, now);
+      ReconciliationRun run = jdbcTemplate.queryForObject(
+          "SELECT * FROM reconciliation_run WHERE finished_at IS NULL ORDER BY id DESC LIMIT 1", RUN_MAPPER);
+      log.info("Started reconciliation run {} of {} up to journal position {}.", run.getId(),
+          fullScan ? "all wallets" : "the wallets changed after journal position " + from, end);
+      return run;
+    });
+  }
+
+  /**
+   * Reconciles the remaining ranges of a run in parallel and finishes it.
+   *
+   * @param run The claimed run, or {@code null}.
+   * @return The report of the finished run, or {@code null} if there was no run.
+   */
+  private WalletReconciliationReport execute(ReconciliationRun run) {
+    if (run == null) {
+      return null;
+    }
+    long started = System.nanoTime();
+    Set<Integer> completed = new HashSet<>(jdbcTemplate.queryForList(
+        "SELECT range_index FROM reconciliation_checkpoint WHERE run_id = ?", Integer.class, run.getId()));
+    Map<Integer, List<UUID>> touched = run.isFullScan() ? null : touched(run);
+    List<WalletKeyRange> ranges = WalletKeyRange.split(run.getRangeCount());
+
+    AtomicInteger threadNumber = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "balance-reconciliation-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    long checkedCount = 0;
+    try {
+      List<CompletableFuture<Long>> futures = new ArrayList<>();
+      for (int i = 0; i < ranges.size(); i++) {
+        int index = i;
+        List<UUID> walletIds = touched != null ? touched.get(index) : null;
+        // Ranges without changed wallets have nothing to check, a resumed run finds them empty again
+        if (completed.contains(index) || (touched != null && walletIds == null)) {
+          continue;
+        }
+        futures.add(CompletableFuture.supplyAsync(
+            () -> reconcileRange(run, index, ranges.get(index), walletIds), pool));
+      }
+      for (CompletableFuture<Long> future : futures) {
+        checkedCount += join(future);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+
+    LocalDateTime now = LocalDateTime.now();
+    writeTemplate.executeWithoutResult(status -> {
+      jdbcTemplate.update(FINISH_RUN, now, run.getId(), run.getId(), run.getId());
+      // Runs are kept for the retention period, the latest one always
+      LocalDateTime cutoff = now.minusDays(retentionDays);
+      String expired = "SELECT id FROM reconciliation_run WHERE finished_at < ? AND id <> ?";
+      jdbcTemplate.update("DELETE FROM reconciliation_mismatch WHERE run_id IN (" + expired + ")", cutoff, run.getId());
+      jdbcTemplate.update("DELETE FROM reconciliation_checkpoint WHERE run_id IN (" + expired + ")", cutoff, run.getId());
+      jdbcTemplate.update("DELETE FROM reconciliation_run WHERE finished_at < ? AND id <> ?", cutoff, run.getId());
+    });
+    ReconciliationRun finished = jdbcTemplate.queryForObject("SELECT * FROM reconciliation_run WHERE id = ?",
+        RUN_MAPPER, run.getId());
+    publish(finished);
+
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+    duration.record(elapsed);
+    log.info("Finished reconciliation run {}, checked {} wallets in {} ms ({} wallets/s), {} in total with {} mismatches.",
+        run.getId(), checkedCount, elapsed.toMillis(),
+        elapsed.toMillis() > 0 ? checkedCount * 1000 / elapsed.toMillis() : checkedCount,
+        finished.getCheckedCount(), finished.getMismatchCount());
+    return report(finished, maxReportedMismatches);
+  }
+
+  /**
+   * Reads the wallets with journal entries between the positions of a run, by the index of their range.
+   *
+   * @param run The run.
+   * @return The IDs of the wallets by the index of their range.
+   */
+  private Map<Integer, List<UUID>> touched(ReconciliationRun run) {
+    Map<Integer, List<UUID>> touched = new HashMap<>();
+    jdbcTemplate.query(TOUCHED_QUERY, rs -> {
+      UUID walletId = rs.getObject("wallet_id", UUID.class);
+      touched.computeIfAbsent(WalletKeyRange.indexOf(walletId, run.getRangeCount()), index -> new ArrayList<>())
+          .add(walletId);
+    }, run.getFromPosition(), run.getToPosition());
+    return touched;
+  }
+
+  /**
+   * Reconciles a range of wallets chunk by chunk and writes its mismatches together with its checkpoint.
+   *
+   * @param run       The run.
+   * @param index     The index of the range.
+   * @param range     The range of wallet IDs.
+   * @param walletIds The wallets of the range to check, or {@code null} for all wallets of the range.
+   * @return The number of checked wallets.
+   */
+  private long reconcileRange(ReconciliationRun run, int index, WalletKeyRange range, List<UUID> walletIds) {
+    List<Balance> mismatches = new ArrayList<>();
+    long checkedCount = 0;
+    if (walletIds != null) {
+      for (int start = 0; start < walletIds.size(); start += chunkSize) {
+        List<UUID> chunk = walletIds.subList(start, Math.min(start + chunkSize, walletIds.size()));
+        String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+        List<Balance> balances = readTemplate.execute(status -> jdbcTemplate.query(
+            BALANCE_QUERY + "w.id IN (" + placeholders + ")", BALANCE_MAPPER, chunk.toArray()));
+        checkedCount += collect(balances, mismatches);
+      }
+    } else {
+      List<Balance> balances;
+      UUID after = null;
+      do {
+        List<Object> preceding = new ArrayList<>(1);
+        if (after != null) {
+          preceding.add(after);
+        }
+        List<Object> arguments = new ArrayList<>(Arrays.asList(range.arguments(preceding.toArray())));
+        arguments.add(chunkSize);
+        String condition = (after != null ? "w.id > ? AND " : "") + range.condition("w.id");
+        balances = readTemplate.execute(status -> jdbcTemplate.query(
+            BALANCE_QUERY + condition + " ORDER BY w.id LIMIT ?", BALANCE_MAPPER, arguments.toArray()));
+        checkedCount += collect(balances, mismatches);
+        after = balances.isEmpty() ? null : balances.get(balances.size() - 1).walletId();
+      } while (balances.size() == chunkSize);
+    }
+
+    long rangeChecked = checkedCount;
+    try {
+      writeTemplate.executeWithoutResult(status -> {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(mismatches.size());
+        mismatches.forEach(mismatch -> rows.add(new Object[]{run.getId(), mismatch.walletId(),
+            mismatch.storedBalance(), mismatch.expectedBalance(), now}));
+        jdbcTemplate.batchUpdate(INSERT_MISMATCH, rows);
+        jdbcTemplate.update(INSERT_CHECKPOINT, run.getId(), index, rangeChecked, mismatches.size(), now);
+        jdbcTemplate.update("UPDATE reconciliation_run SET heartbeat_at = ? WHERE id = ?", now, run.getId());
+      });
+    } catch (DuplicateKeyException e) {
+      // Completed by another instance which took over the run meanwhile
+      log.debug("Range {} of reconciliation run {} was already completed.", index, run.getId(), e);
+      return 0L;
+    }
+    checked.increment(rangeChecked);
+    mismatches.forEach(mismatch -> log.warn("Balance of wallet {} is {}, its transactions add up to {}.",
+        mismatch.walletId(), mismatch.storedBalance(), mismatch.expectedBalance()));
+    return rangeChecked;
+  }
+
+  private WalletReconciliationReport report(ReconciliationRun run, int limit) {
+    long[] progress = new long[3];
+    jdbcTemplate.query("SELECT COUNT(*) AS ranges, COALESCE(SUM(checked_count), 0) AS checked, " +
+        "COALESCE(SUM(mismatch_count), 0) AS mismatches FROM reconciliation_checkpoint WHERE run_id = ?", rs -> {
+      progress[0] = rs.getLong("ranges");
+      progress[1] = rs.getLong("checked");
+      progress[2] = rs.getLong("mismatches");
+    }, run.getId());
+    List<WalletReconciliationMismatch> mismatches = jdbcTemplate.query("SELECT wallet_id, stored_balance, " +
+            "expected_balance, detected_at FROM reconciliation_mismatch WHERE run_id = ? ORDER BY wallet_id LIMIT ?",
+        (rs, rowNum) -> new WalletReconciliationMismatch(rs.getObject("wallet_id", UUID.class),
+            rs.getBigDecimal("stored_balance"), rs.getBigDecimal("expected_balance"),
+            rs.getObject("detected_at", LocalDateTime.class)), run.getId(), limit);
+    return new WalletReconciliationReport(run.getId(), run.isFullScan(), run.getRangeCount(), (int) progress[0],
+        progress[1], progress[2], run.getStartedAt(), run.getFinishedAt(), mismatches);
+  }
+
+  private void publish(ReconciliationRun run) {
+    lastMismatches.set(run.getMismatchCount());
+    lastFinished.set(run.getFinishedAt().atZone(ZoneId.systemDefault()).toEpochSecond());
+  }
+
+  private boolean isPostgres() {
+    if (postgres == null) {
+      postgres = "PostgreSQL".equals(jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+          connection.getMetaData().getDatabaseProductName()));
+    }
+    return postgres;
+  }
+
+  private static long collect(List<Balance> balances, List<Balance> mismatches) {
+    for (Balance balance : balances) {
+      if (balance.storedBalance().compareTo(balance.expectedBalance()) != 0) {
+        mismatches.add(balance);
+      }
+    }
+    return balances.size();
+  }
+
+  private static long join(CompletableFuture<Long> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * The stored and the expected balance of a wallet.
+   *
+   * @param walletId        The ID of the wallet.
+   * @param storedBalance   The balance of the wallet row plus the balances of its stripes.
+   * @param expectedBalance The carried balance plus the completed credits minus the completed debits.
+   */
+  private record Balance(UUID walletId, BigDecimal storedBalance, BigDecimal expectedBalance) {
+  }
+}
@@ -0,0 +1,215 @@
+package com.clientwallet.service;
+
+import com.clientwallet.exception.transaction.TransactionIdempotencyKeyArchivedException;
+import com.clientwallet.exception.transaction.TransactionIdempotencyKeyReusedException;
+import com.clientwallet.model.Transaction;
+import com.clientwallet.model.TransactionIdempotencyKey;
+import com.clientwallet.repository.TransactionIdempotencyKeyRepository;
+import com.clientwallet.repository.TransactionRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * IdempotencyCache makes money-moving operations idempotent by the {@code Idempotency-Key} header of the request.
+ * <p>
+ * The first request with a key executes the operation, which reserves the key for the created {@link Transaction}
+ * as a {@link TransactionIdempotencyKey}. Repeated requests with the same key are answered with the original
+ * transaction from a bounded in-process cache without touching the database. The cache keeps at most
+ * {@code wallet.idempotency.cache.max-size} keys and evicts them {@code wallet.idempotency.cache.expire-after-seconds}
+ * after the operation completed. Evicted keys are resolved through their reservation, so an operation is never
+ * executed twice, also after its transaction was archived or deleted. Such a request is rejected by a
+ * {@link TransactionIdempotencyKeyArchivedException} instead, since its result is no longer available.
+ * </p>
+ * <p>
+ * Concurrent requests with the same key wait for the single execution started by the first of them instead of
+ * racing for the reservation. A failed execution is not cached, so the request can be repeated with the same key.
+ * If the key was used by another application instance at the same moment, the reservation rejects the second
+ * transaction and the transaction of the first one is returned.
+ * </p>
+ * <p>
+ * The transaction also stores the {@link #fingerprint(String, String, Object) fingerprint} of the request which
+ * created it. A repeated key with a different fingerprint is rejected by a
+ * {@link TransactionIdempotencyKeyReusedException}, so a client reusing a key by mistake never receives the
+ * transaction of another request as its result.
+ * </p>
+ */
+@Component
+public class IdempotencyCache {
+
+  @Autowired
+  private TransactionRepository transactionRepository;
+
+  @Autowired
+  private TransactionIdempotencyKeyRepository transactionIdempotencyKeyRepository;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Value("${wallet.idempotency.cache.max-size:10000}")
+  private long maxSize;
+
+  @Value("${wallet.idempotency.cache.expire-after-seconds:3600}")
+  private long expireAfterSeconds;
+
+  private AsyncCache<String, Transaction> cache;
+
+  /**
+   * Creates the cache with the configured size and expiration.
+   */
+  @PostConstruct
+  public void init() {
+    cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(Duration.ofSeconds(expireAfterSeconds))
+        .buildAsync();
+  }
+
+  /**
+   * Computes the fingerprint of a request, the SHA-256 hash of its method, path and JSON body.
+   * <p>
+   * The body is serialized from the parsed request, so requests differing only in the formatting of their JSON
+   * have the same fingerprint.
+   * </p>
+   *
+   * @param method The HTTP method of the request.
+   * @param path   The path of the request.
+   * @param body   The parsed body of the request.
+   * @return The hexadecimal fingerprint of 64 characters.
+   */
+  public String fingerprint(String method, String path, Object body) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update((method + " " + path + "\n").getBytes(StandardCharsets.UTF_8));
+      digest.update(objectMapper.writeValueAsBytes(body));
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+      throw new IllegalStateException("Failed to compute the fingerprint of a " + method + " " + path + " request.", e);
+    }
+  }
+
+  /**
+   * Executes the operation once for the given idempotency key.
+   *
+   * @param idempotencyKey     The idempotency key of the request, or {@code null} to always execute the operation.
+   * @param requestFingerprint The fingerprint of the request, stored with the key by the operation.
+   * @param operation          The operation creating a transaction with the idempotency key and the fingerprint.
+   * @return The transaction created by the first execution of the operation with the key.
+   * @throws TransactionIdempotencyKeyReusedException If the key was used by a request with a different fingerprint.
+   * @throws RuntimeException The exception thrown by the operation, also to the requests waiting for it.
+   */
+  public Transaction execute(String idempotencyKey, String requestFingerprint, Supplier<Transaction> operation) {
+    if (idempotencyKey == null) {
+      return operation.get();
+    }
+
+    CompletableFuture<Transaction> execution = new CompletableFuture<>();
+    CompletableFuture<Transaction> existing = cache.asMap().putIfAbsent(idempotencyKey, execution);
+    if (existing != null) {
+      return verify(idempotencyKey, requestFingerprint, await(existing));
+    }
+
+    Transaction transaction;
+    try {
+      transaction = findStored(idempotencyKey, requestFingerprint)
+          .orElseGet(() -> executeOnce(idempotencyKey, requestFingerprint, operation));
+      execution.complete(transaction);
+    } catch (RuntimeException e) {
+      cache.asMap().remove(idempotencyKey, execution);
+      execution.completeExceptionally(e);
+      throw e;
+    }
+    return verify(idempotencyKey, requestFingerprint, transaction);
+  }
+
+  /**
+   * Checks that the transaction of the key was created by the same request.
+   * <p>
+   * Transactions stored without a fingerprint, before it was recorded, are accepted for any request.
+   * </p>
+   *
+   * @param idempotencyKey     The idempotency key of the request.
+   * @param requestFingerprint The fingerprint of the request.
+   * @param transaction        The transaction created with the key.
+   * @return The transaction.
+   * @throws TransactionIdempotencyKeyReusedException If the fingerprints differ.
+   */
+  private static Transaction verify(String idempotencyKey, String requestFingerprint, Transaction transaction) {
+    if (transaction.getRequestFingerprint() != null && !transaction.getRequestFingerprint().equals(requestFingerprint)) {
+      throw new TransactionIdempotencyKeyReusedException(idempotencyKey);
+    }
+    return transaction;
+  }
+
+  /**
+   * Executes the operation and resolves a conflict on the reserved idempotency key.
+   *
+   * @param idempotencyKey     The idempotency key of the request.
+   * @param requestFingerprint The fingerprint of the request.
+   * @param operation          The operation creating a transaction with the idempotency key.
+   * @return The created transaction, or the transaction stored by a concurrent request with the same key.
+   */
+  private Transaction executeOnce(String idempotencyKey, String requestFingerprint, Supplier<Transaction> operation) {
+    try {
+      return operation.get();
+    } catch (DataIntegrityViolationException e) {
+      return findStored(idempotencyKey, requestFingerprint).orElseThrow(() -> e);
+    }
+  }
+
+  /**
+   * Finds the transaction which reserved the idempotency key.
+   *
+   * @param idempotencyKey     The idempotency key of the request.
+   * @param requestFingerprint The fingerprint of the request.
+   * @return The transaction created with the key, or empty if the key is not reserved.
+   * @throws TransactionIdempotencyKeyReusedException   If the key was reserved by a request with a different fingerprint.
+   * @throws TransactionIdempotencyKeyArchivedException If the transaction of the key was archived or deleted.
+   */
+  private Optional<Transaction> findStored(String idempotencyKey, String requestFingerprint) {
+    Optional<TransactionIdempotencyKey> reserved = transactionIdempotencyKeyRepository.findById(idempotencyKey);
+    if (reserved.isEmpty()) {
+      return Optional.empty();
+    }
+    UUID transactionId = reserved.get().getTransactionId();
+    if (reserved.get().getRequestFingerprint() != null && !reserved.get().getRequestFingerprint().equals(requestFingerprint)) {
+      throw new TransactionIdempotencyKeyReusedException(idempotencyKey);
+    }
+    return Optional.of(transactionRepository.findById(transactionId)
+        .orElseThrow(() -> new TransactionIdempotencyKeyArchivedException(idempotencyKey, transactionId)));
+  }
+
+  /**
+   * Waits for the execution started by another request with the same key.
+   *
+   * @param execution The future of the execution.
+   * @return The transaction created by the execution.
+   */
+  private static Transaction await(CompletableFuture<Transaction> execution) {
+    try {
+      return execution.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+}
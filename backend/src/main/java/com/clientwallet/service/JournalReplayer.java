@@ -0,0 +1,311 @@
+package com.clientwallet.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JournalReplayer rebuilds the balances of all wallets from the {@link LedgerJournal} and compares them with
+ * the balances stored in the wallets.
+ * <p>
+ * The wallets are split into {@code wallet.journal.replay.ranges} {@link WalletKeyRange ranges of IDs}, which are
+ * replayed in parallel by {@code wallet.journal.replay.threads} threads. The balances of a range start from the
+ * latest snapshot visible to its transaction, the journal entries after its position are summed up per wallet by the
+ * database, read by the index of the journal on the wallet and the position.
+ * </p>
+ * <p>
+ * {@link Mode#VERIFY} reads the journal and the stored balances of a range in one repeatable read transaction, which
+ * sees both at the same commit because they are always written together, so it never blocks the wallet operations.
+ * Like all read-only transactions, it runs on a read replica if one is configured.
+ * {@link Mode#REBUILD} locks the wallets and stripes of a range first, so no operation changes them while it runs,
+ * and overwrites every differing balance by the balance of the journal, moving the stripes into the wallet row.
+ * </p>
+ * <p>
+ * The replay can be started once the application is ready by {@code wallet.journal.replay-on-startup}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class JournalReplayer {
+
+  private static final String SNAPSHOT_QUERY = "SELECT wallet_id, balance FROM balance_snapshot " +
+      "WHERE journal_position = ? AND ";
+
+  private static final String JOURNAL_QUERY = "SELECT wallet_id, " +
+      "SUM(CASE WHEN side = 'CREDIT' THEN amount ELSE -amount END) AS balance, COUNT(*) AS entries " +
+      "FROM journal_entry WHERE id > ? AND ";
+
+  private static final String PROJECTION_QUERY = "SELECT w.id, w.balance + " +
+      "COALESCE((SELECT SUM(s.balance) FROM wallet_stripe s WHERE s.wallet_id = w.id), 0) AS balance FROM wallet w WHERE ";
+
+  private static final int MAX_ATTEMPTS = 3;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private LedgerJournal ledgerJournal;
+
+  @Autowired
+  private ApplicationEventPublisher eventPublisher;
+
+  @Value("${wallet.journal.replay.threads:4}")
+  private int threads;
+
+  @Value("${wallet.journal.replay.ranges:256}")
+  private int rangeCount;
+
+  @Value("${wallet.journal.replay-on-startup:}")
+  private String replayOnStartup;
+
+  private TransactionTemplate verifyTemplate;
+
+  private TransactionTemplate rebuildTemplate;
+
+  /**
+   * The modes of a replay.
+   */
+  public enum Mode {
+
+    /**
+     * Only reports the wallets whose stored balance differs from the journal.
+     */
+    VERIFY,
+
+    /**
+     * Overwrites the stored balances differing from the journal.
+     */
+    REBUILD
+  }
+
+  /**
+   * Creates the templates of the replay transactions.
+   */
+  @PostConstruct
+  public void init() {
+    verifyTemplate = new TransactionTemplate(transactionManager);
+    verifyTemplate.setReadOnly(true);
+    verifyTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    rebuildTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  /**
+   * Starts the replay configured by {@code wallet.journal.replay-on-startup} in the background.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (replayOnStartup == null || replayOnStartup.isBlank()) {
+      return;
+    }
+    Mode mode = Mode.valueOf(replayOnStartup.trim().toUpperCase());
+    Thread thread = new Thread(() -> {
+      try {
+        replay(mode);
+      } catch (RuntimeException e) {
+        log.warn("Replay of the journal failed.", e);
+      }
+    }, "journal-replay");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Replays the journal from the latest snapshot for all wallets.
+   *
+   * @param mode Whether differing balances are only reported or also overwritten.
+   * @return The result of the replay.
+   */
+  public Result replay(Mode mode) {
+    long started = System.nanoTime();
+    AtomicInteger threadNumber = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "journal-replay-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      List<CompletableFuture<RangeResult>> futures = new ArrayList<>(rangeCount);
+      for (WalletKeyRange range : WalletKeyRange.split(rangeCount)) {
+        futures.add(CompletableFuture.supplyAsync(() -> replayRange(range, mode), pool));
+      }
+
+      long position = Long.MAX_VALUE;
+      long walletCount = 0;
+      long entryCount = 0;
+      List<Mismatch> mismatches = new ArrayList<>();
+      for (CompletableFuture<RangeResult> future : futures) {
+        RangeResult result = join(future);
+        position = Math.min(position, result.position());
+        walletCount += result.walletCount();
+        entryCount += result.entryCount();
+        mismatches.addAll(result.mismatches());
+      }
+
+      Duration duration = Duration.ofNanos(System.nanoTime() - started);
+      log.info("Replayed {} journal entries of {} wallets after position {} in {} ms ({} entries/s), {} balances {}.",
+          entryCount, walletCount, position, duration.toMillis(),
+          duration.toMillis() > 0 ? entryCount * 1000 / duration.toMillis() : entryCount, mismatches.size(),
+          mode == Mode.REBUILD ? "rebuilt" : "differ");
+      return new Result(mode, position, walletCount, entryCount, mismatches, duration);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Replays a range of wallets, retrying it if it lost a lock to the wallet operations.
+   *
+   * @param range The range of wallet IDs.
+   * @param mode  The mode of the replay.
+   * @return The result of the range.
+   */
+  private RangeResult replayRange(WalletKeyRange range, Mode mode) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return (mode == Mode.VERIFY ? verifyTemplate : rebuildTemplate)
+            .execute(status -> replayRangeInTransaction(range, mode));
+      } catch (ConcurrencyFailureException e) {
+        if (attempt == MAX_ATTEMPTS) {
+          throw e;
+        }
+        log.debug("Replay of the wallets from {} failed on a lock, retrying.", range.from(), e);
+      }
+    }
+  }
+
+  private RangeResult replayRangeInTransaction(WalletKeyRange range, Mode mode) {
+    if (mode == Mode.REBUILD) {
+      // Locked in the order of the IDs, the stripes after their wallets
+      jdbcTemplate.queryForList("SELECT id FROM wallet WHERE " + range.condition("id") + " ORDER BY id FOR UPDATE",
+          UUID.class, range.arguments());
+      jdbcTemplate.queryForList("SELECT wallet_id FROM wallet_stripe WHERE " + range.condition("wallet_id") +
+          " ORDER BY wallet_id, stripe FOR UPDATE", UUID.class, range.arguments());
+    }
+
+    // Read in the transaction of the range, a replica may not have the latest snapshot of the primary yet
+    long position = ledgerJournal.getSnapshotPosition();
+    Map<UUID, BigDecimal> journal = new HashMap<>();
+    jdbcTemplate.query(SNAPSHOT_QUERY + range.condition("wallet_id"), rs -> {
+      journal.put(rs.getObject("wallet_id", UUID.class), rs.getBigDecimal("balance"));
+    }, range.arguments(position));
+    long[] entryCount = {0};
+    jdbcTemplate.query(JOURNAL_QUERY + range.condition("wallet_id") + " GROUP BY wallet_id", rs -> {
+      journal.merge(rs.getObject("wallet_id", UUID.class), rs.getBigDecimal("balance"), BigDecimal::add);
+      entryCount[0] += rs.getLong("entries");
+    }, range.arguments(position));
+    Map<UUID, BigDecimal> stored = new HashMap<>();
+    jdbcTemplate.query(PROJECTION_QUERY + range.condition("w.id"), rs -> {
+      stored.put(rs.getObject("id", UUID.class), rs.getBigDecimal("balance"));
+    }, range.arguments());
+
+    List<Mismatch> mismatches = new ArrayList<>();
+    Set<UUID> walletIds = new HashSet<>(stored.keySet());
+    walletIds.addAll(journal.keySet());
+    for (UUID walletId : walletIds) {
+      BigDecimal storedBalance = stored.getOrDefault(walletId, BigDecimal.ZERO);
+      BigDecimal journalBalance = journal.getOrDefault(walletId, BigDecimal.ZERO);
+      if (storedBalance.compareTo(journalBalance) != 0) {
+        mismatches.add(new Mismatch(walletId, storedBalance, journalBalance));
+      }
+    }
+    if (mode == Mode.REBUILD && !mismatches.isEmpty()) {
+      rebuild(mismatches);
+    }
+    return new RangeResult(position, stored.size(), entryCount[0], mismatches);
+  }
+
+  /**
+   * Overwrites the stored balances of wallets by their balances in the journal, in the locking transaction.
+   *
+   * @param mismatches The wallets whose stored balance differs.
+   */
+  private void rebuild(List<Mismatch> mismatches) {
+    LocalDateTime now = LocalDateTime.now();
+    List<Object[]> walletIds = new ArrayList<>(mismatches.size());
+    List<Object[]> balances = new ArrayList<>(mismatches.size());
+    for (Mismatch mismatch : mismatches) {
+      walletIds.add(new Object[]{mismatch.walletId()});
+      balances.add(new Object[]{mismatch.journalBalance(), now, mismatch.walletId()});
+    }
+    jdbcTemplate.batchUpdate("UPDATE wallet_stripe SET balance = 0 WHERE wallet_id = ?", walletIds);
+    jdbcTemplate.batchUpdate("UPDATE wallet SET balance = ?, updated_at = ?, version = version + 1 WHERE id = ?", balances);
+    eventPublisher.publishEvent(new WalletChangedEvent(mismatches.stream().map(Mismatch::walletId).toList()));
+    mismatches.forEach(mismatch -> log.warn("Rebuilt the balance of wallet {} from {} to {}.",
+        mismatch.walletId(), mismatch.storedBalance(), mismatch.journalBalance()));
+  }
+
+  private static RangeResult join(CompletableFuture<RangeResult> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * The result of a replay.
+   *
+   * @param mode             The mode of the replay.
+   * @param snapshotPosition The position of the oldest snapshot the ranges started from, {@code 0} for the whole journal.
+   * @param walletCount      The number of replayed wallets.
+   * @param entryCount       The number of replayed journal entries after the snapshot.
+   * @param mismatches       The wallets whose stored balance differed from the journal.
+   * @param duration         The duration of the replay.
+   */
+  public record Result(Mode mode, long snapshotPosition, long walletCount, long entryCount, List<Mismatch> mismatches,
+                       Duration duration) {
+  }
+
+  /**
+   * A wallet whose stored balance differs from its balance in the journal.
+   *
+   * @param walletId       The ID of the wallet.
+   * @param storedBalance  The total balance stored in the wallet row and its stripes.
+   * @param journalBalance The balance replayed from the journal.
+   */
+  public record Mismatch(UUID walletId, BigDecimal storedBalance, BigDecimal journalBalance) {
+  }
+
+  /**
+   * The result of a single range of wallets.
+   *
+   * @param position    The position of the snapshot the range started from.
+   * @param walletCount The number of wallets of the range.
+   * @param entryCount  The number of replayed journal entries.
+   * @param mismatches  The wallets whose stored balance differed.
+   */
+  private record RangeResult(long position, long walletCount, long entryCount, List<Mismatch> mismatches) {
+  }
+}
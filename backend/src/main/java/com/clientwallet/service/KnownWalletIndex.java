@@ -0,0 +1,270 @@
+package com.clientwallet.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * KnownWalletIndex is an in-memory Bloom filter of the IDs of all existing wallets.
+ * <p>
+ * The filter answers whether a wallet may exist without a database round trip. A positive answer is wrong with
+ * the probability {@code wallet.known-ids.false-positive-rate}, so it still has to be confirmed by loading the wallet.
+ * A negative answer is only certain for wallets which existed at the last build or were created by this instance,
+ * so {@link #mightExist(UUID)} confirms it by an existence check in the database. Wallets created by other
+ * instances are added to the filter once they are found, and the IDs of missing wallets are remembered for
+ * {@code wallet.known-ids.missing.expire-after-seconds}, so repeated requests for the same unknown wallet are
+ * rejected without touching the database. Wallet IDs are random, so a missing ID never belongs to a wallet
+ * created later.
+ * </p>
+ * <p>
+ * The filter is built from the wallet table once the application is ready and rebuilt every
+ * {@code wallet.known-ids.rebuild-interval-seconds}, which resizes it to the current number of wallets and picks up
+ * wallets created by other application instances. Wallets created by this instance are added immediately.
+ * Until the first build is completed, every wallet is reported as possibly existing.
+ * </p>
+ */
+@Slf4j
+@Component
+public class KnownWalletIndex {
+
+  private static final int CHUNK_SIZE = 10000;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Value("${wallet.known-ids.enabled:true}")
+  private boolean enabled;
+
+  @Value("${wallet.known-ids.false-positive-rate:0.01}")
+  private double falsePositiveRate;
+
+  @Value("${wallet.known-ids.rebuild-interval-seconds:300}")
+  private long rebuildIntervalSeconds;
+
+  @Value("${wallet.known-ids.missing.max-size:10000}")
+  private long missingMaxSize;
+
+  @Value("${wallet.known-ids.missing.expire-after-seconds:300}")
+  private long missingExpireAfterSeconds;
+
+  private Cache<UUID, Boolean> missing;
+
+  private ScheduledExecutorService scheduler;
+
+  private volatile BloomFilter filter;
+
+  private boolean rebuilding;
+
+  private final List<UUID> addedWhileRebuilding = new ArrayList<>();
+
+  /**
+   * Creates the cache of the IDs of missing wallets.
+   */
+  @PostConstruct
+  public void init() {
+    missing = Caffeine.newBuilder()
+        .maximumSize(missingMaxSize)
+        .expireAfterWrite(Duration.ofSeconds(missingExpireAfterSeconds))
+        .build();
+  }
+
+  /**
+   * Builds the filter and schedules its rebuilds, if the index is enabled.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "known-wallet-index");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (rebuildIntervalSeconds > 0) {
+      scheduler.scheduleWithFixedDelay(this::rebuild, 0, rebuildIntervalSeconds, TimeUnit.SECONDS);
+    } else {
+      scheduler.execute(this::rebuild);
+    }
+  }
+
+  /**
+   * Stops the scheduled rebuilds.
+   */
+  @PreDestroy
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Checks whether a wallet may exist.
+   *
+   * @param walletId The ID of the wallet.
+   * @return {@code false} if the wallet certainly does not exist, otherwise {@code true}.
+   */
+  public boolean mightContain(UUID walletId) {
+    BloomFilter current = filter;
+    return current == null || current.mightContain(walletId);
+  }
+
+  /**
+   * Checks whether a wallet may exist, confirming a negative answer of the filter by the database.
+   * <p>
+   * The wallet is looked up in the primary database, since a replica may not have it yet.
+   * </p>
+   *
+   * @param walletId The ID of the wallet.
+   * @return {@code false} if the wallet does not exist, otherwise {@code true}.
+   */
+  public boolean mightExist(UUID walletId) {
+    if (mightContain(walletId)) {
+      return true;
+    }
+    if (missing.getIfPresent(walletId) != null) {
+      return false;
+    }
+    if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM wallet WHERE id = ?)", Boolean.class, walletId))) {
+      // Created by another instance after the last build
+      add(walletId);
+      return true;
+    }
+    missing.put(walletId, Boolean.TRUE);
+    return false;
+  }
+
+  /**
+   * Adds the ID of a created wallet.
+   *
+   * @param walletId The ID of the wallet.
+   */
+  public synchronized void add(UUID walletId) {
+    if (filter != null) {
+      filter.put(walletId);
+    }
+    if (rebuilding) {
+      addedWhileRebuilding.add(walletId);
+    }
+  }
+
+  /**
+   * Builds a new filter from the wallet table and replaces the current one.
+   * <p>
+   * Wallets added during the build are also added to the new filter, because the build may not have seen them.
+   * A failed build keeps the current filter.
+   * </p>
+   */
+  void rebuild() {
+    synchronized (this) {
+      rebuilding = true;
+      addedWhileRebuilding.clear();
+    }
+    try {
+      Long walletCount = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet", Long.class);
+      // Sized for twice the current number of wallets, so the rate holds until the next rebuild
+      BloomFilter built = new BloomFilter(Math.max(2 * (walletCount != null ? walletCount : 0), 1024), falsePositiveRate);
+      // Read in chunks ordered by the primary key, so the IDs of all wallets are never held in memory at once
+      List<UUID> chunk = jdbcTemplate.queryForList("SELECT id FROM wallet ORDER BY id LIMIT ?", UUID.class, CHUNK_SIZE);
+      while (!chunk.isEmpty()) {
+        chunk.forEach(built::put);
+        chunk = chunk.size() < CHUNK_SIZE ? List.of() : jdbcTemplate.queryForList(
+            "SELECT id FROM wallet WHERE id > ? ORDER BY id LIMIT ?", UUID.class, chunk.get(chunk.size() - 1), CHUNK_SIZE);
+      }
+      synchronized (this) {
+        addedWhileRebuilding.forEach(built::put);
+        filter = built;
+      }
+    } catch (RuntimeException e) {
+      log.warn("Failed to rebuild the index of known wallets.", e);
+    } finally {
+      synchronized (this) {
+        rebuilding = false;
+        addedWhileRebuilding.clear();
+      }
+    }
+  }
+
+  /**
+   * A thread-safe Bloom filter of UUIDs.
+   * <p>
+   * The bit positions are derived from both halves of the UUID by double hashing.
+   * </p>
+   */
+  static final class BloomFilter {
+
+    private final AtomicLongArray words;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    /**
+     * Creates an empty filter.
+     *
+     * @param expectedInsertions The number of IDs the filter is sized for.
+     * @param falsePositiveRate  The false positive rate at the expected number of IDs.
+     */
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+      long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+      this.words = new AtomicLongArray(Math.toIntExact((bits + 63) / 64));
+      this.bitCount = words.length() * 64L;
+      this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    void put(UUID id) {
+      long hash1 = mix(id.getMostSignificantBits());
+      long hash2 = mix(id.getLeastSignificantBits()) | 1;
+      for (int i = 0; i < hashCount; i++) {
+        long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long value;
+        do {
+          value = words.get(word);
+        } while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask));
+      }
+    }
+
+    boolean mightContain(UUID id) {
+      long hash1 = mix(id.getMostSignificantBits());
+      long hash2 = mix(id.getLeastSignificantBits()) | 1;
+      for (int i = 0; i < hashCount; i++) {
+        long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+        if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * The finalizer of the 64-bit MurmurHash3, spreading the bits of a UUID half over the whole value.
+     */
+    private static long mix(long value) {
+      value ^= value >>> 33;
+      value *= 0xff51afd7ed558ccdL;
+      value ^= value >>> 33;
+      value *= 0xc4ceb9fe1a85ec53L;
+      value ^= value >>> 33;
+      return value;
+    }
+  }
+}
@@ -0,0 +1,238 @@
+package com.clientwallet.service;
+
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.JournalEntry;
+import com.clientwallet.model.JournalSide;
+import com.clientwallet.model.Transaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LedgerJournal appends the legs of applied transactions to the double-entry journal and takes snapshots of the
+ * balances it implies.
+ * <p>
+ * The {@link WalletService} appends the {@link JournalEntry legs} of every applied transaction in the database
+ * transaction which changes the balances, so the balances of the wallets are always the projection of the journal
+ * up to the last commit. Entries are never changed, the journal only grows.
+ * </p>
+ * <p>
+ * Every {@code wallet.journal.snapshot.interval-minutes}, the balances of all wallets after the entries up to the
+ * current end of the journal are written as a new snapshot, computed from the previous snapshot and the entries after
+ * it. On PostgreSQL, the end of the journal is read while holding a share lock on the journal table for a moment,
+ * which waits for the running inserts, so no entry below it can still be committed later. The latest two snapshots
+ * are kept, replays started from the older one can still finish.
+ * </p>
+ */
+@Slf4j
+@Component
+public class LedgerJournal {
+
+  private static final String INSERT = "INSERT INTO journal_entry (transaction_id, wallet_id, side, amount, currency, " +
+      "created_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+  private static final String SNAPSHOT_INSERT = "INSERT INTO balance_snapshot (journal_position, wallet_id, balance) " +
+      "SELECT ?, wallet_id, SUM(balance) FROM (" +
+      "SELECT wallet_id, balance FROM balance_snapshot WHERE journal_position = ? UNION ALL " +
+      "SELECT wallet_id, CASE WHEN side = 'CREDIT' THEN amount ELSE -amount END AS balance FROM journal_entry " +
+      "WHERE id > ? AND id <= ? AND wallet_id IS NOT NULL) changes GROUP BY wallet_id";
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Value("${wallet.journal.snapshot.enabled:true}")
+  private boolean snapshotEnabled;
+
+  @Value("${wallet.journal.snapshot.interval-minutes:60}")
+  private long snapshotIntervalMinutes;
+
+  @Value("${wallet.journal.snapshot.lock-timeout-ms:5000}")
+  private long lockTimeoutMs;
+
+  private TransactionTemplate transactionTemplate;
+
+  private ScheduledExecutorService scheduler;
+
+  private volatile Boolean postgres;
+
+  /**
+   * Creates the template of the snapshot transactions.
+   */
+  @PostConstruct
+  public void init() {
+    transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  /**
+   * Schedules the snapshots, if they are enabled.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!snapshotEnabled) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "journal-snapshot");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        snapshot();
+      } catch (RuntimeException e) {
+        log.warn("Snapshot of the journal balances failed.", e);
+      }
+    }, snapshotIntervalMinutes, snapshotIntervalMinutes, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Stops the snapshots.
+   */
+  @PreDestroy
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Appends the legs of applied transactions to the journal, in the database transaction of the caller.
+   *
+   * @param postings The applied transactions.
+   */
+  public void append(List<Posting> postings) {
+    List<Object[]> legs = new ArrayList<>(postings.size() * 2);
+    for (Posting posting : postings) {
+      legs.add(leg(posting, posting.debitWalletId(), JournalSide.DEBIT));
+      legs.add(leg(posting, posting.creditWalletId(), JournalSide.CREDIT));
+    }
+    jdbcTemplate.batchUpdate(INSERT, legs);
+  }
+
+  /**
+   * Returns the position of the latest snapshot.
+   *
+   * @return The position of the last journal entry included in the snapshot, {@code 0} if there is none.
+   */
+  public long getSnapshotPosition() {
+    Long position = jdbcTemplate.queryForObject("SELECT MAX(journal_position) FROM balance_snapshot", Long.class);
+    return position != null ? position : 0L;
+  }
+
+  /**
+   * Returns the position of the last journal entry.
+   * <p>
+   * No entry below the position can be committed after the call, so everything up to it can be read as final.
+   * It is called outside of other database transactions, which would hold the share lock until their end.
+   * </p>
+   *
+   * @return The position, {@code 0} if the journal is empty.
+   */
+  public long getEndPosition() {
+    return transactionTemplate.execute(status -> end());
+  }
+
+  /**
+   * Writes the balances of all wallets after the current end of the journal as a new snapshot.
+   *
+   * @return The position of the latest snapshot after the call.
+   */
+  public long snapshot() {
+    long end = getEndPosition();
+    try {
+      return transactionTemplate.execute(status -> {
+        if (isPostgres()) {
+          // Snapshots of several instances are written one after another, never from a removed snapshot
+          jdbcTemplate.execute("SELECT pg_advisory_xact_lock(hashtext('balance_snapshot'))");
+        }
+        long previous = getSnapshotPosition();
+        if (end <= previous) {
+          return previous;
+        }
+        jdbcTemplate.update(SNAPSHOT_INSERT, end, previous, previous, end);
+        jdbcTemplate.update("DELETE FROM balance_snapshot WHERE journal_position < ?", previous);
+        log.info("Took a snapshot of the journal balances at position {}.", end);
+        return end;
+      });
+    } catch (DuplicateKeyException e) {
+      // Another instance took the snapshot at the same position
+      return end;
+    }
+  }
+
+  /**
+   * Reads the position of the last journal entry, once all entries below it are committed.
+   *
+   * @return The position, {@code 0} if the journal is empty.
+   */
+  private long end() {
+    if (isPostgres()) {
+      jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+      jdbcTemplate.execute("LOCK TABLE journal_entry IN SHARE MODE");
+    }
+    Long end = jdbcTemplate.queryForObject("SELECT MAX(id) FROM journal_entry", Long.class);
+    return end != null ? end : 0L;
+  }
+
+  private boolean isPostgres() {
+    if (postgres == null) {
+      postgres = "PostgreSQL".equals(jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+          connection.getMetaData().getDatabaseProductName()));
+    }
+    return postgres;
+  }
+
+  private static Object[] leg(Posting posting, UUID walletId, JournalSide side) {
+    return new Object[]{posting.transactionId(), walletId, side.name(), posting.amount(), posting.currency().name(),
+        posting.createdAt()};
+  }
+
+  /**
+   * An applied transaction, debiting one account and crediting another one by the same amount.
+   *
+   * @param transactionId  The ID of the transaction.
+   * @param debitWalletId  The debited wallet, the sender, or {@code null} for the external account of a deposit.
+   * @param creditWalletId The credited wallet, the receiver, or {@code null} for the external account of a withdrawal.
+   * @param amount         The amount of the transaction.
+   * @param currency       The currency of the amount.
+   * @param createdAt      The creation time of the transaction.
+   */
+  public record Posting(UUID transactionId, UUID debitWalletId, UUID creditWalletId, BigDecimal amount,
+                        Currency currency, LocalDateTime createdAt) {
+
+    /**
+     * Creates the posting of a saved transaction.
+     *
+     * @param transaction The transaction.
+     * @return The posting.
+     */
+    public static Posting of(Transaction transaction) {
+      return new Posting(transaction.getId(),
+          transaction.getSenderWallet() != null ? transaction.getSenderWallet().getId() : null,
+          transaction.getReceiverWallet() != null ? transaction.getReceiverWallet().getId() : null,
+          transaction.getAmount(), transaction.getCurrency(), transaction.getCreatedAt());
+    }
+  }
+}
@@ -0,0 +1,202 @@
+package com.clientwallet.service;
+
+import com.clientwallet.model.Transaction;
+import com.clientwallet.model.TransactionStatus;
+import com.clientwallet.repository.TransactionRepository;
+import com.clientwallet.repository.WalletRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PendingTransactionProcessor applies deposits and withdrawals submitted asynchronously.
+ * <p>
+ * Asynchronous operations are recorded as {@link TransactionStatus#PENDING} transactions, so the transaction table
+ * itself is the queue and no submitted operation is lost on a restart. A pool of worker threads repeatedly locks
+ * the oldest pending transactions up to the batch size, skipping the ones locked by other workers, applies their
+ * balance changes and sets the status of all of them by two bulk updates, all in one database transaction.
+ * Transactions which could not be applied, because the wallet no longer exists, its currency differs or it does
+ * not have enough funds, are set to {@link TransactionStatus#FAILED}.
+ * </p>
+ * <p>
+ * If a batch fails, it is rolled back and its transactions are applied again one by one, each in its own database
+ * transaction. A transaction which still fails on anything else than a concurrent modification is set to failed,
+ * so it never blocks the queue. Workers sleep for the poll interval whenever they find less than a full batch.
+ * </p>
+ * <p>
+ * The versions of the wallets of all processed transactions are incremented, so the entity tags of their histories
+ * change with the status of the transactions.
+ * </p>
+ */
+@Slf4j
+@Component
+public class PendingTransactionProcessor {
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private TransactionRepository transactionRepository;
+
+  @Autowired
+  private WalletRepository walletRepository;
+
+  @Autowired
+  private WalletService walletService;
+
+  @Value("${wallet.async.workers:2}")
+  private int workerCount;
+
+  @Value("${wallet.async.batch-size:100}")
+  private int batchSize;
+
+  @Value("${wallet.async.poll-interval-ms:100}")
+  private long pollIntervalMs;
+
+  private TransactionTemplate transactionTemplate;
+
+  private final List<Thread> workers = new ArrayList<>();
+
+  private volatile boolean running;
+
+  /**
+   * Starts the worker threads.
+   */
+  @PostConstruct
+  public void start() {
+    transactionTemplate = new TransactionTemplate(transactionManager);
+    running = true;
+    for (int i = 0; i < workerCount; i++) {
+      workers.add(new Thread(this::runWorker, "pending-transaction-worker-" + i));
+    }
+    workers.forEach(Thread::start);
+  }
+
+  /**
+   * Stops the worker threads after they finish their current batch.
+   */
+  @PreDestroy
+  public void stop() {
+    running = false;
+    for (Thread worker : workers) {
+      try {
+        worker.join(TimeUnit.SECONDS.toMillis(30));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * The loop of a worker thread which processes batches of pending transactions.
+   */
+  private void runWorker() {
+    while (running) {
+      try {
+        if (processBatch() < batchSize) {
+          Thread.sleep(pollIntervalMs);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        log.warn("Processing of pending transactions failed.", e);
+        try {
+          Thread.sleep(pollIntervalMs);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Applies the next batch of pending transactions in a single database transaction, or one by one if it fails.
+   *
+   * @return The number of processed transactions.
+   */
+  int processBatch() {
+    List<UUID> batch = new ArrayList<>();
+    try {
+      return transactionTemplate.execute(status -> {
+        List<Transaction> pending = transactionRepository.findAllForProcessing(TransactionStatus.PENDING, PageRequest.of(0, batchSize));
+        pending.forEach(transaction -> batch.add(transaction.getId()));
+        apply(pending);
+        return pending.size();
+      });
+    } catch (RuntimeException e) {
+      if (batch.isEmpty()) {
+        throw e;
+      }
+      log.debug("Batch of {} pending transactions was rolled back, applying them one by one.", batch.size(), e);
+    }
+
+    batch.forEach(this::processOne);
+    return batch.size();
+  }
+
+  /**
+   * Applies a single pending transaction in its own database transaction.
+   * <p>
+   * If it fails on anything else than a concurrent modification, the transaction is set to failed.
+   * </p>
+   *
+   * @param transactionId The ID of the pending transaction.
+   */
+  private void processOne(UUID transactionId) {
+    try {
+      transactionTemplate.executeWithoutResult(status -> transactionRepository
+          .findForProcessing(transactionId, TransactionStatus.PENDING)
+          .ifPresent(transaction -> apply(List.of(transaction))));
+    } catch (ConcurrencyFailureException e) {
+      log.debug("Pending transaction {} conflicted with a concurrent modification, it stays pending.", transactionId, e);
+    } catch (RuntimeException e) {
+      log.warn("Pending transaction {} could not be applied.", transactionId, e);
+      transactionTemplate.executeWithoutResult(status -> {
+        LocalDateTime now = LocalDateTime.now();
+        transactionRepository.updateStatus(List.of(transactionId), TransactionStatus.FAILED, now);
+        walletRepository.touchByTransactions(List.of(transactionId), now);
+      });
+    }
+  }
+
+  /**
+   * Applies the balance changes of the transactions and sets their final status.
+   *
+   * @param transactions The locked pending transactions.
+   */
+  private void apply(List<Transaction> transactions) {
+    List<UUID> completed = new ArrayList<>();
+    List<UUID> failed = new ArrayList<>();
+    for (Transaction transaction : transactions) {
+      (walletService.applyPending(transaction) ? completed : failed).add(transaction.getId());
+    }
+
+    LocalDateTime now = LocalDateTime.now();
+    if (!completed.isEmpty()) {
+      transactionRepository.updateStatus(completed, TransactionStatus.COMPLETED, now);
+    }
+    if (!failed.isEmpty()) {
+      transactionRepository.updateStatus(failed, TransactionStatus.FAILED, now);
+    }
+    // The changed status is not always reflected in the wallet rows, so the versions of the wallets are incremented
+    if (!transactions.isEmpty()) {
+      walletRepository.touchByTransactions(transactions.stream().map(Transaction::getId).toList(), now);
+    }
+  }
+}
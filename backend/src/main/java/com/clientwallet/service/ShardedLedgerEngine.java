@@ -0,0 +1,352 @@
+package com.clientwallet.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * ShardedLedgerEngine is an optional execution engine for state-changing wallet operations.
+ * <p>
+ * Operations are partitioned across a fixed number of shards by the hash of the smallest ID of the wallets they
+ * change, so a transfer is routed by both of its wallets and two transfers between the same wallets always meet
+ * in the same shard, whatever their direction. Every shard has a bounded queue and a single writer thread, so all
+ * operations on the same set of wallets are applied one after another and never wait for each other's row locks.
+ * Operations of different shards may still change the same wallet, e.g. a deposit and a transfer from another
+ * wallet, so they can wait for each other's row locks and even deadlock. The database then rolls back one of them
+ * and the operation is applied again on its own, see below.
+ * </p>
+ * <p>
+ * The writer thread drains all queued operations up to the maximum batch size and applies them in one database
+ * transaction (group commit), which replaces one commit per operation by one commit per batch. A caller is blocked
+ * until the batch containing its operation is committed, so a returned result is always durable.
+ * </p>
+ * <p>
+ * An operation rejecting its request, e.g. a withdrawal exceeding the balance, rolls back its batch, fails alone
+ * and the rest of the batch is applied again in one transaction, so it sees the same balances as before. Any other
+ * failure, e.g. a database error which cannot be attributed to a single operation, makes the batch be applied again
+ * one operation per transaction, so a failing operation never affects the result of the others.
+ * </p>
+ * <p>
+ * A caller waits at most {@code wallet.engine.sharded.submit-timeout-ms} for the result. An operation whose caller
+ * stopped waiting before it was taken from the queue is never applied, one already being applied may still be
+ * committed. Operations which cannot be applied any more because the engine is stopped are failed instead of
+ * leaving their callers waiting. An error thrown by an operation fails only that operation, the writer thread
+ * keeps applying the others.
+ * </p>
+ * <p>
+ * The balances stay in the database, which remains the only source of truth, so the engine can be enabled on
+ * several application instances at the same time. Every shard holds one database connection while it applies
+ * a batch, so the number of shards has to stay below the size of the connection pool.
+ * The engine is enabled by the {@code wallet.engine.sharded.enabled} property.
+ * </p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "wallet.engine.sharded.enabled", havingValue = "true")
+public class ShardedLedgerEngine {
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Value("${wallet.engine.sharded.shards:4}")
+  private int shardCount;
+
+  @Value("${wallet.engine.sharded.queue-capacity:4096}")
+  private int queueCapacity;
+
+  @Value("${wallet.engine.sharded.max-batch-size:64}")
+  private int maxBatchSize;
+
+  @Value("${wallet.engine.sharded.submit-timeout-ms:30000}")
+  private long submitTimeoutMs;
+
+  private TransactionTemplate transactionTemplate;
+
+  private final List<Shard> shards = new ArrayList<>();
+
+  /**
+   * Held shared while an operation is queued and exclusively while the engine or a shard is closed,
+   * so no operation is queued once nobody takes it from the queue any more.
+   */
+  private final ReadWriteLock admission = new ReentrantReadWriteLock();
+
+  private volatile boolean running;
+
+  /**
+   * Starts the writer threads of all shards.
+   */
+  @PostConstruct
+  public void start() {
+    transactionTemplate = new TransactionTemplate(transactionManager);
+    running = true;
+    for (int i = 0; i < shardCount; i++) {
+      Shard shard = new Shard(new ArrayBlockingQueue<>(queueCapacity));
+      shard.writer = new Thread(() -> runShard(shard), "ledger-shard-" + i);
+      shards.add(shard);
+    }
+    shards.forEach(shard -> shard.writer.start());
+  }
+
+  /**
+   * Stops accepting new operations, applies the already queued ones and waits for the writer threads to finish.
+   * <p>
+   * Operations still queued when a writer thread does not finish in time are failed.
+   * </p>
+   */
+  @PreDestroy
+  public void stop() {
+    admission.writeLock().lock();
+    try {
+      running = false;
+    } finally {
+      admission.writeLock().unlock();
+    }
+    for (Shard shard : shards) {
+      try {
+        shard.writer.join(TimeUnit.SECONDS.toMillis(30));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    shards.forEach(this::close);
+  }
+
+  /**
+   * Submits an operation to the shard of the given wallets and waits until it is committed.
+   *
+   * @param walletIds The IDs of the wallets changed by the operation, the smallest one selects the shard.
+   * @param operation The operation to be applied, it joins the transaction of its batch.
+   * @param <T>       The type of the operation result.
+   * @return The result of the operation once its batch is committed.
+   * @throws IllegalStateException If the engine is stopped, the queue of the shard stays full
+   *                               or the operation is not committed within the submit timeout.
+   * @throws RuntimeException      The exception thrown by the operation.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T submit(Collection<UUID> walletIds, Supplier<T> operation) {
+    Shard shard = shards.get(Math.floorMod(Collections.min(walletIds).hashCode(), shards.size()));
+    Command command = new Command(operation::get, new CompletableFuture<>());
+    admission.readLock().lock();
+    try {
+      if (!running || shard.closed) {
+        throw new IllegalStateException("Ledger engine is stopped.");
+      }
+      if (!shard.queue.offer(command, submitTimeoutMs, TimeUnit.MILLISECONDS)) {
+        throw new IllegalStateException("Ledger engine queue of wallets " + walletIds + " is full.");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while submitting an operation of wallets " + walletIds + ".", e);
+    } finally {
+      admission.readLock().unlock();
+    }
+
+    try {
+      return (T) command.result().orTimeout(submitTimeoutMs, TimeUnit.MILLISECONDS).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof TimeoutException) {
+        throw new IllegalStateException("Operation of wallets " + walletIds + " was not committed within "
+            + submitTimeoutMs + " ms.", e.getCause());
+      }
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof Error cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * The loop of a writer thread which applies the operations of its shard in batches.
+   * <p>
+   * Once the loop ends, the shard is closed, so its remaining and later operations fail instead of waiting.
+   * </p>
+   *
+   * @param shard The shard of the writer thread.
+   */
+  private void runShard(Shard shard) {
+    try {
+      while (running || !shard.queue.isEmpty()) {
+        Command first = shard.queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        List<Command> batch = new ArrayList<>(maxBatchSize);
+        batch.add(first);
+        shard.queue.drainTo(batch, maxBatchSize - 1);
+        // Callers which stopped waiting already got their failure
+        batch.removeIf(command -> command.result().isDone());
+        try {
+          apply(batch);
+        } catch (RuntimeException | Error e) {
+          log.error("Failed to apply a batch of {} operations.", batch.size(), e);
+          batch.forEach(command -> command.result().completeExceptionally(e));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      close(shard);
+    }
+  }
+
+  /**
+   * Stops accepting operations of a shard and fails the operations still waiting in its queue.
+   *
+   * @param shard The shard to be closed.
+   */
+  private void close(Shard shard) {
+    admission.writeLock().lock();
+    try {
+      shard.closed = true;
+    } finally {
+      admission.writeLock().unlock();
+    }
+    List<Command> remaining = new ArrayList<>();
+    shard.queue.drainTo(remaining);
+    remaining.forEach(command -> command.result().completeExceptionally(new IllegalStateException("Ledger engine is stopped.")));
+  }
+
+  /**
+   * Applies a batch of operations in a single transaction.
+   * <p>
+   * An operation rejecting its request is failed and the batch is applied again without it. If the batch fails
+   * for any other reason, its operations are applied one by one.
+   * </p>
+   *
+   * @param batch The operations to be applied.
+   */
+  private void apply(List<Command> batch) {
+    List<Command> pending = new ArrayList<>(batch);
+    while (pending.size() > 1) {
+      try {
+        List<Object> results = transactionTemplate.execute(status -> {
+          List<Object> applied = new ArrayList<>(pending.size());
+          for (int i = 0; i < pending.size(); i++) {
+            try {
+              applied.add(pending.get(i).operation().get());
+            } catch (RuntimeException e) {
+              throw new OperationFailure(i, e);
+            }
+          }
+          return applied;
+        });
+        for (int i = 0; i < pending.size(); i++) {
+          pending.get(i).result().complete(results.get(i));
+        }
+        return;
+      } catch (OperationFailure e) {
+        if (isDatabaseFailure(e.getCause())) {
+          log.debug("Batch of {} operations was rolled back, applying them one by one.", pending.size(), e.getCause());
+          break;
+        }
+        pending.remove(e.index).result().completeExceptionally(e.getCause());
+      } catch (RuntimeException | Error e) {
+        log.debug("Batch of {} operations was rolled back, applying them one by one.", pending.size(), e);
+        break;
+      }
+    }
+
+    for (Command command : pending) {
+      try {
+        command.result().complete(transactionTemplate.execute(status -> command.operation().get()));
+      } catch (RuntimeException | Error e) {
+        command.result().completeExceptionally(e);
+      }
+    }
+  }
+
+  /**
+   * Checks whether the exception or one of its causes was thrown by the database, in which case it may be caused
+   * by another operation of the same batch, e.g. by a statement flushed late or by a lock held by the transaction.
+   *
+   * @param e The exception thrown by an operation.
+   * @return {@code true} if the failure may not belong to the operation alone, otherwise {@code false}.
+   */
+  private static boolean isDatabaseFailure(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof DataAccessException || cause instanceof PersistenceException
+          || cause instanceof TransactionException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A shard with its queue of pending operations and its single writer thread.
+   */
+  private static final class Shard {
+
+    /**
+     * The bounded queue of operations waiting to be applied.
+     */
+    private final BlockingQueue<Command> queue;
+
+    /**
+     * The thread applying the operations of the shard.
+     */
+    private Thread writer;
+
+    /**
+     * Whether the writer thread no longer takes operations from the queue, guarded by the admission lock.
+     */
+    private boolean closed;
+
+    private Shard(BlockingQueue<Command> queue) {
+      this.queue = queue;
+    }
+  }
+
+  /**
+   * An operation waiting in a shard queue together with the future completed after its commit.
+   *
+   * @param operation The operation to be applied.
+   * @param result    The future completed with the result of the operation.
+   */
+  private record Command(Supplier<Object> operation, CompletableFuture<Object> result) {
+  }
+
+  /**
+   * The failure of an operation rolling back the transaction of its batch.
+   */
+  private static final class OperationFailure extends RuntimeException {
+
+    /**
+     * The position of the failed operation in the batch.
+     */
+    private final int index;
+
+    private OperationFailure(int index, RuntimeException cause) {
+      super(cause);
+      this.index = index;
+    }
+  }
+}
@@ -0,0 +1,312 @@
+package com.clientwallet.service;
+
+import com.clientwallet.archive.ArchiveSegment;
+import com.clientwallet.archive.ArchivedTransaction;
+import com.clientwallet.archive.TransactionArchive;
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.TransactionStatus;
+import com.clientwallet.model.TransactionType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TransactionArchiver moves transactions older than {@code wallet.archive.max-age-days} out of the database into
+ * the {@link TransactionArchive}, which keeps the transaction table and its indexes small while the full history
+ * stays readable.
+ * <p>
+ * Every {@code wallet.archive.interval-minutes}, the oldest archivable transactions created before the start of the
+ * cutoff day are locked in batches of {@code wallet.archive.segment-size}, written to a pending segment and deleted
+ * from the database in the same database transaction. The segment is completed after the commit. A pending segment
+ * left by a failed run is completed first, by deleting its transactions again, so every transaction ends up in
+ * exactly one of both stores.
+ * </p>
+ * <p>
+ * Only final transactions are archived: failed ones, and completed ones already added to the turnover rollups,
+ * so the rollups never have to read the archive. Pending transactions stay in the database.
+ * </p>
+ * <p>
+ * The net amounts of the deleted completed transactions are added to the carried balances of their wallets in the
+ * deleting database transaction, so the stored balances still equal the carried balances plus the transactions left
+ * in the database for the {@link BalanceReconciler}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class TransactionArchiver {
+
+  private static final String ARCHIVABLE_QUERY = "SELECT id, sender_wallet_id, receiver_wallet_id, account_number, " +
+      "bank_code, amount, CAST(currency AS VARCHAR) AS currency, CAST(transaction_type AS VARCHAR) AS transaction_type, " +
+      "CAST(transaction_status AS VARCHAR) AS transaction_status, sender_balance_after, receiver_balance_after, " +
+      "created_at, updated_at FROM transaction WHERE created_at < ? " +
+      "AND (transaction_status = 'FAILED' OR (transaction_status = 'COMPLETED' AND rolled_up = TRUE)) " +
+      "ORDER BY created_at, id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+  private static final int NAME_CHUNK_SIZE = 1000;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private TransactionArchive transactionArchive;
+
+  @Value("${wallet.archive.enabled:false}")
+  private boolean enabled;
+
+  @Value("${wallet.archive.max-age-days:365}")
+  private int maxAgeDays;
+
+  @Value("${wallet.archive.segment-size:50000}")
+  private int segmentSize;
+
+  @Value("${wallet.archive.interval-minutes:60}")
+  private long intervalMinutes;
+
+  private TransactionTemplate transactionTemplate;
+
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Creates the template of the archiving transactions.
+   */
+  @PostConstruct
+  public void init() {
+    transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  /**
+   * Starts archiving in the background, if it is enabled.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "transaction-archiver");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::archiveAll, 0, intervalMinutes, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Stops archiving.
+   */
+  @PreDestroy
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Completes the pending segments and archives segments until less than a full segment is found.
+   */
+  private void archiveAll() {
+    try {
+      recover();
+      int archived = 0;
+      int count;
+      do {
+        count = archive();
+        archived += count;
+      } while (count == segmentSize && !Thread.currentThread().isInterrupted());
+      if (archived > 0) {
+        log.info("Archived {} transactions.", archived);
+      }
+    } catch (RuntimeException e) {
+      log.warn("Archiving of transactions failed.", e);
+    }
+  }
+
+  /**
+   * Completes the pending segments by deleting their transactions from the database, if they are still there.
+   */
+  void recover() {
+    for (ArchiveSegment segment : transactionArchive.getPendingSegments()) {
+      List<ArchivedTransaction> transactions = segment.transactions();
+      transactionTemplate.executeWithoutResult(status -> delete(transactions));
+      complete(segment);
+    }
+  }
+
+  /**
+   * Moves the next batch of archivable transactions into a new segment.
+   *
+   * @return The number of archived transactions.
+   */
+  int archive() {
+    LocalDateTime cutoff = LocalDate.now().minusDays(maxAgeDays).atStartOfDay();
+    List<ArchiveSegment> written = new ArrayList<>(1);
+    int archived = transactionTemplate.execute(status -> {
+      List<ArchivedTransaction> transactions = load(cutoff);
+      if (transactions.isEmpty()) {
+        return 0;
+      }
+      try {
+        written.add(transactionArchive.write(transactions));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      delete(transactions);
+      return transactions.size();
+    });
+    // A segment whose deletion failed stays pending and is completed by the next run
+    written.forEach(this::complete);
+    return archived;
+  }
+
+  /**
+   * Locks and reads the next archivable transactions with the current names of their wallets.
+   *
+   * @param cutoff The creation time before which transactions are archived.
+   * @return The transactions.
+   */
+  private List<ArchivedTransaction> load(LocalDateTime cutoff) {
+    List<Map<String, Object>> rows = jdbcTemplate.queryForList(ARCHIVABLE_QUERY, cutoff, segmentSize);
+    Set<UUID> walletIds = new HashSet<>();
+    for (Map<String, Object> row : rows) {
+      walletIds.add(uuid(row.get("sender_wallet_id")));
+      walletIds.add(uuid(row.get("receiver_wallet_id")));
+    }
+    walletIds.remove(null);
+    Map<UUID, String> names = names(walletIds);
+
+    List<ArchivedTransaction> transactions = new ArrayList<>(rows.size());
+    for (Map<String, Object> row : rows) {
+      UUID senderWalletId = uuid(row.get("sender_wallet_id"));
+      UUID receiverWalletId = uuid(row.get("receiver_wallet_id"));
+      transactions.add(new ArchivedTransaction(uuid(row.get("id")), senderWalletId, names.get(senderWalletId),
+          receiverWalletId, names.get(receiverWalletId), Currency.valueOf((String) row.get("currency")),
+          (String) row.get("account_number"), (String) row.get("bank_code"), (BigDecimal) row.get("amount"),
+          TransactionType.valueOf((String) row.get("transaction_type")),
+          TransactionStatus.valueOf((String) row.get("transaction_status")),
+          timestamp(row.get("created_at")), timestamp(row.get("updated_at")),
+          (BigDecimal) row.get("sender_balance_after"), (BigDecimal) row.get("receiver_balance_after")));
+    }
+    return transactions;
+  }
+
+  /**
+   * Reads the names of wallets in chunks.
+   *
+   * @param walletIds The IDs of the wallets.
+   * @return The names by the wallet IDs.
+   */
+  private Map<UUID, String> names(Set<UUID> walletIds) {
+    Map<UUID, String> names = new HashMap<>();
+    List<UUID> ids = new ArrayList<>(walletIds);
+    for (int start = 0; start < ids.size(); start += NAME_CHUNK_SIZE) {
+      List<UUID> chunk = ids.subList(start, Math.min(start + NAME_CHUNK_SIZE, ids.size()));
+      String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+      jdbcTemplate.query("SELECT id, name FROM wallet WHERE id IN (" + placeholders + ")",
+          rs -> {
+            names.put(rs.getObject("id", UUID.class), rs.getString("name"));
+          }, chunk.toArray());
+    }
+    return names;
+  }
+
+  /**
+   * Deletes transactions by their primary key and carries the net amounts of the deleted completed ones,
+   * in the database transaction of the caller.
+   *
+   * @param transactions The transactions, some of them may already be deleted.
+   */
+  private void delete(List<ArchivedTransaction> transactions) {
+    List<Object[]> keys = new ArrayList<>(transactions.size());
+    transactions.forEach(transaction -> keys.add(new Object[]{transaction.getId(), transaction.getCreatedAt()}));
+    int[] deleted = jdbcTemplate.batchUpdate("DELETE FROM transaction WHERE id = ? AND created_at = ?", keys);
+
+    // Only the transactions deleted now, a pending segment may be completed after its deletion was committed
+    Map<UUID, BigDecimal> carried = new TreeMap<>();
+    for (int i = 0; i < deleted.length; i++) {
+      ArchivedTransaction transaction = transactions.get(i);
+      if (deleted[i] > 0 && transaction.getTransactionStatus() == TransactionStatus.COMPLETED) {
+        if (transaction.getReceiverWalletId() != null) {
+          carried.merge(transaction.getReceiverWalletId(), transaction.getAmount(), BigDecimal::add);
+        }
+        if (transaction.getSenderWalletId() != null) {
+          carried.merge(transaction.getSenderWalletId(), transaction.getAmount().negate(), BigDecimal::add);
+        }
+      }
+    }
+    carry(carried);
+  }
+
+  /**
+   * Adds amounts to the carried balances of wallets, in the database transaction of the caller.
+   * <p>
+   * The rows are written in the order of the wallet IDs. A row inserted concurrently by another instance fails
+   * the archiving transaction, whose segment is then completed by the next run.
+   * </p>
+   *
+   * @param amounts The amounts by the wallet IDs.
+   */
+  private void carry(Map<UUID, BigDecimal> amounts) {
+    if (amounts.isEmpty()) {
+      return;
+    }
+    List<Map.Entry<UUID, BigDecimal>> entries = new ArrayList<>(amounts.entrySet());
+    List<Object[]> updates = new ArrayList<>(entries.size());
+    entries.forEach(entry -> updates.add(new Object[]{entry.getValue(), entry.getKey()}));
+    int[] updated = jdbcTemplate.batchUpdate(
+        "UPDATE wallet_carried_balance SET balance = balance + ? WHERE wallet_id = ?", updates);
+    List<Object[]> inserts = new ArrayList<>();
+    for (int i = 0; i < updated.length; i++) {
+      if (updated[i] == 0) {
+        inserts.add(new Object[]{entries.get(i).getKey(), entries.get(i).getValue()});
+      }
+    }
+    if (!inserts.isEmpty()) {
+      jdbcTemplate.batchUpdate("INSERT INTO wallet_carried_balance (wallet_id, balance) VALUES (?, ?)", inserts);
+    }
+  }
+
+  private void complete(ArchiveSegment segment) {
+    try {
+      transactionArchive.complete(segment);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static UUID uuid(Object value) {
+    return value instanceof UUID id ? id : value != null ? UUID.fromString(value.toString()) : null;
+  }
+
+  private static LocalDateTime timestamp(Object value) {
+    return value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) value;
+  }
+}
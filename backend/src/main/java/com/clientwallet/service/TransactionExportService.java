@@ -0,0 +1,275 @@
+package com.clientwallet.service;
+
+import com.clientwallet.archive.ArchiveSegment;
+import com.clientwallet.archive.ArchivedTransaction;
+import com.clientwallet.archive.TransactionArchive;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.UUID;
+
+/**
+ * TransactionExportService streams the full transaction history of a wallet for audits.
+ * <p>
+ * The rows are read by a server-side cursor with the fetch size {@code wallet.history.export.fetch-size}
+ * and written to the output one by one, without creating any entity. Only one batch of rows is held in memory,
+ * so the memory use does not depend on the size of the history. The cursor needs a database transaction,
+ * so the export runs in its own read-only transaction on the thread writing the response.
+ * </p>
+ * <p>
+ * The transactions of the {@link TransactionArchive} are merged into the rows of the cursor in the same order,
+ * also read page by page, so an export always contains the full history.
+ * </p>
+ */
+@Service
+public class TransactionExportService {
+
+  private static final String EXPORT_QUERY = "SELECT id, transaction_type, transaction_status, sender_wallet_id, " +
+      "receiver_wallet_id, amount, currency, bank_code, account_number, created_at FROM (" +
+      "SELECT * FROM transaction WHERE sender_wallet_id = ? " +
+      "UNION ALL " +
+      "SELECT * FROM transaction WHERE receiver_wallet_id = ?" +
+      ") t ORDER BY created_at, id";
+
+  private static final String[] COLUMNS = {"id", "transactionType", "transactionStatus", "senderWalletId",
+      "receiverWalletId", "amount", "currency", "bankCode", "accountNumber", "createdAt"};
+
+  @Autowired
+  private DataSource dataSource;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private TransactionArchive transactionArchive;
+
+  @Value("${wallet.history.export.fetch-size:500}")
+  private int fetchSize;
+
+  private JdbcTemplate jdbcTemplate;
+
+  private TransactionTemplate transactionTemplate;
+
+  /**
+   * The supported export formats.
+   */
+  @Getter
+  public enum Format {
+
+    /**
+     * Comma-separated values with a header line.
+     */
+    CSV("text/csv"),
+
+    /**
+     * Newline-delimited JSON, one object per transaction.
+     */
+    NDJSON("application/x-ndjson");
+
+    private final String contentType;
+
+    Format(String contentType) {
+      this.contentType = contentType;
+    }
+  }
+
+  /**
+   * Creates the templates used by the exports.
+   */
+  @PostConstruct
+  public void init() {
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    jdbcTemplate.setFetchSize(fetchSize);
+    transactionTemplate = new TransactionTemplate(transactionManager);
+    transactionTemplate.setReadOnly(true);
+  }
+
+  /**
+   * Writes all transactions of a wallet to the output, from the oldest to the newest.
+   *
+   * @param walletId The ID of the wallet.
+   * @param format   The format of the export.
+   * @param output   The output stream of the response.
+   * @throws IOException If writing to the output fails.
+   */
+  public void export(UUID walletId, Format format, OutputStream output) throws IOException {
+    try {
+      if (format == Format.CSV) {
+        exportCsv(walletId, output);
+      } else {
+        exportNdjson(walletId, output);
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Writes the transactions as comma-separated values.
+   *
+   * @param walletId The ID of the wallet.
+   * @param output   The output stream of the response.
+   * @throws IOException If writing to the output fails.
+   */
+  private void exportCsv(UUID walletId, OutputStream output) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    writer.write(String.join(",", COLUMNS));
+    writer.write('\n');
+    stream(walletId, values -> {
+      for (int i = 0; i < COLUMNS.length; i++) {
+        if (i > 0) {
+          writer.write(',');
+        }
+        writer.write(csvValue(values[i]));
+      }
+      writer.write('\n');
+    });
+    writer.flush();
+  }
+
+  /**
+   * Writes the transactions as newline-delimited JSON.
+   *
+   * @param walletId The ID of the wallet.
+   * @param output   The output stream of the response.
+   * @throws IOException If writing to the output fails.
+   */
+  private void exportNdjson(UUID walletId, OutputStream output) throws IOException {
+    try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.setRootValueSeparator(null);
+      stream(walletId, values -> {
+        generator.writeStartObject();
+        for (int i = 0; i < COLUMNS.length; i++) {
+          if (values[i] == null) {
+            generator.writeNullField(COLUMNS[i]);
+          } else if (COLUMNS[i].equals("amount")) {
+            generator.writeNumberField(COLUMNS[i], new BigDecimal(values[i]));
+          } else {
+            generator.writeStringField(COLUMNS[i], values[i]);
+          }
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+      });
+    }
+  }
+
+  /**
+   * Reads the transactions of a wallet by a server-side cursor, merges the archived transactions into them
+   * and passes every row to the writer.
+   *
+   * @param walletId The ID of the wallet.
+   * @param writer   The writer of a single row.
+   */
+  private void stream(UUID walletId, RowWriter writer) {
+    Iterator<ArchivedTransaction> archived = transactionArchive.iterate(walletId, fetchSize);
+    ArchivedTransaction[] next = {archived.hasNext() ? archived.next() : null};
+    transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(EXPORT_QUERY, resultSet -> {
+      UUID id = resultSet.getObject(1, UUID.class);
+      LocalDateTime createdAt = resultSet.getObject(COLUMNS.length, LocalDateTime.class);
+      while (next[0] != null && compare(next[0], createdAt, id) <= 0) {
+        // A transaction which is still in the database while it is archived is written once
+        if (!next[0].getId().equals(id)) {
+          write(writer, values(next[0]));
+        }
+        next[0] = archived.hasNext() ? archived.next() : null;
+      }
+      String[] values = new String[COLUMNS.length];
+      for (int i = 0; i < COLUMNS.length; i++) {
+        values[i] = resultSet.getString(i + 1);
+      }
+      write(writer, values);
+    }, walletId, walletId));
+    while (next[0] != null) {
+      write(writer, values(next[0]));
+      next[0] = archived.hasNext() ? archived.next() : null;
+    }
+  }
+
+  private static void write(RowWriter writer, String[] values) {
+    try {
+      writer.write(values);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static int compare(ArchivedTransaction transaction, LocalDateTime createdAt, UUID id) {
+    int result = transaction.getCreatedAt().compareTo(createdAt);
+    return result != 0 ? result : ArchiveSegment.compare(transaction.getId(), id);
+  }
+
+  /**
+   * Converts an archived transaction to the values of the exported columns, formatted like the database does.
+   *
+   * @param transaction The archived transaction.
+   * @return The values in the order of {@link #COLUMNS}.
+   */
+  private static String[] values(ArchivedTransaction transaction) {
+    String createdAt = Timestamp.valueOf(transaction.getCreatedAt()).toString();
+    return new String[]{transaction.getId().toString(), transaction.getTransactionType().name(),
+        transaction.getTransactionStatus().name(), string(transaction.getSenderWalletId()),
+        string(transaction.getReceiverWalletId()), transaction.getAmount().toPlainString(),
+        transaction.getCurrency().name(), transaction.getBankCode(), transaction.getAccountNumber(),
+        createdAt.endsWith(".0") ? createdAt.substring(0, createdAt.length() - 2) : createdAt};
+  }
+
+  private static String string(UUID id) {
+    return id != null ? id.toString() : null;
+  }
+
+  /**
+   * Quotes a CSV value if it contains a separator, a quote or a line break.
+   *
+   * @param value The value of a column, may be null.
+   * @return The value to be written.
+   */
+  private static String csvValue(String value) {
+    if (value == null) {
+      return "";
+    }
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+
+  /**
+   * Writes a single row of the result set.
+   */
+  @FunctionalInterface
+  private interface RowWriter {
+
+    /**
+     * Writes a row.
+     *
+     * @param values The values of the row in the order of the exported columns, {@code null} for missing values.
+     * @throws IOException If writing the row fails.
+     */
+    void write(String[] values) throws IOException;
+  }
+}
@@ -0,0 +1,124 @@
+package com.clientwallet.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TransactionPartitionManager creates the monthly partitions of the transaction table ahead of time.
+ * <p>
+ * On PostgreSQL the transaction table is partitioned by month on {@code created_at}, see
+ * {@code database/03-transaction.sql}. Once the application is ready and then every
+ * {@code wallet.partitions.check-interval-minutes}, the partitions of the current month and the following
+ * {@code wallet.partitions.months-ahead} months are created by the {@code create_transaction_partitions} function,
+ * which skips existing ones. New transactions therefore never fall into the default partition, which would block
+ * the creation of the partition of their month.
+ * </p>
+ * <p>
+ * Nothing is done on other databases or if the table is not partitioned, e.g. the in-memory database of the tests.
+ * </p>
+ */
+@Slf4j
+@Component
+public class TransactionPartitionManager {
+
+  private static final String PARTITIONED_QUERY = "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table " +
+      "WHERE partrelid = to_regclass('transaction'))";
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Value("${wallet.partitions.enabled:true}")
+  private boolean enabled;
+
+  @Value("${wallet.partitions.months-ahead:3}")
+  private int monthsAhead;
+
+  @Value("${wallet.partitions.check-interval-minutes:60}")
+  private long checkIntervalMinutes;
+
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Creates the missing partitions and schedules the next checks, if the transaction table is partitioned.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled || !isPartitioned()) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "transaction-partition-manager");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::createPartitions, 0, checkIntervalMinutes, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Stops the scheduled checks.
+   */
+  @PreDestroy
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Creates the partitions of the current month and the configured number of following months which do not exist yet.
+   *
+   * @return The number of created partitions, or {@code -1} if the creation failed.
+   */
+  int createPartitions() {
+    try {
+      Integer created = jdbcTemplate.queryForObject("SELECT create_transaction_partitions(?, ?)", Integer.class,
+          LocalDate.now().withDayOfMonth(1), monthsAhead + 1);
+      if (created != null && created > 0) {
+        log.info("Created {} monthly partitions of the transaction table.", created);
+      }
+      return created != null ? created : 0;
+    } catch (RuntimeException e) {
+      log.warn("Creation of the transaction partitions failed.", e);
+      return -1;
+    }
+  }
+
+  /**
+   * Checks whether the transaction table is a partitioned PostgreSQL table.
+   *
+   * @return {@code true} if the table is partitioned.
+   */
+  private boolean isPartitioned() {
+    try {
+      return isPartitionedTable();
+    } catch (RuntimeException e) {
+      log.warn("The partitioning of the transaction table could not be checked, no partitions are created.", e);
+      return false;
+    }
+  }
+
+  private boolean isPartitionedTable() {
+    String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+        connection.getMetaData().getDatabaseProductName());
+    if (!"PostgreSQL".equals(product)) {
+      return false;
+    }
+    boolean partitioned = Boolean.TRUE.equals(jdbcTemplate.queryForObject(PARTITIONED_QUERY, Boolean.class));
+    if (!partitioned) {
+      log.info("The transaction table is not partitioned, no partitions are created.");
+    }
+    return partitioned;
+  }
+}
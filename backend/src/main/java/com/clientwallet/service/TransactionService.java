@@ -0,0 +1,41 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.transaction.TransactionView;
+import com.clientwallet.exception.transaction.TransactionNotFoundException;
+import com.clientwallet.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+/**
+ * TransactionService is a service class that provides read access to single transactions.
+ * <p>
+ * It is used to poll the status of transactions submitted asynchronously, which stay
+ * {@link com.clientwallet.model.TransactionStatus#PENDING PENDING} until they are applied
+ * by the {@link PendingTransactionProcessor}.
+ * </p>
+ */
+@Service
+public class TransactionService {
+
+  @Autowired
+  private TransactionRepository transactionRepository;
+
+  /**
+   * Retrieves a transaction by its unique ID.
+   * <p>
+   * The transaction is read by a single projection query, which selects only the IDs and names of its wallets.
+   * </p>
+   *
+   * @param transactionId The ID of the transaction to be fetched.
+   * @return The {@link TransactionView} of the transaction if found.
+   * @throws TransactionNotFoundException If no transaction is found with the provided ID.
+   */
+  @Transactional(readOnly = true)
+  public TransactionView get(UUID transactionId) {
+    return transactionRepository.findSummaryById(transactionId).map(TransactionView::new)
+        .orElseThrow(() -> new TransactionNotFoundException(transactionId));
+  }
+}
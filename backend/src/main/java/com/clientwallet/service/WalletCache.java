@@ -0,0 +1,99 @@
+package com.clientwallet.service;
+
+import com.clientwallet.model.Wallet;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * WalletCache is a bounded in-process read-through cache of wallets read by {@link WalletService#get(UUID)}.
+ * <p>
+ * A wallet is loaded from the database on the first read and kept for at most
+ * {@code wallet.cache.expire-after-seconds}, the cache holds at most {@code wallet.cache.max-size} wallets.
+ * Changed wallets are invalidated when a {@link WalletChangedEvent} is handled after the commit of the changing
+ * transaction, never before, so the cache cannot be refilled with a balance which is rolled back later.
+ * A read loading a wallet blocks the invalidation of the same wallet until it is stored, so a value loaded before
+ * the commit is always removed by the invalidation following it. Changes made by other application instances
+ * are only visible once the cached wallet expires.
+ * </p>
+ * <p>
+ * Reads inside a transaction bypass the cache, so they see the changes of their own transaction. The hits, misses
+ * and evictions are reported by the {@code cache.*} metrics tagged with {@code cache=wallet}. The cache is disabled
+ * by {@code wallet.cache.enabled=false} for deployments requiring every read to see the committed state of all
+ * application instances.
+ * </p>
+ */
+@Component
+public class WalletCache {
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${wallet.cache.enabled:true}")
+  private boolean enabled;
+
+  @Value("${wallet.cache.max-size:10000}")
+  private long maxSize;
+
+  @Value("${wallet.cache.expire-after-seconds:30}")
+  private long expireAfterSeconds;
+
+  private Cache<UUID, Wallet> cache;
+
+  /**
+   * Creates the cache with the configured size and expiration and registers its metrics, if it is enabled.
+   */
+  @PostConstruct
+  public void init() {
+    if (!enabled) {
+      return;
+    }
+    cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(Duration.ofSeconds(expireAfterSeconds))
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "wallet");
+  }
+
+  /**
+   * Returns the cached wallet or loads it and stores it in the cache.
+   *
+   * @param walletId The ID of the wallet.
+   * @param loader   The function loading the committed state of the wallet from the database.
+   * @return The wallet.
+   * @throws RuntimeException The exception thrown by the loader, which is not cached.
+   */
+  public Wallet get(UUID walletId, Function<UUID, Wallet> loader) {
+    if (cache == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+      return loader.apply(walletId);
+    }
+    return cache.get(walletId, loader);
+  }
+
+  /**
+   * Removes the changed wallets from the cache once the changing transaction is committed.
+   * <p>
+   * An event published outside a transaction is handled immediately.
+   * </p>
+   *
+   * @param event The event of the changed wallets.
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onWalletChanged(WalletChangedEvent event) {
+    if (cache != null) {
+      cache.invalidateAll(event.walletIds());
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.wallet.WalletEvent;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * WalletChangedEvent is published by the {@link WalletService} whenever it changes the balance or the settings
+ * of wallets.
+ * <p>
+ * The event is published inside the transaction which made the change. Listeners which must not observe
+ * uncommitted changes handle it after the commit, so the event of a rolled back transaction is never handled.
+ * </p>
+ *
+ * @param walletIds The IDs of the changed wallets.
+ * @param events    The balances and transactions of the changed wallets, one per wallet and transaction,
+ *                  empty if the change did not create transactions.
+ */
+public record WalletChangedEvent(Collection<UUID> walletIds, List<WalletEvent> events) {
+
+  /**
+   * Creates the event of a change which did not create transactions.
+   *
+   * @param walletIds The IDs of the changed wallets.
+   */
+  public WalletChangedEvent(Collection<UUID> walletIds) {
+    this(walletIds, List.of());
+  }
+}
@@ -0,0 +1,302 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.wallet.WalletEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * WalletEventBroadcaster pushes the committed changes of wallets to the subscribers of their event streams
+ * (GET /wallet/{walletId}/events) as Server-Sent Events.
+ * <p>
+ * The subscribers are registered per wallet in a concurrent map, so the committing thread which handles a
+ * {@link WalletChangedEvent} only looks up the subscribers of the changed wallets and offers each of them the event,
+ * it never waits for a client. Every subscriber has its own queue bounded by {@code wallet.events.buffer-size} which
+ * is drained to the client by a virtual thread. A subscriber whose queue is full is dropped and its stream completed,
+ * so a slow or stalled client cannot build up memory. Clients reconnect and receive the current balance again.
+ * </p>
+ * <p>
+ * A heartbeat comment is queued every {@code wallet.events.heartbeat-interval-ms}, which keeps idle streams open
+ * through proxies and detects closed connections. Only the changes made by this application instance are pushed.
+ * Events of concurrent transactions may arrive in any order, the balance of an event is the balance right after
+ * its transaction. The number of subscribers and dropped subscribers are reported by the
+ * {@code wallet.events.subscribers} and {@code wallet.events.dropped} metrics.
+ * </p>
+ */
+@Slf4j
+@Component
+public class WalletEventBroadcaster {
+
+  static final String EVENT_NAME = "wallet";
+
+  /**
+   * Queued instead of an event to send a heartbeat comment.
+   */
+  private static final WalletEvent HEARTBEAT = new WalletEvent();
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${wallet.events.buffer-size:64}")
+  private int bufferSize;
+
+  @Value("${wallet.events.timeout-ms:1800000}")
+  private long timeoutMs;
+
+  @Value("${wallet.events.heartbeat-interval-ms:15000}")
+  private long heartbeatIntervalMs;
+
+  private final Map<UUID, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+  private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+  private ScheduledExecutorService heartbeats;
+
+  private Counter dropped;
+
+  /**
+   * Registers the metrics and schedules the heartbeats.
+   */
+  @PostConstruct
+  public void init() {
+    meterRegistry.gauge("wallet.events.subscribers", subscribers,
+        map -> map.values().stream().mapToInt(Set::size).sum());
+    dropped = meterRegistry.counter("wallet.events.dropped");
+    if (heartbeatIntervalMs > 0) {
+      heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "wallet-event-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+      });
+      heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Completes all streams and stops the heartbeats.
+   */
+  @PreDestroy
+  public void stop() {
+    if (heartbeats != null) {
+      heartbeats.shutdownNow();
+    }
+    senders.shutdownNow();
+    subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter().complete()));
+    subscribers.clear();
+  }
+
+  /**
+   * Subscribes to the events of a wallet.
+   * <p>
+   * The subscriber is registered before the current balance is read, so no change committed after the balance
+   * is missed. The first event only carries the current balance. The events of changes committed while the balance
+   * is read are held back and sent after it, so the balance of an older state never follows a newer event.
+   * </p>
+   *
+   * @param walletId       The ID of the wallet.
+   * @param currentBalance Reads the current balance of the wallet.
+   * @return The emitter of the stream.
+   * @throws RuntimeException The exception thrown when reading the balance, the subscriber is removed then.
+   */
+  public SseEmitter subscribe(UUID walletId, Supplier<BigDecimal> currentBalance) {
+    SseEmitter emitter = new SseEmitter(timeoutMs);
+    Subscriber subscriber = new Subscriber(walletId, emitter, new LinkedBlockingDeque<>(bufferSize));
+    // No sender is started until the current balance is queued in front of the held back events
+    subscriber.draining().set(true);
+    emitter.onCompletion(() -> remove(subscriber));
+    emitter.onTimeout(emitter::complete);
+    emitter.onError(error -> remove(subscriber));
+    subscribers.compute(walletId, (id, set) -> {
+      Set<Subscriber> result = set != null ? set : ConcurrentHashMap.newKeySet();
+      result.add(subscriber);
+      return result;
+    });
+
+    BigDecimal balance;
+    try {
+      balance = currentBalance.get();
+    } catch (RuntimeException e) {
+      remove(subscriber);
+      throw e;
+    }
+    boolean queued = subscriber.queue().offerFirst(new WalletEvent(walletId, balance, null, null, null, null, null, null, null));
+    subscriber.draining().set(false);
+    if (queued) {
+      drain(subscriber);
+    } else if (remove(subscriber)) {
+      // Too many changes were committed while the balance was read
+      dropped.increment();
+      close(subscriber);
+    }
+    return emitter;
+  }
+
+  /**
+   * Offers the events of the changed wallets to their subscribers once the changing transaction is committed.
+   * <p>
+   * An event published outside a transaction is handled immediately.
+   * </p>
+   *
+   * @param event The event of the changed wallets.
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onWalletChanged(WalletChangedEvent event) {
+    for (WalletEvent walletEvent : event.events()) {
+      Set<Subscriber> set = subscribers.get(walletEvent.getWalletId());
+      if (set != null) {
+        set.forEach(subscriber -> offer(subscriber, walletEvent));
+      }
+    }
+  }
+
+  /**
+   * Returns the number of subscribers of a wallet.
+   *
+   * @param walletId The ID of the wallet.
+   * @return The number of subscribers.
+   */
+  int subscriberCount(UUID walletId) {
+    Set<Subscriber> set = subscribers.get(walletId);
+    return set != null ? set.size() : 0;
+  }
+
+  /**
+   * Queues a heartbeat for every subscriber.
+   */
+  private void heartbeat() {
+    subscribers.values().forEach(set -> set.forEach(subscriber -> offer(subscriber, HEARTBEAT)));
+  }
+
+  /**
+   * Queues an event for a subscriber and starts draining its queue, or drops the subscriber if its queue is full.
+   *
+   * @param subscriber The subscriber.
+   * @param event      The event.
+   */
+  private void offer(Subscriber subscriber, WalletEvent event) {
+    if (subscriber.queue().offer(event)) {
+      drain(subscriber);
+    } else if (remove(subscriber)) {
+      dropped.increment();
+      log.debug("Dropped the slow subscriber of wallet {}.", subscriber.walletId());
+      close(subscriber);
+    }
+  }
+
+  /**
+   * Starts a sender draining the queue of a subscriber, unless one is already running.
+   *
+   * @param subscriber The subscriber.
+   */
+  private void drain(Subscriber subscriber) {
+    if (!subscriber.draining().compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      senders.execute(() -> send(subscriber));
+    } catch (RuntimeException e) {
+      // Rejected once the application is shutting down
+      subscriber.draining().set(false);
+    }
+  }
+
+  /**
+   * Sends the queued events of a subscriber to the client until the queue is empty.
+   * <p>
+   * An event queued after the queue was found empty starts a new sender, so it is never left in the queue.
+   * </p>
+   *
+   * @param subscriber The subscriber.
+   */
+  private void send(Subscriber subscriber) {
+    try {
+      WalletEvent event;
+      while ((event = subscriber.queue().poll()) != null) {
+        if (event == HEARTBEAT) {
+          subscriber.emitter().send(SseEmitter.event().comment("heartbeat"));
+        } else {
+          subscriber.emitter().send(SseEmitter.event().name(EVENT_NAME).data(event, MediaType.APPLICATION_JSON));
+        }
+      }
+    } catch (IOException | IllegalStateException e) {
+      // The client is gone or the stream is already completed
+      remove(subscriber);
+      subscriber.queue().clear();
+    } finally {
+      subscriber.draining().set(false);
+    }
+    if (!subscriber.queue().isEmpty()) {
+      drain(subscriber);
+    }
+  }
+
+  /**
+   * Removes a subscriber from the registry.
+   *
+   * @param subscriber The subscriber.
+   * @return {@code true} if the subscriber was registered.
+   */
+  private boolean remove(Subscriber subscriber) {
+    AtomicBoolean removed = new AtomicBoolean();
+    subscribers.computeIfPresent(subscriber.walletId(), (id, set) -> {
+      removed.set(set.remove(subscriber));
+      return set.isEmpty() ? null : set;
+    });
+    return removed.get();
+  }
+
+  /**
+   * Completes the stream of a subscriber without blocking the calling thread.
+   * <p>
+   * Completing waits for a send in progress, which may be blocked by the client, so it is done by a sender.
+   * </p>
+   *
+   * @param subscriber The subscriber.
+   */
+  private void close(Subscriber subscriber) {
+    subscriber.queue().clear();
+    try {
+      senders.execute(subscriber.emitter()::complete);
+    } catch (RuntimeException e) {
+      subscriber.emitter().complete();
+    }
+  }
+
+  /**
+   * A client subscribed to the events of a wallet.
+   *
+   * @param walletId The ID of the wallet.
+   * @param emitter  The emitter of the stream.
+   * @param queue    The events not yet sent to the client.
+   * @param draining Whether a sender is draining the queue.
+   */
+  private record Subscriber(UUID walletId, SseEmitter emitter, BlockingDeque<WalletEvent> queue, AtomicBoolean draining) {
+
+    Subscriber(UUID walletId, SseEmitter emitter, BlockingDeque<WalletEvent> queue) {
+      this(walletId, emitter, queue, new AtomicBoolean());
+    }
+  }
+}
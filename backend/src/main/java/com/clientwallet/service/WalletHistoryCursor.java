@@ -0,0 +1,50 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.transaction.TransactionView;
+import com.clientwallet.exception.wallet.WalletHistoryInvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * The position of a transaction in the history of a wallet, encoded as an opaque cursor.
+ * <p>
+ * The cursors are shared by the servlet and the reactive history endpoints, so a cursor returned by one of them
+ * can be passed to the other.
+ * </p>
+ *
+ * @param createdAt The creation time of the transaction.
+ * @param id        The ID of the transaction, which orders transactions created at the same time.
+ */
+public record WalletHistoryCursor(LocalDateTime createdAt, UUID id) {
+
+  /**
+   * Encodes the position of a transaction.
+   *
+   * @param transaction The transaction.
+   * @return The cursor of the transaction.
+   */
+  public static String of(TransactionView transaction) {
+    String position = transaction.getCreatedAt() + "|" + transaction.getId();
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes a cursor.
+   *
+   * @param cursor The cursor returned by a previous page.
+   * @return The position of the transaction.
+   * @throws WalletHistoryInvalidCursorException If the cursor cannot be decoded.
+   */
+  public static WalletHistoryCursor decode(String cursor) {
+    try {
+      String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+      return new WalletHistoryCursor(LocalDateTime.parse(position[0]), UUID.fromString(position[1]));
+    } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+      throw new WalletHistoryInvalidCursorException(cursor);
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package com.clientwallet.service;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * WalletKeyRange is a contiguous range of wallet IDs, used to split work on all wallets into independent chunks.
+ * <p>
+ * The ranges returned by {@link #split(int)} divide the space of IDs evenly by their leading 64 bits, compared
+ * unsigned like the UUID columns of the database, so randomly generated IDs spread evenly over them.
+ * </p>
+ *
+ * @param from The first ID of the range, inclusive.
+ * @param to   The end of the range, exclusive, or {@code null} for the end of the ID space.
+ */
+public record WalletKeyRange(UUID from, UUID to) {
+
+  /**
+   * Splits the space of all wallet IDs into ranges of equal size.
+   *
+   * @param count The number of ranges.
+   * @return The ranges in ascending order, covering every ID exactly once.
+   */
+  public static List<WalletKeyRange> split(int count) {
+    List<WalletKeyRange> ranges = new ArrayList<>(count);
+    BigInteger space = BigInteger.ONE.shiftLeft(Long.SIZE);
+    UUID from = new UUID(0L, 0L);
+    for (int i = 1; i <= count; i++) {
+      // The low 64 bits of the quotient are the unsigned leading bits of the boundary
+      UUID to = i < count
+          ? new UUID(space.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(count)).longValue(), 0L)
+          : null;
+      ranges.add(new WalletKeyRange(from, to));
+      from = to;
+    }
+    return ranges;
+  }
+
+  /**
+   * Returns the index of the range containing an ID in the ranges returned by {@link #split(int)}.
+   *
+   * @param id    The ID.
+   * @param count The number of ranges.
+   * @return The index of the range.
+   */
+  public static int indexOf(UUID id, int count) {
+    // The largest index whose boundary floor(2^64 * index / count) is at most the leading bits
+    BigInteger space = BigInteger.ONE.shiftLeft(Long.SIZE);
+    BigInteger leading = new BigInteger(Long.toUnsignedString(id.getMostSignificantBits()));
+    BigInteger scaled = leading.add(BigInteger.ONE).multiply(BigInteger.valueOf(count));
+    return scaled.add(space).subtract(BigInteger.ONE).divide(space).intValue() - 1;
+  }
+
+  /**
+   * Returns the SQL condition restricting a column to the range, with one or two parameters.
+   *
+   * @param column The column of the wallet ID.
+   * @return The condition, whose parameters are returned by {@link #arguments(Object...)}.
+   */
+  public String condition(String column) {
+    return to != null ? column + " >= ? AND " + column + " < ?" : column + " >= ?";
+  }
+
+  /**
+   * Returns the arguments of a query ending with the {@link #condition(String) condition} of the range.
+   *
+   * @param preceding The arguments of the parameters preceding the condition.
+   * @return The arguments of all parameters of the query.
+   */
+  public Object[] arguments(Object... preceding) {
+    List<Object> arguments = new ArrayList<>(Arrays.asList(preceding));
+    arguments.add(from);
+    if (to != null) {
+      arguments.add(to);
+    }
+    return arguments.toArray();
+  }
+}
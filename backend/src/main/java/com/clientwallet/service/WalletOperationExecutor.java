@@ -0,0 +1,122 @@
+package com.clientwallet.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * WalletOperationExecutor runs state-changing wallet operations and re-runs them when they fail on a concurrent
+ * modification of the same wallet.
+ * <p>
+ * An operation is retried when it fails with an {@link OptimisticLockException} or a Spring
+ * {@link ConcurrencyFailureException} (optimistic lock conflict, deadlock or lock timeout), also when such an exception
+ * is the cause of another exception. Every attempt runs the whole business logic again in a new transaction, so it
+ * always works with the current state of the wallets. Retries are delayed by a bounded exponential backoff with
+ * full jitter, so conflicting callers do not collide again at the same moment.
+ * </p>
+ * <p>
+ * Every retry is counted by the {@code wallet.operation.retries} metric and operations which still fail after the
+ * last attempt are counted by the {@code wallet.operation.retries.exhausted} metric. The metrics are not tagged with
+ * wallet IDs, which would create a meter per wallet. The wallets with the highest contention are reported by the
+ * log instead: every retry at debug level and every exhausted operation at warn level.
+ * </p>
+ * <p>
+ * If the {@link ShardedLedgerEngine} is enabled, every attempt is submitted to the shard of the involved wallets
+ * instead of being executed on the calling thread.
+ * </p>
+ */
+@Slf4j
+@Component
+public class WalletOperationExecutor {
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired(required = false)
+  private ShardedLedgerEngine shardedLedgerEngine;
+
+  @Value("${wallet.retry.max-attempts:5}")
+  private int maxAttempts;
+
+  @Value("${wallet.retry.initial-backoff-ms:10}")
+  private long initialBackoffMs;
+
+  @Value("${wallet.retry.max-backoff-ms:200}")
+  private long maxBackoffMs;
+
+  /**
+   * Executes the operation and retries it on a concurrent modification of one of the involved wallets.
+   *
+   * @param walletIds The IDs of the wallets changed by the operation, used to log the retries and to select
+   *                  the shard of the {@link ShardedLedgerEngine}.
+   * @param operation The operation to be executed, it must be transactional.
+   * @param <T>       The type of the operation result.
+   * @return The result of the first successful attempt.
+   * @throws RuntimeException The exception of the last attempt if the operation did not succeed.
+   */
+  public <T> T execute(Collection<UUID> walletIds, Supplier<T> operation) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        if (shardedLedgerEngine != null) {
+          return shardedLedgerEngine.submit(walletIds, operation);
+        }
+        return operation.get();
+      } catch (RuntimeException e) {
+        if (!isConcurrencyFailure(e)) {
+          throw e;
+        }
+        if (attempt >= maxAttempts) {
+          meterRegistry.counter("wallet.operation.retries.exhausted").increment();
+          log.warn("Operation on wallets {} failed after {} attempts on a concurrent modification.", walletIds, attempt);
+          throw e;
+        }
+        meterRegistry.counter("wallet.operation.retries").increment();
+        log.debug("Retrying operation on wallets {} after attempt {} failed on a concurrent modification.", walletIds, attempt);
+        backoff(attempt, e);
+      }
+    }
+  }
+
+  /**
+   * Waits before the next attempt.
+   * <p>
+   * The delay is a random value between zero and the exponentially growing backoff, capped by the maximum backoff.
+   * </p>
+   *
+   * @param attempt The number of the failed attempt.
+   * @param failure The failure of the attempt, rethrown if the waiting thread is interrupted.
+   */
+  private void backoff(int attempt, RuntimeException failure) {
+    long backoff = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+    try {
+      Thread.sleep(ThreadLocalRandom.current().nextLong(backoff + 1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw failure;
+    }
+  }
+
+  /**
+   * Checks whether the exception or one of its causes reports a concurrent modification.
+   *
+   * @param e The exception thrown by the operation.
+   * @return {@code true} if the operation can succeed when it is executed again, otherwise {@code false}.
+   */
+  private static boolean isConcurrencyFailure(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof ConcurrencyFailureException || cause instanceof OptimisticLockException) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -1,20 +1,53 @@
 package com.clientwallet.service;
 
+import com.clientwallet.archive.ArchivedTransaction;
+import com.clientwallet.archive.TransactionArchive;
+import com.clientwallet.dto.transaction.TransactionView;
+import com.clientwallet.dto.wallet.WalletBalance;
 import com.clientwallet.dto.wallet.WalletCreateRequest;
 import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.dto.wallet.WalletEvent;
+import com.clientwallet.dto.wallet.WalletHistoryPage;
+import com.clientwallet.dto.wallet.WalletListPage;
+import com.clientwallet.dto.wallet.WalletListRequest;
+import com.clientwallet.dto.wallet.WalletStripeRequest;
+import com.clientwallet.dto.wallet.WalletTransferBatchResult;
 import com.clientwallet.dto.wallet.WalletTransferRequest;
 import com.clientwallet.dto.wallet.WalletWithdrawRequest;
 import com.clientwallet.exception.wallet.*;
 import com.clientwallet.model.*;
 import com.clientwallet.repository.TransactionRepository;
+import com.clientwallet.repository.TransactionSummary;
 import com.clientwallet.repository.WalletRepository;
-import jakarta.transaction.Transactional;
+import com.clientwallet.repository.WalletSearchRepository;
+import com.clientwallet.repository.WalletStripeRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * WalletService is a service class that provides various wallet-related operations.
@@ -23,6 +56,24 @@ import java.util.UUID;
  * <p>
  * This service ensures that the operations are executed with the appropriate business logic and validations.
  * All state-changing operations (deposit, withdraw, transfer) are handled within transactions to ensure consistency.
+ * Balances are never read, changed in memory and written back; they are changed by conditional update statements
+ * of the {@link WalletRepository}, so concurrent operations on the same wallet cannot lose updates.
+ * </p>
+ * <p>
+ * A wallet can be split into {@link WalletStripe stripes}. Deposits to a striped wallet go to a random stripe instead
+ * of the wallet row and withdrawals take the funds from the wallet row or from any stripe covering the whole amount.
+ * If none of them does, the stripes are consolidated back into the wallet row before the withdrawal is retried.
+ * Wallets returned by this service always report the total balance of the wallet row and all its stripes.
+ * </p>
+ * <p>
+ * Batches of transfers are the exception to the rule above: the balances of all involved wallets are loaded at once,
+ * the transfers are applied in memory and the results are written by JDBC batch statements, guarded by the version
+ * of every changed wallet.
+ * </p>
+ * <p>
+ * Every applied transaction also appends its debit and credit leg to the {@link LedgerJournal} in the same database
+ * transaction, so the stored balances always remain the projection of the journal and can be rebuilt from it
+ * by the {@link JournalReplayer}.
  * </p>
  */
 @Service
@@ -34,6 +85,64 @@ public class WalletService {
   @Autowired
   private TransactionRepository transactionRepository;
 
+  @Autowired
+  private WalletStripeRepository walletStripeRepository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Autowired
+  private WalletCache walletCache;
+
+  @Autowired
+  private KnownWalletIndex knownWalletIndex;
+
+  @Autowired
+  private TransactionArchive transactionArchive;
+
+  @Autowired
+  private LedgerJournal ledgerJournal;
+
+  @Autowired
+  private ApplicationEventPublisher eventPublisher;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Value("${wallet.transfer.batch.max-size:1000}")
+  private int transferBatchMaxSize;
+
+  @Value("${wallet.transfer.batch.all-or-nothing:true}")
+  private boolean transferBatchAllOrNothing;
+
+  @Value("${wallet.history.page-size:50}")
+  private int historyPageSize;
+
+  @Value("${wallet.history.max-page-size:500}")
+  private int historyMaxPageSize;
+
+  @Value("${wallet.list.page-size:100}")
+  private int listPageSize;
+
+  @Value("${wallet.list.max-page-size:1000}")
+  private int listMaxPageSize;
+
+  private TransactionTemplate primaryReadTemplate;
+
+  /**
+   * Creates the template of the reads filling the {@link WalletCache}.
+   * <p>
+   * It is not read-only, so the wallets are read from the primary database even if read replicas are configured.
+   * </p>
+   */
+  @PostConstruct
+  public void init() {
+    primaryReadTemplate = new TransactionTemplate(transactionManager);
+  }
+
   /**
    * Creates a new wallet.
    * <p>
@@ -54,13 +163,20 @@ public class WalletService {
     wallet.setCurrency(request.getCurrency());
     wallet.setBalance(BigDecimal.ZERO);
 
-    return walletRepository.save(wallet);
+    Wallet created = walletRepository.save(wallet);
+    knownWalletIndex.add(created.getId());
+    changed(created.getId());
+    return created;
   }
 
   /**
    * Retrieves a wallet by its unique ID.
    * <p>
    * If the wallet with the given ID does not exist, a {@link WalletNotFoundException} is thrown.
+   * The balance of a striped wallet is the sum of the wallet row and all its stripes.
+   * The wallet is read through the {@link WalletCache}, which is invalidated after every committed change.
+   * Unlike the other reads, it is not read-only and so it is loaded from the primary database, because a value loaded
+   * from a lagging replica right after the invalidation would be cached until it expires.
    * </p>
    *
    * @param walletId The ID of the wallet to be fetched.
@@ -68,39 +184,155 @@ public class WalletService {
    * @throws WalletNotFoundException If no wallet is found with the provided ID.
    */
   public Wallet get(UUID walletId) {
-    return walletRepository.findById(walletId).orElseThrow(() -> new WalletNotFoundException(walletId));
+    return walletCache.get(walletId, this::loadFromPrimary);
+  }
+
+  /**
+   * Checks whether a wallet exists.
+   * <p>
+   * Wallets unknown to the {@link KnownWalletIndex} are reported as missing, mostly without a database round trip.
+   * Other wallets are read through the {@link WalletCache}, so a following {@link #get(UUID)} of the same wallet
+   * reuses the loaded wallet instead of reading it again.
+   * </p>
+   *
+   * @param walletId The ID of the wallet.
+   * @return {@code true} if the wallet exists, otherwise {@code false}.
+   */
+  public boolean exists(UUID walletId) {
+    if (!knownWalletIndex.mightExist(walletId)) {
+      return false;
+    }
+    try {
+      get(walletId);
+      return true;
+    } catch (WalletNotFoundException e) {
+      return false;
+    }
   }
 
   /**
-   * Retrieves a list of all wallets.
+   * Retrieves one page of wallets matching the filters of the request.
+   * <p>
+   * The wallets are ordered by the requested property and their ID and paginated by a cursor on these values
+   * (keyset pagination), so the cost of a page does not depend on its position in the list.
+   * The balance of a striped wallet is the sum of the wallet row and all its stripes, while the balance filters
+   * and the balance sort use the balance of the wallet row.
+   * </p>
    *
-   * @return A list of all {@link Wallet} objects stored in the system.
+   * @param request The request object containing the filters, the sort and the cursor.
+   * @return The page of {@link Wallet} objects with the cursor of the next page.
+   * @throws WalletListInvalidCursorException If the cursor is invalid or was returned for another sort.
    */
-  public List<Wallet> list() {
-    return walletRepository.findAll();
+  @Transactional(readOnly = true)
+  public WalletListPage list(WalletListRequest request) {
+    WalletSearchRepository.Sort sort = WalletSearchRepository.Sort.valueOf(request.getSort().toUpperCase());
+    int pageSize = Math.min(request.getLimit() != null ? request.getLimit() : listPageSize, listMaxPageSize);
+    ListCursor cursor = request.getAfter() != null ? ListCursor.decode(request.getAfter(), sort) : null;
+
+    List<Wallet> wallets = walletRepository.findPage(request.getCurrency(), request.getMinBalance(), request.getMaxBalance(),
+        sort, "desc".equals(request.getDirection()), cursor != null ? cursor.value() : null,
+        cursor != null ? cursor.id() : null, pageSize + 1);
+    boolean hasMore = wallets.size() > pageSize;
+    if (hasMore) {
+      wallets = wallets.subList(0, pageSize);
+    }
+    String nextCursor = hasMore ? ListCursor.of(sort, wallets.get(wallets.size() - 1)) : null;
+    return new WalletListPage(withStripeBalances(wallets), nextCursor);
+  }
+
+  /**
+   * Adds the stripe balances to the balances of the striped wallets of a list.
+   *
+   * @param wallets The wallets as loaded from their rows.
+   * @return The wallets with their total balances, in the same order.
+   */
+  private List<Wallet> withStripeBalances(List<Wallet> wallets) {
+    List<UUID> stripedWalletIds = wallets.stream().filter(wallet -> wallet.getStripeCount() > 0).map(Wallet::getId).toList();
+    if (stripedWalletIds.isEmpty()) {
+      return wallets;
+    }
+
+    Map<UUID, BigDecimal> stripeBalances = new HashMap<>();
+    walletStripeRepository.sumBalances(stripedWalletIds).forEach(row -> stripeBalances.put((UUID) row[0], (BigDecimal) row[1]));
+    return wallets.stream()
+        .map(wallet -> wallet.getStripeCount() == 0 ? wallet
+            : copyWithBalance(wallet, wallet.getBalance().add(stripeBalances.getOrDefault(wallet.getId(), BigDecimal.ZERO))))
+        .toList();
+  }
+
+  /**
+   * Splits the balance of a wallet into the requested number of stripes.
+   * <p>
+   * The balances of the current stripes are consolidated into the wallet row first, then the stripes are replaced
+   * by the requested number of empty stripes. A stripe count of zero turns the wallet back into a regular wallet.
+   * The change is saved with the version of the wallet, so it fails on a concurrent modification of the wallet.
+   * </p>
+   *
+   * @param request The request object containing the wallet ID and the number of stripes.
+   * @return The updated {@link Wallet} object.
+   * @throws WalletNotFoundException If the wallet does not exist.
+   */
+  @Transactional
+  public Wallet stripe(WalletStripeRequest request) {
+    UUID walletId = request.getWalletId();
+    consolidateStripes(walletId);
+    walletStripeRepository.deleteAllOfWallet(walletId);
+
+    Wallet wallet = find(walletId);
+    wallet.setStripeCount(request.getStripeCount());
+    for (int stripe = 0; stripe < request.getStripeCount(); stripe++) {
+      walletStripeRepository.save(new WalletStripe(walletId, stripe));
+    }
+    changed(walletId);
+    return withStripeBalance(walletRepository.saveAndFlush(wallet));
+  }
+
+  /**
+   * Performs the deposit without an idempotency key.
+   *
+   * @param request The request object containing the deposit data.
+   * @return The {@link Transaction} object representing the deposit.
+   * @see #deposit(WalletDepositRequest, String, String)
+   */
+  @Transactional
+  public Transaction deposit(WalletDepositRequest request) {
+    return deposit(request, null, null);
   }
 
   /**
    * Deposits money into the specified wallet.
    * <p>
-   * The deposit operation checks that the currency of the request matches the wallet's currency.
-   * A {@link WalletDepositCurrencyMissMatchException} is thrown if the currencies do not match.
-   * If the deposit is successful, the transaction is saved with the status {@link TransactionStatus#COMPLETED}.
-   * In case of failure, the transaction status is set to {@link TransactionStatus#FAILED}.
+   * The balance is credited by a single conditional update which only matches a wallet with the requested currency,
+   * so concurrent deposits never overwrite each other. If no wallet was updated, the wallet is loaded. A striped wallet
+   * is credited through one of its stripes, otherwise a {@link WalletDepositCurrencyMissMatchException} is thrown.
+   * If the deposit is successful, the transaction is saved once with the status {@link TransactionStatus#COMPLETED}.
    * </p>
    *
    * @param request The request object containing the deposit data.
+   * @param idempotencyKey The idempotency key stored with the transaction, or {@code null}.
+   * @param requestFingerprint The fingerprint of the request stored with the idempotency key, or {@code null}.
    * @return The {@link Transaction} object representing the deposit.
    * @throws WalletNotFoundException If the wallet does not exist.
    * @throws WalletDepositCurrencyMissMatchException If the currencies do not match.
    * @throws WalletDepositFailedException If the deposit fails.
    */
   @Transactional
-  public Transaction deposit(WalletDepositRequest request) {
-    Wallet wallet = walletRepository.findById(request.getWalletId()).orElseThrow(() -> new WalletNotFoundException(request.getWalletId()));
+  public Transaction deposit(WalletDepositRequest request, String idempotencyKey, String requestFingerprint) {
+    int updated;
+    try {
+      updated = walletRepository.credit(request.getWalletId(), request.getCurrency(), request.getAmount(), LocalDateTime.now());
+    } catch (Exception e) {
+      throw new WalletDepositFailedException(request.getWalletId(), e);
+    }
 
-    if(wallet.getCurrency() != request.getCurrency()){
-      throw new WalletDepositCurrencyMissMatchException(request.getCurrency(), wallet.getCurrency());
+    Wallet wallet = find(request.getWalletId());
+
+    if(updated == 0){
+      if(wallet.getCurrency() != request.getCurrency() || wallet.getStripeCount() == 0){
+        throw new WalletDepositCurrencyMissMatchException(request.getCurrency(), wallet.getCurrency());
+      }
+      creditStripe(wallet, request.getAmount());
+      wallet = load(wallet.getId());
     }
 
     Transaction transaction = new Transaction();
@@ -110,32 +342,40 @@ public class WalletService {
     transaction.setBankCode(request.getBankCode());
     transaction.setAccountNumber(request.getAccountNumber());
     transaction.setTransactionType(TransactionType.DEPOSIT);
-    transaction.setTransactionStatus(TransactionStatus.PENDING);
-    transactionRepository.save(transaction);
-
-    try {
-      wallet.setBalance(wallet.getBalance().add(request.getAmount()));
-      walletRepository.save(wallet);
-
-      transaction.setTransactionStatus(TransactionStatus.COMPLETED);
-      transactionRepository.save(transaction);
-    } catch (Exception e) {
-      transaction.setTransactionStatus(TransactionStatus.FAILED);
-      transactionRepository.save(transaction);
-      throw new WalletDepositFailedException(request.getWalletId(), e);
-    }
+    transaction.setTransactionStatus(TransactionStatus.COMPLETED);
+    transaction.setReceiverBalanceAfter(wallet.getBalance());
+    transaction.setIdempotencyKey(idempotencyKey);
+    transaction.setRequestFingerprint(requestFingerprint);
+    saveApplied(transaction);
+    changed(transaction);
     return transaction;
   }
 
+  /**
+   * Performs the withdrawal without an idempotency key.
+   *
+   * @param request The request object containing the withdrawal data.
+   * @return The {@link Transaction} object representing the withdrawal.
+   * @see #withdraw(WalletWithdrawRequest, String, String)
+   */
+  @Transactional
+  public Transaction withdraw(WalletWithdrawRequest request) {
+    return withdraw(request, null, null);
+  }
+
   /**
    * Withdraws money from the specified wallet.
    * <p>
-   * The withdrawal operation checks that the wallet's currency matches the requested currency.
-   * It also checks that the wallet has enough balance to complete the withdrawal.
-   * If the withdrawal fails, the transaction status is set to {@link TransactionStatus#FAILED}.
+   * The balance is debited by a single conditional update which only matches a wallet with the requested currency
+   * and a balance covering the whole amount, so the balance can never be overdrawn by concurrent withdrawals.
+   * If no wallet was updated, the wallet is loaded to report whether the currency or the balance was the reason,
+   * unless it is a striped wallet whose stripes cover the amount.
+   * If the withdrawal is successful, the transaction is saved once with the status {@link TransactionStatus#COMPLETED}.
    * </p>
    *
    * @param request The request object containing the withdrawal data.
+   * @param idempotencyKey The idempotency key stored with the transaction, or {@code null}.
+   * @param requestFingerprint The fingerprint of the request stored with the idempotency key, or {@code null}.
    * @return The {@link Transaction} object representing the withdrawal.
    * @throws WalletNotFoundException If the wallet does not exist.
    * @throws WalletWithdrawCurrencyMissMatchException If the currencies do not match.
@@ -143,11 +383,24 @@ public class WalletService {
    * @throws WalletWithdrawFailedException If the withdrawal fails.
    */
   @Transactional
-  public Transaction withdraw(WalletWithdrawRequest request) {
-    Wallet wallet = walletRepository.findById(request.getWalletId()).orElseThrow(() -> new WalletNotFoundException(request.getWalletId()));
+  public Transaction withdraw(WalletWithdrawRequest request, String idempotencyKey, String requestFingerprint) {
+    int updated;
+    try {
+      updated = walletRepository.debit(request.getWalletId(), request.getCurrency(), request.getAmount(), LocalDateTime.now());
+    } catch (Exception e) {
+      throw new WalletWithdrawFailedException(request.getWalletId(), e);
+    }
 
-    if(wallet.getCurrency() != request.getCurrency()){
-      throw new WalletWithdrawCurrencyMissMatchException(request.getCurrency(), wallet.getCurrency());
+    Wallet wallet = find(request.getWalletId());
+
+    if(updated == 0){
+      if(wallet.getCurrency() != request.getCurrency()){
+        throw new WalletWithdrawCurrencyMissMatchException(request.getCurrency(), wallet.getCurrency());
+      }
+      if(wallet.getStripeCount() == 0 || !debitStripes(wallet, request.getAmount())){
+        throw new WalletWithdrawNotEnoughFundsException(request.getAmount(), load(wallet.getId()).getBalance());
+      }
+      wallet = load(wallet.getId());
     }
 
     Transaction transaction = new Transaction();
@@ -157,36 +410,41 @@ public class WalletService {
     transaction.setBankCode(request.getBankCode());
     transaction.setAccountNumber(request.getAccountNumber());
     transaction.setTransactionType(TransactionType.WITHDRAWAL);
-    transaction.setTransactionStatus(TransactionStatus.PENDING);
-    transactionRepository.save(transaction);
-
-    if(request.getAmount().compareTo(wallet.getBalance()) > 0){
-      throw new WalletWithdrawNotEnoughFundsException(request.getAmount(), wallet.getBalance());
-    }
-
-    try {
-      wallet.setBalance(wallet.getBalance().subtract(request.getAmount()));
-      walletRepository.save(wallet);
-
-      transaction.setTransactionStatus(TransactionStatus.COMPLETED);
-      transactionRepository.save(transaction);
-    } catch (Exception e) {
-      transaction.setTransactionStatus(TransactionStatus.FAILED);
-      transactionRepository.save(transaction);
-      throw new WalletWithdrawFailedException(request.getWalletId(), e);
-    }
+    transaction.setTransactionStatus(TransactionStatus.COMPLETED);
+    transaction.setSenderBalanceAfter(wallet.getBalance());
+    transaction.setIdempotencyKey(idempotencyKey);
+    transaction.setRequestFingerprint(requestFingerprint);
+    saveApplied(transaction);
+    changed(transaction);
     return transaction;
   }
 
+  /**
+   * Performs the transfer without an idempotency key.
+   *
+   * @param request The request object containing the transfer data.
+   * @return The {@link Transaction} object representing the transfer.
+   * @see #transfer(WalletTransferRequest, String, String)
+   */
+  @Transactional
+  public Transaction transfer(WalletTransferRequest request) {
+    return transfer(request, null, null);
+  }
+
   /**
    * Transfers money between two wallets.
    * <p>
-   * This method checks that the sender and receiver wallets are different, and that both wallets have the same currency as the request.
-   * The transfer operation also ensures that the sender wallet has sufficient funds for the transfer.
-   * If the transfer fails, the transaction status is set to {@link TransactionStatus#FAILED}.
+   * This method checks that the sender and receiver wallets are different. Both balances are then changed by a single
+   * conditional update which requires the requested currency on both wallets and sufficient funds on the sender wallet.
+   * If the update did not change both wallets, the wallets are loaded to report the reason and the thrown exception
+   * rolls back the partial update. If any of the wallets is striped, the sender wallet is debited and the receiver
+   * wallet is credited separately, through their stripes where needed. If the transfer is successful, the transaction
+   * is saved once with the status {@link TransactionStatus#COMPLETED}.
    * </p>
    *
    * @param request The request object containing the transfer data.
+   * @param idempotencyKey The idempotency key stored with the transaction, or {@code null}.
+   * @param requestFingerprint The fingerprint of the request stored with the idempotency key, or {@code null}.
    * @return The {@link Transaction} object representing the transfer.
    * @throws WalletTransferSameWalletException If the sender and receiver wallets are the same.
    * @throws WalletNotFoundException If either the sender or receiver wallet does not exist.
@@ -195,20 +453,38 @@ public class WalletService {
    * @throws WalletTransferFailedException If the transfer fails.
    */
   @Transactional
-  public Transaction transfer(WalletTransferRequest request) {
+  public Transaction transfer(WalletTransferRequest request, String idempotencyKey, String requestFingerprint) {
     if(request.getReceiverWalletId().equals(request.getSenderWalletId())){
       throw new WalletTransferSameWalletException(request.getReceiverWalletId());
     }
 
-    Wallet receiverWallet = walletRepository.findById(request.getReceiverWalletId()).orElseThrow(() -> new WalletNotFoundException(request.getReceiverWalletId()));
-    Wallet senderWallet = walletRepository.findById(request.getSenderWalletId()).orElseThrow(() -> new WalletNotFoundException(request.getSenderWalletId()));
-
-    if(receiverWallet.getCurrency() != request.getCurrency()){
-      throw new WalletTransferCurrencyMissMatchException(request.getCurrency(), receiverWallet.getCurrency());
+    int updated;
+    try {
+      updated = walletRepository.transfer(request.getSenderWalletId(), request.getReceiverWalletId(),
+          request.getCurrency(), request.getAmount(), LocalDateTime.now());
+    } catch (Exception e) {
+      throw new WalletTransferFailedException(request.getSenderWalletId(), request.getReceiverWalletId(), e);
     }
 
-    if(senderWallet.getCurrency() != request.getCurrency()){
-      throw new WalletTransferCurrencyMissMatchException(request.getCurrency(), senderWallet.getCurrency());
+    Wallet receiverWallet = find(request.getReceiverWalletId());
+    Wallet senderWallet = find(request.getSenderWalletId());
+
+    if(updated != 2){
+      if(receiverWallet.getCurrency() != request.getCurrency()){
+        throw new WalletTransferCurrencyMissMatchException(request.getCurrency(), receiverWallet.getCurrency());
+      }
+
+      if(senderWallet.getCurrency() != request.getCurrency()){
+        throw new WalletTransferCurrencyMissMatchException(request.getCurrency(), senderWallet.getCurrency());
+      }
+
+      boolean striped = receiverWallet.getStripeCount() > 0 || senderWallet.getStripeCount() > 0;
+      if(updated != 0 || !striped || !debit(senderWallet, request.getAmount())){
+        throw new WalletTransferNotEnoughFundsException(request.getAmount(), load(senderWallet.getId()).getBalance());
+      }
+      credit(receiverWallet, request.getAmount());
+      receiverWallet = load(receiverWallet.getId());
+      senderWallet = load(senderWallet.getId());
     }
 
     Transaction transaction = new Transaction();
@@ -217,37 +493,759 @@ public class WalletService {
     transaction.setAmount(request.getAmount());
     transaction.setCurrency(request.getCurrency());
     transaction.setTransactionType(TransactionType.TRANSFER);
+    transaction.setTransactionStatus(TransactionStatus.COMPLETED);
+    transaction.setSenderBalanceAfter(senderWallet.getBalance());
+    transaction.setReceiverBalanceAfter(receiverWallet.getBalance());
+    transaction.setIdempotencyKey(idempotencyKey);
+    transaction.setRequestFingerprint(requestFingerprint);
+    saveApplied(transaction);
+    changed(transaction);
+    return transaction;
+  }
+
+  /**
+   * Transfers money between wallets for a whole batch of transfers.
+   * <p>
+   * All wallets involved in the batch are loaded by a single query, striped wallets are consolidated first.
+   * The transfers are then validated and applied to the loaded balances in memory in the order of the request,
+   * so every transfer sees the balances left by the previous ones. Finally the changed balances are written
+   * in the order of the wallet IDs by one JDBC batch update, guarded by the version of each wallet,
+   * and the transactions of the completed transfers are inserted by one JDBC batch insert.
+   * If a wallet was changed concurrently, an optimistic locking failure is thrown and nothing is written,
+   * so the whole batch can be retried.
+   * </p>
+   * <p>
+   * In the all-or-nothing mode, no transfer is applied if any of them fails. Otherwise every transfer is applied
+   * or rejected on its own. The result of every transfer is returned in the order of the request.
+   * </p>
+   *
+   * @param requests     The transfers to be applied.
+   * @param allOrNothing Whether the batch is applied as a whole, {@code null} for the configured default.
+   * @return The results of the transfers in the order of the request.
+   * @throws WalletTransferBatchTooLargeException If the batch contains more transfers than allowed.
+   */
+  @Transactional
+  public List<WalletTransferBatchResult> transferBatch(List<WalletTransferRequest> requests, Boolean allOrNothing) {
+    if (requests.size() > transferBatchMaxSize) {
+      throw new WalletTransferBatchTooLargeException(requests.size(), transferBatchMaxSize);
+    }
+
+    TreeSet<UUID> walletIds = new TreeSet<>();
+    requests.forEach(request -> {
+      walletIds.add(request.getSenderWalletId());
+      walletIds.add(request.getReceiverWalletId());
+    });
+    Map<UUID, Wallet> wallets = loadForBatch(walletIds);
+    Map<UUID, BigDecimal> balances = new HashMap<>();
+    wallets.values().forEach(wallet -> balances.put(wallet.getId(), wallet.getBalance()));
+
+    List<WalletTransferBatchResult> results = new ArrayList<>(requests.size());
+    Map<Integer, BigDecimal[]> balancesAfter = new HashMap<>();
+    for (int i = 0; i < requests.size(); i++) {
+      WalletTransferRequest request = requests.get(i);
+      try {
+        checkBatchTransfer(request, wallets, balances);
+        BigDecimal senderBalance = balances.merge(request.getSenderWalletId(), request.getAmount().negate(), BigDecimal::add);
+        BigDecimal receiverBalance = balances.merge(request.getReceiverWalletId(), request.getAmount(), BigDecimal::add);
+        balancesAfter.put(i, new BigDecimal[]{senderBalance, receiverBalance});
+        results.add(new WalletTransferBatchResult(i, UUID.randomUUID(), TransactionStatus.COMPLETED, null));
+      } catch (WalletTransferSameWalletException | WalletNotFoundException
+               | WalletTransferCurrencyMissMatchException | WalletTransferNotEnoughFundsException e) {
+        results.add(new WalletTransferBatchResult(i, null, TransactionStatus.FAILED, e.getMessage()));
+      }
+    }
+
+    boolean failed = results.stream().anyMatch(result -> result.getStatus() == TransactionStatus.FAILED);
+    if (failed && (allOrNothing != null ? allOrNothing : transferBatchAllOrNothing)) {
+      return results.stream()
+          .map(result -> result.getStatus() == TransactionStatus.FAILED ? result
+              : new WalletTransferBatchResult(result.getIndex(), null, TransactionStatus.FAILED,
+                  "Transfer was not applied because another transfer of the batch failed."))
+          .toList();
+    }
+
+    writeBatch(requests, results, wallets, balances, balancesAfter);
+    return results;
+  }
+
+  /**
+   * Records a deposit to be applied asynchronously.
+   * <p>
+   * The wallet and the currency are validated immediately, then the transaction is saved with the status
+   * {@link TransactionStatus#PENDING} without changing the balance. The deposit is applied later by the
+   * {@link PendingTransactionProcessor}, which sets the final status of the transaction.
+   * </p>
+   *
+   * @param request The request object containing the deposit data.
+   * @return The pending {@link Transaction} object representing the deposit.
+   * @throws WalletNotFoundException If the wallet does not exist.
+   * @throws WalletDepositCurrencyMissMatchException If the currencies do not match.
+   */
+  @Transactional
+  public Transaction submitDeposit(WalletDepositRequest request) {
+    Wallet wallet = load(request.getWalletId());
+    if (wallet.getCurrency() != request.getCurrency()) {
+      throw new WalletDepositCurrencyMissMatchException(request.getCurrency(), wallet.getCurrency());
+    }
+
+    Transaction transaction = new Transaction();
+    transaction.setReceiverWallet(wallet);
+    transaction.setAmount(request.getAmount());
+    transaction.setCurrency(request.getCurrency());
+    transaction.setBankCode(request.getBankCode());
+    transaction.setAccountNumber(request.getAccountNumber());
+    transaction.setTransactionType(TransactionType.DEPOSIT);
     transaction.setTransactionStatus(TransactionStatus.PENDING);
     transactionRepository.save(transaction);
+    return transaction;
+  }
 
-    if(request.getAmount().compareTo(senderWallet.getBalance()) > 0){
-      throw new WalletTransferNotEnoughFundsException(request.getAmount(), senderWallet.getBalance());
+  /**
+   * Records a withdrawal to be applied asynchronously.
+   * <p>
+   * The wallet and the currency are validated immediately, then the transaction is saved with the status
+   * {@link TransactionStatus#PENDING} without changing the balance. The funds are checked when the withdrawal
+   * is applied by the {@link PendingTransactionProcessor}, which sets the final status of the transaction.
+   * </p>
+   *
+   * @param request The request object containing the withdrawal data.
+   * @return The pending {@link Transaction} object representing the withdrawal.
+   * @throws WalletNotFoundException If the wallet does not exist.
+   * @throws WalletWithdrawCurrencyMissMatchException If the currencies do not match.
+   */
+  @Transactional
+  public Transaction submitWithdraw(WalletWithdrawRequest request) {
+    Wallet wallet = load(request.getWalletId());
+    if (wallet.getCurrency() != request.getCurrency()) {
+      throw new WalletWithdrawCurrencyMissMatchException(request.getCurrency(), wallet.getCurrency());
     }
 
-    try {
-      receiverWallet.setBalance(receiverWallet.getBalance().add(request.getAmount()));
-      senderWallet.setBalance(senderWallet.getBalance().subtract(request.getAmount()));
+    Transaction transaction = new Transaction();
+    transaction.setSenderWallet(wallet);
+    transaction.setAmount(request.getAmount());
+    transaction.setCurrency(request.getCurrency());
+    transaction.setBankCode(request.getBankCode());
+    transaction.setAccountNumber(request.getAccountNumber());
+    transaction.setTransactionType(TransactionType.WITHDRAWAL);
+    transaction.setTransactionStatus(TransactionStatus.PENDING);
+    transactionRepository.save(transaction);
+    return transaction;
+  }
+
+  /**
+   * Applies the balance change of a pending deposit or withdrawal.
+   * <p>
+   * The balance is changed by the same conditional update statements as a synchronous operation.
+   * The status of the transaction is not changed, it is set by the caller for all applied transactions at once.
+   * </p>
+   *
+   * @param transaction The pending deposit or withdrawal.
+   * @return {@code true} if the balance was changed, {@code false} if the wallet no longer exists,
+   *         its currency does not match or it does not have enough funds.
+   */
+  @Transactional
+  public boolean applyPending(Transaction transaction) {
+    if (transaction.getTransactionType() == TransactionType.DEPOSIT) {
+      Wallet wallet = transaction.getReceiverWallet();
+      if (wallet == null || wallet.getCurrency() != transaction.getCurrency()) {
+        return false;
+      }
+      credit(wallet, transaction.getAmount());
+      BigDecimal balance = load(wallet.getId()).getBalance();
+      transactionRepository.recordBalancesAfter(transaction.getId(), null, balance);
+      ledgerJournal.append(List.of(LedgerJournal.Posting.of(transaction)));
+      changed(List.of(event(wallet.getId(), balance, transaction, null)));
+      return true;
+    }
 
-      walletRepository.save(receiverWallet);
-      walletRepository.save(senderWallet);
+    Wallet wallet = transaction.getSenderWallet();
+    if (wallet == null || wallet.getCurrency() != transaction.getCurrency() || !debit(wallet, transaction.getAmount())) {
+      return false;
+    }
+    BigDecimal balance = load(wallet.getId()).getBalance();
+    transactionRepository.recordBalancesAfter(transaction.getId(), balance, null);
+    ledgerJournal.append(List.of(LedgerJournal.Posting.of(transaction)));
+    changed(List.of(event(wallet.getId(), balance, transaction, null)));
+    return true;
+  }
 
-      transaction.setTransactionStatus(TransactionStatus.COMPLETED);
-      transactionRepository.save(transaction);
-    } catch (Exception e) {
-      transaction.setTransactionStatus(TransactionStatus.FAILED);
-      transactionRepository.save(transaction);
-      throw new WalletTransferFailedException(request.getSenderWalletId(), request.getReceiverWalletId(), e);
+  /**
+   * Retrieves the balance a wallet had at a given point in time.
+   * <p>
+   * Every applied transaction records the balances of its wallets right after it, so the balance is read from
+   * the last transaction of the wallet until then by a single index seek instead of summing up its history.
+   * A wallet without any transaction until then had a balance of zero. If the database has no such transaction,
+   * it is searched in the {@link TransactionArchive}, which only holds transactions older than those of the database.
+   * </p>
+   *
+   * @param walletId The ID of the wallet.
+   * @param at       The point in time.
+   * @return The {@link WalletBalance} of the wallet at the given time.
+   */
+  @Transactional(readOnly = true)
+  public WalletBalance getBalanceAt(UUID walletId, LocalDateTime at) {
+    BigDecimal balance = transactionRepository.findBalanceAt(walletId, at);
+    if (balance == null) {
+      ArchivedTransaction archived = transactionArchive.findLastAppliedAt(walletId, at);
+      balance = archived != null ? archived.getBalanceAfter(walletId) : null;
     }
-    return transaction;
+    return new WalletBalance(walletId, at, balance != null ? balance : BigDecimal.ZERO);
   }
 
   /**
-   * Retrieves the transaction history for a given wallet.
+   * Retrieves one page of the transaction history for a given wallet.
+   * <p>
+   * The history is ordered from the newest to the oldest transaction and paginated by a cursor on the creation time
+   * and the ID of a transaction (keyset pagination), so the cost of a page does not depend on its position
+   * in the history. Without a cursor, the newest transactions are returned. The {@code after} cursor returns
+   * the older transactions following a page, the {@code before} cursor the newer transactions preceding it.
+   * </p>
+   * <p>
+   * The transactions are read as projections referring to their wallets only by ID and name, so a page is read
+   * by a single query without loading any wallet or transaction entity into the persistence context.
+   * </p>
+   * <p>
+   * A page reaching back to the time of archived transactions is merged with the transactions of the
+   * {@link TransactionArchive}, so the history continues seamlessly beyond the transactions left in the database.
+   * </p>
    *
    * @param walletId The ID of the wallet for which transaction history is being requested.
-   * @return A list of {@link Transaction} objects associated with the specified wallet.
+   * @param after    The next cursor of the previous page, or {@code null}.
+   * @param before   The previous cursor of the following page, or {@code null}.
+   * @param limit    The maximum number of transactions, or {@code null} for the default page size.
+   * @return The page of {@link TransactionView} objects associated with the specified wallet.
+   * @throws WalletHistoryInvalidCursorException If a cursor is invalid or both cursors are passed.
+   */
+  @Transactional(readOnly = true)
+  public WalletHistoryPage getTransactionHistory(UUID walletId, String after, String before, Integer limit) {
+    if (after != null && before != null) {
+      throw new WalletHistoryInvalidCursorException(before);
+    }
+    int pageSize = Math.min(limit != null ? limit : historyPageSize, historyMaxPageSize);
+
+    if (before != null) {
+      WalletHistoryCursor cursor = WalletHistoryCursor.decode(before);
+      List<TransactionView> transactions = view(newerWithArchived(walletId,
+          transactionRepository.findHistoryNewerThan(walletId, cursor.createdAt(), cursor.id(), pageSize + 1),
+          cursor.createdAt(), cursor.id(), pageSize + 1));
+      boolean hasNewer = transactions.size() > pageSize;
+      if (hasNewer) {
+        transactions = new ArrayList<>(transactions.subList(0, pageSize));
+      }
+      Collections.reverse(transactions);
+      return new WalletHistoryPage(transactions,
+          transactions.isEmpty() ? null : WalletHistoryCursor.of(transactions.get(transactions.size() - 1)),
+          hasNewer ? WalletHistoryCursor.of(transactions.get(0)) : null);
+    }
+
+    List<TransactionView> transactions;
+    if (after != null) {
+      WalletHistoryCursor cursor = WalletHistoryCursor.decode(after);
+      transactions = view(olderWithArchived(walletId,
+          transactionRepository.findHistoryOlderThan(walletId, cursor.createdAt(), cursor.id(), pageSize + 1),
+          cursor.createdAt(), cursor.id(), pageSize + 1));
+    } else {
+      transactions = view(olderWithArchived(walletId, transactionRepository.findHistory(walletId, pageSize + 1),
+          null, null, pageSize + 1));
+    }
+    boolean hasOlder = transactions.size() > pageSize;
+    if (hasOlder) {
+      transactions = transactions.subList(0, pageSize);
+    }
+    return new WalletHistoryPage(transactions,
+        hasOlder ? WalletHistoryCursor.of(transactions.get(transactions.size() - 1)) : null,
+        after != null && !transactions.isEmpty() ? WalletHistoryCursor.of(transactions.get(0)) : null);
+  }
+
+  /**
+   * Computes the entity tag of the transaction history of a wallet without reading the history.
+   * <p>
+   * The tag is made of the version of the wallet and the ID of its newest transaction. Every new transaction changes
+   * the newest ID and every change of the balance or of the status of a pending transaction changes the version,
+   * so the tag changes whenever any page of the history may have changed. It has to be read before the page it
+   * describes, so it never describes a newer state than the returned transactions.
+   * </p>
+   *
+   * @param walletId The ID of the wallet.
+   * @return The entity tag, or {@code null} if the wallet does not exist.
+   */
+  @Transactional(readOnly = true)
+  public String getHistoryETag(UUID walletId) {
+    Long version = walletRepository.findVersion(walletId);
+    return version != null ? etag(version, transactionRepository.findLatestId(walletId)) : null;
+  }
+
+  /**
+   * Builds an entity tag from the version of a wallet and the ID of its newest transaction.
+   *
+   * @param version             The version of the wallet.
+   * @param latestTransactionId The ID of the newest transaction of the wallet, or {@code null}.
+   * @return The entity tag, without quotes.
+   */
+  private static String etag(Long version, UUID latestTransactionId) {
+    return version + "-" + (latestTransactionId != null ? latestTransactionId : "none");
+  }
+
+  /**
+   * Adds the archived transactions to a page of transactions older than a position read from the database.
+   * <p>
+   * The archive is only read if the page is not full or reaches back to the newest archived transaction.
+   * </p>
+   *
+   * @param walletId  The ID of the wallet.
+   * @param page      The transactions read from the database, from the newest to the oldest.
+   * @param createdAt The creation time of the position, or {@code null} for the newest transactions.
+   * @param id        The ID of the transaction at the position.
+   * @param limit     The maximum number of transactions.
+   * @return The merged transactions from the newest to the oldest.
+   */
+  private List<TransactionSummary> olderWithArchived(UUID walletId, List<TransactionSummary> page,
+                                                     LocalDateTime createdAt, UUID id, int limit) {
+    LocalDateTime archivedUntil = transactionArchive.getNewestCreatedAt();
+    if (archivedUntil == null || (page.size() == limit && page.get(limit - 1).getCreatedAt().isAfter(archivedUntil))) {
+      return page;
+    }
+    return TransactionArchive.merge(page, transactionArchive.findOlderThan(walletId, createdAt, id, limit),
+        TransactionArchive.HISTORY_ORDER.reversed(), limit);
+  }
+
+  /**
+   * Adds the archived transactions to a page of transactions newer than a position read from the database.
+   *
+   * @param walletId  The ID of the wallet.
+   * @param page      The transactions read from the database, from the oldest to the newest.
+   * @param createdAt The creation time of the position.
+   * @param id        The ID of the transaction at the position.
+   * @param limit     The maximum number of transactions.
+   * @return The merged transactions from the oldest to the newest.
+   */
+  private List<TransactionSummary> newerWithArchived(UUID walletId, List<TransactionSummary> page,
+                                                     LocalDateTime createdAt, UUID id, int limit) {
+    LocalDateTime archivedUntil = transactionArchive.getNewestCreatedAt();
+    if (archivedUntil == null || createdAt.isAfter(archivedUntil)) {
+      return page;
+    }
+    return TransactionArchive.merge(page, transactionArchive.findNewerThan(walletId, createdAt, id, limit),
+        TransactionArchive.HISTORY_ORDER, limit);
+  }
+
+  /**
+   * Converts projected transaction rows to their views.
+   *
+   * @param summaries The rows returned by a history query.
+   * @return A mutable list of the transaction views in the same order.
+   */
+  private static List<TransactionView> view(List<TransactionSummary> summaries) {
+    List<TransactionView> transactions = new ArrayList<>(summaries.size());
+    summaries.forEach(summary -> transactions.add(new TransactionView(summary)));
+    return transactions;
+  }
+
+  /**
+   * Loads all wallets of a batch of transfers by a single query.
+   * <p>
+   * The stripes of striped wallets are consolidated into their wallet rows first,
+   * so the balance of every loaded wallet is its total balance.
+   * </p>
+   *
+   * @param walletIds The IDs of the wallets involved in the batch.
+   * @return The existing wallets ordered by their IDs.
+   */
+  private Map<UUID, Wallet> loadForBatch(TreeSet<UUID> walletIds) {
+    List<Wallet> loaded = walletRepository.findAllById(walletIds);
+    List<Wallet> striped = loaded.stream().filter(wallet -> wallet.getStripeCount() > 0).toList();
+    if (!striped.isEmpty()) {
+      striped.forEach(wallet -> consolidateStripes(wallet.getId()));
+      loaded = walletRepository.findAllById(walletIds);
+    }
+
+    Map<UUID, Wallet> wallets = new TreeMap<>();
+    loaded.forEach(wallet -> wallets.put(wallet.getId(), wallet));
+    return wallets;
+  }
+
+  /**
+   * Validates a transfer of a batch against the balances left by the previous transfers of the batch.
+   *
+   * @param request  The transfer to be validated.
+   * @param wallets  The wallets involved in the batch.
+   * @param balances The current in-memory balances of the wallets.
+   * @throws WalletTransferSameWalletException        If the sender and receiver wallets are the same.
+   * @throws WalletNotFoundException                  If any of the wallets does not exist.
+   * @throws WalletTransferCurrencyMissMatchException If the currency of any wallet does not match the transfer.
+   * @throws WalletTransferNotEnoughFundsException    If the sender wallet does not have enough funds.
+   */
+  private static void checkBatchTransfer(WalletTransferRequest request, Map<UUID, Wallet> wallets, Map<UUID, BigDecimal> balances) {
+    if (request.getReceiverWalletId().equals(request.getSenderWalletId())) {
+      throw new WalletTransferSameWalletException(request.getReceiverWalletId());
+    }
+
+    Wallet senderWallet = wallets.get(request.getSenderWalletId());
+    Wallet receiverWallet = wallets.get(request.getReceiverWalletId());
+    if (senderWallet == null) {
+      throw new WalletNotFoundException(request.getSenderWalletId());
+    }
+    if (receiverWallet == null) {
+      throw new WalletNotFoundException(request.getReceiverWalletId());
+    }
+
+    if (receiverWallet.getCurrency() != request.getCurrency()) {
+      throw new WalletTransferCurrencyMissMatchException(request.getCurrency(), receiverWallet.getCurrency());
+    }
+    if (senderWallet.getCurrency() != request.getCurrency()) {
+      throw new WalletTransferCurrencyMissMatchException(request.getCurrency(), senderWallet.getCurrency());
+    }
+
+    BigDecimal senderBalance = balances.get(senderWallet.getId());
+    if (senderBalance.compareTo(request.getAmount()) < 0) {
+      throw new WalletTransferNotEnoughFundsException(request.getAmount(), senderBalance);
+    }
+  }
+
+  /**
+   * Writes the changed balances and the transactions of the completed transfers of a batch.
+   * <p>
+   * The balances are written in the order of the wallet IDs, so concurrent batches lock the wallets in the same order.
+   * Every balance update requires the version the wallet had when it was loaded, so a concurrent modification
+   * causes an optimistic locking failure which rolls back the whole batch.
+   * </p>
+   *
+   * @param requests      The transfers of the batch.
+   * @param results       The results of the transfers, the completed ones are written.
+   * @param wallets       The wallets involved in the batch, ordered by their IDs.
+   * @param balances      The new balances of the wallets.
+   * @param balancesAfter The balances of the sender and the receiver wallet after each completed transfer, by its index.
+   */
+  private void writeBatch(List<WalletTransferRequest> requests, List<WalletTransferBatchResult> results,
+                          Map<UUID, Wallet> wallets, Map<UUID, BigDecimal> balances,
+                          Map<Integer, BigDecimal[]> balancesAfter) {
+    // Truncated like the timestamps set by the entity, see Transaction#prePersist()
+    LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    // JDBC statements do not trigger the auto-flush, pending entity changes of the caller would be lost by the clear below
+    entityManager.flush();
+
+    List<Object[]> walletUpdates = new ArrayList<>();
+    wallets.values().stream()
+        .filter(wallet -> balances.get(wallet.getId()).compareTo(wallet.getBalance()) != 0)
+        .forEach(wallet -> walletUpdates.add(new Object[]{balances.get(wallet.getId()), now, wallet.getId(), wallet.getVersion()}));
+    int[] updated = jdbcTemplate.batchUpdate(
+        "UPDATE wallet SET balance = ?, updated_at = ?, version = version + 1 WHERE id = ? AND version = ?", walletUpdates);
+    for (int i = 0; i < updated.length; i++) {
+      if (updated[i] == 0) {
+        throw new ObjectOptimisticLockingFailureException(Wallet.class, walletUpdates.get(i)[2]);
+      }
+    }
+
+    // Each transfer is one microsecond after the previous one, so the balances after them are read in the batch order
+    List<Object[]> transactionInserts = new ArrayList<>();
+    List<LedgerJournal.Posting> postings = new ArrayList<>();
+    List<WalletEvent> events = new ArrayList<>();
+    for (WalletTransferBatchResult result : results) {
+      if (result.getStatus() == TransactionStatus.COMPLETED) {
+        WalletTransferRequest request = requests.get(result.getIndex());
+        BigDecimal[] after = balancesAfter.get(result.getIndex());
+        LocalDateTime createdAt = now.plus(result.getIndex(), ChronoUnit.MICROS);
+        transactionInserts.add(new Object[]{result.getTransactionId(), request.getSenderWalletId(), request.getReceiverWalletId(),
+            request.getAmount(), request.getCurrency().name(), TransactionType.TRANSFER.name(),
+            TransactionStatus.COMPLETED.name(), after[0], after[1], createdAt, createdAt});
+        postings.add(new LedgerJournal.Posting(result.getTransactionId(), request.getSenderWalletId(),
+            request.getReceiverWalletId(), request.getAmount(), request.getCurrency(), createdAt));
+        events.add(new WalletEvent(request.getSenderWalletId(), after[0], result.getTransactionId(), TransactionType.TRANSFER,
+            TransactionStatus.COMPLETED, request.getAmount(), request.getCurrency(), request.getReceiverWalletId(), createdAt));
+        events.add(new WalletEvent(request.getReceiverWalletId(), after[1], result.getTransactionId(), TransactionType.TRANSFER,
+            TransactionStatus.COMPLETED, request.getAmount(), request.getCurrency(), request.getSenderWalletId(), createdAt));
+      }
+    }
+    jdbcTemplate.batchUpdate("INSERT INTO transaction (id, sender_wallet_id, receiver_wallet_id, amount, currency, " +
+        "transaction_type, transaction_status, sender_balance_after, receiver_balance_after, created_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", transactionInserts);
+    ledgerJournal.append(postings);
+    eventPublisher.publishEvent(new WalletChangedEvent(
+        walletUpdates.stream().map(update -> (UUID) update[2]).toList(), events));
+
+    // The loaded wallets no longer match the database, so they must not be returned by later reads
+    entityManager.clear();
+  }
+
+  /**
+   * Loads a wallet entity by its unique ID.
+   * <p>
+   * Unlike {@link #get(UUID)}, the balance of a striped wallet is only the balance of the wallet row.
+   * </p>
+   *
+   * @param walletId The ID of the wallet to be loaded.
+   * @return The {@link Wallet} entity.
+   * @throws WalletNotFoundException If no wallet is found with the provided ID.
+   */
+  private Wallet find(UUID walletId) {
+    return walletRepository.findById(walletId).orElseThrow(() -> new WalletNotFoundException(walletId));
+  }
+
+  /**
+   * Loads a wallet with its total balance from the database, bypassing the {@link WalletCache}.
+   *
+   * @param walletId The ID of the wallet to be loaded.
+   * @return The wallet with its total balance.
+   * @throws WalletNotFoundException If no wallet is found with the provided ID.
+   */
+  private Wallet load(UUID walletId) {
+    return withStripeBalance(find(walletId));
+  }
+
+  /**
+   * Loads a wallet with its total balance from the primary database, bypassing the {@link WalletCache}.
+   * <p>
+   * The repository reads are read-only, which routes them to a replica outside a transaction, so they are joined
+   * to a transaction which is not read-only.
+   * </p>
+   *
+   * @param walletId The ID of the wallet to be loaded.
+   * @return The wallet with its total balance.
+   * @throws WalletNotFoundException If no wallet is found with the provided ID.
+   */
+  private Wallet loadFromPrimary(UUID walletId) {
+    return primaryReadTemplate.execute(status -> load(walletId));
+  }
+
+  /**
+   * Saves a transaction whose balance changes were applied, reserves its idempotency key and appends its legs
+   * to the journal, in the database transaction of the balance changes.
+   *
+   * @param transaction The completed transaction.
+   */
+  private void saveApplied(Transaction transaction) {
+    transactionRepository.save(transaction);
+    if (transaction.getIdempotencyKey() != null) {
+      // Persisted, not merged, so a key reserved by a concurrent request fails the commit
+      entityManager.persist(new TransactionIdempotencyKey(transaction.getIdempotencyKey(), transaction.getId(),
+          transaction.getRequestFingerprint(), transaction.getCreatedAt()));
+    }
+    ledgerJournal.append(List.of(LedgerJournal.Posting.of(transaction)));
+  }
+
+  /**
+   * Publishes the change of wallets, handled by the listeners after the current transaction is committed.
+   *
+   * @param walletIds The IDs of the changed wallets.
    */
-  public List<Transaction> getTransactionHistory(UUID walletId) {
-    return transactionRepository.findBySenderWalletIdOrReceiverWalletId(walletId, walletId);
+  private void changed(UUID... walletIds) {
+    eventPublisher.publishEvent(new WalletChangedEvent(List.of(walletIds)));
+  }
+
+  /**
+   * Publishes the change of the wallets of a completed transaction with their balances after it.
+   *
+   * @param transaction The saved transaction.
+   */
+  private void changed(Transaction transaction) {
+    List<WalletEvent> events = new ArrayList<>();
+    UUID senderWalletId = transaction.getSenderWallet() != null ? transaction.getSenderWallet().getId() : null;
+    UUID receiverWalletId = transaction.getReceiverWallet() != null ? transaction.getReceiverWallet().getId() : null;
+    if (senderWalletId != null) {
+      events.add(event(senderWalletId, transaction.getSenderBalanceAfter(), transaction, receiverWalletId));
+    }
+    if (receiverWalletId != null) {
+      events.add(event(receiverWalletId, transaction.getReceiverBalanceAfter(), transaction, senderWalletId));
+    }
+    changed(events);
+  }
+
+  /**
+   * Publishes the change of wallets together with the events pushed to their subscribers.
+   *
+   * @param events The balances and transactions of the changed wallets.
+   */
+  private void changed(List<WalletEvent> events) {
+    eventPublisher.publishEvent(new WalletChangedEvent(events.stream().map(WalletEvent::getWalletId).toList(), events));
+  }
+
+  /**
+   * Creates the event of a wallet changed by a completed transaction.
+   * <p>
+   * The status is always {@link TransactionStatus#COMPLETED}, a pending transaction is completed by the caller
+   * of {@link #applyPending(Transaction)} in the same database transaction.
+   * </p>
+   *
+   * @param walletId             The ID of the changed wallet.
+   * @param balance              The balance of the wallet after the transaction.
+   * @param transaction          The transaction.
+   * @param counterpartyWalletId The other wallet of a transfer, or {@code null}.
+   * @return The event.
+   */
+  private static WalletEvent event(UUID walletId, BigDecimal balance, Transaction transaction, UUID counterpartyWalletId) {
+    return new WalletEvent(walletId, balance, transaction.getId(), transaction.getTransactionType(),
+        TransactionStatus.COMPLETED, transaction.getAmount(), transaction.getCurrency(), counterpartyWalletId,
+        transaction.getCreatedAt());
+  }
+
+  /**
+   * Credits a wallet, through a random stripe if the wallet is striped.
+   *
+   * @param wallet The wallet to be credited.
+   * @param amount The amount to be added.
+   */
+  private void credit(Wallet wallet, BigDecimal amount) {
+    if (wallet.getStripeCount() > 0) {
+      creditStripe(wallet, amount);
+    } else if (walletRepository.credit(wallet.getId(), wallet.getCurrency(), amount, LocalDateTime.now()) == 0) {
+      throw new ObjectOptimisticLockingFailureException(Wallet.class, wallet.getId());
+    }
+  }
+
+  /**
+   * Debits a wallet from its wallet row or, if the wallet is striped, from its stripes.
+   *
+   * @param wallet The wallet to be debited.
+   * @param amount The amount to be subtracted.
+   * @return {@code true} if the wallet was debited, {@code false} if it has insufficient funds.
+   */
+  private boolean debit(Wallet wallet, BigDecimal amount) {
+    return walletRepository.debit(wallet.getId(), wallet.getCurrency(), amount, LocalDateTime.now()) == 1
+        || (wallet.getStripeCount() > 0 && debitStripes(wallet, amount));
+  }
+
+  /**
+   * Adds the amount to a randomly chosen stripe of a striped wallet and increments the version of the wallet.
+   * <p>
+   * If the chosen stripe no longer exists because the stripes were changed concurrently,
+   * an optimistic locking failure is thrown so the operation can be retried.
+   * </p>
+   *
+   * @param wallet The striped wallet to be credited.
+   * @param amount The amount to be added.
+   */
+  private void creditStripe(Wallet wallet, BigDecimal amount) {
+    int stripe = ThreadLocalRandom.current().nextInt(wallet.getStripeCount());
+    if (walletStripeRepository.credit(wallet.getId(), stripe, amount) == 0) {
+      throw new ObjectOptimisticLockingFailureException(Wallet.class, wallet.getId());
+    }
+    walletRepository.touch(wallet.getId(), LocalDateTime.now());
+  }
+
+  /**
+   * Subtracts the amount from the stripes of a striped wallet whose wallet row does not cover it.
+   * <p>
+   * The stripes are tried one by one starting at a random stripe, the version of the wallet is incremented when one
+   * of them is debited. If none of them covers the whole amount, all stripes are consolidated into the wallet row
+   * and the wallet row is debited.
+   * </p>
+   *
+   * @param wallet The striped wallet to be debited.
+   * @param amount The amount to be subtracted.
+   * @return {@code true} if the wallet was debited, {@code false} if its total balance is insufficient.
+   */
+  private boolean debitStripes(Wallet wallet, BigDecimal amount) {
+    int stripeCount = wallet.getStripeCount();
+    int first = ThreadLocalRandom.current().nextInt(stripeCount);
+    for (int i = 0; i < stripeCount; i++) {
+      if (walletStripeRepository.debit(wallet.getId(), (first + i) % stripeCount, amount) == 1) {
+        walletRepository.touch(wallet.getId(), LocalDateTime.now());
+        return true;
+      }
+    }
+
+    consolidateStripes(wallet.getId());
+    return walletRepository.debit(wallet.getId(), wallet.getCurrency(), amount, LocalDateTime.now()) == 1;
+  }
+
+  /**
+   * Moves the balances of all stripes of a wallet to the wallet row.
+   * <p>
+   * The stripes stay locked until the end of the current transaction, so no concurrent credit can be lost.
+   * </p>
+   *
+   * @param walletId The ID of the wallet whose stripes are consolidated.
+   */
+  private void consolidateStripes(UUID walletId) {
+    BigDecimal stripeBalance = walletStripeRepository.findAllForUpdate(walletId).stream()
+        .map(WalletStripe::getBalance)
+        .reduce(BigDecimal.ZERO, BigDecimal::add);
+    if (stripeBalance.signum() > 0) {
+      walletStripeRepository.resetBalances(walletId);
+      walletRepository.consolidate(walletId, stripeBalance, LocalDateTime.now());
+    }
+  }
+
+  /**
+   * Returns a wallet reporting its total balance.
+   * <p>
+   * A striped wallet is returned as a detached copy whose balance includes all its stripes, so the managed
+   * entity is never changed. A regular wallet is returned unchanged.
+   * </p>
+   *
+   * @param wallet The wallet entity.
+   * @return The wallet with its total balance.
+   */
+  private Wallet withStripeBalance(Wallet wallet) {
+    if (wallet.getStripeCount() == 0) {
+      return wallet;
+    }
+    return copyWithBalance(wallet, wallet.getBalance().add(walletStripeRepository.sumBalance(wallet.getId())));
+  }
+
+  /**
+   * Creates a detached copy of a wallet with a different balance.
+   *
+   * @param wallet  The wallet to be copied.
+   * @param balance The balance of the copy.
+   * @return The copy of the wallet.
+   */
+  private static Wallet copyWithBalance(Wallet wallet, BigDecimal balance) {
+    Wallet copy = new Wallet();
+    copy.setId(wallet.getId());
+    copy.setName(wallet.getName());
+    copy.setCurrency(wallet.getCurrency());
+    copy.setBalance(balance);
+    copy.setStripeCount(wallet.getStripeCount());
+    copy.setVersion(wallet.getVersion());
+    copy.setCreatedAt(wallet.getCreatedAt());
+    copy.setUpdatedAt(wallet.getUpdatedAt());
+    return copy;
+  }
+
+  /**
+   * The position of a wallet in the list of wallets, encoded as an opaque cursor together with the sort.
+   *
+   * @param value The sort value of the wallet, its name or the balance of its row.
+   * @param id    The ID of the wallet, which orders wallets with the same sort value.
+   */
+  private record ListCursor(Object value, UUID id) {
+
+    /**
+     * Encodes the position of a wallet.
+     *
+     * @param sort   The sort of the list.
+     * @param wallet The wallet as loaded from its row.
+     * @return The cursor of the wallet.
+     */
+    static String of(WalletSearchRepository.Sort sort, Wallet wallet) {
+      String value = sort == WalletSearchRepository.Sort.BALANCE ? wallet.getBalance().toPlainString() : wallet.getName();
+      String position = sort + "|" + value + "|" + wallet.getId();
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor.
+     *
+     * @param cursor The cursor returned by a previous page.
+     * @param sort   The sort of the requested page.
+     * @return The position of the wallet.
+     * @throws WalletListInvalidCursorException If the cursor cannot be decoded or was returned for another sort.
+     */
+    static ListCursor decode(String cursor, WalletSearchRepository.Sort sort) {
+      try {
+        String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int valueStart = position.indexOf('|');
+        int idStart = position.lastIndexOf('|');
+        if (valueStart < 0 || idStart <= valueStart || !position.substring(0, valueStart).equals(sort.name())) {
+          throw new WalletListInvalidCursorException(cursor);
+        }
+        String value = position.substring(valueStart + 1, idStart);
+        UUID id = UUID.fromString(position.substring(idStart + 1));
+        return new ListCursor(sort == WalletSearchRepository.Sort.BALANCE ? new BigDecimal(value) : value, id);
+      } catch (IllegalArgumentException e) {
+        throw new WalletListInvalidCursorException(cursor);
+      }
+    }
   }
 }
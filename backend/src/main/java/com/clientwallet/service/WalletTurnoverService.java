@@ -0,0 +1,312 @@
+package com.clientwallet.service;
+
+import com.clientwallet.archive.TransactionArchive;
+import com.clientwallet.dto.wallet.WalletStats;
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.WalletTurnover;
+import com.clientwallet.model.WalletTurnoverId;
+import com.clientwallet.repository.WalletTurnoverRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WalletTurnoverService maintains the daily {@link WalletTurnover} rollups of all wallets and answers statistics from them.
+ * <p>
+ * The write path of the wallet operations is not changed. Instead, every completed transaction starts with the flag
+ * {@code rolled_up} unset and a background aggregator repeatedly locks the oldest such transactions up to the batch
+ * size, skipping the ones locked by other aggregators, adds them to the rollups and sets the flag, all in one database
+ * transaction. Every transaction is therefore rolled up exactly once, also when it is completed asynchronously or
+ * when the application stops in between, and the transactions existing before the rollups are backfilled the same way.
+ * </p>
+ * <p>
+ * The rollups of a range of days can be rebuilt from the transaction table, one day per database transaction.
+ * The rebuild runs on the aggregator thread, so it never interleaves with the aggregation of this instance.
+ * </p>
+ */
+@Slf4j
+@Service
+public class WalletTurnoverService {
+
+  private static final String PENDING_ROLLUP_QUERY = "SELECT id, sender_wallet_id, receiver_wallet_id, currency, amount, " +
+      "created_at FROM transaction WHERE rolled_up = FALSE AND transaction_status = 'COMPLETED' " +
+      "ORDER BY created_at LIMIT ? FOR UPDATE SKIP LOCKED";
+
+  private static final String DAY_QUERY = "SELECT id, sender_wallet_id, receiver_wallet_id, currency, amount, " +
+      "created_at FROM transaction WHERE transaction_status = 'COMPLETED' AND created_at >= ? AND created_at < ?";
+
+  // Rollups are written in the order of their keys, so concurrent aggregators lock them in the same order
+  private static final Comparator<WalletTurnoverId> KEY_ORDER = Comparator.comparing(WalletTurnoverId::getWalletId)
+      .thenComparing(WalletTurnoverId::getDay)
+      .thenComparing(WalletTurnoverId::getCurrency);
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private WalletTurnoverRepository walletTurnoverRepository;
+
+  @Autowired
+  private TransactionArchive transactionArchive;
+
+  @Value("${wallet.turnover.enabled:true}")
+  private boolean enabled;
+
+  @Value("${wallet.turnover.batch-size:1000}")
+  private int batchSize;
+
+  @Value("${wallet.turnover.poll-interval-ms:1000}")
+  private long pollIntervalMs;
+
+  @Value("${wallet.turnover.rebuild-on-startup:false}")
+  private boolean rebuildOnStartup;
+
+  private TransactionTemplate transactionTemplate;
+
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * The granularities of the statistics.
+   */
+  public enum Granularity {
+
+    /**
+     * One entry per day.
+     */
+    DAY,
+
+    /**
+     * One entry per calendar month.
+     */
+    MONTH
+  }
+
+  /**
+   * Creates the transaction template of the aggregator.
+   */
+  @PostConstruct
+  public void init() {
+    transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  /**
+   * Starts the aggregator, after rebuilding all rollups if configured.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "wallet-turnover-aggregator");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (rebuildOnStartup) {
+      scheduler.execute(() -> {
+        try {
+          rebuild(null, null);
+        } catch (RuntimeException e) {
+          log.warn("Rebuild of the wallet turnover rollups failed.", e);
+        }
+      });
+    }
+    scheduler.scheduleWithFixedDelay(this::aggregateAll, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the aggregator.
+   */
+  @PreDestroy
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Retrieves the turnover of a wallet for a range of days from the rollups.
+   * <p>
+   * Transactions completed in the last poll interval may not be rolled up yet.
+   * </p>
+   *
+   * @param walletId    The ID of the wallet.
+   * @param from        The first day, inclusive.
+   * @param to          The last day, inclusive.
+   * @param granularity Whether the turnover is summed up per day or per month.
+   * @return The turnover per period and currency, ordered by the period.
+   */
+  @Transactional(readOnly = true)
+  public List<WalletStats> getStats(UUID walletId, LocalDate from, LocalDate to, Granularity granularity) {
+    Map<WalletTurnoverId, WalletStats> stats = new TreeMap<>(KEY_ORDER);
+    for (WalletTurnover turnover : walletTurnoverRepository.findByWallet(walletId, from, to)) {
+      LocalDate period = granularity == Granularity.MONTH ? turnover.getId().getDay().withDayOfMonth(1) : turnover.getId().getDay();
+      WalletStats entry = stats.computeIfAbsent(new WalletTurnoverId(walletId, period, turnover.getId().getCurrency()),
+          id -> new WalletStats(id.getDay(), id.getCurrency(), BigDecimal.ZERO, BigDecimal.ZERO, 0, 0));
+      entry.setCreditAmount(entry.getCreditAmount().add(turnover.getCreditAmount()));
+      entry.setDebitAmount(entry.getDebitAmount().add(turnover.getDebitAmount()));
+      entry.setCreditCount(entry.getCreditCount() + turnover.getCreditCount());
+      entry.setDebitCount(entry.getDebitCount() + turnover.getDebitCount());
+    }
+    return new ArrayList<>(stats.values());
+  }
+
+  /**
+   * Rebuilds the rollups of a range of days from the completed transactions.
+   * <p>
+   * Each day is rebuilt in its own database transaction. Its transactions are flagged as rolled up first, which locks
+   * them against concurrent aggregators, then the rollups of the day are deleted and written again.
+   * </p>
+   * <p>
+   * Days up to the newest archived transaction are skipped, their transactions are no longer in the database and
+   * their rollups were complete before they were archived.
+   * </p>
+   *
+   * @param from The first day, inclusive, or {@code null} for the day of the oldest transaction.
+   * @param to   The last day, inclusive, or {@code null} for today.
+   */
+  public void rebuild(LocalDate from, LocalDate to) {
+    if (from == null) {
+      LocalDateTime oldest = jdbcTemplate.queryForObject("SELECT MIN(created_at) FROM transaction", LocalDateTime.class);
+      if (oldest == null) {
+        return;
+      }
+      from = oldest.toLocalDate();
+    }
+    LocalDateTime archived = transactionArchive.getNewestCreatedAt();
+    if (archived != null && !from.isAfter(archived.toLocalDate())) {
+      from = archived.toLocalDate().plusDays(1);
+    }
+    LocalDate last = to != null ? to : LocalDate.now();
+    for (LocalDate day = from; !day.isAfter(last); day = day.plusDays(1)) {
+      LocalDate rebuiltDay = day;
+      transactionTemplate.executeWithoutResult(status -> rebuildDay(rebuiltDay));
+    }
+    log.info("Rebuilt the wallet turnover rollups from {} to {}.", from, last);
+  }
+
+  /**
+   * Aggregates batches of transactions until less than a full batch is found.
+   */
+  private void aggregateAll() {
+    try {
+      while (aggregate() == batchSize) {
+        if (Thread.currentThread().isInterrupted()) {
+          return;
+        }
+      }
+    } catch (RuntimeException e) {
+      log.warn("Aggregation of the wallet turnover failed.", e);
+    }
+  }
+
+  /**
+   * Adds the next batch of completed transactions which are not rolled up yet to the rollups.
+   *
+   * @return The number of rolled up transactions.
+   */
+  int aggregate() {
+    return transactionTemplate.execute(status -> {
+      Map<WalletTurnoverId, WalletTurnover> turnovers = new TreeMap<>(KEY_ORDER);
+      List<Object[]> rolledUp = new ArrayList<>();
+      jdbcTemplate.query(PENDING_ROLLUP_QUERY, rs -> {
+        add(turnovers, rs);
+        rolledUp.add(new Object[]{rs.getObject("id", UUID.class), rs.getObject("created_at", LocalDateTime.class)});
+      }, batchSize);
+      if (rolledUp.isEmpty()) {
+        return 0;
+      }
+
+      for (WalletTurnover turnover : turnovers.values()) {
+        WalletTurnoverId id = turnover.getId();
+        int updated = walletTurnoverRepository.add(id.getWalletId(), id.getDay(), id.getCurrency(), turnover.getCreditAmount(),
+            turnover.getDebitAmount(), turnover.getCreditCount(), turnover.getDebitCount());
+        if (updated == 0) {
+          walletTurnoverRepository.save(turnover);
+        }
+      }
+      // The creation time limits each update to the partition of the transaction
+      jdbcTemplate.batchUpdate("UPDATE transaction SET rolled_up = TRUE WHERE id = ? AND created_at = ?", rolledUp);
+      return rolledUp.size();
+    });
+  }
+
+  /**
+   * Rebuilds the rollups of a single day, in the database transaction of the caller.
+   *
+   * @param day The day.
+   */
+  private void rebuildDay(LocalDate day) {
+    LocalDateTime start = day.atStartOfDay();
+    LocalDateTime end = day.plusDays(1).atStartOfDay();
+    jdbcTemplate.update("UPDATE transaction SET rolled_up = TRUE WHERE transaction_status = 'COMPLETED' " +
+        "AND created_at >= ? AND created_at < ?", start, end);
+    walletTurnoverRepository.deleteDay(day);
+
+    Map<WalletTurnoverId, WalletTurnover> turnovers = new TreeMap<>(KEY_ORDER);
+    jdbcTemplate.query(DAY_QUERY, rs -> {
+      add(turnovers, rs);
+    }, start, end);
+    walletTurnoverRepository.saveAll(turnovers.values());
+  }
+
+  /**
+   * Adds the transaction of the current row to the rollups of its sender wallet as a debit and of its receiver wallet
+   * as a credit. Sides whose wallet was deleted are skipped.
+   *
+   * @param turnovers The rollups by their key.
+   * @param rs        The result set positioned at the transaction.
+   * @throws SQLException If a column cannot be read.
+   */
+  private static void add(Map<WalletTurnoverId, WalletTurnover> turnovers, ResultSet rs) throws SQLException {
+    Currency currency = Currency.valueOf(rs.getString("currency"));
+    BigDecimal amount = rs.getBigDecimal("amount");
+    LocalDate day = rs.getObject("created_at", LocalDateTime.class).toLocalDate();
+
+    UUID receiverWalletId = rs.getObject("receiver_wallet_id", UUID.class);
+    if (receiverWalletId != null) {
+      WalletTurnover turnover = turnover(turnovers, receiverWalletId, day, currency);
+      turnover.setCreditAmount(turnover.getCreditAmount().add(amount));
+      turnover.setCreditCount(turnover.getCreditCount() + 1);
+    }
+    UUID senderWalletId = rs.getObject("sender_wallet_id", UUID.class);
+    if (senderWalletId != null) {
+      WalletTurnover turnover = turnover(turnovers, senderWalletId, day, currency);
+      turnover.setDebitAmount(turnover.getDebitAmount().add(amount));
+      turnover.setDebitCount(turnover.getDebitCount() + 1);
+    }
+  }
+
+  private static WalletTurnover turnover(Map<WalletTurnoverId, WalletTurnover> turnovers, UUID walletId, LocalDate day,
+                                         Currency currency) {
+    return turnovers.computeIfAbsent(new WalletTurnoverId(walletId, day, currency),
+        id -> new WalletTurnover(id, BigDecimal.ZERO, BigDecimal.ZERO, 0, 0));
+  }
+}
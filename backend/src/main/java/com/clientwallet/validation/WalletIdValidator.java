@@ -1,6 +1,6 @@
 package com.clientwallet.validation;
 
-import com.clientwallet.repository.WalletRepository;
+import com.clientwallet.service.WalletService;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import jakarta.validation.ConstraintValidator;
@@ -16,27 +16,28 @@ import java.util.UUID;
  * </p>
  * <p>
  * The validator checks whether the provided wallet ID is not null and whether the wallet with that
- * ID exists in the {@link WalletRepository}.
+ * ID exists according to {@link WalletService#exists(UUID)}. Unknown wallets are mostly rejected without
+ * a database round trip, and an existing wallet is loaded into the wallet cache, where the handling of the request finds it.
  * </p>
  *
  * @see ValidWalletId
- * @see WalletRepository
+ * @see WalletService
  */
 public class WalletIdValidator implements ConstraintValidator<ValidWalletId, UUID> {
 
     @Autowired
-    private WalletRepository walletRepository;
+    private WalletService walletService;
 
     /**
      * Validates if the given wallet ID is valid.
      * <p>
-     * This method checks if the wallet ID is not null and if the wallet with the given ID exists
-     * in the database. If the wallet does not exist, it will return false, meaning the validation fails.
+     * This method checks if the wallet ID is not null and if the wallet with the given ID exists.
+     * If the wallet does not exist, it will return false, meaning the validation fails.
      * </p>
      *
      * @param walletId The wallet ID to be validated.
      * @param context  The context in which the constraint is applied. This can be used for more complex error reporting.
-     * @return True if the wallet ID exists in the database, otherwise false.
+     * @return True if the wallet with the ID exists, otherwise false.
      */
     @Override
     public boolean isValid(UUID walletId, ConstraintValidatorContext context) {
@@ -44,7 +45,7 @@ public class WalletIdValidator implements ConstraintValidator<ValidWalletId, UUI
             return false; // Invalid if the wallet ID is null.
         }
 
-        // Check if the wallet exists in the database using the WalletRepository.
-        return walletRepository.existsById(walletId);
+        // Check if the wallet exists using the index of known wallets and the wallet cache.
+        return walletService.exists(walletId);
     }
 }
@@ -0,0 +1,137 @@
+package com.clientwallet.archive;
+
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.TransactionStatus;
+import com.clientwallet.model.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionArchiveTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testSegmentFindsTransactionsOfWalletAcrossBlocks() throws Exception {
+        UUID wallet1 = UUID.randomUUID();
+        UUID wallet2 = UUID.randomUUID();
+        List<ArchivedTransaction> transactions = new ArrayList<>();
+        // More transactions than fit into a single block, so the reads cross block boundaries
+        for (int i = 0; i < 3000; i++) {
+            transactions.add(transfer(wallet1, wallet2, START.plusMinutes(i), BigDecimal.valueOf(10000 - i),
+                    BigDecimal.valueOf(i)));
+        }
+        transactions.add(failed(wallet1, START.plusMinutes(3000)));
+        Path file = directory.resolve("test.seg");
+
+        ArchiveSegment.write(file, transactions);
+        ArchiveSegment segment = ArchiveSegment.open(file);
+
+        assertEquals(START, segment.getOldestCreatedAt());
+        assertEquals(START.plusMinutes(3000), segment.getNewestCreatedAt());
+        assertEquals(3001, segment.transactions().size());
+
+        List<ArchivedTransaction> newest = segment.findOlderThan(wallet1, null, null, 2);
+        assertEquals(List.of(transactions.get(3000), transactions.get(2999)), newest);
+
+        ArchivedTransaction position = transactions.get(1500);
+        List<ArchivedTransaction> older = segment.findOlderThan(wallet2, position.getCreatedAt(), position.getId(), 1000);
+        assertEquals(1000, older.size());
+        assertEquals(transactions.get(1499), older.get(0));
+        assertEquals(transactions.get(500), older.get(999));
+
+        List<ArchivedTransaction> newer = segment.findNewerThan(wallet2, position.getCreatedAt(), position.getId(), 5000);
+        assertEquals(transactions.subList(1501, 3000), newer);
+
+        // The failed transaction changed no balance, the last applied one is the transfer before it
+        ArchivedTransaction applied = segment.findLastAppliedAt(wallet1, START.plusMinutes(3000));
+        assertEquals(transactions.get(2999), applied);
+        assertEquals(BigDecimal.valueOf(7001), applied.getBalanceAfter(wallet1));
+        assertEquals(BigDecimal.valueOf(2999), applied.getBalanceAfter(wallet2));
+        assertNull(segment.findLastAppliedAt(wallet1, START.minusSeconds(1)));
+        assertTrue(segment.findNewerThan(UUID.randomUUID(), null, null, 10).isEmpty());
+    }
+
+    @Test
+    void testArchiveMergesSegmentsAndKeepsPendingOnesAcrossRestarts() throws Exception {
+        UUID wallet1 = UUID.randomUUID();
+        UUID wallet2 = UUID.randomUUID();
+        List<ArchivedTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            transactions.add(transfer(wallet1, wallet2, START.plusDays(i), BigDecimal.valueOf(100 - i),
+                    BigDecimal.valueOf(i)));
+        }
+        TransactionArchive archive = archive();
+        ArchiveSegment first = archive.write(transactions.subList(0, 5));
+        archive.complete(first);
+        archive.write(transactions.subList(5, 10));
+
+        assertEquals(START.plusDays(9), archive.getNewestCreatedAt());
+        assertEquals(1, archive.getPendingSegments().size());
+
+        Iterator<ArchivedTransaction> iterator = archive.iterate(wallet1, 3);
+        List<ArchivedTransaction> all = new ArrayList<>();
+        iterator.forEachRemaining(all::add);
+        assertEquals(transactions, all);
+
+        List<ArchivedTransaction> page = archive.findOlderThan(wallet2, START.plusDays(7), transactions.get(7).getId(), 4);
+        assertEquals(List.of(transactions.get(6), transactions.get(5), transactions.get(4), transactions.get(3)), page);
+        assertEquals(transactions.get(6), archive.findLastAppliedAt(wallet1, START.plusDays(6).plusHours(1)));
+
+        Files.writeString(directory.resolve("broken.seg.tmp"), "incomplete");
+        TransactionArchive reopened = archive();
+        assertFalse(Files.exists(directory.resolve("broken.seg.tmp")));
+        assertEquals(1, reopened.getPendingSegments().size());
+        assertEquals(5, reopened.getPendingSegments().get(0).getEntryCount() / 2);
+    }
+
+    @Test
+    void testMergeRemovesTransactionsFoundInBothStores() {
+        UUID wallet1 = UUID.randomUUID();
+        UUID wallet2 = UUID.randomUUID();
+        ArchivedTransaction older = transfer(wallet1, wallet2, START, BigDecimal.ONE, BigDecimal.ONE);
+        ArchivedTransaction both = transfer(wallet1, wallet2, START.plusSeconds(1), BigDecimal.ONE, BigDecimal.ONE);
+        ArchivedTransaction newer = transfer(wallet1, wallet2, START.plusSeconds(2), BigDecimal.ONE, BigDecimal.ONE);
+
+        List<ArchivedTransaction> merged = TransactionArchive.merge(List.of(newer, both), List.of(both, older),
+                TransactionArchive.HISTORY_ORDER.reversed(), 10);
+
+        assertEquals(List.of(newer, both, older), merged);
+        assertEquals(List.of(older, both), TransactionArchive.merge(List.of(newer, both), List.of(both, older),
+                TransactionArchive.HISTORY_ORDER, 2));
+    }
+
+    private TransactionArchive archive() throws Exception {
+        TransactionArchive archive = new TransactionArchive();
+        ReflectionTestUtils.setField(archive, "directory", directory.toString());
+        archive.init();
+        return archive;
+    }
+
+    private static ArchivedTransaction transfer(UUID sender, UUID receiver, LocalDateTime createdAt,
+                                                BigDecimal senderBalance, BigDecimal receiverBalance) {
+        return new ArchivedTransaction(UUID.randomUUID(), sender, "Sender", receiver, "Receiver", Currency.EUR,
+                null, null, BigDecimal.ONE, TransactionType.TRANSFER, TransactionStatus.COMPLETED, createdAt, createdAt,
+                senderBalance, receiverBalance);
+    }
+
+    private static ArchivedTransaction failed(UUID sender, LocalDateTime createdAt) {
+        return new ArchivedTransaction(UUID.randomUUID(), sender, "Sender", null, null, Currency.EUR,
+                "DE00123456780000000000", "12345678", BigDecimal.TEN, TransactionType.WITHDRAWAL, TransactionStatus.FAILED,
+                createdAt, createdAt, null, null);
+    }
+}
@@ -0,0 +1,67 @@
+package com.clientwallet.config;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConcurrencyLimitedDataSourceTest {
+
+    private final DataSource target = mock(DataSource.class);
+
+    private final ConcurrencyLimitedDataSource dataSource = new ConcurrencyLimitedDataSource(target, 1, 50);
+
+    @Test
+    void testLimitsConnectionsOfVirtualThreads() throws Exception {
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+
+        // The first connection holds the only permit until it is closed
+        Connection first = onVirtualThread(dataSource::getConnection);
+        assertEquals(0, dataSource.availablePermits());
+        ExecutionException rejected = assertThrows(ExecutionException.class, () -> onVirtualThread(dataSource::getConnection));
+        assertInstanceOf(SQLTransientConnectionException.class, rejected.getCause());
+
+        // Closing it twice returns the permit once
+        first.close();
+        first.close();
+        assertEquals(1, dataSource.availablePermits());
+        onVirtualThread(dataSource::getConnection).close();
+        assertEquals(1, dataSource.availablePermits());
+    }
+
+    @Test
+    void testDoesNotLimitConnectionsOfPlatformThreads() throws Exception {
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        Connection held = onVirtualThread(dataSource::getConnection);
+
+        // Background consumers run on platform threads and use the connections reserved for them
+        Connection background = dataSource.getConnection();
+
+        assertNotNull(background);
+        assertEquals(0, dataSource.availablePermits());
+        held.close();
+    }
+
+    @Test
+    void testFailedConnectionReturnsPermit() throws Exception {
+        when(target.getConnection()).thenThrow(new SQLTransientConnectionException("Pool exhausted"));
+
+        assertThrows(ExecutionException.class, () -> onVirtualThread(dataSource::getConnection));
+
+        assertEquals(1, dataSource.availablePermits());
+    }
+
+    private static <T> T onVirtualThread(Callable<T> task) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            return executor.submit(task).get();
+        }
+    }
+}
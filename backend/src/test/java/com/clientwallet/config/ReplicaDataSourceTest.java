@@ -0,0 +1,91 @@
+package com.clientwallet.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ReplicaDataSourceTest {
+
+    private DataSource primary;
+    private DataSource replica;
+    private ReplicaDataSource replicaDataSource;
+
+    @BeforeEach
+    void setUp() {
+        // Two in-memory H2 databases stand in for the primary database and a replica
+        primary = database("primary");
+        replica = database("replica");
+        new JdbcTemplate(replica).execute("CREATE TABLE replica_lag (seconds DOUBLE)");
+        new JdbcTemplate(replica).execute("INSERT INTO replica_lag VALUES (0)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        replicaDataSource.close();
+    }
+
+    @Test
+    void testReadOnlyTransactionsReadFromReplica() {
+        replicaDataSource = new ReplicaDataSource(primary, Map.of("replica", replica), "SELECT seconds FROM replica_lag", 1000, 1000);
+        replicaDataSource.checkReplicas();
+
+        assertEquals("replica", readNode(true));
+        assertEquals("primary", readNode(false));
+    }
+
+    @Test
+    void testLaggingReplicaIsSkipped() {
+        replicaDataSource = new ReplicaDataSource(primary, Map.of("replica", replica), "SELECT seconds FROM replica_lag", 1000, 1000);
+        new JdbcTemplate(replica).update("UPDATE replica_lag SET seconds = 5");
+        replicaDataSource.checkReplicas();
+        assertEquals("primary", readNode(true));
+
+        new JdbcTemplate(replica).update("UPDATE replica_lag SET seconds = 0.5");
+        replicaDataSource.checkReplicas();
+        assertEquals("replica", readNode(true));
+    }
+
+    @Test
+    void testUnavailableReplicaFallsBackToPrimary() throws SQLException {
+        DataSource failing = mock(DataSource.class);
+        replicaDataSource = new ReplicaDataSource(primary, Map.of("failing", failing), "", 1000, 1000);
+        // The replica passes its check, but fails when the first read needs a connection
+        when(failing.getConnection()).thenReturn(replica.getConnection()).thenThrow(new SQLException("Connection refused"));
+        replicaDataSource.checkReplicas();
+
+        assertEquals("primary", readNode(true));
+        assertEquals("primary", readNode(true));
+        verify(failing, times(2)).getConnection();
+    }
+
+    private String readNode(boolean readOnly) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status ->
+                new JdbcTemplate(dataSource).queryForObject("SELECT name FROM node", String.class));
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE node (name VARCHAR(10))");
+        jdbcTemplate.update("INSERT INTO node VALUES (?)", name);
+        return dataSource;
+    }
+}
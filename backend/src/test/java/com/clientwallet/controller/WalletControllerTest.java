@@ -5,9 +5,11 @@ import com.clientwallet.dto.wallet.WalletDepositRequest;
 import com.clientwallet.dto.wallet.WalletWithdrawRequest;
 import com.clientwallet.dto.wallet.WalletTransferRequest;
 import com.clientwallet.model.Currency;
+import com.clientwallet.model.Transaction;
 import com.clientwallet.model.Wallet;
 import com.clientwallet.repository.WalletRepository;
 import com.clientwallet.service.WalletService;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -15,10 +17,13 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -86,6 +91,25 @@ class WalletControllerTest {
                 .andExpect(jsonPath("$.transactionStatus").value("COMPLETED"));
     }
 
+    @Test
+    void testDepositWithReusedIdempotencyKey() throws Exception {
+        String key = UUID.randomUUID().toString();
+        String body = "{\"walletId\":\"" + walletId + "\", \"amount\":10, \"currency\":\"EUR\", \"bankCode\":\"1234\", \"accountNumber\":\"1234567890\"}";
+
+        String first = mockMvc.perform(post("/wallet/deposit").header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        // The same request, formatted differently, is answered with the original transaction
+        mockMvc.perform(post("/wallet/deposit").header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON).content(body.replace(", ", ",")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(JsonPath.<String>read(first, "$.id")));
+        mockMvc.perform(post("/wallet/deposit").header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON).content(body.replace("\"amount\":10", "\"amount\":20")))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
     @Test
     void testWithdraw() throws Exception {
         WalletWithdrawRequest withdrawRequest = new WalletWithdrawRequest();
@@ -124,6 +148,96 @@ class WalletControllerTest {
                 .andExpect(jsonPath("$.transactionStatus").value("COMPLETED"));
     }
 
+    @Test
+    void testDepositAsync() throws Exception {
+        String response = mockMvc.perform(post("/wallet/deposit/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"walletId\":\"" + walletId + "\", \"amount\":10, \"currency\":\"EUR\", \"bankCode\":\"1234\", \"accountNumber\":\"1234567890\"}"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andExpect(jsonPath("$.transactionStatus").value("PENDING"))
+                .andReturn().getResponse().getContentAsString();
+        String transactionId = JsonPath.read(response, "$.id");
+
+        // The deposit is applied by the background workers
+        long deadline = System.currentTimeMillis() + 5000;
+        String transactionStatus;
+        do {
+            Thread.sleep(50);
+            transactionStatus = JsonPath.read(mockMvc.perform(get("/transaction/" + transactionId))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString(), "$.transactionStatus");
+        } while (transactionStatus.equals("PENDING") && System.currentTimeMillis() < deadline);
+        assertEquals("COMPLETED", transactionStatus);
+    }
+
+    @Test
+    void testGetUnknownTransaction() throws Exception {
+        mockMvc.perform(get("/transaction/" + UUID.randomUUID()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testListWalletsInCompactFormat() throws Exception {
+        mockMvc.perform(get("/wallet/list")
+                        .param("compact", "true")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].balance").exists())
+                .andExpect(jsonPath("$[0].createdAt").doesNotExist());
+    }
+
+    @Test
+    void testListWalletsWithInvalidCursor() throws Exception {
+        mockMvc.perform(get("/wallet/list")
+                        .param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetBalanceAtBeforeFirstTransaction() throws Exception {
+        mockMvc.perform(get("/wallet/balanceAt")
+                        .param("walletId", walletId.toString())
+                        .param("at", "2000-01-01T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.walletId").value(walletId.toString()))
+                .andExpect(jsonPath("$.balance").value(0));
+    }
+
+    @Test
+    void testGetStatsWithUnknownGranularity() throws Exception {
+        mockMvc.perform(get("/wallet/stats")
+                        .param("walletId", walletId.toString())
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-12-31")
+                        .param("granularity", "week"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testExportHistoryAsCsv() throws Exception {
+        MvcResult result = mockMvc.perform(get("/wallet/history/export")
+                        .param("walletId", walletId.toString())
+                        .param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String csv = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(csv.startsWith("id,transactionType,transactionStatus,"));
+    }
+
+    @Test
+    void testExportHistoryWithUnknownFormat() throws Exception {
+        mockMvc.perform(get("/wallet/history/export")
+                        .param("walletId", walletId.toString())
+                        .param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testGetTransactionHistory() throws Exception {
 
@@ -133,4 +247,74 @@ class WalletControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray());
     }
+
+    @Test
+    void testGetWalletNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/wallet/get")
+                        .param("walletId", walletId.toString()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/wallet/get")
+                        .param("walletId", walletId.toString())
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void testGetTransactionHistoryNotModifiedUntilChanged() throws Exception {
+        String etag = mockMvc.perform(get("/wallet/getHistory")
+                        .param("walletId", walletId.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/wallet/getHistory")
+                        .param("walletId", walletId.toString())
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        WalletDepositRequest depositRequest = new WalletDepositRequest();
+        depositRequest.setWalletId(walletId);
+        depositRequest.setAmount(BigDecimal.ONE);
+        depositRequest.setCurrency(Currency.EUR);
+        depositRequest.setBankCode("1234");
+        depositRequest.setAccountNumber("1234567890");
+        walletService.deposit(depositRequest);
+
+        String changedEtag = mockMvc.perform(get("/wallet/getHistory")
+                        .param("walletId", walletId.toString())
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertTrue(changedEtag != null && !changedEtag.equals(etag));
+    }
+
+    @Test
+    void testStreamEventsPushesCommittedDeposit() throws Exception {
+        MvcResult result = mockMvc.perform(get("/wallet/" + walletId + "/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        WalletDepositRequest depositRequest = new WalletDepositRequest();
+        depositRequest.setWalletId(walletId);
+        depositRequest.setAmount(BigDecimal.ONE);
+        depositRequest.setCurrency(Currency.EUR);
+        depositRequest.setBankCode("1234");
+        depositRequest.setAccountNumber("1234567890");
+        Transaction transaction = walletService.deposit(depositRequest);
+
+        String expected = "\"transactionId\":\"" + transaction.getId() + "\"";
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = result.getResponse().getContentAsString();
+        while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            content = result.getResponse().getContentAsString();
+        }
+
+        assertTrue(content.startsWith("event:wallet"));
+        assertTrue(content.contains(expected));
+        assertTrue(content.contains("\"balance\":" + transaction.getReceiverBalanceAfter()));
+    }
 }
@@ -0,0 +1,122 @@
+package com.clientwallet.controller;
+
+import com.clientwallet.dto.wallet.WalletCreateRequest;
+import com.clientwallet.model.Currency;
+import com.clientwallet.service.WalletService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the throughput and the p99 latency of balance requests served on platform threads and on virtual threads.
+ * Run with {@code gradle benchmark}.
+ * <p>
+ * Every client sends {@code GET /wallet/get} requests one after another. The clients run on virtual threads in the
+ * same process as the server, so the number of clients is limited by the open files of the process.
+ * </p>
+ * <p>
+ * The comparison has only been run against the in-memory H2 database of the tests and with up to 8000 clients,
+ * its latencies say nothing about a PostgreSQL database over the network.
+ * </p>
+ */
+@Tag("benchmark")
+public abstract class WebThreadsBenchmarkTest {
+
+    private static final long WARMUP_MS = 5_000;
+    private static final long MEASURE_MS = 15_000;
+
+    @Autowired
+    private WalletService walletService;
+
+    @LocalServerPort
+    private int port;
+
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+            "spring.threads.virtual.enabled=false", "spring.jpa.show-sql=false",
+            "wallet.turnover.enabled=false", "wallet.reconciliation.enabled=false"})
+    @ActiveProfiles("test")
+    static class PlatformThreadsBenchmarkTest extends WebThreadsBenchmarkTest {
+    }
+
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+            "spring.threads.virtual.enabled=true", "spring.jpa.show-sql=false",
+            "wallet.turnover.enabled=false", "wallet.reconciliation.enabled=false"})
+    @ActiveProfiles("test")
+    static class VirtualThreadsBenchmarkTest extends WebThreadsBenchmarkTest {
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1_000, 4_000, 8_000})
+    void benchmarkBalanceRequests(int clients) throws Exception {
+        WalletCreateRequest request = new WalletCreateRequest();
+        request.setName("Load " + UUID.randomUUID().toString().substring(0, 8));
+        request.setCurrency(Currency.EUR);
+        URI uri = URI.create("http://localhost:" + port + "/wallet/get?walletId=" + walletService.create(request).getId());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder().executor(executor).connectTimeout(Duration.ofSeconds(30)).build()) {
+            run(client, executor, uri, clients, WARMUP_MS, new AtomicLong());
+            AtomicLong errors = new AtomicLong();
+            long[] latencies = run(client, executor, uri, clients, MEASURE_MS, errors);
+
+            Arrays.sort(latencies);
+            double p99 = latencies.length > 0 ? latencies[(int) Math.ceil(latencies.length * 0.99) - 1] / 1e6 : 0;
+            System.out.printf("%s, %d clients: %.0f requests/s, p99 %.0f ms, %d errors%n", getClass().getSimpleName(),
+                    clients, latencies.length * 1000.0 / MEASURE_MS, p99, errors.get());
+        }
+    }
+
+    /**
+     * Sends requests from the given number of clients until the duration has passed.
+     *
+     * @return The latencies of the successful requests in nanoseconds.
+     */
+    private long[] run(HttpClient client, ExecutorService executor, URI uri, int clients, long durationMs,
+                       AtomicLong errors) throws Exception {
+        long end = System.currentTimeMillis() + durationMs;
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).build();
+        List<Future<List<Long>>> results = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            results.add(executor.submit(() -> {
+                List<Long> latencies = new ArrayList<>();
+                while (System.currentTimeMillis() < end) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() == 200) {
+                            latencies.add(System.nanoTime() - start);
+                        } else {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+                return latencies;
+            }));
+        }
+        List<Long> latencies = new ArrayList<>();
+        for (Future<List<Long>> result : results) {
+            latencies.addAll(result.get());
+        }
+        return latencies.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,166 @@
+package com.clientwallet.reactive;
+
+import com.clientwallet.ClientWalletApplication;
+import com.clientwallet.dto.wallet.WalletCreateRequest;
+import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.model.Currency;
+import com.clientwallet.service.WalletService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the throughput and the p99 latency of the servlet and the reactive wallet endpoints side by side.
+ * Run with {@code gradle benchmark}.
+ * <p>
+ * Both applications run in this process on the in-memory H2 database of the tests, the servlet application on
+ * virtual threads, each with a pool of 10 connections. Every client sends requests of one endpoint one after another,
+ * for every number of clients in {@code benchmark.reactive.clients}, e.g. {@code -Pbenchmark.reactive.clients=2000,16000}.
+ * The clients run on virtual threads in the same process, so their number is limited by the open files of the process,
+ * two per client. Each stack is warmed up and measured with a client of its own, one after another.
+ * </p>
+ * <p>
+ * The servlet application answers {@code /wallet/get} from its wallet cache, the reactive application reads every
+ * wallet from the database, so only the history requests compare the same work.
+ * </p>
+ */
+@Tag("benchmark")
+@SpringBootTest(classes = ClientWalletApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.jpa.show-sql=false", "wallet.turnover.enabled=false", "wallet.reconciliation.enabled=false"})
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ReactiveWalletBenchmarkTest {
+
+    private static final int[] CLIENTS = Arrays.stream(System.getProperty("benchmark.reactive.clients", "1000,4000,8000")
+            .split(",")).mapToInt(clients -> Integer.parseInt(clients.trim())).toArray();
+    private static final int TRANSACTIONS = 100;
+    private static final long WARMUP_MS = 5_000;
+    private static final long MEASURE_MS = 10_000;
+
+    @Autowired
+    private WalletService walletService;
+
+    @LocalServerPort
+    private int servletPort;
+
+    private ConfigurableApplicationContext reactiveContext;
+
+    private int reactivePort;
+
+    private UUID walletId;
+
+    @BeforeAll
+    void setUp() {
+        reactiveContext = new SpringApplicationBuilder(ReactiveWalletApplication.class)
+                .profiles("reactive", "test")
+                .run("--server.port=0");
+        reactivePort = Integer.parseInt(reactiveContext.getEnvironment().getProperty("local.server.port"));
+
+        WalletCreateRequest request = new WalletCreateRequest();
+        request.setName("Load " + UUID.randomUUID().toString().substring(0, 8));
+        request.setCurrency(Currency.EUR);
+        walletId = walletService.create(request).getId();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            WalletDepositRequest deposit = new WalletDepositRequest();
+            deposit.setWalletId(walletId);
+            deposit.setAmount(BigDecimal.ONE);
+            deposit.setCurrency(Currency.EUR);
+            deposit.setBankCode("BANK123");
+            deposit.setAccountNumber("1234567890");
+            walletService.deposit(deposit);
+        }
+    }
+
+    @AfterAll
+    void tearDown() {
+        reactiveContext.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/wallet/get", "/wallet/getHistory"})
+    void benchmarkRequests(String path) throws Exception {
+        URI servlet = URI.create("http://localhost:" + servletPort + path + "?walletId=" + walletId);
+        URI reactive = URI.create("http://localhost:" + reactivePort + path + "?walletId=" + walletId);
+
+        for (int clients : CLIENTS) {
+            measure("Servlet", servlet, clients);
+            measure("Reactive", reactive, clients);
+        }
+    }
+
+    // A client of its own, whose connections are closed before the other stack is measured
+    private void measure(String stack, URI uri, int clients) throws Exception {
+        AtomicLong errors = new AtomicLong();
+        long[] latencies;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder().executor(executor).connectTimeout(Duration.ofSeconds(30)).build()) {
+            run(client, executor, uri, clients, WARMUP_MS, new AtomicLong());
+            latencies = run(client, executor, uri, clients, MEASURE_MS, errors);
+        }
+
+        Arrays.sort(latencies);
+        double p99 = latencies.length > 0 ? latencies[(int) Math.ceil(latencies.length * 0.99) - 1] / 1e6 : 0;
+        System.out.printf("%s %s, %d clients: %.0f requests/s, p99 %.0f ms, %d errors%n", stack, uri.getPath(),
+                clients, latencies.length * 1000.0 / MEASURE_MS, p99, errors.get());
+    }
+
+    /**
+     * Sends requests from the given number of clients until the duration has passed.
+     *
+     * @return The latencies of the successful requests in nanoseconds.
+     */
+    private long[] run(HttpClient client, ExecutorService executor, URI uri, int clients, long durationMs,
+                       AtomicLong errors) throws Exception {
+        long end = System.currentTimeMillis() + durationMs;
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).build();
+        List<Future<List<Long>>> results = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            results.add(executor.submit(() -> {
+                List<Long> latencies = new ArrayList<>();
+                while (System.currentTimeMillis() < end) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() == 200) {
+                            latencies.add(System.nanoTime() - start);
+                        } else {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+                return latencies;
+            }));
+        }
+        List<Long> latencies = new ArrayList<>();
+        for (Future<List<Long>> result : results) {
+            latencies.addAll(result.get());
+        }
+        return latencies.stream().mapToLong(Long::longValue).toArray();
+    }
+}
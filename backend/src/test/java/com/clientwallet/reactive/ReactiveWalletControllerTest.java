@@ -0,0 +1,253 @@
+package com.clientwallet.reactive;
+
+import com.clientwallet.ClientWalletApplication;
+import com.clientwallet.dto.wallet.WalletCreateRequest;
+import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.dto.wallet.WalletStripeRequest;
+import com.clientwallet.dto.wallet.WalletTransferRequest;
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.Wallet;
+import com.clientwallet.service.WalletService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.test.web.servlet.MockMvc;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Compares the responses of the reactive wallet endpoints with those of the servlet endpoints on the same database.
+ */
+@SpringBootTest(classes = ClientWalletApplication.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ReactiveWalletControllerTest {
+
+    private static final int POOL_SIZE = 2;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private WalletService walletService;
+
+    private ConfigurableApplicationContext reactiveContext;
+
+    private WebTestClient webTestClient;
+
+    @BeforeAll
+    void startReactiveApplication() {
+        reactiveContext = new SpringApplicationBuilder(ReactiveWalletApplication.class)
+                .profiles("reactive", "test")
+                .run("--server.port=0", "--spring.r2dbc.pool.initial-size=1", "--spring.r2dbc.pool.max-size=" + POOL_SIZE,
+                        "--spring.r2dbc.pool.max-acquire-time=500ms");
+        webTestClient = WebTestClient.bindToServer()
+                .baseUrl("http://localhost:" + reactiveContext.getEnvironment().getProperty("local.server.port"))
+                .build();
+    }
+
+    @AfterAll
+    void stopReactiveApplication() {
+        reactiveContext.close();
+    }
+
+    @Test
+    void testGetMatchesServlet() throws Exception {
+        Wallet wallet = createWallet();
+        deposit(wallet.getId(), BigDecimal.valueOf(20));
+        WalletStripeRequest stripeRequest = new WalletStripeRequest();
+        stripeRequest.setWalletId(wallet.getId());
+        stripeRequest.setStripeCount(4);
+        walletService.stripe(stripeRequest);
+        deposit(wallet.getId(), BigDecimal.valueOf(5));
+        deposit(wallet.getId(), BigDecimal.valueOf(7));
+
+        String uri = "/wallet/get?walletId=" + wallet.getId();
+        Response servlet = servlet(uri, null);
+        Response reactive = reactive(uri, null);
+
+        assertEquals(200, reactive.status());
+        assertEquals(servlet, reactive);
+        assertEquals(0, new BigDecimal("32").compareTo(reactive.body().get("balance").decimalValue()));
+    }
+
+    @Test
+    void testGetNotModified() throws Exception {
+        Wallet wallet = createWallet();
+        deposit(wallet.getId(), BigDecimal.TEN);
+        String uri = "/wallet/get?walletId=" + wallet.getId();
+        String etag = reactive(uri, null).etag();
+
+        assertEquals(304, reactive(uri, etag).status());
+
+        deposit(wallet.getId(), BigDecimal.TEN);
+        Response changed = reactive(uri, etag);
+        assertEquals(200, changed.status());
+        assertNotEquals(etag, changed.etag());
+    }
+
+    @Test
+    void testHistoryPagesMatchServlet() throws Exception {
+        Wallet wallet = createWallet();
+        Wallet other = createWallet();
+        for (int i = 1; i <= 7; i++) {
+            deposit(wallet.getId(), BigDecimal.valueOf(i));
+        }
+        deposit(other.getId(), BigDecimal.TEN);
+        transfer(other.getId(), wallet.getId(), BigDecimal.ONE);
+        transfer(wallet.getId(), other.getId(), BigDecimal.valueOf(2));
+
+        // Walk through all pages to the oldest transaction, and back to the newest
+        String uri = "/wallet/getHistory?limit=3&walletId=" + wallet.getId();
+        List<Response> older = new ArrayList<>();
+        Response page = compare(uri);
+        older.add(page);
+        while (page.next() != null) {
+            page = compare(uri + "&after=" + page.next());
+            older.add(page);
+        }
+        assertEquals(3, older.size());
+        assertEquals(9, older.stream().mapToInt(response -> response.body().size()).sum());
+
+        page = older.get(older.size() - 1);
+        int newer = 0;
+        while (page.previous() != null) {
+            page = compare(uri + "&before=" + page.previous());
+            newer++;
+            assertEquals(older.get(older.size() - 1 - newer).body(), page.body());
+        }
+        assertEquals(2, newer);
+    }
+
+    @Test
+    void testHistoryNotModified() throws Exception {
+        Wallet wallet = createWallet();
+        deposit(wallet.getId(), BigDecimal.TEN);
+        String uri = "/wallet/getHistory?walletId=" + wallet.getId();
+        String etag = reactive(uri, null).etag();
+
+        assertEquals(304, reactive(uri, etag).status());
+
+        deposit(wallet.getId(), BigDecimal.TEN);
+        Response changed = reactive(uri, etag);
+        assertEquals(200, changed.status());
+        assertEquals(2, changed.body().size());
+    }
+
+    @Test
+    void testErrorsMatchServlet() throws Exception {
+        Wallet wallet = createWallet();
+        deposit(wallet.getId(), BigDecimal.TEN);
+        UUID unknown = UUID.randomUUID();
+
+        assertEquals(400, compare("/wallet/get?walletId=" + unknown).status());
+        assertEquals(400, compare("/wallet/getHistory?walletId=" + unknown).status());
+        assertEquals(400, compare("/wallet/getHistory?walletId=" + wallet.getId() + "&after=invalid").status());
+        assertEquals(400, compare("/wallet/getHistory?walletId=" + wallet.getId() + "&after=a&before=b").status());
+        assertEquals(400, compare("/wallet/getHistory?walletId=" + wallet.getId() + "&limit=0").status());
+    }
+
+    @Test
+    void testExhaustedPoolIsServiceUnavailable() throws Exception {
+        Wallet wallet = createWallet();
+        ConnectionFactory connectionFactory = reactiveContext.getBean(ConnectionFactory.class);
+        List<Connection> held = new ArrayList<>();
+        try {
+            for (int i = 0; i < POOL_SIZE; i++) {
+                held.add(Mono.from(connectionFactory.create()).block());
+            }
+
+            Response response = reactive("/wallet/get?walletId=" + wallet.getId(), null);
+
+            assertEquals(503, response.status());
+            assertEquals("Too many concurrent requests, try again later.", response.body().get("error").asText());
+        } finally {
+            held.forEach(connection -> Mono.from(connection.close()).block());
+        }
+        assertEquals(200, reactive("/wallet/get?walletId=" + wallet.getId(), null).status());
+    }
+
+    private Wallet createWallet() {
+        WalletCreateRequest request = new WalletCreateRequest();
+        request.setName("Reactive " + UUID.randomUUID().toString().substring(0, 8));
+        request.setCurrency(Currency.EUR);
+        return walletService.create(request);
+    }
+
+    private void deposit(UUID walletId, BigDecimal amount) {
+        WalletDepositRequest request = new WalletDepositRequest();
+        request.setWalletId(walletId);
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("BANK123");
+        request.setAccountNumber("1234567890");
+        walletService.deposit(request);
+    }
+
+    private void transfer(UUID senderWalletId, UUID receiverWalletId, BigDecimal amount) {
+        WalletTransferRequest request = new WalletTransferRequest();
+        request.setSenderWalletId(senderWalletId);
+        request.setReceiverWalletId(receiverWalletId);
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        walletService.transfer(request);
+    }
+
+    private Response compare(String uri) throws Exception {
+        Response servlet = servlet(uri, null);
+        Response reactive = reactive(uri, null);
+        assertEquals(servlet, reactive, uri);
+        return reactive;
+    }
+
+    private Response servlet(String uri, String ifNoneMatch) throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(ifNoneMatch != null
+                ? get(uri).header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch) : get(uri)).andReturn().getResponse();
+        String body = response.getContentAsString();
+        return new Response(response.getStatus(), response.getHeader(HttpHeaders.ETAG),
+                response.getHeader("X-Next-Cursor"), response.getHeader("X-Previous-Cursor"),
+                body.isEmpty() ? null : objectMapper.readTree(body));
+    }
+
+    private Response reactive(String uri, String ifNoneMatch) throws Exception {
+        EntityExchangeResult<byte[]> result = webTestClient.get().uri(uri)
+                .headers(headers -> {
+                    if (ifNoneMatch != null) {
+                        headers.setIfNoneMatch(ifNoneMatch);
+                    }
+                })
+                .exchange().expectBody().returnResult();
+        HttpHeaders headers = result.getResponseHeaders();
+        byte[] body = result.getResponseBody();
+        return new Response(result.getStatus().value(), headers.getETag(), headers.getFirst("X-Next-Cursor"),
+                headers.getFirst("X-Previous-Cursor"), body == null || body.length == 0 ? null : objectMapper.readTree(body));
+    }
+
+    private record Response(int status, String etag, String next, String previous, JsonNode body) {
+    }
+}
@@ -0,0 +1,163 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.wallet.WalletCreateRequest;
+import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.dto.wallet.WalletReconciliationMismatch;
+import com.clientwallet.dto.wallet.WalletReconciliationReport;
+import com.clientwallet.dto.wallet.WalletTransferRequest;
+import com.clientwallet.dto.wallet.WalletWithdrawRequest;
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.Wallet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"wallet.turnover.enabled=false", "wallet.reconciliation.enabled=false",
+        "wallet.reconciliation.ranges=16", "wallet.reconciliation.chunk-size=2"})
+@ActiveProfiles("test")
+public class BalanceReconcilerTest {
+
+    private static final int RANGES = 16;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private BalanceReconciler balanceReconciler;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Wallet wallet1;
+    private Wallet wallet2;
+
+    @BeforeEach
+    void setUp() {
+        wallet1 = createWallet();
+        wallet2 = createWallet();
+        deposit(wallet1, BigDecimal.valueOf(100));
+        transfer(BigDecimal.valueOf(30));
+        withdraw(BigDecimal.TEN);
+    }
+
+    @Test
+    void testFullScanMatchesBalancesWithTransactionsAndCarriedBalances() {
+        // A balance from before the transactions were recorded
+        jdbcTemplate.update("UPDATE wallet SET balance = balance + 50 WHERE id = ?", wallet2.getId());
+        jdbcTemplate.update("INSERT INTO wallet_carried_balance (wallet_id, balance) VALUES (?, 50)", wallet2.getId());
+
+        WalletReconciliationReport report = balanceReconciler.reconcile(true);
+
+        assertTrue(report.isFullScan());
+        assertNotNull(report.getFinishedAt());
+        assertEquals(RANGES, report.getCompletedRanges());
+        assertTrue(report.getCheckedCount() >= 2);
+        assertTrue(mismatches(report).isEmpty(), "Unexpected mismatches: " + mismatches(report));
+    }
+
+    @Test
+    void testIncrementalRunChecksOnlyWalletsChangedSinceThePreviousRun() {
+        balanceReconciler.reconcile(true);
+        jdbcTemplate.update("UPDATE wallet SET balance = balance + 1 WHERE id = ?", wallet1.getId());
+        deposit(wallet2, BigDecimal.valueOf(5));
+
+        WalletReconciliationReport untouched = balanceReconciler.reconcile(false);
+
+        assertFalse(untouched.isFullScan());
+        assertEquals(1, untouched.getCheckedCount());
+        assertTrue(mismatches(untouched).isEmpty());
+
+        deposit(wallet1, BigDecimal.ONE);
+
+        WalletReconciliationReport touched = balanceReconciler.reconcile(false);
+
+        assertEquals(1, touched.getCheckedCount());
+        List<WalletReconciliationMismatch> mismatches = mismatches(touched);
+        assertEquals(1, mismatches.size());
+        assertEquals(wallet1.getId(), mismatches.get(0).getWalletId());
+        assertEquals(0, BigDecimal.valueOf(62).compareTo(mismatches.get(0).getStoredBalance()));
+        assertEquals(0, BigDecimal.valueOf(61).compareTo(mismatches.get(0).getExpectedBalance()));
+        assertEquals(touched.getRunId(), balanceReconciler.getReport(null).getRunId());
+    }
+
+    @Test
+    void testInterruptedRunIsResumedWithItsRemainingRanges() {
+        balanceReconciler.reconcile(true);
+        jdbcTemplate.update("UPDATE wallet SET balance = balance + 1 WHERE id = ?", wallet1.getId());
+
+        // A full scan interrupted after completing every range but the one of the first wallet
+        LocalDateTime stale = LocalDateTime.now().minusHours(1);
+        jdbcTemplate.update("INSERT INTO reconciliation_run (full_scan, from_position, to_position, range_count, " +
+                "checked_count, mismatch_count, started_at, heartbeat_at) VALUES (TRUE, 0, 0, ?, 0, 0, ?, ?)",
+                RANGES, stale, stale);
+        long runId = jdbcTemplate.queryForObject("SELECT id FROM reconciliation_run WHERE finished_at IS NULL", Long.class);
+        int remaining = WalletKeyRange.indexOf(wallet1.getId(), RANGES);
+        for (int index = 0; index < RANGES; index++) {
+            if (index != remaining) {
+                jdbcTemplate.update("INSERT INTO reconciliation_checkpoint (run_id, range_index, checked_count, " +
+                        "mismatch_count, completed_at) VALUES (?, ?, 0, 0, ?)", runId, index, stale);
+            }
+        }
+
+        WalletReconciliationReport report = balanceReconciler.reconcile(false);
+
+        assertEquals(runId, report.getRunId());
+        assertNotNull(report.getFinishedAt());
+        assertEquals(RANGES, report.getCompletedRanges());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reconciliation_mismatch " +
+                "WHERE run_id = ? AND wallet_id = ?", Integer.class, runId, wallet1.getId()));
+    }
+
+    // Wallets of other tests sharing the database may have balances set without transactions
+    private List<WalletReconciliationMismatch> mismatches(WalletReconciliationReport report) {
+        return report.getMismatches().stream()
+                .filter(mismatch -> mismatch.getWalletId().equals(wallet1.getId()) || mismatch.getWalletId().equals(wallet2.getId()))
+                .toList();
+    }
+
+    private Wallet createWallet() {
+        WalletCreateRequest request = new WalletCreateRequest();
+        request.setName("Reconciliation " + UUID.randomUUID().toString().substring(0, 8));
+        request.setCurrency(Currency.EUR);
+        return walletService.create(request);
+    }
+
+    private void deposit(Wallet wallet, BigDecimal amount) {
+        WalletDepositRequest request = new WalletDepositRequest();
+        request.setWalletId(wallet.getId());
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+        walletService.deposit(request);
+    }
+
+    private void transfer(BigDecimal amount) {
+        WalletTransferRequest request = new WalletTransferRequest();
+        request.setSenderWalletId(wallet1.getId());
+        request.setReceiverWalletId(wallet2.getId());
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        walletService.transfer(request);
+    }
+
+    private void withdraw(BigDecimal amount) {
+        WalletWithdrawRequest request = new WalletWithdrawRequest();
+        request.setWalletId(wallet1.getId());
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+        walletService.withdraw(request);
+    }
+}
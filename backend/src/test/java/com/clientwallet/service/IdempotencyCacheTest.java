@@ -0,0 +1,186 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.exception.transaction.TransactionIdempotencyKeyArchivedException;
+import com.clientwallet.exception.transaction.TransactionIdempotencyKeyReusedException;
+import com.clientwallet.exception.wallet.WalletWithdrawNotEnoughFundsException;
+import com.clientwallet.model.Transaction;
+import com.clientwallet.model.TransactionIdempotencyKey;
+import com.clientwallet.repository.TransactionIdempotencyKeyRepository;
+import com.clientwallet.repository.TransactionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class IdempotencyCacheTest {
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+
+    private final TransactionIdempotencyKeyRepository transactionIdempotencyKeyRepository = mock(TransactionIdempotencyKeyRepository.class);
+
+    private static final String FINGERPRINT = "fingerprint";
+
+    private final IdempotencyCache idempotencyCache = new IdempotencyCache();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(idempotencyCache, "transactionRepository", transactionRepository);
+        ReflectionTestUtils.setField(idempotencyCache, "transactionIdempotencyKeyRepository", transactionIdempotencyKeyRepository);
+        ReflectionTestUtils.setField(idempotencyCache, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(idempotencyCache, "maxSize", 100L);
+        ReflectionTestUtils.setField(idempotencyCache, "expireAfterSeconds", 60L);
+        idempotencyCache.init();
+        when(transactionIdempotencyKeyRepository.findById(anyString())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void testRepeatedKeyReturnsOriginalTransaction() {
+        AtomicInteger executions = new AtomicInteger();
+
+        Transaction first = idempotencyCache.execute("key-1", FINGERPRINT, () -> transaction(executions));
+        Transaction second = idempotencyCache.execute("key-1", FINGERPRINT, () -> transaction(executions));
+
+        assertSame(first, second);
+        assertEquals(1, executions.get());
+        // The repeated request is answered from the cache without a database lookup
+        verify(transactionIdempotencyKeyRepository, times(1)).findById("key-1");
+    }
+
+    @Test
+    void testConcurrentRequestsWaitForSingleExecution() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+
+        List<CompletableFuture<Transaction>> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(CompletableFuture.supplyAsync(() -> idempotencyCache.execute("key-2", FINGERPRINT, () -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return transaction(executions);
+            }), executor));
+        }
+        release.countDown();
+
+        Transaction transaction = requests.get(0).join();
+        requests.forEach(request -> assertSame(transaction, request.join()));
+        assertEquals(1, executions.get());
+        executor.shutdown();
+    }
+
+    @Test
+    void testFailedExecutionIsNotCached() {
+        AtomicInteger executions = new AtomicInteger();
+
+        assertThrows(WalletWithdrawNotEnoughFundsException.class, () -> idempotencyCache.execute("key-3", FINGERPRINT, () -> {
+            executions.incrementAndGet();
+            throw new WalletWithdrawNotEnoughFundsException(BigDecimal.TEN, BigDecimal.ONE);
+        }));
+        idempotencyCache.execute("key-3", FINGERPRINT, () -> transaction(executions));
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void testStoredKeyIsNotExecutedAgain() {
+        Transaction stored = stored("key-4", FINGERPRINT);
+
+        Transaction transaction = idempotencyCache.execute("key-4", FINGERPRINT, () -> fail("Operation must not be executed."));
+
+        assertSame(stored, transaction);
+    }
+
+    @Test
+    void testUniqueKeyConflictReturnsStoredTransaction() {
+        AtomicReference<Transaction> concurrent = new AtomicReference<>();
+
+        Transaction transaction = idempotencyCache.execute("key-5", FINGERPRINT, () -> {
+            // Reserved by a concurrent request of another application instance
+            concurrent.set(stored("key-5", FINGERPRINT));
+            throw new DataIntegrityViolationException("Duplicate idempotency key");
+        });
+
+        assertSame(concurrent.get(), transaction);
+    }
+
+    @Test
+    void testKeyOfDifferentRequestIsRejected() {
+        AtomicInteger executions = new AtomicInteger();
+        idempotencyCache.execute("key-6", FINGERPRINT, () -> transaction(executions));
+
+        assertThrows(TransactionIdempotencyKeyReusedException.class,
+                () -> idempotencyCache.execute("key-6", "other", () -> transaction(executions)));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testStoredKeyOfDifferentRequestIsRejected() {
+        stored("key-7", "other");
+
+        assertThrows(TransactionIdempotencyKeyReusedException.class,
+                () -> idempotencyCache.execute("key-7", FINGERPRINT, () -> fail("Operation must not be executed.")));
+    }
+
+    @Test
+    void testFingerprintCoversMethodPathAndBody() {
+        WalletDepositRequest request = new WalletDepositRequest();
+        request.setWalletId(UUID.randomUUID());
+        request.setAmount(BigDecimal.TEN);
+        String fingerprint = idempotencyCache.fingerprint("POST", "/wallet/deposit", request);
+
+        assertEquals(64, fingerprint.length());
+        assertEquals(fingerprint, idempotencyCache.fingerprint("POST", "/wallet/deposit", request));
+        assertNotEquals(fingerprint, idempotencyCache.fingerprint("POST", "/wallet/withdraw", request));
+        request.setAmount(BigDecimal.ONE);
+        assertNotEquals(fingerprint, idempotencyCache.fingerprint("POST", "/wallet/deposit", request));
+    }
+
+    @Test
+    void testKeyOfArchivedTransactionIsNotExecutedAgain() {
+        Transaction archived = stored("key-8", FINGERPRINT);
+        when(transactionRepository.findById(archived.getId())).thenReturn(Optional.empty());
+
+        assertThrows(TransactionIdempotencyKeyArchivedException.class,
+                () -> idempotencyCache.execute("key-8", FINGERPRINT, () -> fail("Operation must not be executed.")));
+    }
+
+    private Transaction stored(String idempotencyKey, String requestFingerprint) {
+        Transaction stored = new Transaction();
+        stored.setId(UUID.randomUUID());
+        stored.setRequestFingerprint(requestFingerprint);
+        when(transactionIdempotencyKeyRepository.findById(idempotencyKey)).thenReturn(Optional.of(
+                new TransactionIdempotencyKey(idempotencyKey, stored.getId(), requestFingerprint, LocalDateTime.now())));
+        when(transactionRepository.findById(stored.getId())).thenReturn(Optional.of(stored));
+        return stored;
+    }
+
+    private static Transaction transaction(AtomicInteger executions) {
+        executions.incrementAndGet();
+        Transaction transaction = new Transaction();
+        transaction.setId(UUID.randomUUID());
+        transaction.setRequestFingerprint(FINGERPRINT);
+        return transaction;
+    }
+}
@@ -0,0 +1,98 @@
+package com.clientwallet.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures a {@link JournalReplayer.Mode#VERIFY} replay of a journal seeded with {@code benchmark.journal.entries}
+ * credits spread over {@code benchmark.journal.wallets} wallets. Run with {@code gradle benchmark}.
+ * <p>
+ * The defaults fit into the in-memory H2 database of the tests. A full-size run, e.g. 100 million entries, is meant for
+ * PostgreSQL: pass {@code -Pbenchmark.journal.entries=100000000} together with {@code -Pspring.datasource.url},
+ * {@code -Pspring.datasource.username}, {@code -Pspring.datasource.password},
+ * {@code -Pspring.datasource.driverClassName=org.postgresql.Driver},
+ * {@code -Pspring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect} and
+ * {@code -Pspring.jpa.hibernate.ddl-auto=none} of a database initialized by the scripts of the {@code database}
+ * directory. The journal is append-only, so the seeded rows stay in that database.
+ * </p>
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {"wallet.turnover.enabled=false", "wallet.reconciliation.enabled=false",
+        "wallet.journal.snapshot.enabled=false", "spring.jpa.show-sql=false"})
+@ActiveProfiles("test")
+public class JournalReplayerBenchmarkTest {
+
+    private static final long ENTRIES = Long.getLong("benchmark.journal.entries", 1_000_000);
+    private static final int WALLETS = Integer.getInteger("benchmark.journal.wallets", 10_000);
+    private static final int BATCH_SIZE = 10_000;
+    private static final int RUNS = 3;
+
+    @Autowired
+    private JournalReplayer journalReplayer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void benchmarkVerifyReplay() {
+        List<UUID> walletIds = seed();
+        Set<UUID> seeded = new HashSet<>(walletIds);
+
+        for (int run = 1; run <= RUNS; run++) {
+            JournalReplayer.Result result = journalReplayer.replay(JournalReplayer.Mode.VERIFY);
+
+            assertTrue(result.entryCount() >= ENTRIES);
+            assertTrue(result.mismatches().stream().noneMatch(mismatch -> seeded.contains(mismatch.walletId())),
+                    "Unexpected mismatches: " + result.mismatches());
+            long millis = Math.max(1, result.duration().toMillis());
+            System.out.printf("Replay %d of %d journal entries of %d wallets: %d ms, %.0f entries/s%n",
+                    run, result.entryCount(), result.walletCount(), millis, result.entryCount() * 1000.0 / millis);
+        }
+    }
+
+    // Wallets whose stored balance is the sum of their credits, one unit each
+    private List<UUID> seed() {
+        long started = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        List<UUID> walletIds = new ArrayList<>(WALLETS);
+        List<Object[]> wallets = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < WALLETS; i++) {
+            UUID walletId = UUID.randomUUID();
+            walletIds.add(walletId);
+            long credits = ENTRIES / WALLETS + (i < ENTRIES % WALLETS ? 1 : 0);
+            wallets.add(new Object[]{walletId, "Replay " + walletId, BigDecimal.valueOf(credits), now, now});
+            if (wallets.size() == BATCH_SIZE || i == WALLETS - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO wallet (id, name, currency, balance, stripe_count, version, " +
+                        "created_at, updated_at) VALUES (?, ?, 'EUR', ?, 0, 0, ?, ?)", wallets);
+                wallets.clear();
+            }
+        }
+
+        List<Object[]> entries = new ArrayList<>(BATCH_SIZE);
+        for (long i = 0; i < ENTRIES; i++) {
+            entries.add(new Object[]{walletIds.get((int) (i % WALLETS)), now});
+            if (entries.size() == BATCH_SIZE || i == ENTRIES - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO journal_entry (wallet_id, side, amount, currency, created_at) " +
+                        "VALUES (?, 'CREDIT', 1, 'EUR', ?)", entries);
+                entries.clear();
+            }
+        }
+        System.out.printf("Seeded %d journal entries of %d wallets in %d ms%n",
+                ENTRIES, WALLETS, System.currentTimeMillis() - started);
+        return walletIds;
+    }
+}
@@ -0,0 +1,150 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.wallet.WalletCreateRequest;
+import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.dto.wallet.WalletTransferRequest;
+import com.clientwallet.dto.wallet.WalletWithdrawRequest;
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.Transaction;
+import com.clientwallet.model.Wallet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"wallet.turnover.enabled=false", "wallet.journal.replay.ranges=16"})
+@ActiveProfiles("test")
+public class JournalReplayerTest {
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private LedgerJournal ledgerJournal;
+
+    @Autowired
+    private JournalReplayer journalReplayer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Wallet wallet1;
+    private Wallet wallet2;
+
+    @BeforeEach
+    void setUp() {
+        wallet1 = createWallet();
+        wallet2 = createWallet();
+    }
+
+    @Test
+    void testEveryTransactionHasBalancedLegs() {
+        Transaction deposit = deposit(wallet1, BigDecimal.valueOf(100));
+        Transaction transfer = transfer(BigDecimal.valueOf(30));
+        Transaction withdrawal = withdraw(BigDecimal.TEN);
+
+        assertLegs(deposit, null, wallet1.getId());
+        assertLegs(transfer, wallet1.getId(), wallet2.getId());
+        assertLegs(withdrawal, wallet1.getId(), null);
+    }
+
+    @Test
+    void testReplayFromSnapshotMatchesStoredBalances() {
+        deposit(wallet1, BigDecimal.valueOf(100));
+        transfer(BigDecimal.valueOf(30));
+        long position = ledgerJournal.snapshot();
+        withdraw(BigDecimal.TEN);
+        deposit(wallet2, BigDecimal.valueOf(5));
+
+        assertTrue(position > 0);
+        assertEquals(0, BigDecimal.valueOf(70).compareTo(jdbcTemplate.queryForObject(
+                "SELECT balance FROM balance_snapshot WHERE journal_position = ? AND wallet_id = ?",
+                BigDecimal.class, position, wallet1.getId())));
+
+        JournalReplayer.Result result = journalReplayer.replay(JournalReplayer.Mode.VERIFY);
+
+        assertTrue(result.snapshotPosition() >= position);
+        assertTrue(mismatches(result).isEmpty(), "Unexpected mismatches: " + mismatches(result));
+    }
+
+    @Test
+    void testRebuildRestoresBalanceFromJournal() {
+        deposit(wallet1, BigDecimal.valueOf(100));
+        transfer(BigDecimal.valueOf(30));
+        jdbcTemplate.update("UPDATE wallet SET balance = 999 WHERE id = ?", wallet1.getId());
+
+        List<JournalReplayer.Mismatch> verified = mismatches(journalReplayer.replay(JournalReplayer.Mode.VERIFY));
+        assertEquals(1, verified.size());
+        assertEquals(0, new BigDecimal("999").compareTo(verified.get(0).storedBalance()));
+        assertEquals(0, BigDecimal.valueOf(70).compareTo(verified.get(0).journalBalance()));
+
+        journalReplayer.replay(JournalReplayer.Mode.REBUILD);
+
+        assertEquals(0, BigDecimal.valueOf(70).compareTo(walletService.get(wallet1.getId()).getBalance()));
+        assertTrue(mismatches(journalReplayer.replay(JournalReplayer.Mode.VERIFY)).isEmpty());
+    }
+
+    private void assertLegs(Transaction transaction, UUID debitWalletId, UUID creditWalletId) {
+        List<Map<String, Object>> legs = jdbcTemplate.queryForList(
+                "SELECT wallet_id, side, amount FROM journal_entry WHERE transaction_id = ? ORDER BY id", transaction.getId());
+        assertEquals(2, legs.size());
+        assertEquals(debitWalletId, legs.get(0).get("wallet_id"));
+        assertEquals("DEBIT", legs.get(0).get("side").toString());
+        assertEquals(creditWalletId, legs.get(1).get("wallet_id"));
+        assertEquals("CREDIT", legs.get(1).get("side").toString());
+        assertEquals(0, transaction.getAmount().compareTo((BigDecimal) legs.get(0).get("amount")));
+        assertEquals(0, transaction.getAmount().compareTo((BigDecimal) legs.get(1).get("amount")));
+    }
+
+    // Wallets of other tests sharing the database may have been written without the journal
+    private List<JournalReplayer.Mismatch> mismatches(JournalReplayer.Result result) {
+        return result.mismatches().stream()
+                .filter(mismatch -> mismatch.walletId().equals(wallet1.getId()) || mismatch.walletId().equals(wallet2.getId()))
+                .toList();
+    }
+
+    private Wallet createWallet() {
+        WalletCreateRequest request = new WalletCreateRequest();
+        request.setName("Journal " + UUID.randomUUID().toString().substring(0, 8));
+        request.setCurrency(Currency.EUR);
+        return walletService.create(request);
+    }
+
+    private Transaction deposit(Wallet wallet, BigDecimal amount) {
+        WalletDepositRequest request = new WalletDepositRequest();
+        request.setWalletId(wallet.getId());
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+        return walletService.deposit(request);
+    }
+
+    private Transaction transfer(BigDecimal amount) {
+        WalletTransferRequest request = new WalletTransferRequest();
+        request.setSenderWalletId(wallet1.getId());
+        request.setReceiverWalletId(wallet2.getId());
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        return walletService.transfer(request);
+    }
+
+    private Transaction withdraw(BigDecimal amount) {
+        WalletWithdrawRequest request = new WalletWithdrawRequest();
+        request.setWalletId(wallet1.getId());
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+        return walletService.withdraw(request);
+    }
+}
@@ -0,0 +1,91 @@
+package com.clientwallet.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class KnownWalletIndexTest {
+
+    @Test
+    void testBloomFilterHasNoFalseNegatives() {
+        KnownWalletIndex.BloomFilter filter = new KnownWalletIndex.BloomFilter(10000, 0.01);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        ids.forEach(filter::put);
+
+        ids.forEach(id -> assertTrue(filter.mightContain(id)));
+
+        long falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain(UUID.randomUUID())) {
+                falsePositives++;
+            }
+        }
+        // The expected rate is 1 %, the bound leaves room for random variation
+        assertTrue(falsePositives < 300, "False positives: " + falsePositives);
+    }
+
+    @Test
+    void testIndexRejectsOnlyUnknownWallets() {
+        UUID existing = UUID.randomUUID();
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(1L);
+        when(jdbcTemplate.queryForList(anyString(), eq(UUID.class), any())).thenReturn(List.of(existing));
+
+        KnownWalletIndex index = new KnownWalletIndex();
+        ReflectionTestUtils.setField(index, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(index, "falsePositiveRate", 0.01);
+
+        // Every wallet may exist until the index is built
+        UUID unknown = UUID.randomUUID();
+        assertTrue(index.mightContain(unknown));
+
+        index.rebuild();
+        UUID created = UUID.randomUUID();
+        index.add(created);
+
+        assertTrue(index.mightContain(existing));
+        assertTrue(index.mightContain(created));
+        assertFalse(index.mightContain(unknown));
+    }
+
+    @Test
+    void testNegativeAnswerIsConfirmedByDatabase() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(0L);
+        when(jdbcTemplate.queryForList(anyString(), eq(UUID.class), any())).thenReturn(List.of());
+
+        KnownWalletIndex index = new KnownWalletIndex();
+        ReflectionTestUtils.setField(index, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(index, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(index, "missingMaxSize", 100L);
+        ReflectionTestUtils.setField(index, "missingExpireAfterSeconds", 60L);
+        index.init();
+        index.rebuild();
+
+        // Created by another instance after the build
+        UUID createdElsewhere = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq(createdElsewhere))).thenReturn(true);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq(unknown))).thenReturn(false);
+
+        assertTrue(index.mightExist(createdElsewhere));
+        assertTrue(index.mightExist(createdElsewhere));
+        assertFalse(index.mightExist(unknown));
+        assertFalse(index.mightExist(unknown));
+
+        // Both answers are remembered, by the filter and by the missing wallets
+        verify(jdbcTemplate, times(1)).queryForObject(anyString(), eq(Boolean.class), eq(createdElsewhere));
+        verify(jdbcTemplate, times(1)).queryForObject(anyString(), eq(Boolean.class), eq(unknown));
+    }
+}
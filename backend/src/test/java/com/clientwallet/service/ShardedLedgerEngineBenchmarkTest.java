@@ -0,0 +1,153 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.wallet.WalletCreateRequest;
+import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.model.Currency;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the deposit throughput of the {@link WalletOperationExecutor} executing operations on the calling threads
+ * with the same executor routing them through a {@link ShardedLedgerEngine}. Run with {@code gradle benchmark}.
+ * <p>
+ * The engine is started by the benchmark and set on the executor only while the sharded path is measured.
+ * </p>
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {"wallet.turnover.enabled=false", "wallet.reconciliation.enabled=false",
+        "spring.datasource.hikari.maximum-pool-size=32", "spring.jpa.show-sql=false"})
+@ActiveProfiles("test")
+public class ShardedLedgerEngineBenchmarkTest {
+
+    private static final long WARMUP_MS = 10_000;
+    private static final long MEASURE_MS = 10_000;
+    private static final int ROUNDS = 2;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletOperationExecutor walletOperationExecutor;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @ParameterizedTest
+    @CsvSource({"1, 1", "32, 1", "32, 64"})
+    void benchmarkDeposits(int threads, int wallets) throws Exception {
+        List<UUID> plainWallets = createWallets(wallets);
+        List<UUID> shardedWallets = createWallets(wallets);
+        ShardedLedgerEngine engine = startEngine();
+        double plain = 0;
+        double sharded = 0;
+        try {
+            // Both paths are warmed up first and then measured alternately, so neither profits from the other's warmup
+            run(plainWallets, threads, WARMUP_MS);
+            useEngine(engine);
+            run(shardedWallets, threads, WARMUP_MS);
+            for (int round = 0; round < ROUNDS; round++) {
+                useEngine(null);
+                plain += depositsPerSecond(plainWallets, threads) / ROUNDS;
+                useEngine(engine);
+                sharded += depositsPerSecond(shardedWallets, threads) / ROUNDS;
+            }
+        } finally {
+            useEngine(null);
+            engine.stop();
+        }
+
+        System.out.printf("Deposits to %d wallets with %d threads: plain %.0f/s, 4 shards %.0f/s%n",
+                wallets, threads, plain, sharded);
+    }
+
+    private void useEngine(ShardedLedgerEngine engine) {
+        ReflectionTestUtils.setField(walletOperationExecutor, "shardedLedgerEngine", engine);
+    }
+
+    private ShardedLedgerEngine startEngine() {
+        ShardedLedgerEngine engine = new ShardedLedgerEngine();
+        ReflectionTestUtils.setField(engine, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(engine, "shardCount", 4);
+        ReflectionTestUtils.setField(engine, "queueCapacity", 4096);
+        ReflectionTestUtils.setField(engine, "maxBatchSize", 64);
+        ReflectionTestUtils.setField(engine, "submitTimeoutMs", 30_000L);
+        engine.start();
+        return engine;
+    }
+
+    private double depositsPerSecond(List<UUID> walletIds, int threads) throws Exception {
+        BigDecimal before = totalBalance(walletIds);
+        long count = run(walletIds, threads, MEASURE_MS);
+        assertEquals(0, before.add(BigDecimal.valueOf(count)).compareTo(totalBalance(walletIds)));
+        return count * 1000.0 / MEASURE_MS;
+    }
+
+    private long run(List<UUID> walletIds, int threads, long durationMs) throws Exception {
+        long end = System.currentTimeMillis() + durationMs;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                long count = 0;
+                while (System.currentTimeMillis() < end) {
+                    UUID walletId = walletIds.get(ThreadLocalRandom.current().nextInt(walletIds.size()));
+                    walletService.deposit(depositRequest(walletId));
+                    count++;
+                }
+                return count;
+            }));
+        }
+        long count = 0;
+        for (Future<Long> result : results) {
+            count += result.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        return count;
+    }
+
+    private BigDecimal totalBalance(List<UUID> walletIds) {
+        return walletIds.stream()
+                .map(walletId -> walletService.get(walletId).getBalance())
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private List<UUID> createWallets(int count) {
+        List<UUID> walletIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            WalletCreateRequest request = new WalletCreateRequest();
+            request.setName("Sharded " + UUID.randomUUID().toString().substring(0, 8));
+            request.setCurrency(Currency.EUR);
+            walletIds.add(walletService.create(request).getId());
+        }
+        return walletIds;
+    }
+
+    private WalletDepositRequest depositRequest(UUID walletId) {
+        WalletDepositRequest request = new WalletDepositRequest();
+        request.setWalletId(walletId);
+        request.setAmount(BigDecimal.ONE);
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+        return request;
+    }
+}
@@ -0,0 +1,220 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.wallet.WalletCreateRequest;
+import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.dto.wallet.WalletWithdrawRequest;
+import com.clientwallet.exception.wallet.WalletWithdrawNotEnoughFundsException;
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.Transaction;
+import com.clientwallet.model.TransactionStatus;
+import com.clientwallet.repository.WalletRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "wallet.engine.sharded.enabled=true")
+@ActiveProfiles("test")
+public class ShardedLedgerEngineTest {
+
+    @Autowired
+    private ShardedLedgerEngine shardedLedgerEngine;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void testConcurrentOperationsAreCommittedInBatches() {
+        UUID walletId = createWallet();
+        ExecutorService executor = Executors.newFixedThreadPool(50);
+
+        List<CompletableFuture<Transaction>> deposits = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            deposits.add(CompletableFuture.supplyAsync(
+                    () -> shardedLedgerEngine.submit(List.of(walletId), () -> walletService.deposit(depositRequest(walletId))), executor));
+        }
+        deposits.forEach(deposit -> assertEquals(TransactionStatus.COMPLETED, deposit.join().getTransactionStatus()));
+        executor.shutdown();
+
+        BigDecimal balance = walletRepository.findById(walletId).orElseThrow().getBalance();
+        assertEquals(0, BigDecimal.valueOf(200).compareTo(balance));
+    }
+
+    @Test
+    void testFailingOperationDoesNotAffectOthers() {
+        UUID walletId = createWallet();
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+
+        List<CompletableFuture<Transaction>> operations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            operations.add(CompletableFuture.supplyAsync(
+                    () -> shardedLedgerEngine.submit(List.of(walletId), () -> walletService.deposit(depositRequest(walletId))), executor));
+        }
+        CompletableFuture<Transaction> overdraft = CompletableFuture.supplyAsync(
+                () -> shardedLedgerEngine.submit(List.of(walletId), () -> walletService.withdraw(withdrawRequest(walletId))), executor);
+
+        operations.forEach(CompletableFuture::join);
+        Exception failure = assertThrows(Exception.class, overdraft::join);
+        assertInstanceOf(WalletWithdrawNotEnoughFundsException.class, failure.getCause());
+        executor.shutdown();
+
+        BigDecimal balance = walletRepository.findById(walletId).orElseThrow().getBalance();
+        assertEquals(0, BigDecimal.TEN.compareTo(balance));
+    }
+
+    @Test
+    void testRejectedOperationFailsAloneAndTheRestOfItsBatchIsCommittedTogether() throws InterruptedException {
+        ShardedLedgerEngine engine = singleShardEngine(10000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger rejections = new AtomicInteger();
+        AtomicInteger applications = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // Keeps the writer busy until the next operations are queued as one batch
+        CompletableFuture<Object> blocking = CompletableFuture.supplyAsync(() -> engine.submit(List.of(UUID.randomUUID()), () -> await(started, release)), executor);
+        started.await();
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> engine.submit(List.of(UUID.randomUUID()), applications::incrementAndGet), executor);
+        awaitQueued(engine, 1);
+        CompletableFuture<Integer> rejected = CompletableFuture.supplyAsync(() -> engine.submit(List.of(UUID.randomUUID()), () -> {
+            rejections.incrementAndGet();
+            throw new IllegalArgumentException("Rejected");
+        }), executor);
+        awaitQueued(engine, 2);
+        CompletableFuture<Integer> last = CompletableFuture.supplyAsync(() -> engine.submit(List.of(UUID.randomUUID()), applications::incrementAndGet), executor);
+        awaitQueued(engine, 3);
+        release.countDown();
+
+        blocking.join();
+        Exception failure = assertThrows(Exception.class, rejected::join);
+        assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+        first.join();
+        last.join();
+        // The rejected operation is not applied again, the first one once more with the last one after the rollback
+        assertEquals(1, rejections.get());
+        assertEquals(3, applications.get());
+        executor.shutdown();
+        engine.stop();
+    }
+
+    @Test
+    void testErrorOfOperationDoesNotStopItsShard() {
+        ShardedLedgerEngine engine = singleShardEngine(10000);
+
+        assertThrows(AssertionError.class, () -> engine.submit(List.of(UUID.randomUUID()), () -> {
+            throw new AssertionError("Failed");
+        }));
+
+        assertEquals("applied", engine.submit(List.of(UUID.randomUUID()), () -> "applied"));
+        engine.stop();
+    }
+
+    @Test
+    void testTimedOutOperationIsNotApplied() throws InterruptedException {
+        ShardedLedgerEngine engine = singleShardEngine(200);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger applications = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        CompletableFuture<Object> blocking = CompletableFuture.supplyAsync(() -> engine.submit(List.of(UUID.randomUUID()), () -> await(started, release)), executor);
+        started.await();
+        assertThrows(IllegalStateException.class, () -> engine.submit(List.of(UUID.randomUUID()), applications::incrementAndGet));
+        // Both callers have stopped waiting before the writer is released and takes the next operation
+        assertThrows(Exception.class, blocking::join);
+        release.countDown();
+
+        engine.stop();
+        assertEquals(0, applications.get());
+        executor.shutdown();
+    }
+
+    @Test
+    void testStoppedEngineRejectsOperations() {
+        ShardedLedgerEngine engine = singleShardEngine(10000);
+        engine.stop();
+
+        assertThrows(IllegalStateException.class, () -> engine.submit(List.of(UUID.randomUUID()), () -> "applied"));
+    }
+
+    private ShardedLedgerEngine singleShardEngine(long submitTimeoutMs) {
+        ShardedLedgerEngine engine = new ShardedLedgerEngine();
+        ReflectionTestUtils.setField(engine, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(engine, "shardCount", 1);
+        ReflectionTestUtils.setField(engine, "queueCapacity", 100);
+        ReflectionTestUtils.setField(engine, "maxBatchSize", 10);
+        ReflectionTestUtils.setField(engine, "submitTimeoutMs", submitTimeoutMs);
+        engine.start();
+        return engine;
+    }
+
+    // Waits until the given number of operations is queued behind the operation blocking the writer
+    private static void awaitQueued(ShardedLedgerEngine engine, int count) throws InterruptedException {
+        List<?> shards = (List<?>) ReflectionTestUtils.getField(engine, "shards");
+        BlockingQueue<?> queue = (BlockingQueue<?>) ReflectionTestUtils.getField(shards.get(0), "queue");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queue.size() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, queue.size());
+    }
+
+    private static Object await(CountDownLatch started, CountDownLatch release) {
+        started.countDown();
+        try {
+            release.await();
+            return "released";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private UUID createWallet() {
+        WalletCreateRequest request = new WalletCreateRequest();
+        request.setName("Sharded " + UUID.randomUUID().toString().substring(0, 8));
+        request.setCurrency(Currency.EUR);
+        return walletService.create(request).getId();
+    }
+
+    private static WalletDepositRequest depositRequest(UUID walletId) {
+        WalletDepositRequest request = new WalletDepositRequest();
+        request.setWalletId(walletId);
+        request.setAmount(BigDecimal.ONE);
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+        return request;
+    }
+
+    private static WalletWithdrawRequest withdrawRequest(UUID walletId) {
+        WalletWithdrawRequest request = new WalletWithdrawRequest();
+        request.setWalletId(walletId);
+        request.setAmount(BigDecimal.valueOf(1000));
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+        return request;
+    }
+}
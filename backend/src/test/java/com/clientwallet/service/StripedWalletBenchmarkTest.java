@@ -0,0 +1,105 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.wallet.WalletCreateRequest;
+import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.dto.wallet.WalletStripeRequest;
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.Wallet;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the deposit throughput on one hot wallet with and without stripes. Run with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {"wallet.turnover.enabled=false", "wallet.reconciliation.enabled=false",
+        "spring.datasource.hikari.maximum-pool-size=32", "spring.jpa.show-sql=false"})
+@ActiveProfiles("test")
+public class StripedWalletBenchmarkTest {
+
+    private static final long WARMUP_MS = 3_000;
+    private static final long MEASURE_MS = 10_000;
+
+    @Autowired
+    private WalletService walletService;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 32})
+    void benchmarkDepositsToOneHotWallet(int threads) throws Exception {
+        double regular = depositsPerSecond(createWallet(0), threads);
+        double striped = depositsPerSecond(createWallet(16), threads);
+
+        System.out.printf("Deposits to one wallet with %d threads: regular %.0f/s, 16 stripes %.0f/s%n",
+                threads, regular, striped);
+    }
+
+    private double depositsPerSecond(UUID walletId, int threads) throws Exception {
+        run(walletId, threads, WARMUP_MS);
+        BigDecimal before = walletService.get(walletId).getBalance();
+        long count = run(walletId, threads, MEASURE_MS);
+        assertEquals(0, before.add(BigDecimal.valueOf(count)).compareTo(walletService.get(walletId).getBalance()));
+        return count * 1000.0 / MEASURE_MS;
+    }
+
+    private long run(UUID walletId, int threads, long durationMs) throws Exception {
+        long end = System.currentTimeMillis() + durationMs;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                long count = 0;
+                while (System.currentTimeMillis() < end) {
+                    walletService.deposit(depositRequest(walletId));
+                    count++;
+                }
+                return count;
+            }));
+        }
+        long count = 0;
+        for (Future<Long> result : results) {
+            count += result.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        return count;
+    }
+
+    private UUID createWallet(int stripeCount) {
+        WalletCreateRequest request = new WalletCreateRequest();
+        request.setName("Hot " + UUID.randomUUID().toString().substring(0, 8));
+        request.setCurrency(Currency.EUR);
+        Wallet wallet = walletService.create(request);
+        if (stripeCount > 0) {
+            WalletStripeRequest stripeRequest = new WalletStripeRequest();
+            stripeRequest.setWalletId(wallet.getId());
+            stripeRequest.setStripeCount(stripeCount);
+            walletService.stripe(stripeRequest);
+        }
+        return wallet.getId();
+    }
+
+    private WalletDepositRequest depositRequest(UUID walletId) {
+        WalletDepositRequest request = new WalletDepositRequest();
+        request.setWalletId(walletId);
+        request.setAmount(BigDecimal.ONE);
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+        return request;
+    }
+}
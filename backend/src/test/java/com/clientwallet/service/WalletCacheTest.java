@@ -0,0 +1,97 @@
+package com.clientwallet.service;
+
+import com.clientwallet.model.Wallet;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WalletCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final WalletCache walletCache = new WalletCache();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(walletCache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(walletCache, "enabled", true);
+        ReflectionTestUtils.setField(walletCache, "maxSize", 100L);
+        ReflectionTestUtils.setField(walletCache, "expireAfterSeconds", 60L);
+    }
+
+    @Test
+    void testRepeatedReadIsServedFromCache() {
+        walletCache.init();
+        UUID walletId = UUID.randomUUID();
+
+        Wallet first = walletCache.get(walletId, loader());
+        Wallet second = walletCache.get(walletId, loader());
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tags("cache", "wallet", "result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tags("cache", "wallet", "result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void testChangedWalletIsLoadedAgain() {
+        walletCache.init();
+        UUID walletId = UUID.randomUUID();
+
+        Wallet first = walletCache.get(walletId, loader());
+        walletCache.onWalletChanged(new WalletChangedEvent(List.of(walletId)));
+        Wallet second = walletCache.get(walletId, loader());
+
+        assertNotSame(first, second);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testReadInsideTransactionBypassesCache() {
+        walletCache.init();
+        UUID walletId = UUID.randomUUID();
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            walletCache.get(walletId, loader());
+            walletCache.get(walletId, loader());
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testDisabledCacheAlwaysLoads() {
+        ReflectionTestUtils.setField(walletCache, "enabled", false);
+        walletCache.init();
+        UUID walletId = UUID.randomUUID();
+
+        walletCache.get(walletId, loader());
+        walletCache.get(walletId, loader());
+
+        assertEquals(2, loads.get());
+    }
+
+    private Function<UUID, Wallet> loader() {
+        return walletId -> {
+            loads.incrementAndGet();
+            Wallet wallet = new Wallet();
+            wallet.setId(walletId);
+            return wallet;
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.wallet.WalletEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WalletEventBroadcasterTest {
+
+    private final WalletEventBroadcaster broadcaster = new WalletEventBroadcaster();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(broadcaster, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(broadcaster, "bufferSize", 8);
+        ReflectionTestUtils.setField(broadcaster, "timeoutMs", 60_000L);
+        ReflectionTestUtils.setField(broadcaster, "heartbeatIntervalMs", 0L);
+        broadcaster.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.stop();
+    }
+
+    @Test
+    void testChangeCommittedWhileBalanceIsReadFollowsTheBalance() throws InterruptedException {
+        UUID walletId = UUID.randomUUID();
+        WalletEvent deposit = new WalletEvent(walletId, BigDecimal.TEN, UUID.randomUUID(), null, null, BigDecimal.TEN, null, null, null);
+
+        SseEmitter emitter = broadcaster.subscribe(walletId, () -> {
+            broadcaster.onWalletChanged(new WalletChangedEvent(List.of(walletId), List.of(deposit)));
+            return BigDecimal.TEN;
+        });
+
+        List<WalletEvent> sent = awaitSent(emitter, 2);
+        assertNull(sent.get(0).getTransactionId());
+        assertEquals(deposit, sent.get(1));
+    }
+
+    @Test
+    void testFailedBalanceReadRemovesSubscriber() {
+        UUID walletId = UUID.randomUUID();
+
+        assertThrows(IllegalStateException.class, () -> broadcaster.subscribe(walletId, () -> {
+            throw new IllegalStateException("Not readable");
+        }));
+
+        assertEquals(0, broadcaster.subscriberCount(walletId));
+    }
+
+    // The emitter is not attached to a response, so it keeps the sent data in the order of the sends
+    private static List<WalletEvent> awaitSent(SseEmitter emitter, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        List<WalletEvent> sent;
+        do {
+            Thread.sleep(10);
+            synchronized (emitter) {
+                Collection<?> attempts = (Collection<?>) ReflectionTestUtils.getField(emitter, "earlySendAttempts");
+                sent = attempts.stream()
+                        .map(attempt -> ReflectionTestUtils.invokeMethod(attempt, "getData"))
+                        .filter(WalletEvent.class::isInstance)
+                        .map(WalletEvent.class::cast)
+                        .toList();
+            }
+        } while (sent.size() < count && System.currentTimeMillis() < deadline);
+        assertEquals(count, sent.size());
+        return sent;
+    }
+}
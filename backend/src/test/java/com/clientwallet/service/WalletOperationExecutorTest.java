@@ -0,0 +1,73 @@
+package com.clientwallet.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WalletOperationExecutorTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final WalletOperationExecutor executor = new WalletOperationExecutor();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(executor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(executor, "maxAttempts", 3);
+        ReflectionTestUtils.setField(executor, "initialBackoffMs", 1L);
+        ReflectionTestUtils.setField(executor, "maxBackoffMs", 5L);
+    }
+
+    @Test
+    void testRetriesOptimisticLockConflict() {
+        UUID walletId = UUID.randomUUID();
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = executor.execute(List.of(walletId), () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Wallet", walletId);
+            }
+            return "done";
+        });
+
+        assertEquals("done", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2.0, meterRegistry.counter("wallet.operation.retries").count());
+    }
+
+    @Test
+    void testRethrowsConflictAfterLastAttempt() {
+        UUID walletId = UUID.randomUUID();
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> executor.execute(List.of(walletId), () -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Wallet", walletId);
+        }));
+
+        assertEquals(3, attempts.get());
+        assertEquals(1.0, meterRegistry.counter("wallet.operation.retries.exhausted").count());
+        assertEquals(1, meterRegistry.find("wallet.operation.retries.exhausted").counters().size());
+    }
+
+    @Test
+    void testDoesNotRetryBusinessFailure() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> executor.execute(List.of(UUID.randomUUID()), () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Not a conflict");
+        }));
+
+        assertEquals(1, attempts.get());
+    }
+}
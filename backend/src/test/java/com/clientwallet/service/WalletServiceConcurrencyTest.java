@@ -0,0 +1,182 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.wallet.WalletCreateRequest;
+import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.dto.wallet.WalletTransferRequest;
+import com.clientwallet.dto.wallet.WalletWithdrawRequest;
+import com.clientwallet.exception.wallet.WalletTransferNotEnoughFundsException;
+import com.clientwallet.exception.wallet.WalletWithdrawNotEnoughFundsException;
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.Wallet;
+import com.clientwallet.repository.TransactionRepository;
+import com.clientwallet.repository.WalletRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class WalletServiceConcurrencyTest {
+
+    private static final int THREADS = 200;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private final List<UUID> createdWallets = new ArrayList<>();
+
+    @AfterEach
+    void clear() {
+        createdWallets.forEach(walletRepository::deleteById);
+        createdWallets.clear();
+    }
+
+    @Test
+    void testConcurrentDepositsAreNotLost() throws Exception {
+        UUID walletId = createWallet(BigDecimal.ZERO);
+
+        List<Throwable> failures = runConcurrently(i -> walletService.deposit(depositRequest(walletId, BigDecimal.ONE)));
+
+        assertTrue(failures.isEmpty(), "Unexpected failures: " + failures);
+        assertBalance(BigDecimal.valueOf(THREADS), walletId);
+        assertEquals(THREADS, transactionRepository.findHistory(walletId, THREADS * 2).size());
+    }
+
+    @Test
+    void testConcurrentDepositsWithSameIdempotencyKeyAreAppliedOnce() throws Exception {
+        UUID walletId = createWallet(BigDecimal.ZERO);
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        List<Throwable> failures = runConcurrently(i -> walletService.deposit(depositRequest(walletId, BigDecimal.ONE), idempotencyKey, null));
+
+        // The reserved key rejects every other transaction, the caller then returns the transaction of the first one
+        assertEquals(THREADS - 1, failures.size());
+        failures.forEach(failure -> assertInstanceOf(DataIntegrityViolationException.class, failure));
+        assertBalance(BigDecimal.ONE, walletId);
+        assertEquals(1, transactionRepository.findHistory(walletId, THREADS * 2).size());
+    }
+
+    @Test
+    void testConcurrentWithdrawalsNeverOverdraw() throws Exception {
+        UUID walletId = createWallet(BigDecimal.valueOf(THREADS / 2));
+
+        List<Throwable> failures = runConcurrently(i -> walletService.withdraw(withdrawRequest(walletId, BigDecimal.ONE)));
+
+        // Exactly half of the withdrawals fit into the balance, the rest has to be rejected
+        assertEquals(THREADS / 2, failures.size());
+        failures.forEach(failure -> assertInstanceOf(WalletWithdrawNotEnoughFundsException.class, failure));
+        assertBalance(BigDecimal.ZERO, walletId);
+        assertEquals(THREADS / 2 + 1, transactionRepository.findHistory(walletId, THREADS * 2).size());
+    }
+
+    @Test
+    void testConcurrentTransfersPreserveTotalBalance() throws Exception {
+        UUID firstWalletId = createWallet(BigDecimal.valueOf(50));
+        UUID secondWalletId = createWallet(BigDecimal.valueOf(50));
+
+        List<Throwable> failures = runConcurrently(i -> {
+            boolean forward = i % 2 == 0;
+            walletService.transfer(transferRequest(forward ? firstWalletId : secondWalletId,
+                    forward ? secondWalletId : firstWalletId, BigDecimal.valueOf(3)));
+        });
+
+        failures.forEach(failure -> assertInstanceOf(WalletTransferNotEnoughFundsException.class, failure));
+        BigDecimal first = walletRepository.findById(firstWalletId).orElseThrow().getBalance();
+        BigDecimal second = walletRepository.findById(secondWalletId).orElseThrow().getBalance();
+        assertTrue(first.signum() >= 0 && second.signum() >= 0);
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(first.add(second)), "Money was lost: " + first + " + " + second);
+    }
+
+    private List<Throwable> runConcurrently(IntConsumer operation) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                operation.accept(index);
+                return null;
+            }));
+        }
+        start.countDown();
+
+        List<Throwable> failures = new ArrayList<>();
+        for (Future<?> future : futures) {
+            try {
+                future.get(60, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                failures.add(e.getCause());
+            } catch (TimeoutException e) {
+                failures.add(e);
+            }
+        }
+        executor.shutdownNow();
+        return failures;
+    }
+
+    private UUID createWallet(BigDecimal balance) {
+        WalletCreateRequest request = new WalletCreateRequest();
+        request.setName("Concurrency " + UUID.randomUUID().toString().substring(0, 8));
+        request.setCurrency(Currency.EUR);
+        Wallet wallet = walletService.create(request);
+        createdWallets.add(wallet.getId());
+
+        if (balance.signum() > 0) {
+            walletService.deposit(depositRequest(wallet.getId(), balance));
+        }
+        return wallet.getId();
+    }
+
+    private void assertBalance(BigDecimal expected, UUID walletId) {
+        BigDecimal balance = walletRepository.findById(walletId).orElseThrow().getBalance();
+        assertEquals(0, expected.compareTo(balance), "Expected balance " + expected + " but was " + balance);
+    }
+
+    private static WalletDepositRequest depositRequest(UUID walletId, BigDecimal amount) {
+        WalletDepositRequest request = new WalletDepositRequest();
+        request.setWalletId(walletId);
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+        return request;
+    }
+
+    private static WalletWithdrawRequest withdrawRequest(UUID walletId, BigDecimal amount) {
+        WalletWithdrawRequest request = new WalletWithdrawRequest();
+        request.setWalletId(walletId);
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+        return request;
+    }
+
+    private static WalletTransferRequest transferRequest(UUID senderWalletId, UUID receiverWalletId, BigDecimal amount) {
+        WalletTransferRequest request = new WalletTransferRequest();
+        request.setSenderWalletId(senderWalletId);
+        request.setReceiverWalletId(receiverWalletId);
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        return request;
+    }
+}
@@ -1,14 +1,24 @@
 package com.clientwallet.service;
 
+import com.clientwallet.dto.transaction.TransactionView;
 import com.clientwallet.dto.wallet.WalletCreateRequest;
 import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.dto.wallet.WalletHistoryPage;
+import com.clientwallet.dto.wallet.WalletListPage;
+import com.clientwallet.dto.wallet.WalletListRequest;
+import com.clientwallet.dto.wallet.WalletReference;
+import com.clientwallet.dto.wallet.WalletStripeRequest;
+import com.clientwallet.dto.wallet.WalletTransferBatchResult;
 import com.clientwallet.dto.wallet.WalletWithdrawRequest;
 import com.clientwallet.dto.wallet.WalletTransferRequest;
+import com.clientwallet.exception.wallet.WalletListInvalidCursorException;
 import com.clientwallet.model.Currency;
 import com.clientwallet.model.Transaction;
+import com.clientwallet.model.TransactionStatus;
 import com.clientwallet.model.TransactionType;
 import com.clientwallet.model.Wallet;
 import com.clientwallet.repository.TransactionRepository;
+import com.clientwallet.repository.TransactionSummary;
 import com.clientwallet.repository.WalletRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,7 +28,10 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -93,7 +106,7 @@ public class WalletServiceIntegrationTest {
         assertNotNull(transaction);
         assertEquals(TransactionType.DEPOSIT, transaction.getTransactionType());
         assertEquals(wallet1.getId(), transaction.getReceiverWallet().getId());
-        assertEquals(BigDecimal.valueOf(100), wallet1.getBalance());
+        assertBalance(BigDecimal.valueOf(100), wallet1);
 
         // Check that the transaction is saved in the repository
         Transaction savedTransaction = transactionRepository.findById(transaction.getId()).orElseThrow();
@@ -127,7 +140,7 @@ public class WalletServiceIntegrationTest {
         assertNotNull(transaction);
         assertEquals(TransactionType.WITHDRAWAL, transaction.getTransactionType());
         assertEquals(wallet1.getId(), transaction.getSenderWallet().getId());
-        assertEquals(BigDecimal.valueOf(50), wallet1.getBalance());
+        assertBalance(BigDecimal.valueOf(50), wallet1);
 
         // Check that the transaction is saved in the repository
         Transaction savedTransaction = transactionRepository.findById(transaction.getId()).orElseThrow();
@@ -168,8 +181,8 @@ public class WalletServiceIntegrationTest {
         assertEquals(TransactionType.TRANSFER, transaction.getTransactionType());
         assertEquals(wallet1.getId(), transaction.getSenderWallet().getId());
         assertEquals(wallet2.getId(), transaction.getReceiverWallet().getId());
-        assertEquals(BigDecimal.valueOf(50), wallet1.getBalance());
-        assertEquals(BigDecimal.valueOf(100), wallet2.getBalance());
+        assertBalance(BigDecimal.valueOf(50), wallet1);
+        assertBalance(BigDecimal.valueOf(100), wallet2);
 
         // Check that the transaction is saved in the repository
         Transaction savedTransaction = transactionRepository.findById(transaction.getId()).orElseThrow();
@@ -203,10 +216,228 @@ public class WalletServiceIntegrationTest {
         walletService.transfer(transferRequest);
 
         // Fetch transaction history for wallet1
-        List<Transaction> transactions = walletService.getTransactionHistory(wallet1.getId());
+        List<TransactionView> transactions = walletService.getTransactionHistory(wallet1.getId(), null, null, null).getTransactions();
 
         // Assert that the transactions were successfully retrieved
         assertNotNull(transactions);
         assertEquals(3, transactions.size()); // deposit, withdrawal, and transfer
+
+        // The wallets are referenced only by their IDs and names
+        TransactionView transfer = transactions.stream()
+                .filter(transaction -> transaction.getTransactionType() == TransactionType.TRANSFER)
+                .findFirst().orElseThrow();
+        assertEquals(new WalletReference(wallet1.getId(), "Wallet1"), transfer.getSenderWallet());
+        assertEquals(new WalletReference(wallet2.getId(), "Wallet2"), transfer.getReceiverWallet());
+    }
+
+    @Test
+    void testTransactionHistoryPagination() {
+        for (int i = 0; i < 5; i++) {
+            depositToWallet1(BigDecimal.TEN);
+        }
+
+        // Walk from the newest to the oldest transaction
+        List<UUID> older = new ArrayList<>();
+        WalletHistoryPage page = walletService.getTransactionHistory(wallet1.getId(), null, null, 2);
+        assertNull(page.getPreviousCursor());
+        page.getTransactions().forEach(transaction -> older.add(transaction.getId()));
+        while (page.getNextCursor() != null) {
+            page = walletService.getTransactionHistory(wallet1.getId(), page.getNextCursor(), null, 2);
+            page.getTransactions().forEach(transaction -> older.add(transaction.getId()));
+        }
+        assertEquals(5, older.size());
+        assertEquals(5, older.stream().distinct().count());
+
+        // Walk back from the last page to the newest transaction
+        List<UUID> newer = new ArrayList<>();
+        while (page.getPreviousCursor() != null) {
+            page = walletService.getTransactionHistory(wallet1.getId(), null, page.getPreviousCursor(), 2);
+            newer.addAll(0, page.getTransactions().stream().map(TransactionView::getId).toList());
+        }
+        assertEquals(older.subList(0, 4), newer);
+    }
+
+    @Test
+    void testListWalletsPagination() {
+        // Walk all wallets sorted by name
+        List<String> names = new ArrayList<>();
+        WalletListRequest request = new WalletListRequest();
+        request.setLimit(2);
+        do {
+            WalletListPage page = walletService.list(request);
+            assertTrue(page.getWallets().size() <= 2);
+            page.getWallets().forEach(wallet -> names.add(wallet.getName()));
+            request.setAfter(page.getNextCursor());
+        } while (request.getAfter() != null);
+
+        assertEquals(names.stream().sorted().toList(), names);
+        assertEquals(names.size(), names.stream().distinct().count());
+        assertTrue(names.containsAll(List.of("Wallet1", "Wallet2")));
+    }
+
+    @Test
+    void testListWalletsWithFilters() {
+        depositToWallet1(BigDecimal.valueOf(100));
+
+        WalletListRequest request = new WalletListRequest();
+        request.setCurrency(Currency.EUR);
+        request.setMinBalance(BigDecimal.valueOf(100));
+        request.setMaxBalance(BigDecimal.valueOf(100));
+        request.setSort("balance");
+        request.setDirection("desc");
+        List<Wallet> wallets = walletService.list(request).getWallets();
+
+        assertTrue(wallets.stream().anyMatch(wallet -> wallet.getId().equals(wallet1.getId())));
+        assertTrue(wallets.stream().noneMatch(wallet -> wallet.getId().equals(wallet2.getId())));
+        wallets.forEach(wallet -> assertEquals(0, BigDecimal.valueOf(100).compareTo(wallet.getBalance())));
+    }
+
+    @Test
+    void testListWalletsWithCursorOfAnotherSort() {
+        WalletListRequest request = new WalletListRequest();
+        request.setLimit(1);
+        String cursor = walletService.list(request).getNextCursor();
+        assertNotNull(cursor);
+
+        request.setSort("balance");
+        request.setAfter(cursor);
+        assertThrows(WalletListInvalidCursorException.class, () -> walletService.list(request));
+    }
+
+    @Test
+    void testStripedWallet() {
+        WalletDepositRequest depositRequest = new WalletDepositRequest();
+        depositRequest.setWalletId(wallet1.getId());
+        depositRequest.setAmount(BigDecimal.valueOf(100));
+        depositRequest.setCurrency(Currency.EUR);
+        depositRequest.setBankCode("1234");
+        depositRequest.setAccountNumber("1234567890");
+        walletService.deposit(depositRequest);
+
+        // Split wallet1 into stripes, further deposits are credited to the stripes
+        WalletStripeRequest stripeRequest = new WalletStripeRequest();
+        stripeRequest.setWalletId(wallet1.getId());
+        stripeRequest.setStripeCount(4);
+        assertEquals(4, walletService.stripe(stripeRequest).getStripeCount());
+        long version = walletService.get(wallet1.getId()).getVersion();
+
+        depositRequest.setAmount(BigDecimal.TEN);
+        for (int i = 0; i < 3; i++) {
+            walletService.deposit(depositRequest);
+        }
+        assertBalance(BigDecimal.valueOf(100), wallet1);
+        assertEquals(0, BigDecimal.valueOf(130).compareTo(walletService.get(wallet1.getId()).getBalance()));
+        // The wallet row keeps its balance, but every credited stripe changes the version of the wallet
+        assertEquals(version + 3, walletService.get(wallet1.getId()).getVersion());
+
+        // Neither the wallet row nor a single stripe covers the withdrawal, so the stripes are consolidated
+        WalletWithdrawRequest withdrawRequest = new WalletWithdrawRequest();
+        withdrawRequest.setWalletId(wallet1.getId());
+        withdrawRequest.setAmount(BigDecimal.valueOf(120));
+        withdrawRequest.setCurrency(Currency.EUR);
+        withdrawRequest.setBankCode("1234");
+        withdrawRequest.setAccountNumber("1234567890");
+        walletService.withdraw(withdrawRequest);
+        assertEquals(0, BigDecimal.TEN.compareTo(walletService.get(wallet1.getId()).getBalance()));
+
+        WalletTransferRequest transferRequest = new WalletTransferRequest();
+        transferRequest.setSenderWalletId(wallet1.getId());
+        transferRequest.setReceiverWalletId(wallet2.getId());
+        transferRequest.setAmount(BigDecimal.valueOf(5));
+        transferRequest.setCurrency(Currency.EUR);
+        walletService.transfer(transferRequest);
+        assertEquals(0, BigDecimal.valueOf(5).compareTo(walletService.get(wallet1.getId()).getBalance()));
+        assertBalance(BigDecimal.valueOf(5), wallet2);
+    }
+
+    @Test
+    void testTransferBatchPerItem() {
+        depositToWallet1(BigDecimal.valueOf(100));
+
+        // The third transfer fails because the first two leave only 50 in wallet1
+        List<WalletTransferBatchResult> results = walletService.transferBatch(batchOfTransfers(), false);
+
+        assertEquals(3, results.size());
+        assertEquals(TransactionStatus.COMPLETED, results.get(0).getStatus());
+        assertEquals(TransactionStatus.COMPLETED, results.get(1).getStatus());
+        assertEquals(TransactionStatus.FAILED, results.get(2).getStatus());
+        assertNotNull(results.get(2).getError());
+        assertBalance(BigDecimal.valueOf(50), wallet1);
+        assertBalance(BigDecimal.valueOf(50), wallet2);
+
+        // Deposit and the two completed transfers
+        assertEquals(3, walletService.getTransactionHistory(wallet1.getId(), null, null, null).getTransactions().size());
+    }
+
+    @Test
+    void testTransferBatchAllOrNothing() {
+        depositToWallet1(BigDecimal.valueOf(100));
+
+        List<WalletTransferBatchResult> results = walletService.transferBatch(batchOfTransfers(), true);
+
+        assertEquals(3, results.size());
+        results.forEach(result -> assertEquals(TransactionStatus.FAILED, result.getStatus()));
+        assertBalance(BigDecimal.valueOf(100), wallet1);
+        assertBalance(BigDecimal.ZERO, wallet2);
+        assertEquals(1, walletService.getTransactionHistory(wallet1.getId(), null, null, null).getTransactions().size());
+    }
+
+    @Test
+    void testBalanceAt() {
+        depositToWallet1(BigDecimal.valueOf(100));
+        walletService.transfer(transferRequest(wallet1, wallet2, BigDecimal.valueOf(30)));
+        walletService.transferBatch(batchOfTransfers(), false);
+
+        // The balances after a transaction are not projected, so the oldest and the newest transaction are read as entities
+        List<TransactionSummary> history = transactionRepository.findHistory(wallet1.getId(), 100);
+        Transaction deposit = transactionRepository.findById(history.get(history.size() - 1).getId()).orElseThrow();
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(deposit.getReceiverBalanceAfter()));
+        assertNull(deposit.getSenderBalanceAfter());
+
+        // The batch applies 60 to wallet2 and 10 back to wallet1, the last transfer fails on the remaining 20
+        Transaction newest = transactionRepository.findById(history.get(0).getId()).orElseThrow();
+        assertEquals(0, BigDecimal.valueOf(20).compareTo(newest.getReceiverBalanceAfter()));
+        assertEquals(0, BigDecimal.valueOf(80).compareTo(newest.getSenderBalanceAfter()));
+
+        assertEquals(0, BigDecimal.ZERO.compareTo(
+                walletService.getBalanceAt(wallet1.getId(), deposit.getCreatedAt().minusSeconds(1)).getBalance()));
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(
+                walletService.getBalanceAt(wallet1.getId(), deposit.getCreatedAt()).getBalance()));
+        assertEquals(0, BigDecimal.valueOf(20).compareTo(
+                walletService.getBalanceAt(wallet1.getId(), LocalDateTime.now().plusSeconds(1)).getBalance()));
+        assertEquals(0, BigDecimal.valueOf(80).compareTo(
+                walletService.getBalanceAt(wallet2.getId(), LocalDateTime.now().plusSeconds(1)).getBalance()));
+    }
+
+    private void depositToWallet1(BigDecimal amount) {
+        WalletDepositRequest depositRequest = new WalletDepositRequest();
+        depositRequest.setWalletId(wallet1.getId());
+        depositRequest.setAmount(amount);
+        depositRequest.setCurrency(Currency.EUR);
+        depositRequest.setBankCode("1234");
+        depositRequest.setAccountNumber("1234567890");
+        walletService.deposit(depositRequest);
+    }
+
+    private List<WalletTransferRequest> batchOfTransfers() {
+        return List.of(
+                transferRequest(wallet1, wallet2, BigDecimal.valueOf(60)),
+                transferRequest(wallet2, wallet1, BigDecimal.TEN),
+                transferRequest(wallet1, wallet2, BigDecimal.valueOf(60)));
+    }
+
+    private static WalletTransferRequest transferRequest(Wallet sender, Wallet receiver, BigDecimal amount) {
+        WalletTransferRequest request = new WalletTransferRequest();
+        request.setSenderWalletId(sender.getId());
+        request.setReceiverWalletId(receiver.getId());
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        return request;
+    }
+
+    private void assertBalance(BigDecimal expected, Wallet wallet) {
+        // Balances are changed by update statements, so the current state has to be read from the database
+        BigDecimal balance = walletRepository.findById(wallet.getId()).orElseThrow().getBalance();
+        assertEquals(0, expected.compareTo(balance), "Expected balance " + expected + " but was " + balance);
     }
 }
@@ -0,0 +1,68 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.wallet.WalletCreateRequest;
+import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.Wallet;
+import com.clientwallet.repository.WalletRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A second in-memory H2 database stands in for a replica, holding a copy of the primary database taken before a deposit
+@SpringBootTest(properties = {"wallet.replica.urls=" + WalletServiceReplicaTest.REPLICA_URL, "wallet.replica.lag-query="})
+@ActiveProfiles("test")
+public class WalletServiceReplicaTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testCachedWalletIsLoadedFromPrimary() throws IOException {
+        WalletCreateRequest createRequest = new WalletCreateRequest();
+        createRequest.setName("Replica " + UUID.randomUUID().toString().substring(0, 8));
+        createRequest.setCurrency(Currency.EUR);
+        Wallet wallet = walletService.create(createRequest);
+        copyToReplica();
+
+        WalletDepositRequest depositRequest = new WalletDepositRequest();
+        depositRequest.setWalletId(wallet.getId());
+        depositRequest.setCurrency(Currency.EUR);
+        depositRequest.setAmount(BigDecimal.TEN);
+        depositRequest.setBankCode("1234");
+        depositRequest.setAccountNumber("1234567890");
+        walletService.deposit(depositRequest);
+
+        // A read-only read outside a transaction is served by the lagging replica
+        assertEquals(0, BigDecimal.ZERO.compareTo(walletRepository.findById(wallet.getId()).orElseThrow().getBalance()));
+        // The read filling the cache is served by the primary database
+        assertEquals(0, BigDecimal.TEN.compareTo(walletService.get(wallet.getId()).getBalance()));
+    }
+
+    private void copyToReplica() throws IOException {
+        File script = File.createTempFile("replica", ".sql");
+        script.deleteOnExit();
+        jdbcTemplate.execute("SCRIPT TO '" + script.getAbsolutePath() + "'");
+        JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", "password"));
+        replica.execute("DROP ALL OBJECTS");
+        replica.execute("RUNSCRIPT FROM '" + script.getAbsolutePath() + "'");
+    }
+}
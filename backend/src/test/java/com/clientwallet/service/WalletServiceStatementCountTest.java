@@ -0,0 +1,235 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.wallet.WalletCreateRequest;
+import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.dto.wallet.WalletTransferRequest;
+import com.clientwallet.dto.wallet.WalletHistoryPage;
+import com.clientwallet.dto.wallet.WalletWithdrawRequest;
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.Transaction;
+import com.clientwallet.model.Wallet;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "wallet.async.workers=0",
+        "wallet.history.max-page-size=20000",
+        "wallet.turnover.enabled=false"})
+@ActiveProfiles("test")
+public class WalletServiceStatementCountTest {
+
+    private static final int HISTORY_SIZE = 10_000;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Wallet wallet1;
+    private Wallet wallet2;
+
+    @BeforeEach
+    void setUp() {
+        wallet1 = createWallet();
+        wallet2 = createWallet();
+
+        WalletDepositRequest request = new WalletDepositRequest();
+        request.setWalletId(wallet1.getId());
+        request.setAmount(BigDecimal.valueOf(100));
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+        walletService.deposit(request);
+        StatementCounter.STATEMENTS.clear();
+    }
+
+    @Test
+    void testDepositWritesOnce() {
+        WalletDepositRequest request = new WalletDepositRequest();
+        request.setWalletId(wallet1.getId());
+        request.setAmount(BigDecimal.TEN);
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+
+        walletService.deposit(request);
+
+        assertSingleWritePath();
+    }
+
+    @Test
+    void testWithdrawWritesOnce() {
+        WalletWithdrawRequest request = new WalletWithdrawRequest();
+        request.setWalletId(wallet1.getId());
+        request.setAmount(BigDecimal.TEN);
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+
+        walletService.withdraw(request);
+
+        assertSingleWritePath();
+    }
+
+    @Test
+    void testTransferWritesOnce() {
+        WalletTransferRequest request = new WalletTransferRequest();
+        request.setSenderWalletId(wallet1.getId());
+        request.setReceiverWalletId(wallet2.getId());
+        request.setAmount(BigDecimal.TEN);
+        request.setCurrency(Currency.EUR);
+
+        walletService.transfer(request);
+
+        assertSingleWritePath();
+    }
+
+    @Test
+    void testHistoryIsReadByOneQueryWithoutWalletEntities() throws Exception {
+        List<Wallet> senders = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            senders.add(createWallet());
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> transfers = new ArrayList<>();
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            transfers.add(new Object[]{UUID.randomUUID(), senders.get(i % senders.size()).getId(), wallet1.getId(), now.minusSeconds(i)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO transaction (id, sender_wallet_id, receiver_wallet_id, amount, currency, " +
+                "transaction_type, transaction_status, rolled_up, created_at) " +
+                "VALUES (?, ?, ?, 1, 'EUR', 'TRANSFER', 'COMPLETED', FALSE, ?)", transfers);
+
+        try {
+            // The transfers and the deposit of the setup
+            StatementCounter.STATEMENTS.clear();
+            WalletHistoryPage page = walletService.getTransactionHistory(wallet1.getId(), null, null, HISTORY_SIZE + 1);
+            List<String> projected = selects();
+            int projectedBytes = objectMapper.writeValueAsBytes(page.getTransactions()).length;
+
+            // The same rows read as entities, as the history was read before the projection
+            StatementCounter.STATEMENTS.clear();
+            List<Transaction> entities = entityManager.createQuery("SELECT t FROM Transaction t " +
+                            "WHERE t.senderWallet.id = :walletId OR t.receiverWallet.id = :walletId", Transaction.class)
+                    .setParameter("walletId", wallet1.getId())
+                    .getResultList();
+            List<String> loaded = selects();
+            int loadedBytes = objectMapper.writeValueAsBytes(entities).length;
+
+            assertEquals(HISTORY_SIZE + 1, page.getTransactions().size());
+            assertEquals(HISTORY_SIZE + 1, entities.size());
+            // One query of the page, against one query and a secondary select per wallet
+            assertEquals(1, projected.size(), "Unexpected queries: " + projected);
+            assertEquals(1 + senders.size() + 1, loaded.size(), "Unexpected queries: " + loaded);
+            assertTrue(projectedBytes < loadedBytes * 0.6, projectedBytes + " bytes against " + loadedBytes);
+        } finally {
+            jdbcTemplate.update("DELETE FROM transaction WHERE receiver_wallet_id = ? AND transaction_type = 'TRANSFER'", wallet1.getId());
+        }
+    }
+
+    private List<String> selects() {
+        return StatementCounter.STATEMENTS.stream().filter(sql -> sql.startsWith("select")).toList();
+    }
+
+    private void assertSingleWritePath() {
+        // One conditional balance update, one insert of the completed transaction and one batch of its journal legs,
+        // the transaction is never updated
+        List<String> writes = StatementCounter.STATEMENTS.stream()
+                .filter(sql -> sql.startsWith("update") || sql.startsWith("insert"))
+                .toList();
+        assertEquals(3, writes.size(), "Unexpected write statements: " + writes);
+        assertEquals(1, writes.stream().filter(sql -> sql.startsWith("update wallet")).count());
+        assertEquals(1, writes.stream().filter(sql -> sql.startsWith("insert into transaction ")).count());
+        assertEquals(1, writes.stream().filter(sql -> sql.startsWith("insert into journal_entry")).count());
+    }
+
+    private Wallet createWallet() {
+        WalletCreateRequest request = new WalletCreateRequest();
+        request.setName("Counted " + UUID.randomUUID().toString().substring(0, 8));
+        request.setCurrency(Currency.EUR);
+        return walletService.create(request);
+    }
+
+    /**
+     * Records every SQL statement prepared on a connection of the data source in lower case, whether by Hibernate
+     * or by plain JDBC.
+     */
+    @TestConfiguration
+    static class StatementCounter {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Bean
+        static BeanPostProcessor statementCountingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return "dataSource".equals(beanName) ? new CountingDataSource((DataSource) bean) : bean;
+                }
+            };
+        }
+
+        private static class CountingDataSource extends DelegatingDataSource {
+
+            CountingDataSource(DataSource dataSource) {
+                super(dataSource);
+            }
+
+            @Override
+            public Connection getConnection() throws SQLException {
+                return counting(super.getConnection());
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return counting(super.getConnection(username, password));
+            }
+
+            private static Connection counting(Connection connection) {
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                        new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                            if ((method.getName().equals("prepareStatement") || method.getName().equals("prepareCall"))
+                                    && args != null && args[0] instanceof String sql) {
+                                STATEMENTS.add(sql.trim().toLowerCase());
+                            }
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getTargetException();
+                            }
+                        });
+            }
+        }
+    }
+}
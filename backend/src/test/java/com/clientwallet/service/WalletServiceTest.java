@@ -1,21 +1,34 @@
 package com.clientwallet.service;
 
+import com.clientwallet.archive.TransactionArchive;
 import com.clientwallet.dto.wallet.WalletCreateRequest;
 import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.dto.wallet.WalletHistoryPage;
 import com.clientwallet.dto.wallet.WalletTransferRequest;
 import com.clientwallet.dto.wallet.WalletWithdrawRequest;
 import com.clientwallet.exception.wallet.*;
 import com.clientwallet.model.*;
 import com.clientwallet.repository.TransactionRepository;
+import com.clientwallet.repository.TransactionSummary;
 import com.clientwallet.repository.WalletRepository;
+import com.clientwallet.repository.WalletStripeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -31,9 +44,43 @@ public class WalletServiceTest {
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Mock
+    private WalletStripeRepository walletStripeRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private KnownWalletIndex knownWalletIndex;
+
+    // Empty, so every history is read from the database only
+    @Mock
+    private TransactionArchive transactionArchive;
+
+    @Mock
+    private LedgerJournal ledgerJournal;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    // Not initialized, so every read is passed to the database
+    @Spy
+    private WalletCache walletCache = new WalletCache();
+
     @InjectMocks
     private WalletService walletService;
 
+    @BeforeEach
+    void setUp() {
+        walletService.init();
+    }
+
     // Test for create method
     @Test
     void testCreateWalletSuccessfully() {
@@ -42,15 +89,23 @@ public class WalletServiceTest {
         request.setCurrency(Currency.EUR);
 
         when(walletRepository.existsByName("MyWallet")).thenReturn(false);
+        UUID walletId = UUID.randomUUID();
         ArgumentCaptor<Wallet> walletCaptor = ArgumentCaptor.forClass(Wallet.class);
-        when(walletRepository.save(walletCaptor.capture())).thenAnswer(invocation -> walletCaptor.getValue());
+        when(walletRepository.save(walletCaptor.capture())).thenAnswer(invocation -> {
+            walletCaptor.getValue().setId(walletId);
+            return walletCaptor.getValue();
+        });
 
         Wallet wallet = walletService.create(request);
 
         assertNotNull(wallet);
+        assertEquals(walletId, wallet.getId());
         assertEquals("MyWallet", wallet.getName());
         assertEquals(Currency.EUR, wallet.getCurrency());
         verify(walletRepository, times(1)).save(any(Wallet.class));
+        // The new wallet is known to exist and replaces any wallet cached under its ID
+        verify(knownWalletIndex, times(1)).add(walletId);
+        verify(eventPublisher, times(1)).publishEvent(new WalletChangedEvent(List.of(walletId)));
     }
 
     @Test
@@ -82,6 +137,43 @@ public class WalletServiceTest {
         verify(walletRepository, times(1)).findById(walletId);
     }
 
+    @Test
+    void testGetWalletIsCachedUntilChanged() {
+        ReflectionTestUtils.setField(walletCache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(walletCache, "enabled", true);
+        ReflectionTestUtils.setField(walletCache, "maxSize", 100L);
+        ReflectionTestUtils.setField(walletCache, "expireAfterSeconds", 60L);
+        walletCache.init();
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet();
+        wallet.setId(walletId);
+        wallet.setBalance(BigDecimal.ZERO);
+        wallet.setCurrency(Currency.EUR);
+
+        when(walletRepository.findById(walletId)).thenReturn(java.util.Optional.of(wallet));
+
+        walletService.get(walletId);
+        walletService.get(walletId);
+
+        verify(walletRepository, times(1)).findById(walletId);
+
+        // The event published by a deposit is passed to the cache after the commit
+        WalletDepositRequest request = new WalletDepositRequest();
+        request.setWalletId(walletId);
+        request.setCurrency(Currency.EUR);
+        request.setAmount(BigDecimal.TEN);
+        when(walletRepository.credit(eq(walletId), eq(Currency.EUR), eq(BigDecimal.TEN), any())).thenReturn(1);
+        walletService.deposit(request);
+        ArgumentCaptor<WalletChangedEvent> eventCaptor = ArgumentCaptor.forClass(WalletChangedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertEquals(List.of(walletId), eventCaptor.getValue().walletIds());
+        walletCache.onWalletChanged(eventCaptor.getValue());
+        walletService.get(walletId);
+
+        // Read once by the cached reads, once by the deposit and once more after the invalidation
+        verify(walletRepository, times(3)).findById(walletId);
+    }
+
     @Test
     void testGetWalletNotFound() {
         UUID walletId = UUID.randomUUID();
@@ -106,6 +198,7 @@ public class WalletServiceTest {
         wallet.setBalance(BigDecimal.ZERO);
         wallet.setCurrency(Currency.EUR);
 
+        when(walletRepository.credit(eq(request.getWalletId()), eq(Currency.EUR), eq(BigDecimal.TEN), any())).thenReturn(1);
         when(walletRepository.findById(request.getWalletId())).thenReturn(java.util.Optional.of(wallet));
         when(transactionRepository.save(any(Transaction.class))).thenReturn(new Transaction());
 
@@ -113,8 +206,11 @@ public class WalletServiceTest {
 
         assertNotNull(transaction);
         assertEquals(TransactionStatus.COMPLETED, transaction.getTransactionStatus());
-        verify(walletRepository, times(1)).save(any(Wallet.class));
-        verify(transactionRepository, times(2)).save(any(Transaction.class));
+        verify(walletRepository, never()).save(any(Wallet.class));
+        verify(transactionRepository, times(1)).save(any(Transaction.class));
+        // The external account is debited and the wallet credited
+        verify(ledgerJournal, times(1)).append(List.of(new LedgerJournal.Posting(null, null, wallet.getId(),
+                BigDecimal.TEN, Currency.EUR, null)));
     }
 
     @Test
@@ -151,6 +247,7 @@ public class WalletServiceTest {
         wallet.setBalance(BigDecimal.valueOf(100));
         wallet.setCurrency(Currency.EUR);
 
+        when(walletRepository.debit(eq(request.getWalletId()), eq(Currency.EUR), eq(BigDecimal.TEN), any())).thenReturn(1);
         when(walletRepository.findById(request.getWalletId())).thenReturn(java.util.Optional.of(wallet));
         when(transactionRepository.save(any(Transaction.class))).thenReturn(new Transaction());
 
@@ -158,8 +255,8 @@ public class WalletServiceTest {
 
         assertNotNull(transaction);
         assertEquals(TransactionStatus.COMPLETED, transaction.getTransactionStatus());
-        verify(walletRepository, times(1)).save(any(Wallet.class));
-        verify(transactionRepository, times(2)).save(any(Transaction.class));
+        verify(walletRepository, never()).save(any(Wallet.class));
+        verify(transactionRepository, times(1)).save(any(Transaction.class));
     }
 
     @Test
@@ -200,6 +297,7 @@ public class WalletServiceTest {
         receiverWallet.setBalance(BigDecimal.valueOf(50));
         receiverWallet.setCurrency(Currency.EUR);
 
+        when(walletRepository.transfer(eq(request.getSenderWalletId()), eq(request.getReceiverWalletId()), eq(Currency.EUR), eq(BigDecimal.TEN), any())).thenReturn(2);
         when(walletRepository.findById(request.getSenderWalletId())).thenReturn(java.util.Optional.of(senderWallet));
         when(walletRepository.findById(request.getReceiverWalletId())).thenReturn(java.util.Optional.of(receiverWallet));
         when(transactionRepository.save(any(Transaction.class))).thenReturn(new Transaction());
@@ -208,8 +306,8 @@ public class WalletServiceTest {
 
         assertNotNull(transaction);
         assertEquals(TransactionStatus.COMPLETED, transaction.getTransactionStatus());
-        verify(walletRepository, times(2)).save(any(Wallet.class));
-        verify(transactionRepository, times(2)).save(any(Transaction.class));
+        verify(walletRepository, never()).save(any(Wallet.class));
+        verify(transactionRepository, times(1)).save(any(Transaction.class));
     }
 
     @Test
@@ -264,14 +362,34 @@ public class WalletServiceTest {
     @Test
     void testGetTransactionHistory() {
         UUID walletId = UUID.randomUUID();
-        List<Transaction> transactionList = List.of(new Transaction(), new Transaction());
+        List<TransactionSummary> transactionList = List.of(transaction(LocalDateTime.now()), transaction(LocalDateTime.now().minusMinutes(1)),
+                transaction(LocalDateTime.now().minusMinutes(2)));
+        ReflectionTestUtils.setField(walletService, "historyPageSize", 2);
+        ReflectionTestUtils.setField(walletService, "historyMaxPageSize", 10);
+
+        // One more transaction than the page size is loaded to detect the next page
+        when(transactionRepository.findHistory(walletId, 3)).thenReturn(transactionList);
 
-        when(transactionRepository.findBySenderWalletIdOrReceiverWalletId(walletId, walletId)).thenReturn(transactionList);
+        WalletHistoryPage page = walletService.getTransactionHistory(walletId, null, null, null);
 
-        List<Transaction> transactions = walletService.getTransactionHistory(walletId);
+        assertEquals(2, page.getTransactions().size());
+        assertNotNull(page.getNextCursor());
+        assertNull(page.getPreviousCursor());
+        verify(transactionRepository, times(1)).findHistory(walletId, 3);
+    }
+
+    @Test
+    void testGetTransactionHistoryWithInvalidCursor() {
+        ReflectionTestUtils.setField(walletService, "historyMaxPageSize", 10);
+
+        assertThrows(WalletHistoryInvalidCursorException.class,
+                () -> walletService.getTransactionHistory(UUID.randomUUID(), "not-a-cursor", null, 2));
+    }
 
-        assertNotNull(transactions);
-        assertEquals(2, transactions.size());
-        verify(transactionRepository, times(1)).findBySenderWalletIdOrReceiverWalletId(walletId, walletId);
+    private static TransactionSummary transaction(LocalDateTime createdAt) {
+        TransactionSummary transaction = mock(TransactionSummary.class);
+        when(transaction.getId()).thenReturn(UUID.randomUUID());
+        when(transaction.getCreatedAt()).thenReturn(createdAt);
+        return transaction;
     }
 }
@@ -0,0 +1,152 @@
+package com.clientwallet.service;
+
+import com.clientwallet.dto.wallet.WalletDepositRequest;
+import com.clientwallet.dto.wallet.WalletStats;
+import com.clientwallet.dto.wallet.WalletTransferRequest;
+import com.clientwallet.dto.wallet.WalletWithdrawRequest;
+import com.clientwallet.model.Currency;
+import com.clientwallet.model.Wallet;
+import com.clientwallet.repository.TransactionRepository;
+import com.clientwallet.repository.WalletRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "wallet.turnover.enabled=false")
+@ActiveProfiles("test")
+@Transactional
+public class WalletTurnoverServiceTest {
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletTurnoverService walletTurnoverService;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private Wallet wallet1;
+    private Wallet wallet2;
+
+    @BeforeEach
+    void setUp() {
+        wallet1 = new Wallet();
+        wallet1.setName("Turnover1");
+        wallet1.setCurrency(Currency.EUR);
+        wallet1.setBalance(BigDecimal.ZERO);
+
+        wallet2 = new Wallet();
+        wallet2.setName("Turnover2");
+        wallet2.setCurrency(Currency.EUR);
+        wallet2.setBalance(BigDecimal.ZERO);
+
+        walletRepository.save(wallet1);
+        walletRepository.save(wallet2);
+    }
+
+    @Test
+    void testAggregatesEveryTransactionOnce() {
+        deposit(BigDecimal.valueOf(100));
+        transfer(BigDecimal.valueOf(30));
+        withdraw(BigDecimal.TEN);
+        aggregateAll();
+
+        LocalDate today = LocalDate.now();
+        List<WalletStats> stats = walletTurnoverService.getStats(wallet1.getId(), today, today, WalletTurnoverService.Granularity.DAY);
+        assertEquals(1, stats.size());
+        assertStats(stats.get(0), today, BigDecimal.valueOf(100), BigDecimal.valueOf(40), 1, 2);
+
+        List<WalletStats> receiverStats = walletTurnoverService.getStats(wallet2.getId(), today, today, WalletTurnoverService.Granularity.DAY);
+        assertStats(receiverStats.get(0), today, BigDecimal.valueOf(30), BigDecimal.ZERO, 1, 0);
+
+        // Rolled up transactions are never picked up again
+        transactionRepository.flush();
+        assertEquals(0, walletTurnoverService.aggregate());
+        deposit(BigDecimal.valueOf(5));
+        aggregateAll();
+
+        List<WalletStats> monthly = walletTurnoverService.getStats(wallet1.getId(), today.withDayOfMonth(1), today,
+                WalletTurnoverService.Granularity.MONTH);
+        assertEquals(1, monthly.size());
+        assertStats(monthly.get(0), today.withDayOfMonth(1), BigDecimal.valueOf(105), BigDecimal.valueOf(40), 2, 2);
+    }
+
+    @Test
+    void testRebuildReplacesRollupsOfTheDay() {
+        deposit(BigDecimal.valueOf(100));
+        transfer(BigDecimal.valueOf(30));
+        aggregateAll();
+
+        LocalDate today = LocalDate.now();
+        walletTurnoverService.rebuild(today, today);
+
+        List<WalletStats> stats = walletTurnoverService.getStats(wallet1.getId(), today, today, WalletTurnoverService.Granularity.DAY);
+        assertEquals(1, stats.size());
+        assertStats(stats.get(0), today, BigDecimal.valueOf(100), BigDecimal.valueOf(30), 1, 1);
+
+        // The rebuild flagged the transactions of the day as rolled up
+        assertEquals(0, walletTurnoverService.aggregate());
+        assertTrue(walletTurnoverService.getStats(wallet1.getId(), today.minusDays(7), today.minusDays(1),
+                WalletTurnoverService.Granularity.DAY).isEmpty());
+    }
+
+    private void aggregateAll() {
+        // The aggregator reads the transaction table directly, so the saved transactions have to be flushed first
+        transactionRepository.flush();
+        while (walletTurnoverService.aggregate() > 0) {
+            transactionRepository.flush();
+        }
+    }
+
+    private void deposit(BigDecimal amount) {
+        WalletDepositRequest request = new WalletDepositRequest();
+        request.setWalletId(wallet1.getId());
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+        walletService.deposit(request);
+    }
+
+    private void withdraw(BigDecimal amount) {
+        WalletWithdrawRequest request = new WalletWithdrawRequest();
+        request.setWalletId(wallet1.getId());
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        request.setBankCode("1234");
+        request.setAccountNumber("1234567890");
+        walletService.withdraw(request);
+    }
+
+    private void transfer(BigDecimal amount) {
+        WalletTransferRequest request = new WalletTransferRequest();
+        request.setSenderWalletId(wallet1.getId());
+        request.setReceiverWalletId(wallet2.getId());
+        request.setAmount(amount);
+        request.setCurrency(Currency.EUR);
+        walletService.transfer(request);
+    }
+
+    private static void assertStats(WalletStats stats, LocalDate period, BigDecimal creditAmount, BigDecimal debitAmount,
+                                    long creditCount, long debitCount) {
+        assertEquals(period, stats.getPeriod());
+        assertEquals(Currency.EUR, stats.getCurrency());
+        assertEquals(0, creditAmount.compareTo(stats.getCreditAmount()), "Credits: " + stats.getCreditAmount());
+        assertEquals(0, debitAmount.compareTo(stats.getDebitAmount()), "Debits: " + stats.getDebitAmount());
+        assertEquals(creditCount, stats.getCreditCount());
+        assertEquals(debitCount, stats.getDebitCount());
+    }
+}
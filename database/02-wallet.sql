@@ -3,8 +3,23 @@ CREATE TABLE IF NOT EXISTS wallet (
                                       name VARCHAR(50) CHECK (LENGTH(name) BETWEEN 3 AND 50) UNIQUE,
                                       currency currency_type NOT NULL, -- Table for currencies should be use if more types would be added in future
                                       balance DECIMAL(10, 2) NOT NULL DEFAULT 0,
+                                      stripe_count INT NOT NULL DEFAULT 0, -- Number of wallet_stripe rows holding parts of the balance
+                                      version BIGINT NOT NULL DEFAULT 0, -- Optimistic locking version, incremented by every balance change
                                       created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                                       updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
-CREATE UNIQUE INDEX idx_wallet_name ON wallet (name);
\ No newline at end of file
+CREATE UNIQUE INDEX idx_wallet_name ON wallet (name);
+
+-- Composite indexes serving the keyset pagination of the wallet list (GET /wallet/list) by name or balance,
+-- with and without the currency filter
+CREATE INDEX idx_wallet_currency_name ON wallet (currency, name);
+CREATE INDEX idx_wallet_balance ON wallet (balance, id);
+CREATE INDEX idx_wallet_currency_balance ON wallet (currency, balance, id);
+
+CREATE TABLE IF NOT EXISTS wallet_stripe (
+                                      wallet_id UUID NOT NULL REFERENCES wallet(id) ON DELETE CASCADE,
+                                      stripe INT NOT NULL,
+                                      balance DECIMAL(10, 2) NOT NULL DEFAULT 0,
+                                      PRIMARY KEY (wallet_id, stripe)
+);
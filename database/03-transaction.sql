@@ -1,5 +1,8 @@
+-- Partitioned by month on created_at, so old months can be vacuumed, reindexed, detached or dropped one partition at a
+-- time, and queries bounded by the creation time only read the partitions of that range.
+-- The primary key of a partitioned table must contain the partition key.
 CREATE TABLE IF NOT EXISTS transaction (
-                                           id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+                                           id UUID NOT NULL DEFAULT uuid_generate_v4(),
                                            sender_wallet_id UUID REFERENCES wallet (id) ON DELETE SET NULL,
                                            receiver_wallet_id UUID REFERENCES wallet (id) ON DELETE SET NULL,
                                            account_number VARCHAR(18) CHECK (LENGTH(account_number) BETWEEN 10 AND 18),
@@ -8,18 +11,69 @@ CREATE TABLE IF NOT EXISTS transaction (
                                            currency currency_type NOT NULL, -- Table for currencies should be use if more types would be added in future
                                            transaction_type transaction_type NOT NULL,
                                            transaction_status transaction_status NOT NULL,
-                                           created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                                           updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                                           sender_balance_after DECIMAL(10, 2), -- Balance of the sender wallet right after the transaction was applied
+                                           receiver_balance_after DECIMAL(10, 2), -- Balance of the receiver wallet right after the transaction was applied
+                                           rolled_up BOOLEAN NOT NULL DEFAULT FALSE, -- Whether the transaction is added to the wallet_turnover rollups
+                                           idempotency_key VARCHAR(64), -- Key of the client request which created the transaction, unique through transaction_idempotency_key
+                                           request_fingerprint VARCHAR(64), -- SHA-256 of the method, path and body of the request with the idempotency key
+                                           created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                           updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                           PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Rows outside of all monthly partitions, kept empty by creating the partitions ahead of time
+CREATE TABLE IF NOT EXISTS transaction_default PARTITION OF transaction DEFAULT;
+
+-- Creates the monthly partitions named transaction_YYYY_MM starting with the month of first_month, skipping existing ones.
+-- Called by the partition job of the backend, the advisory lock serializes concurrent calls of several instances.
+CREATE OR REPLACE FUNCTION create_transaction_partitions(first_month DATE, months INT)
+    RETURNS INT AS $$
+DECLARE
+    partition_start DATE := date_trunc('month', first_month)::DATE;
+    partition_name TEXT;
+    created INT := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('create_transaction_partitions'));
+    FOR i IN 1..months LOOP
+        partition_name := 'transaction_' || to_char(partition_start, 'YYYY_MM');
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF transaction FOR VALUES FROM (%L) TO (%L)',
+                           partition_name, partition_start, (partition_start + INTERVAL '1 month')::DATE);
+            created := created + 1;
+        END IF;
+        partition_start := (partition_start + INTERVAL '1 month')::DATE;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT create_transaction_partitions(CURRENT_DATE, 4);
+
+-- Idempotency keys of all partitions, a unique index on the partitioned table would have to contain created_at.
+-- A key is reserved by the backend in the database transaction inserting the transaction created with it, and it stays
+-- reserved when the transaction is archived or deleted, so a repeated request is never executed again.
+CREATE TABLE IF NOT EXISTS transaction_idempotency_key (
+                                           idempotency_key VARCHAR(64) PRIMARY KEY,
+                                           transaction_id UUID NOT NULL,
+                                           request_fingerprint VARCHAR(64),
+                                           created_at TIMESTAMP NOT NULL
 );
 
-CREATE INDEX idx_transaction_sender_wallet ON transaction (sender_wallet_id);
-CREATE INDEX idx_transaction_receiver_wallet ON transaction (receiver_wallet_id);
+-- Composite indexes serving the keyset pagination of the wallet history on (created_at, id) for each side of a transaction.
+-- Like all indexes of the partitioned table, they are created on every partition, including the ones created later.
+CREATE INDEX idx_transaction_sender_wallet ON transaction (sender_wallet_id, created_at, id);
+CREATE INDEX idx_transaction_receiver_wallet ON transaction (receiver_wallet_id, created_at, id);
+
+-- Index of the completed transactions waiting for the turnover aggregator, and of all transactions by creation time
+-- for rebuilding the rollups of a day
+CREATE INDEX idx_transaction_rollup_pending ON transaction (created_at) WHERE rolled_up = FALSE AND transaction_status = 'COMPLETED';
+CREATE INDEX idx_transaction_created_at ON transaction (created_at);
 
 CREATE OR REPLACE FUNCTION delete_null_transactions()
     RETURNS TRIGGER AS $$
 BEGIN
     IF NEW.sender_wallet_id IS NULL AND NEW.receiver_wallet_id IS NULL THEN
-        DELETE FROM transaction WHERE id = NEW.id;
+        DELETE FROM transaction WHERE id = NEW.id AND created_at = NEW.created_at;
     END IF;
     RETURN NEW;
 END;
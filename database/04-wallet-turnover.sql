@@ -0,0 +1,14 @@
+-- Daily turnover of each wallet, rolled up from its completed transactions by the turnover aggregator
+CREATE TABLE IF NOT EXISTS wallet_turnover (
+                                      wallet_id UUID NOT NULL REFERENCES wallet(id) ON DELETE CASCADE,
+                                      turnover_day DATE NOT NULL,
+                                      currency currency_type NOT NULL,
+                                      credit_amount DECIMAL(14, 2) NOT NULL DEFAULT 0, -- Deposits and received transfers
+                                      debit_amount DECIMAL(14, 2) NOT NULL DEFAULT 0, -- Withdrawals and sent transfers
+                                      credit_count BIGINT NOT NULL DEFAULT 0,
+                                      debit_count BIGINT NOT NULL DEFAULT 0,
+                                      PRIMARY KEY (wallet_id, turnover_day, currency)
+);
+
+-- Rollups of a single day are deleted and written again by the rebuild
+CREATE INDEX idx_wallet_turnover_day ON wallet_turnover (turnover_day);
@@ -0,0 +1,97 @@
+-- Side of a journal entry, a credit adds its amount to the balance of its wallet and a debit subtracts it
+CREATE TYPE journal_side AS ENUM (
+    'DEBIT',
+    'CREDIT'
+    );
+
+-- Append-only double-entry journal, the source of truth of all balances.
+-- Every applied transaction has one debit leg of its sender and one credit leg of its receiver with the same amount.
+-- The leg without a wallet belongs to the external account of the currency: deposits debit it, withdrawals credit it.
+-- wallet.balance and wallet_stripe.balance are a projection of the journal, changed in the same database transaction.
+CREATE TABLE IF NOT EXISTS journal_entry (
+                                      id BIGSERIAL PRIMARY KEY, -- Position of the entry in the journal
+                                      transaction_id UUID, -- No foreign key, the transaction table is partitioned. NULL for opening balances
+                                      wallet_id UUID REFERENCES wallet(id), -- NULL for the external account
+                                      side journal_side NOT NULL,
+                                      amount DECIMAL(10, 2) NOT NULL CHECK (amount > 0),
+                                      currency currency_type NOT NULL,
+                                      created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Replays of a range of wallets after a position, and the legs of a transaction
+CREATE INDEX idx_journal_entry_wallet ON journal_entry (wallet_id, id);
+CREATE INDEX idx_journal_entry_transaction ON journal_entry (transaction_id);
+
+CREATE OR REPLACE FUNCTION reject_journal_entry_change()
+    RETURNS TRIGGER AS $$
+BEGIN
+    RAISE EXCEPTION 'journal_entry is append-only, % is not allowed', TG_OP;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER journal_entry_append_only_trigger
+    BEFORE UPDATE OR DELETE ON journal_entry
+    FOR EACH ROW EXECUTE FUNCTION reject_journal_entry_change();
+
+CREATE TRIGGER journal_entry_no_truncate_trigger
+    BEFORE TRUNCATE ON journal_entry
+    FOR EACH STATEMENT EXECUTE FUNCTION reject_journal_entry_change();
+
+-- Balances of all wallets after the journal entries up to a position, written periodically by the application.
+-- A replay starts from the latest snapshot and only reads the entries after its position.
+CREATE TABLE IF NOT EXISTS balance_snapshot (
+                                      journal_position BIGINT NOT NULL,
+                                      wallet_id UUID NOT NULL REFERENCES wallet(id),
+                                      balance DECIMAL(10, 2) NOT NULL,
+                                      PRIMARY KEY (journal_position, wallet_id)
+);
+
+-- Opens the journal of a database whose balances were kept without it. Every wallet gets an opening entry with its
+-- balance before its completed transactions, followed by the legs of these transactions in the order of their creation.
+-- Does nothing once the journal has entries, so it has to run before the application writes to the journal.
+CREATE OR REPLACE FUNCTION open_journal()
+    RETURNS BIGINT AS $$
+DECLARE
+    opened BIGINT;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('journal_entry'));
+    IF EXISTS (SELECT 1 FROM journal_entry) THEN
+        RETURN 0;
+    END IF;
+
+    WITH opening AS (
+        SELECT w.id, w.currency, w.created_at,
+               w.balance
+                   + COALESCE((SELECT SUM(s.balance) FROM wallet_stripe s WHERE s.wallet_id = w.id), 0)
+                   - COALESCE((SELECT SUM(CASE WHEN t.receiver_wallet_id = w.id THEN t.amount ELSE -t.amount END)
+                               FROM transaction t
+                               WHERE (t.sender_wallet_id = w.id OR t.receiver_wallet_id = w.id)
+                                 AND t.transaction_status = 'COMPLETED'), 0) AS balance
+        FROM wallet w
+    )
+    INSERT INTO journal_entry (wallet_id, side, amount, currency, created_at)
+    SELECT legs.wallet_id, legs.side, ABS(o.balance), o.currency, COALESCE(o.created_at, CURRENT_TIMESTAMP)
+    FROM opening o
+    CROSS JOIN LATERAL (VALUES
+        (NULL::UUID, CAST(CASE WHEN o.balance > 0 THEN 'DEBIT' ELSE 'CREDIT' END AS journal_side)),
+        (o.id, CAST(CASE WHEN o.balance > 0 THEN 'CREDIT' ELSE 'DEBIT' END AS journal_side))
+    ) AS legs (wallet_id, side)
+    WHERE o.balance <> 0
+    ORDER BY o.created_at, o.id, legs.side;
+
+    INSERT INTO journal_entry (transaction_id, wallet_id, side, amount, currency, created_at)
+    SELECT t.id, legs.wallet_id, legs.side, t.amount, t.currency, t.created_at
+    FROM transaction t
+    CROSS JOIN LATERAL (VALUES
+        (t.sender_wallet_id, CAST('DEBIT' AS journal_side)),
+        (t.receiver_wallet_id, CAST('CREDIT' AS journal_side))
+    ) AS legs (wallet_id, side)
+    WHERE t.transaction_status = 'COMPLETED'
+    ORDER BY t.created_at, t.id, legs.side;
+
+    SELECT COUNT(*) INTO opened FROM journal_entry;
+    RETURN opened;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT open_journal();
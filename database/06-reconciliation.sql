@@ -0,0 +1,74 @@
+-- Part of the balance of each wallet which is not explained by the transaction table: the balance it had before its
+-- transactions were recorded, and the net amount of its completed transactions moved to the archive.
+-- Every wallet.balance plus the balances of its stripes equals its carried balance plus the amounts of its completed
+-- transactions it received minus the amounts it sent. Wallets without a row carry nothing.
+CREATE TABLE IF NOT EXISTS wallet_carried_balance (
+                                      wallet_id UUID PRIMARY KEY REFERENCES wallet(id),
+                                      balance DECIMAL(14, 2) NOT NULL
+);
+
+-- Runs of the reconciliation of the stored balances against the transactions, written by the application.
+-- A run checks the wallets with journal entries in (from_position, to_position], or all wallets if full_scan is set.
+-- A run without finished_at is in progress, or was interrupted and is resumed once its heartbeat is older than the lease.
+CREATE TABLE IF NOT EXISTS reconciliation_run (
+                                      id BIGSERIAL PRIMARY KEY,
+                                      full_scan BOOLEAN NOT NULL,
+                                      from_position BIGINT NOT NULL,
+                                      to_position BIGINT NOT NULL,
+                                      range_count INT NOT NULL, -- Number of wallet ID ranges the run is split into
+                                      checked_count BIGINT NOT NULL DEFAULT 0,
+                                      mismatch_count BIGINT NOT NULL DEFAULT 0,
+                                      started_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                      heartbeat_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                      finished_at TIMESTAMP
+);
+
+-- Ranges of wallet IDs a run has completed, skipped when the run is resumed
+CREATE TABLE IF NOT EXISTS reconciliation_checkpoint (
+                                      run_id BIGINT NOT NULL REFERENCES reconciliation_run(id) ON DELETE CASCADE,
+                                      range_index INT NOT NULL,
+                                      checked_count BIGINT NOT NULL,
+                                      mismatch_count BIGINT NOT NULL,
+                                      completed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                      PRIMARY KEY (run_id, range_index)
+);
+
+-- Wallets whose stored balance differed from their transactions, written with the checkpoint of their range
+CREATE TABLE IF NOT EXISTS reconciliation_mismatch (
+                                      run_id BIGINT NOT NULL REFERENCES reconciliation_run(id) ON DELETE CASCADE,
+                                      wallet_id UUID NOT NULL REFERENCES wallet(id),
+                                      stored_balance DECIMAL(14, 2) NOT NULL, -- wallet.balance plus the balances of its stripes
+                                      expected_balance DECIMAL(14, 2) NOT NULL, -- Carried balance plus completed credits minus debits
+                                      detected_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                      PRIMARY KEY (run_id, wallet_id)
+);
+
+-- Sets the carried balances of a database whose balances were kept without them, from the stored balances and the
+-- completed transactions still in the transaction table. Wallets which already carry a balance are left unchanged,
+-- so it has to run before transactions are archived.
+CREATE OR REPLACE FUNCTION open_carried_balances()
+    RETURNS BIGINT AS $$
+DECLARE
+    opened BIGINT;
+BEGIN
+    INSERT INTO wallet_carried_balance (wallet_id, balance)
+    SELECT o.id, o.balance
+    FROM (
+        SELECT w.id,
+               w.balance
+                   + COALESCE((SELECT SUM(s.balance) FROM wallet_stripe s WHERE s.wallet_id = w.id), 0)
+                   - COALESCE((SELECT SUM(CASE WHEN t.receiver_wallet_id = w.id THEN t.amount ELSE -t.amount END)
+                               FROM transaction t
+                               WHERE (t.sender_wallet_id = w.id OR t.receiver_wallet_id = w.id)
+                                 AND t.transaction_status = 'COMPLETED'), 0) AS balance
+        FROM wallet w
+    ) o
+    WHERE o.balance <> 0
+    ON CONFLICT (wallet_id) DO NOTHING;
+
+    GET DIAGNOSTICS opened = ROW_COUNT;
+    RETURN opened;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT open_carried_balances();
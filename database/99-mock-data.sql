@@ -89,4 +89,35 @@ VALUES (
            (SELECT id FROM wallet WHERE name = 'Emergency Wallet'),
            '987123654321', '5500',
            800.00, 'EUR', 'DEPOSIT', 'COMPLETED', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
-       );
\ No newline at end of file
+       );
+
+-- Backfill of the balances after each completed transaction, the opening balance of a wallet is its current balance
+-- minus all of its changes and the running sum of the changes is added to it in the order of (created_at, id)
+WITH changes AS (
+    SELECT id, created_at, sender_wallet_id AS wallet_id, -amount AS change, 'SENDER' AS side
+    FROM transaction WHERE sender_wallet_id IS NOT NULL AND transaction_status = 'COMPLETED'
+    UNION ALL
+    SELECT id, created_at, receiver_wallet_id AS wallet_id, amount AS change, 'RECEIVER' AS side
+    FROM transaction WHERE receiver_wallet_id IS NOT NULL AND transaction_status = 'COMPLETED'
+), running AS (
+    SELECT c.id, c.side,
+           w.balance - SUM(c.change) OVER (PARTITION BY c.wallet_id)
+               + SUM(c.change) OVER (PARTITION BY c.wallet_id ORDER BY c.created_at, c.id ROWS UNBOUNDED PRECEDING) AS balance_after
+    FROM changes c JOIN wallet w ON w.id = c.wallet_id
+)
+UPDATE transaction t
+SET sender_balance_after = r.sender_balance_after,
+    receiver_balance_after = r.receiver_balance_after
+FROM (
+    SELECT id,
+           MAX(CASE WHEN side = 'SENDER' THEN balance_after END) AS sender_balance_after,
+           MAX(CASE WHEN side = 'RECEIVER' THEN balance_after END) AS receiver_balance_after
+    FROM running GROUP BY id
+) r
+WHERE r.id = t.id;
+
+-- Open the journal with the mock balances and transactions
+SELECT open_journal();
+
+-- Carry the mock balances which are not explained by the mock transactions
+SELECT open_carried_balances();